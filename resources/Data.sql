@@ -18,6 +18,43 @@ create table ticket(
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+create index IDX_TICKET_VEHICLE_REG_NUMBER on ticket(VEHICLE_REG_NUMBER, IN_TIME);
+create index IDX_TICKET_OUT_TIME on ticket(OUT_TIME);
+create index IDX_PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+
+/* closed tickets moved out of ticket by TicketArchiver, and their count per plate */
+create table ticket_archive(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL);
+
+create index IDX_TICKET_ARCHIVE_VEHICLE_REG_NUMBER on ticket_archive(VEHICLE_REG_NUMBER, IN_TIME);
+
+create table visit_summary(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ NB_TICKET int NOT NULL,
+ LAST_OUT_TIME DATETIME NOT NULL);
+
+/* last time written by ReplicatedDataBaseConfig, read back from the replica to measure its lag */
+create table replication_heartbeat(
+ ID int PRIMARY KEY,
+ BEAT_TIME bigint NOT NULL);
+
+/* spots booked in advance, loaded in the ReservationIndex at startup */
+create table reservation(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ START_TIME DATETIME NOT NULL,
+ END_TIME DATETIME NOT NULL,
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+
+create index IDX_RESERVATION_END_TIME on reservation(END_TIME);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
@@ -45,6 +82,43 @@ create table ticket(
  FOREIGN KEY (PARKING_NUMBER)
  REFERENCES parking(PARKING_NUMBER));
 
+create index IDX_TICKET_VEHICLE_REG_NUMBER on ticket(VEHICLE_REG_NUMBER, IN_TIME);
+create index IDX_TICKET_OUT_TIME on ticket(OUT_TIME);
+create index IDX_PARKING_TYPE_AVAILABLE on parking(TYPE, AVAILABLE, PARKING_NUMBER);
+
+/* closed tickets moved out of ticket by TicketArchiver, and their count per plate */
+create table ticket_archive(
+ ID int PRIMARY KEY,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ PRICE double,
+ IN_TIME DATETIME NOT NULL,
+ OUT_TIME DATETIME NOT NULL);
+
+create index IDX_TICKET_ARCHIVE_VEHICLE_REG_NUMBER on ticket_archive(VEHICLE_REG_NUMBER, IN_TIME);
+
+create table visit_summary(
+ VEHICLE_REG_NUMBER varchar(10) PRIMARY KEY,
+ NB_TICKET int NOT NULL,
+ LAST_OUT_TIME DATETIME NOT NULL);
+
+/* last time written by ReplicatedDataBaseConfig, read back from the replica to measure its lag */
+create table replication_heartbeat(
+ ID int PRIMARY KEY,
+ BEAT_TIME bigint NOT NULL);
+
+/* spots booked in advance, loaded in the ReservationIndex at startup */
+create table reservation(
+ ID int PRIMARY KEY AUTO_INCREMENT,
+ PARKING_NUMBER int NOT NULL,
+ VEHICLE_REG_NUMBER varchar(10) NOT NULL,
+ START_TIME DATETIME NOT NULL,
+ END_TIME DATETIME NOT NULL,
+ FOREIGN KEY (PARKING_NUMBER)
+ REFERENCES parking(PARKING_NUMBER));
+
+create index IDX_RESERVATION_END_TIME on reservation(END_TIME);
+
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(1,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(2,true,'CAR');
 insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(3,true,'CAR');
@@ -0,0 +1,128 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.FareEngine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fare calculation: the former double based calculation printing to the console, FareCalculatorService
+ * on top of the integer FareEngine, the engine alone and its bulk API.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FareCalculatorBenchmark {
+
+    private static final int BATCH_SIZE = 1024;
+
+    @Param({"CAR", "BIKE"})
+    public ParkingType parkingType;
+
+    @Param({"false", "true"})
+    public boolean discount;
+
+    private FareCalculatorService fareCalculatorService;
+    private FareEngine fareEngine;
+    private Ticket ticket;
+    private long inTime;
+    private long outTime;
+
+    private ParkingType[] parkingTypes;
+    private long[] inTimes;
+    private long[] outTimes;
+    private boolean[] discounts;
+    private long[] prices;
+
+    @Setup
+    public void setUp() {
+        EmbeddedDataBase.discardConsoleOutput();
+        fareCalculatorService = new FareCalculatorService();
+        fareEngine = fareCalculatorService.getFareEngine();
+        outTime = System.currentTimeMillis();
+        inTime = outTime - (3 * 60 * 60 * 1000);
+        ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, parkingType, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(inTime));
+        ticket.setOutTime(new Date(outTime));
+
+        Random random = new Random(42);
+        parkingTypes = new ParkingType[BATCH_SIZE];
+        inTimes = new long[BATCH_SIZE];
+        outTimes = new long[BATCH_SIZE];
+        discounts = new boolean[BATCH_SIZE];
+        prices = new long[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            parkingTypes[i] = parkingType;
+            inTimes[i] = outTime - random.nextInt(24 * 60 * 60 * 1000);
+            outTimes[i] = outTime;
+            discounts[i] = discount;
+        }
+    }
+
+    /**
+     * Baseline: the calculation FareCalculatorService used before the fare engine.
+     */
+    @Benchmark
+    public double legacyCalculateFare() {
+        double CAR_RATE_PER_MINUTES = Fare.CAR_RATE_PER_HOUR / 60;
+        double BIKE_RATE_PER_MINUTES = Fare.BIKE_RATE_PER_HOUR / 60;
+        double duration = (double) (ticket.getOutTime().getTime() - ticket.getInTime().getTime()) / (1000 * 60);
+        System.out.println("duration = " + duration);
+        System.out.println("Parking Type: " + ticket.getParkingSpot().getParkingType());
+        if (duration <= 30) {
+            ticket.setPrice(0);
+            return 0.0;
+        }
+        switch (ticket.getParkingSpot().getParkingType()) {
+            case CAR:
+                ticket.setPrice(duration * (discount ? CAR_RATE_PER_MINUTES * 0.95 : CAR_RATE_PER_MINUTES));
+                break;
+            case BIKE:
+                ticket.setPrice(duration * (discount ? BIKE_RATE_PER_MINUTES * 0.95 : BIKE_RATE_PER_MINUTES));
+                break;
+            default:
+                throw new IllegalArgumentException("Unkown Parking Type: " + ticket.getParkingSpot().getParkingType());
+        }
+        return ticket.getPrice();
+    }
+
+    @Benchmark
+    public double calculateFare() {
+        return fareCalculatorService.calculateFare(ticket, discount);
+    }
+
+    @Benchmark
+    public long fareEngine() {
+        return fareEngine.price(parkingType, inTime, outTime, discount);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long[] fareEngineBulk() {
+        fareEngine.priceAll(parkingTypes, inTimes, outTimes, discounts, prices);
+        return prices;
+    }
+}
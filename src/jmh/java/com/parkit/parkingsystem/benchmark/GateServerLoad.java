@@ -0,0 +1,49 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.RecurringCustomerCache;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.gate.GateLoadGenerator;
+import com.parkit.parkingsystem.gate.GateServer;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+
+/**
+ * Sustained entry and exit events per second through the {@link GateServer}, on an embedded H2 database.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec \
+ *     -Dbenchmark.mainClass=com.parkit.parkingsystem.benchmark.GateServerLoad -Djmh.args="[workers] [seconds]"
+ * </pre>
+ */
+public class GateServerLoad {
+
+    public static void main(String[] args) throws Exception {
+        int workers = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        EmbeddedDataBase dataBase = new EmbeddedDataBase("gateserver");
+        dataBase.createSchema(1000, 200);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBase;
+        parkingSpotDAO.loadParkingSpotIndex();
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBase;
+        ticketDAO.warmRecurringCustomerCache(RecurringCustomerCache.DEFAULT_MAX_SIZE, RecurringCustomerCache.DEFAULT_TTL_MILLIS);
+        ticketDAO.loadActiveTicketIndex();
+        ParkingService parkingService = new ParkingService(new InputReaderUtil(), parkingSpotDAO, ticketDAO, new FareCalculatorService());
+
+        GateServer gateServer = new GateServer(parkingService, 0, GateServer.DEFAULT_THREADS);
+        gateServer.start();
+        try {
+            // warm up, then measure
+            new GateLoadGenerator("http://localhost:" + gateServer.getPort(), workers, 3000).run();
+            GateLoadGenerator loadGenerator = new GateLoadGenerator("http://localhost:" + gateServer.getPort(), workers, seconds * 1000L);
+            loadGenerator.run();
+            System.out.println(loadGenerator.getReport());
+        } finally {
+            gateServer.stop();
+            EmbeddedDataBase.shutdownPools();
+        }
+    }
+}
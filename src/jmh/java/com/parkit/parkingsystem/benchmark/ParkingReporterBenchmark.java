@@ -0,0 +1,78 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.report.ParkingReport;
+import com.parkit.parkingsystem.report.ParkingReporter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A report over a whole ticket history of an embedded database, one ticket every minute.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ParkingReporterBenchmark {
+
+    @Param({"1000000"})
+    public int historySize;
+
+    private ParkingReporter reporter;
+    private long from;
+    private long to;
+
+    @Setup
+    public void setUp() throws Exception {
+        EmbeddedDataBase dataBase = new EmbeddedDataBase("report");
+        dataBase.createSchema(100, 50);
+        to = System.currentTimeMillis();
+        from = to - historySize * 60 * 1000L;
+        Connection con = dataBase.getConnection();
+        try (PreparedStatement ps = con.prepareStatement("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)")) {
+            for (int i = 0; i < historySize; i++) {
+                long inTime = from + i * 60 * 1000L;
+                ps.setInt(1, 1 + i % 150);
+                ps.setString(2, "PLT" + i % 1000);
+                ps.setDouble(3, 1.5);
+                ps.setTimestamp(4, new Timestamp(inTime));
+                ps.setTimestamp(5, new Timestamp(inTime + 90 * 60 * 1000L));
+                ps.addBatch();
+                if (i % 10000 == 9999) {
+                    ps.executeBatch();
+                }
+            }
+            ps.executeBatch();
+        } finally {
+            dataBase.closeConnection(con);
+        }
+        reporter = new ParkingReporter(dataBase, ForkJoinPool.commonPool(), ParkingReporter.DEFAULT_CHUNK_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        EmbeddedDataBase.shutdownPools();
+    }
+
+    @Benchmark
+    public ParkingReport reportHourly() throws Exception {
+        return reporter.report(from, to, 60 * 60 * 1000L);
+    }
+}
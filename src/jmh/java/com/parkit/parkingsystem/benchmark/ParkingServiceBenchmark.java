@@ -0,0 +1,180 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full entry and exit flows of ParkingService, against stubbed DAOs to isolate the service code,
+ * against DAOs backed by an embedded database and against the in-memory store.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParkingServiceBenchmark {
+
+    /**
+     * Answers the prompts of the gate flow without a terminal.
+     */
+    public static class ScriptedInput extends InputReaderUtil {
+        private int selection = 1;
+        private String vehicleRegNumber = "ABCDEF";
+
+        @Override
+        public int readSelection() {
+            return selection;
+        }
+
+        @Override
+        public String readVehicleRegistrationNumber() {
+            return vehicleRegNumber;
+        }
+    }
+
+    public static class StubParkingSpotDAO extends ParkingSpotDAO {
+        @Override
+        public int getNextAvailableSlot(ParkingType parkingType) {
+            return 1;
+        }
+
+        @Override
+        public boolean updateParking(ParkingSpot parkingSpot) {
+            return true;
+        }
+    }
+
+    public static class StubTicketDAO extends TicketDAO {
+        @Override
+        public UnitOfWork beginUnitOfWork() {
+            return null;
+        }
+
+        @Override
+        public boolean saveTicket(Ticket ticket) {
+            return true;
+        }
+
+        @Override
+        public Ticket getTicket(String vehicleRegNumber) {
+            Ticket ticket = new Ticket();
+            ticket.setId(1);
+            ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setInTime(new Date(System.currentTimeMillis() - (2 * 60 * 60 * 1000)));
+            return ticket;
+        }
+
+        @Override
+        public boolean updateTicket(Ticket ticket) {
+            return true;
+        }
+
+        @Override
+        public int getNbTicket(String vehicleRegNumber) {
+            return 2;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class StubbedGate {
+        ParkingService parkingService;
+
+        @Setup
+        public void setUp() {
+            EmbeddedDataBase.discardConsoleOutput();
+            parkingService = new ParkingService(new ScriptedInput(), new StubParkingSpotDAO(), new StubTicketDAO(), new FareCalculatorService());
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EmbeddedDataBaseGate {
+        ParkingService parkingService;
+        ScriptedInput input;
+        int vehicleCount;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            EmbeddedDataBase.discardConsoleOutput();
+            EmbeddedDataBase dataBase = new EmbeddedDataBase("gate" + Thread.currentThread().getId());
+            dataBase.createSchema(100, 50);
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.dataBaseConfig = dataBase;
+            TicketDAO ticketDAO = new TicketDAO();
+            ticketDAO.dataBaseConfig = dataBase;
+            input = new ScriptedInput();
+            parkingService = new ParkingService(input, parkingSpotDAO, ticketDAO, new FareCalculatorService());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            EmbeddedDataBase.shutdownPools();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class InMemoryStoreGate {
+        ParkingService parkingService;
+        int vehicleCount;
+
+        // a new store every iteration, so that the ticket history does not grow for the whole run
+        @Setup(Level.Iteration)
+        public void setUp() {
+            ParkingSpotIndex layout = new ParkingSpotIndex(150);
+            for (int number = 1; number <= 150; number++) {
+                layout.addParkingSpot(number, number <= 100 ? ParkingType.CAR : ParkingType.BIKE, true);
+            }
+            InMemoryParkingStore store = new InMemoryParkingStore(layout);
+            parkingService = new ParkingService(new ScriptedInput(), store, store, new FareCalculatorService());
+        }
+    }
+
+    @Benchmark
+    public void incomingVehicleStubbed(StubbedGate gate) {
+        gate.parkingService.processIncomingVehicle();
+    }
+
+    @Benchmark
+    public void exitingVehicleStubbed(StubbedGate gate) {
+        gate.parkingService.processExitingVehicle();
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void entryAndExitEmbeddedDataBase(EmbeddedDataBaseGate gate) {
+        gate.input.vehicleRegNumber = "BNCH" + (gate.vehicleCount++ % 100000);
+        gate.parkingService.processIncomingVehicle();
+        gate.parkingService.processExitingVehicle();
+    }
+
+    @Benchmark
+    public Ticket entryAndExitInMemoryStore(InMemoryStoreGate gate) throws Exception {
+        String vehicleRegNumber = "MEM" + (gate.vehicleCount++ % 100000);
+        gate.parkingService.processIncomingVehicle(ParkingType.CAR, vehicleRegNumber);
+        return gate.parkingService.processExitingVehicle(vehicleRegNumber);
+    }
+}
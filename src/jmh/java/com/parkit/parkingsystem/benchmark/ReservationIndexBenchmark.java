@@ -0,0 +1,76 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.ReservationIndex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Availability queries on a lot whose spots are mostly reserved over the next days: a free CAR spot for an
+ * afternoon, the number of free spots, and the spots held from walk-in vehicles, looked up on every entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReservationIndexBenchmark {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    @Param({"1000", "50000"})
+    public int spots;
+
+    private ReservationIndex reservationIndex;
+    private long afternoonStart;
+    private long afternoonEnd;
+
+    @Setup
+    public void setUp() {
+        ParkingSpotIndex parkingSpotIndex = new ParkingSpotIndex(spots);
+        for (int number = 1; number <= spots; number++) {
+            parkingSpotIndex.addParkingSpot(number, number % 10 == 0 ? ParkingType.BIKE : ParkingType.CAR, true);
+        }
+        reservationIndex = new ReservationIndex(parkingSpotIndex, ReservationIndex.DEFAULT_SLOT_MILLIS,
+                ReservationIndex.DEFAULT_HORIZON_SLOTS, ReservationIndex.DEFAULT_HOLD_MILLIS);
+        long day = (System.currentTimeMillis() / (24 * HOUR) + 1) * 24 * HOUR;
+        afternoonStart = day + 14 * HOUR;
+        afternoonEnd = day + 18 * HOUR;
+        // every spot but the last one booked in two hour periods, two to four hours apart, over three days
+        Random random = new Random(42);
+        for (int number = 1; number < spots; number++) {
+            for (long start = day; start < day + 72 * HOUR; start += (2 + random.nextInt(3)) * HOUR) {
+                reservationIndex.add(number, "P" + number, start, start + 2 * HOUR);
+            }
+        }
+    }
+
+    @Benchmark
+    public int findFreeSpot() {
+        return reservationIndex.findFreeSpot(ParkingType.CAR, afternoonStart, afternoonEnd);
+    }
+
+    @Benchmark
+    public int countFreeSpots() {
+        return reservationIndex.countFreeSpots(ParkingType.CAR, afternoonStart, afternoonEnd);
+    }
+
+    @Benchmark
+    public long[] getHeldSpots() {
+        return reservationIndex.getHeldSpots();
+    }
+}
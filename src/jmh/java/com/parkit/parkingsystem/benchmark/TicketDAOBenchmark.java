@@ -0,0 +1,92 @@
+package com.parkit.parkingsystem.benchmark;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TicketDAO queries against an embedded database holding a ticket history.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TicketDAOBenchmark {
+
+    @Param({"10000"})
+    public int historySize;
+
+    @Param({"1000"})
+    public int plates;
+
+    private TicketDAO ticketDAO;
+
+    @Setup
+    public void setUp() throws Exception {
+        EmbeddedDataBase dataBase = new EmbeddedDataBase("tickets");
+        dataBase.createSchema(100, 50);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBase;
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < historySize; i++) {
+            Ticket ticket = newTicket(plate(i % plates), now - (historySize - i) * 60 * 1000L);
+            ticket.setOutTime(new Date(ticket.getInTime().getTime() + 30 * 60 * 1000));
+            ticketDAO.saveTicket(ticket);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        EmbeddedDataBase.shutdownPools();
+    }
+
+    private static String plate(int i) {
+        return "PLT" + i;
+    }
+
+    private static Ticket newTicket(String vehicleRegNumber, long inTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(inTime));
+        return ticket;
+    }
+
+    private String randomPlate() {
+        return plate(ThreadLocalRandom.current().nextInt(plates));
+    }
+
+    @Benchmark
+    public Ticket getTicket() {
+        return ticketDAO.getTicket(randomPlate());
+    }
+
+    @Benchmark
+    public int getNbTicket() {
+        return ticketDAO.getNbTicket(randomPlate());
+    }
+
+    @Benchmark
+    public boolean saveTicket() {
+        return ticketDAO.saveTicket(newTicket(randomPlate(), System.currentTimeMillis()));
+    }
+}
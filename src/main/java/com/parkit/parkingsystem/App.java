@@ -1,13 +1,73 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.camera.PlateReadPipeline;
+import com.parkit.parkingsystem.display.RingBufferDisplaySink;
+import com.parkit.parkingsystem.gate.GateServer;
 import com.parkit.parkingsystem.service.InteractiveShell;
+import com.parkit.parkingsystem.service.ParkingSites;
+import com.parkit.parkingsystem.service.ParkingSystem;
+import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Map;
+
 public class App {
     private static final Logger logger = LogManager.getLogger("App");
-    public static void main(String args[]){
+    public static void main(String args[]) throws Exception {
         logger.info("Initializing Parking System");
-        InteractiveShell.loadInterface();
+        if (args.length > 0 && "--gate-server".equals(args[0])) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : GateServer.DEFAULT_PORT;
+            int threads = args.length > 2 ? Integer.parseInt(args[2]) : GateServer.DEFAULT_THREADS;
+            GateServer gateServer;
+            Runnable shutdown;
+            if (ParkingSites.getConfiguredSiteIds().isEmpty()) {
+                ParkingSystem parkingSystem = new ParkingSystem(new InputReaderUtil());
+                gateServer = new GateServer(parkingSystem.getParkingService(), port, threads);
+                attachSite(gateServer, null, parkingSystem);
+                shutdown = parkingSystem::shutdown;
+            } else {
+                ParkingSites parkingSites = ParkingSites.fromSystemProperties(new InputReaderUtil());
+                gateServer = new GateServer(parkingSites.getParkingServices(), port, threads);
+                for (Map.Entry<String, ParkingSystem> site : parkingSites.getSites().entrySet()) {
+                    attachSite(gateServer, site.getKey(), site.getValue());
+                }
+                shutdown = parkingSites::shutdown;
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                gateServer.stop();
+                shutdown.run();
+            }));
+            gateServer.start();
+            Thread.currentThread().join();
+        } else if (args.length > 0 && "--cameras".equals(args[0])) {
+            int port = args.length > 1 ? Integer.parseInt(args[1]) : PlateReadPipeline.DEFAULT_PORT;
+            int gates = args.length > 2 ? Integer.parseInt(args[2]) : PlateReadPipeline.DEFAULT_GATES;
+            ParkingSystem parkingSystem = new ParkingSystem(new InputReaderUtil());
+            PlateReadPipeline pipeline = new PlateReadPipeline(parkingSystem.getParkingService(), gates, PlateReadPipeline.DEFAULT_BATCH_SIZE,
+                    PlateReadPipeline.DEFAULT_QUEUE_CAPACITY, PlateReadPipeline.DEFAULT_DEDUPLICATION_WINDOW_MILLIS);
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    pipeline.close();
+                } catch (Exception e) {
+                    logger.error("Error stopping the camera pipeline", e);
+                }
+                logger.info(pipeline);
+                parkingSystem.shutdown();
+            }));
+            pipeline.start();
+            pipeline.listen(port);
+            Thread.currentThread().join();
+        } else {
+            InteractiveShell.loadInterface();
+        }
+    }
+
+    private static void attachSite(GateServer gateServer, String siteId, ParkingSystem parkingSystem) {
+        gateServer.setReservationDAO(siteId, parkingSystem.getReservationDAO());
+        gateServer.setRecurringCustomerCache(siteId, parkingSystem.getRecurringCustomerCache());
+        if (parkingSystem.getDisplay() instanceof RingBufferDisplaySink) {
+            gateServer.setKioskDisplay(siteId, (RingBufferDisplaySink) parkingSystem.getDisplay());
+        }
     }
 }
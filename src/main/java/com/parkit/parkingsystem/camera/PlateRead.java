@@ -0,0 +1,61 @@
+package com.parkit.parkingsystem.camera;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.ParkingService;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A plate read by the camera of an entry or exit lane. Lines are {@code time,ENTRY|EXIT,plate[,parking type]},
+ * the time being an ISO local date-time such as {@code 2024-01-10T08:00:00.250} and the type CAR by default;
+ * blank lines and lines starting with {@code #} are ignored. Plates are normalized as stored in the ticket table.
+ */
+public final class PlateRead {
+
+    public static final String ENTRY = "ENTRY";
+    public static final String EXIT = "EXIT";
+
+    public final long time;
+    public final boolean entry;
+    public final String vehicleRegNumber;
+    public final ParkingType parkingType;
+
+    public PlateRead(long time, boolean entry, String vehicleRegNumber, ParkingType parkingType) {
+        this.time = time;
+        this.entry = entry;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingType = parkingType;
+    }
+
+    /**
+     * @return the read of this line, or null for a blank or comment line
+     * @throws IllegalArgumentException when the line is not a plate read or its plate cannot be stored
+     */
+    public static PlateRead parse(String line, ZoneId zone) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        String[] fields = trimmed.split(",");
+        if (fields.length != 3 && fields.length != 4) {
+            throw new IllegalArgumentException("Expected 3 or 4 fields: " + line);
+        }
+        String event = fields[1].trim();
+        if (!ENTRY.equals(event) && !EXIT.equals(event)) {
+            throw new IllegalArgumentException("Unknown lane " + event + ": " + line);
+        }
+        String vehicleRegNumber = ParkingService.normalizeVehicleRegNumber(fields[2]);
+        if (vehicleRegNumber == null) {
+            throw new IllegalArgumentException("Invalid plate: " + line);
+        }
+        try {
+            long time = LocalDateTime.parse(fields[0].trim()).atZone(zone).toInstant().toEpochMilli();
+            ParkingType parkingType = fields.length == 4 ? ParkingType.valueOf(fields[3].trim()) : ParkingType.CAR;
+            return new PlateRead(time, ENTRY.equals(event), vehicleRegNumber, parkingType);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time: " + line, e);
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.parkit.parkingsystem.camera;
+
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ParkingSystem;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Feeds the {@link PlateRead}s of the lane cameras to {@link ParkingService}. Cameras send bursts of reads of the
+ * same plate: a read of a plate in the same direction, entry or exit, less than the deduplication window after the
+ * previous one is dropped, whichever camera made it, reads not saying which camera or lane they come from. Reads
+ * wait in a bounded queue, so a camera that sends faster than the gates answer is no longer read until they catch
+ * up. The dispatcher takes them in micro-batches, whose plates are processed in parallel by the gate threads, the
+ * reads of a plate in the order they came.
+ * <pre>
+ * java -cp parking-system.jar com.parkit.parkingsystem.camera.PlateReadPipeline reads.csv [gates]
+ * </pre>
+ */
+public class PlateReadPipeline implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger("PlateReadPipeline");
+
+    public static final int DEFAULT_PORT = 9091;
+    public static final int DEFAULT_GATES = 4;
+    public static final int DEFAULT_BATCH_SIZE = 64;
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final long DEFAULT_DEDUPLICATION_WINDOW_MILLIS = 5000;
+
+    private static final long POLL_MILLIS = 100;
+
+    private final ParkingService parkingService;
+    private final int batchSize;
+    private final long deduplicationWindowMillis;
+    private final BlockingQueue<PlateRead> queue;
+    private final ExecutorService gates;
+    private final Thread dispatcher;
+
+    // time of the last read by direction and plate, oldest first: guarded by itself
+    private final Map<String, Long> lastReads = new LinkedHashMap<>();
+    private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+    private ServerSocket serverSocket;
+    private volatile boolean closed;
+
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public PlateReadPipeline(ParkingService parkingService, int gates, int batchSize, int queueCapacity, long deduplicationWindowMillis) {
+        this.parkingService = parkingService;
+        this.batchSize = batchSize;
+        this.deduplicationWindowMillis = deduplicationWindowMillis;
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.gates = Executors.newFixedThreadPool(gates, runnable -> {
+            Thread thread = new Thread(runnable, "camera-gate");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher = new Thread(this::dispatch, "camera-dispatcher");
+        dispatcher.setDaemon(true);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: PlateReadPipeline <plate read file> [gates]");
+            System.exit(1);
+        }
+        int gates = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_GATES;
+        ParkingSystem parkingSystem = new ParkingSystem(new InputReaderUtil());
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            PlateReadPipeline pipeline = new PlateReadPipeline(parkingSystem.getParkingService(), gates, DEFAULT_BATCH_SIZE,
+                    DEFAULT_QUEUE_CAPACITY, DEFAULT_DEDUPLICATION_WINDOW_MILLIS);
+            pipeline.start();
+            pipeline.ingest(reader);
+            pipeline.close();
+            System.out.println(pipeline);
+        } finally {
+            parkingSystem.shutdown();
+        }
+    }
+
+    public void start() {
+        dispatcher.start();
+    }
+
+    /**
+     * Accept camera connections on this port, each one sending plate read lines, until {@link #close()}.
+     * @return the port listened on, e.g. the one chosen for port 0
+     */
+    public synchronized int listen(int port) throws IOException {
+        serverSocket = new ServerSocket(port);
+        ServerSocket listening = serverSocket;
+        Thread listener = new Thread(() -> accept(listening), "camera-listener");
+        listener.setDaemon(true);
+        listener.start();
+        logger.info("Listening to cameras on port " + listening.getLocalPort());
+        return listening.getLocalPort();
+    }
+
+    private void accept(ServerSocket listening) {
+        try {
+            while (!closed) {
+                Socket socket = listening.accept();
+                connections.add(socket);
+                Thread connection = new Thread(() -> serve(socket), "camera-" + socket.getRemoteSocketAddress());
+                connection.setDaemon(true);
+                connection.start();
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                logger.error("Camera listener stopped", e);
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            ingest(reader);
+        } catch (IOException e) {
+            if (!closed) {
+                logger.error("Error reading camera " + socket.getRemoteSocketAddress(), e);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            connections.remove(socket);
+            try {
+                socket.close();
+            } catch (IOException e) {
+                logger.error("Error closing camera connection", e);
+            }
+        }
+    }
+
+    /**
+     * Queue the reads of these lines, waiting while the queue is full. Lines that are not plate reads are counted
+     * as rejected.
+     */
+    public void ingest(BufferedReader reader) throws IOException, InterruptedException {
+        ZoneId zone = ZoneId.systemDefault();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            PlateRead read;
+            try {
+                read = PlateRead.parse(line, zone);
+            } catch (IllegalArgumentException e) {
+                rejected.increment();
+                logger.warn("Plate read rejected: " + e.getMessage());
+                continue;
+            }
+            if (read == null) {
+                continue;
+            }
+            reads.increment();
+            if (isDuplicate(read)) {
+                duplicates.increment();
+                continue;
+            }
+            queue.put(read);
+        }
+    }
+
+    /**
+     * The window slides with the burst: a plate read every second for a minute is one read.
+     */
+    private boolean isDuplicate(PlateRead read) {
+        String key = (read.entry ? PlateRead.ENTRY : PlateRead.EXIT) + ':' + read.vehicleRegNumber;
+        synchronized (lastReads) {
+            Long lastRead = lastReads.remove(key);
+            lastReads.put(key, read.time);
+            Iterator<Long> oldest = lastReads.values().iterator();
+            while (oldest.hasNext()) {
+                if (oldest.next() > read.time - deduplicationWindowMillis) {
+                    break;
+                }
+                oldest.remove();
+            }
+            return lastRead != null && read.time - lastRead < deduplicationWindowMillis;
+        }
+    }
+
+    private void dispatch() {
+        List<PlateRead> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                PlateRead first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                processBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void processBatch(List<PlateRead> batch) throws InterruptedException {
+        Map<String, List<PlateRead>> readsByPlate = new LinkedHashMap<>();
+        for (PlateRead read : batch) {
+            readsByPlate.computeIfAbsent(read.vehicleRegNumber, plate -> new ArrayList<>(2)).add(read);
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(readsByPlate.size());
+        for (List<PlateRead> plateReads : readsByPlate.values()) {
+            tasks.add(() -> {
+                for (PlateRead read : plateReads) {
+                    process(read);
+                }
+                return null;
+            });
+        }
+        // the next batch waits for this one, so that the reads of a plate are never processed out of order
+        gates.invokeAll(tasks);
+        batches.increment();
+    }
+
+    private void process(PlateRead read) {
+        try {
+            Ticket ticket = read.entry
+                    ? parkingService.processIncomingVehicle(read.parkingType, read.vehicleRegNumber)
+                    : parkingService.processExitingVehicle(read.vehicleRegNumber);
+            if (ticket == null) {
+                refused.increment();
+            } else {
+                processed.increment();
+            }
+        } catch (IllegalStateException e) {
+            // an entry read of a vehicle already parked, e.g. a read repeated after the deduplication window
+            refused.increment();
+            logger.warn("Plate read refused: " + e.getMessage());
+        } catch (Exception e) {
+            refused.increment();
+            logger.error("Unable to process the plate read of " + read.vehicleRegNumber, e);
+        }
+    }
+
+    /**
+     * Stop listening, process the reads already queued, then stop the gate threads.
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        synchronized (this) {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        }
+        for (Socket socket : connections) {
+            socket.close();
+        }
+        try {
+            if (dispatcher.isAlive()) {
+                dispatcher.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            gates.shutdown();
+        }
+    }
+
+    public long getReadCount() {
+        return reads.sum();
+    }
+
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the reads that gave a ticket
+     */
+    public long getProcessedCount() {
+        return processed.sum();
+    }
+
+    /**
+     * @return the reads the parking service turned down: lot full, vehicle already parked or not parked, or an error
+     */
+    public long getRefusedCount() {
+        return refused.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "PlateReadPipeline[reads=" + getReadCount() + " duplicates=" + getDuplicateCount() + " rejected=" + getRejectedCount()
+                + " processed=" + getProcessedCount() + " refused=" + getRefusedCount() + " batches=" + getBatchCount() + "]";
+    }
+}
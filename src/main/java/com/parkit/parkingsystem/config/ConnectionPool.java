@@ -0,0 +1,590 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.metrics.MBeans;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.ObjectName;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Small JDBC connection pool used behind {@link DataBaseConfig}.
+ * Connections handed out are proxies: closing them gives the physical connection back to the pool.
+ * Each physical connection keeps its most recently used prepared statements open, so that the queries of
+ * {@link com.parkit.parkingsystem.constants.DBConstants} are parsed, and with MySQL server-side prepared
+ * statements planned, once per connection rather than once per DAO call.
+ * A started pool is registered with JMX as com.parkit.parkingsystem:type=ConnectionPool.
+ */
+public class ConnectionPool implements ConnectionPoolMBean {
+
+    private static final Logger logger = LogManager.getLogger("ConnectionPool");
+
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final String name;
+    private final ConnectionFactory connectionFactory;
+    private final int minSize;
+    private final int maxSize;
+
+    private long borrowTimeoutMillis = 5000;
+    private long idleTimeoutMillis = 10 * 60 * 1000;
+    private long leakThresholdMillis = 60 * 1000;
+    private int validationTimeoutSeconds = 2;
+    private long validationIdleMillis = 500;
+    private int statementCacheSize = 64;
+
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+    private final Set<PooledConnection> activeConnections = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger totalConnections = new AtomicInteger();
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    private ScheduledExecutorService housekeeper;
+    private ObjectName objectName;
+    private volatile boolean shutdown;
+
+    public ConnectionPool(String name, ConnectionFactory connectionFactory, int minSize, int maxSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Invalid pool size: min=" + minSize + " max=" + maxSize);
+        }
+        this.name = name;
+        this.connectionFactory = connectionFactory;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Borrow a connection, waiting at most the borrow timeout when the pool is exhausted.
+     * Connections idle for longer than the validation idle time are validated before being handed out,
+     * so that one closed by the server while it waited, e.g. past the MySQL wait_timeout, is replaced.
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool " + name + " is shut down");
+        }
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        PooledConnection pooledConnection = null;
+        while (pooledConnection == null) {
+            PooledConnection candidate = idleConnections.pollFirst();
+            if (candidate == null) {
+                candidate = createIfBelowMax();
+            }
+            if (candidate == null) {
+                long remaining = deadline - System.nanoTime();
+                try {
+                    candidate = remaining > 0 ? idleConnections.pollFirst(remaining, TimeUnit.NANOSECONDS) : null;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a connection", e);
+                }
+                if (candidate == null) {
+                    timeoutCount.incrementAndGet();
+                    throw new SQLException("Timed out after " + borrowTimeoutMillis + "ms waiting for a connection from pool " + name);
+                }
+            }
+            if (System.currentTimeMillis() - candidate.lastReturnedAt <= validationIdleMillis || isValid(candidate)) {
+                pooledConnection = candidate;
+            } else {
+                destroy(candidate);
+            }
+        }
+        recordWait(System.nanoTime() - start);
+        pooledConnection.borrowed(leakThresholdMillis > 0);
+        activeConnections.add(pooledConnection);
+        return pooledConnection.newHandle();
+    }
+
+    private PooledConnection createIfBelowMax() throws SQLException {
+        int total;
+        do {
+            total = totalConnections.get();
+            if (total >= maxSize) {
+                return null;
+            }
+        } while (!totalConnections.compareAndSet(total, total + 1));
+        try {
+            return new PooledConnection(connectionFactory.create());
+        } catch (SQLException | RuntimeException e) {
+            totalConnections.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private boolean isValid(PooledConnection pooledConnection) {
+        try {
+            return pooledConnection.connection.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            logger.error("Error while validating connection", e);
+            return false;
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long max;
+        do {
+            max = maxWaitNanos.get();
+        } while (waitNanos > max && !maxWaitNanos.compareAndSet(max, waitNanos));
+    }
+
+    private void release(PooledConnection pooledConnection) {
+        activeConnections.remove(pooledConnection);
+        pooledConnection.closeStatementsInUse();
+        try {
+            if (pooledConnection.connection.isClosed()) {
+                destroy(pooledConnection);
+                return;
+            }
+            if (!pooledConnection.connection.getAutoCommit()) {
+                pooledConnection.connection.rollback();
+                pooledConnection.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            logger.error("Error while resetting connection, discarding it", e);
+            destroy(pooledConnection);
+            return;
+        }
+        if (shutdown) {
+            destroy(pooledConnection);
+            return;
+        }
+        pooledConnection.returned();
+        idleConnections.offerFirst(pooledConnection);
+    }
+
+    private void destroy(PooledConnection pooledConnection) {
+        totalConnections.decrementAndGet();
+        try {
+            pooledConnection.connection.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing connection", e);
+        }
+    }
+
+    /**
+     * Fill the pool up to its minimum size, start the background task evicting idle connections
+     * and reporting leaked ones, and register the pool with JMX.
+     */
+    public synchronized void start(long housekeepingPeriodMillis) {
+        if (housekeeper != null) {
+            return;
+        }
+        fillToMinimum();
+        housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-" + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, housekeepingPeriodMillis, housekeepingPeriodMillis, TimeUnit.MILLISECONDS);
+        objectName = MBeans.register(this, "ConnectionPool", name);
+    }
+
+    void housekeep() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+        while (iterator.hasNext() && totalConnections.get() > minSize) {
+            PooledConnection pooledConnection = iterator.next();
+            if (now - pooledConnection.lastReturnedAt > idleTimeoutMillis && idleConnections.remove(pooledConnection)) {
+                destroy(pooledConnection);
+            }
+        }
+        if (leakThresholdMillis > 0) {
+            for (PooledConnection pooledConnection : activeConnections) {
+                if (!pooledConnection.leakReported && now - pooledConnection.borrowedAt > leakThresholdMillis) {
+                    pooledConnection.leakReported = true;
+                    leakCount.incrementAndGet();
+                    logger.warn("Connection from pool " + name + " held for more than " + leakThresholdMillis + "ms, possible leak", pooledConnection.borrowTrace);
+                }
+            }
+        }
+        fillToMinimum();
+    }
+
+    private void fillToMinimum() {
+        while (!shutdown && totalConnections.get() < minSize) {
+            try {
+                PooledConnection pooledConnection = createIfBelowMax();
+                if (pooledConnection == null) {
+                    return;
+                }
+                pooledConnection.returned();
+                idleConnections.offerLast(pooledConnection);
+            } catch (SQLException e) {
+                logger.error("Error while filling connection pool " + name, e);
+                return;
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        shutdown = true;
+        if (housekeeper != null) {
+            housekeeper.shutdownNow();
+            housekeeper = null;
+            MBeans.unregister(objectName);
+            objectName = null;
+        }
+        PooledConnection pooledConnection;
+        while ((pooledConnection = idleConnections.pollFirst()) != null) {
+            destroy(pooledConnection);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getActiveCount() {
+        return activeConnections.size();
+    }
+
+    @Override
+    public int getIdleCount() {
+        return idleConnections.size();
+    }
+
+    @Override
+    public int getTotalCount() {
+        return totalConnections.get();
+    }
+
+    @Override
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    @Override
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : (double) totalWaitNanos.get() / borrows / 1_000_000;
+    }
+
+    public double getTotalWaitMillis() {
+        return (double) totalWaitNanos.get() / 1_000_000;
+    }
+
+    @Override
+    public double getMaxWaitMillis() {
+        return (double) maxWaitNanos.get() / 1_000_000;
+    }
+
+    @Override
+    public long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    @Override
+    public long getLeakCount() {
+        return leakCount.get();
+    }
+
+    @Override
+    public long getStatementCacheHitCount() {
+        return statementCacheHits.get();
+    }
+
+    @Override
+    public long getStatementCacheMissCount() {
+        return statementCacheMisses.get();
+    }
+
+    public void setBorrowTimeoutMillis(long borrowTimeoutMillis) {
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+    }
+
+    public void setIdleTimeoutMillis(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public void setLeakThresholdMillis(long leakThresholdMillis) {
+        this.leakThresholdMillis = leakThresholdMillis;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    /**
+     * @param validationIdleMillis how long a connection may stay idle and still be handed out without validation
+     */
+    public void setValidationIdleMillis(long validationIdleMillis) {
+        this.validationIdleMillis = validationIdleMillis;
+    }
+
+    /**
+     * @param statementCacheSize the number of prepared statements kept open per connection, 0 to close them all
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPool[" + name + " active=" + getActiveCount() + " idle=" + getIdleCount()
+                + " total=" + getTotalCount() + " avgWaitMs=" + getAverageWaitMillis()
+                + " statementCacheHits=" + getStatementCacheHitCount() + " statementCacheMisses=" + getStatementCacheMissCount() + "]";
+    }
+
+    private final class PooledConnection {
+        private final Connection connection;
+        private volatile long borrowedAt;
+        private volatile long lastReturnedAt;
+        private volatile Throwable borrowTrace;
+        private volatile boolean leakReported;
+
+        /**
+         * Open statements by sql, least recently used first; only touched by the borrower of the connection.
+         */
+        private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.lastReturnedAt = System.currentTimeMillis();
+        }
+
+        /**
+         * @return the cached statement for this sql, or a new one cached in place of the least recently used;
+         * an uncached statement when the cached one is still open
+         */
+        private PreparedStatement prepareStatement(Connection handle, Method method, Object[] args) throws Throwable {
+            String key = args.length == 1 ? (String) args[0] : args[1] + ":" + args[0];
+            CachedStatement cached = statements.get(key);
+            if (cached != null && !cached.inUse) {
+                statementCacheHits.incrementAndGet();
+                return cached.newHandle(handle);
+            }
+            statementCacheMisses.incrementAndGet();
+            PreparedStatement statement = (PreparedStatement) invokePhysical(method, args);
+            if (cached != null) {
+                return statement;
+            }
+            cached = new CachedStatement(key, statement);
+            statements.put(key, cached);
+            if (statements.size() > statementCacheSize) {
+                Iterator<CachedStatement> eldest = statements.values().iterator();
+                eldest.next().evict();
+                eldest.remove();
+            }
+            return cached.newHandle(handle);
+        }
+
+        private Object invokePhysical(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+
+        /**
+         * Statements the borrower left open go with it: they are closed rather than reused in an unknown state.
+         */
+        private void closeStatementsInUse() {
+            Iterator<CachedStatement> iterator = statements.values().iterator();
+            while (iterator.hasNext()) {
+                CachedStatement cached = iterator.next();
+                if (cached.inUse) {
+                    cached.evicted = true;
+                    cached.close();
+                    iterator.remove();
+                }
+            }
+        }
+
+        private void borrowed(boolean captureTrace) {
+            borrowedAt = System.currentTimeMillis();
+            borrowTrace = captureTrace ? new Throwable("Connection borrowed here") : null;
+            leakReported = false;
+        }
+
+        private void returned() {
+            lastReturnedAt = System.currentTimeMillis();
+            borrowTrace = null;
+        }
+
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new Handle(this));
+        }
+    }
+
+    private final class CachedStatement {
+        private final String key;
+        private final PreparedStatement statement;
+        private boolean inUse;
+        private boolean evicted;
+
+        private CachedStatement(String key, PreparedStatement statement) {
+            this.key = key;
+            this.statement = statement;
+        }
+
+        private PreparedStatement newHandle(Connection connection) {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new StatementHandle(this, connection));
+        }
+
+        /**
+         * Give the statement back to the cache, without the parameters and batch of the caller.
+         */
+        private void returned() {
+            inUse = false;
+            if (evicted) {
+                close();
+                return;
+            }
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+            } catch (SQLException e) {
+                logger.error("Error while resetting cached statement, closing it", e);
+                evicted = true;
+                close();
+            }
+        }
+
+        private void evict() {
+            evicted = true;
+            if (!inUse) {
+                close();
+            }
+        }
+
+        private void close() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                logger.error("Error while closing statement", e);
+            }
+        }
+    }
+
+    /**
+     * Proxy of a cached statement handed to callers; close() gives the statement back to the cache exactly once.
+     */
+    private final class StatementHandle implements InvocationHandler {
+        private final CachedStatement cached;
+        private final Connection connection;
+        private boolean closed;
+
+        private StatementHandle(CachedStatement cached, Connection connection) {
+            this.cached = cached;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close": {
+                    if (!closed) {
+                        closed = true;
+                        cached.returned();
+                    }
+                    return null;
+                }
+                case "isClosed":
+                    return closed || cached.statement.isClosed();
+                case "getConnection":
+                    return connection;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + cached.key + "]" + (closed ? " (closed)" : "");
+                default:
+                    if (closed) {
+                        throw new SQLException("Statement is closed");
+                    }
+                    try {
+                        return method.invoke(cached.statement, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+
+    /**
+     * Proxy handed to callers; close() returns the physical connection to the pool exactly once.
+     */
+    private final class Handle implements InvocationHandler {
+        private final PooledConnection pooledConnection;
+        private boolean closed;
+
+        private Handle(PooledConnection pooledConnection) {
+            this.pooledConnection = pooledConnection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close": {
+                    if (!closed) {
+                        closed = true;
+                        release(pooledConnection);
+                    }
+                    return null;
+                }
+                case "isClosed":
+                    return closed || pooledConnection.connection.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + name + "]" + (closed ? " (closed)" : "");
+                case "prepareStatement":
+                    if (closed) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    // only the plain forms: cursor types and fetch sizes of reports are not worth keeping
+                    if (statementCacheSize > 0 && (args.length == 1 || args.length == 2 && args[1] instanceof Integer)) {
+                        return pooledConnection.prepareStatement((Connection) proxy, method, args);
+                    }
+                    return pooledConnection.invokePhysical(method, args);
+                default:
+                    if (closed) {
+                        throw new SQLException("Connection is closed");
+                    }
+                    try {
+                        return method.invoke(pooledConnection.connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.parkit.parkingsystem.config;
+
+/**
+ * JMX view of a {@link ConnectionPool}, wait times in milliseconds.
+ */
+public interface ConnectionPoolMBean {
+
+    String getName();
+
+    int getActiveCount();
+
+    int getIdleCount();
+
+    int getTotalCount();
+
+    long getBorrowCount();
+
+    double getAverageWaitMillis();
+
+    double getMaxWaitMillis();
+
+    long getTimeoutCount();
+
+    long getLeakCount();
+
+    long getStatementCacheHitCount();
+
+    long getStatementCacheMissCount();
+}
@@ -2,20 +2,187 @@ package com.parkit.parkingsystem.config;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import java.nio.file.Paths;
 import java.sql.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class DataBaseConfig {
 
     private static final Logger logger = LogManager.getLogger("DataBaseConfig");
 
+    public static final int POOL_MIN_SIZE = 2;
+    public static final int POOL_MAX_SIZE = 10;
+    public static final long POOL_HOUSEKEEPING_PERIOD_MILLIS = 30 * 1000;
+
+    public static final String DB_PROPERTY = "parkit.db";
+    public static final String DB_DIRECTORY_PROPERTY = "parkit.db.dir";
+    public static final String DB_URL_PROPERTY = "parkit.db.url";
+    public static final String DB_USER_PROPERTY = "parkit.db.user";
+    public static final String DB_PASSWORD_PROPERTY = "parkit.db.password";
+    public static final String EMBEDDED = "embedded";
+    public static final String SITE_DB_URL_PROPERTY = "parkit.site.%s.db.url";
+    public static final String DB_REPLICA_URL_PROPERTY = "parkit.db.replica.url";
+    public static final String DB_REPLICA_STALENESS_PROPERTY = "parkit.db.replica.staleness.ms";
+    public static final long DEFAULT_REPLICA_STALENESS_MILLIS = 1000;
+
+    private static final Map<String, ConnectionPool> pools = new ConcurrentHashMap<>();
+
+    /**
+     * The database selected by system properties: {@value #DB_PROPERTY}={@value #EMBEDDED} for an in-process
+     * database, kept in {@value #DB_DIRECTORY_PROPERTY} when set, otherwise the MySQL server, whose url
+     * and credentials can be overridden with {@value #DB_URL_PROPERTY}, {@value #DB_USER_PROPERTY} and
+     * {@value #DB_PASSWORD_PROPERTY}.
+     * With {@value #DB_REPLICA_URL_PROPERTY}, lookups and reports are read from that replica of the MySQL server
+     * while it lags by no more than {@value #DB_REPLICA_STALENESS_PROPERTY} milliseconds, see
+     * {@link ReplicatedDataBaseConfig}.
+     */
+    public static DataBaseConfig fromSystemProperties() {
+        if (EMBEDDED.equals(System.getProperty(DB_PROPERTY))) {
+            String directory = System.getProperty(DB_DIRECTORY_PROPERTY);
+            return directory == null ? new EmbeddedDataBaseConfig("prod") : new EmbeddedDataBaseConfig("prod", Paths.get(directory));
+        }
+        DataBaseConfig primary = new DataBaseConfig();
+        String replicaUrl = System.getProperty(DB_REPLICA_URL_PROPERTY);
+        if (replicaUrl == null) {
+            return primary;
+        }
+        long maxStalenessMillis = Long.getLong(DB_REPLICA_STALENESS_PROPERTY, DEFAULT_REPLICA_STALENESS_MILLIS);
+        ReplicatedDataBaseConfig replicated = new ReplicatedDataBaseConfig(primary, new DataBaseConfig() {
+            @Override
+            protected String getUrl() {
+                return replicaUrl;
+            }
+        }, maxStalenessMillis);
+        // several heartbeats within the staleness bound, so that a healthy replica never looks stale
+        replicated.startHeartbeat(Math.max(1, maxStalenessMillis / 4));
+        logger.info("Reading from the replica " + replicaUrl + " up to " + maxStalenessMillis + " ms behind");
+        return replicated;
+    }
+
+    /**
+     * The database of one site of a multi-site deployment: with {@value #DB_PROPERTY}={@value #EMBEDDED}, an
+     * in-process database of its own, kept in a sub-folder named after the site of {@value #DB_DIRECTORY_PROPERTY}
+     * when set; otherwise the MySQL url of {@code parkit.site.<site>.db.url}, by default the database named after
+     * the site on the MySQL server. Every site gets its own connection pool.
+     */
+    public static DataBaseConfig fromSystemProperties(String siteId) {
+        if (EMBEDDED.equals(System.getProperty(DB_PROPERTY))) {
+            String directory = System.getProperty(DB_DIRECTORY_PROPERTY);
+            return directory == null ? new EmbeddedDataBaseConfig("prod", EmbeddedDataBaseConfig.inMemoryUrl("prod-" + siteId))
+                    : new EmbeddedDataBaseConfig("prod", Paths.get(directory).resolve(siteId));
+        }
+        String url = System.getProperty(String.format(SITE_DB_URL_PROPERTY, siteId),
+                "jdbc:mysql://localhost:3306/" + siteId + "?useSSL=false&serverTimezone=Europe/Paris&characterEncoding=UTF-8&allowPublicKeyRetrieval=true&useServerPrepStmts=true");
+        return new DataBaseConfig() {
+            @Override
+            protected String getUrl() {
+                return url;
+            }
+        };
+    }
+
+    /**
+     * Borrow a connection from the pool of this database. Closing it gives it back to the pool.
+     * Inside a unit of work on this database, the connection of the unit of work is returned instead.
+     */
     public Connection getConnection() throws ClassNotFoundException, SQLException {
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/prod?useSSL=false&serverTimezone=Europe/Paris&characterEncoding=UTF-8&allowPublicKeyRetrieval=true","root","rootroot");
+        Connection unitOfWorkConnection = UnitOfWork.getConnection(getUrl());
+        if (unitOfWorkConnection != null) {
+            return unitOfWorkConnection;
+        }
+        return getConnectionPool().getConnection();
+    }
+
+    /**
+     * A connection for a query that may read slightly stale data, e.g. from a read replica.
+     * @param key the plate the query is about, whose own writes must be visible, or null for a report
+     */
+    public Connection getReadConnection(String key) throws ClassNotFoundException, SQLException {
+        return getConnection();
+    }
+
+    /**
+     * Note a write about this plate, so that its next reads see it. Nothing to do with a single database.
+     */
+    public void recordWrite(String key) {
+    }
+
+    /**
+     * Start a transaction bound to the current thread. DAO calls made on this thread use it until it is closed.
+     */
+    public UnitOfWork beginUnitOfWork() throws ClassNotFoundException, SQLException {
+        return UnitOfWork.begin(getUrl(), getConnectionPool().getConnection());
+    }
+
+    public ConnectionPool getConnectionPool() throws ClassNotFoundException {
+        ConnectionPool pool = pools.get(getUrl());
+        if (pool == null) {
+            Class.forName(getDriverClassName());
+            pool = pools.computeIfAbsent(getUrl(), url -> {
+                ConnectionPool newPool = new ConnectionPool(url, () -> DriverManager.getConnection(url, getUser(), getPassword()),
+                        POOL_MIN_SIZE, POOL_MAX_SIZE);
+                newPool.start(POOL_HOUSEKEEPING_PERIOD_MILLIS);
+                return newPool;
+            });
+        }
+        return pool;
+    }
+
+    protected String getDriverClassName() {
+        return "com.mysql.cj.jdbc.Driver";
+    }
+
+    /**
+     * The fetch size that makes a forward-only, read-only result set stream its rows instead of loading them all:
+     * MySQL Connector/J only streams row by row with {@link Integer#MIN_VALUE}.
+     */
+    public int getStreamingFetchSize() {
+        return Integer.MIN_VALUE;
+    }
+
+    protected String getUrl() {
+        return System.getProperty(DB_URL_PROPERTY, "jdbc:mysql://localhost:3306/prod?useSSL=false&serverTimezone=Europe/Paris&characterEncoding=UTF-8&allowPublicKeyRetrieval=true&useServerPrepStmts=true");
+    }
+
+    protected String getUser() {
+        return System.getProperty(DB_USER_PROPERTY, "root");
+    }
+
+    protected String getPassword() {
+        return System.getProperty(DB_PASSWORD_PROPERTY, "rootroot");
+    }
+
+    /**
+     * @return the pools of every database in use, e.g. for their statistics
+     */
+    public static Collection<ConnectionPool> getConnectionPools() {
+        return new ArrayList<>(pools.values());
+    }
+
+    public static void shutdownPools() {
+        for (ConnectionPool pool : pools.values()) {
+            logger.info("Closing " + pool);
+            pool.shutdown();
+        }
+        pools.clear();
+    }
+
+    /**
+     * Close the pool of this database only, e.g. when one site of a multi-site deployment stops.
+     */
+    public void shutdownPool() {
+        ConnectionPool pool = pools.remove(getUrl());
+        if (pool != null) {
+            logger.info("Closing " + pool);
+            pool.shutdown();
+        }
     }
 
     public void closeConnection(Connection con){
-        if(con!=null){
+        if(con!=null && !UnitOfWork.isBound(con)){
             try {
                 con.close();
             } catch (SQLException e) {
@@ -24,6 +191,32 @@ public class DataBaseConfig {
         }
     }
 
+    /**
+     * Roll back the transaction of a connection taken out of auto-commit, e.g. after a failed batch.
+     */
+    public void rollback(Connection con) {
+        if(con!=null){
+            try {
+                con.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back transaction",e);
+            }
+        }
+    }
+
+    /**
+     * Put a connection taken out of auto-commit back in auto-commit before it is closed.
+     */
+    public void restoreAutoCommit(Connection con) {
+        if(con!=null){
+            try {
+                con.setAutoCommit(true);
+            } catch (SQLException e) {
+                logger.error("Error while restoring auto-commit",e);
+            }
+        }
+    }
+
     public void closePreparedStatement(PreparedStatement ps) {
         if(ps!=null){
             try {
@@ -0,0 +1,198 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-process H2 database in MySQL mode, so the DAOs run without a MySQL server: in memory for tests and
+ * benchmarks, or in a directory for gateways running on their own. The first connection creates the tables
+ * of {@value #SCHEMA_SCRIPT} for this database that do not exist yet, with their indexes and rows, so that a
+ * database created by an older version gets the tables added since.
+ */
+public class EmbeddedDataBaseConfig extends DataBaseConfig {
+
+    private static final Logger logger = LogManager.getLogger("EmbeddedDataBaseConfig");
+
+    public static final String SCHEMA_SCRIPT = "Data.sql";
+
+    private static final String OPTIONS = ";MODE=MySQL;DATABASE_TO_LOWER=TRUE";
+    private static final Set<String> initializedUrls = ConcurrentHashMap.newKeySet();
+    // the table a schema statement creates, indexes or fills
+    private static final Pattern STATEMENT_TABLE = Pattern.compile(
+            "(?is)(?:create\\s+table\\s+|create\\s+index\\s+\\w+\\s+on\\s+|insert\\s+into\\s+)(\\w+).*");
+
+    private final String database;
+    private final String url;
+
+    /**
+     * @param database the database of {@value #SCHEMA_SCRIPT} to create, "prod" or "test"
+     */
+    public EmbeddedDataBaseConfig(String database) {
+        this(database, inMemoryUrl(database));
+    }
+
+    /**
+     * @param directory where the database files are kept between runs
+     */
+    public EmbeddedDataBaseConfig(String database, Path directory) {
+        this(database, "jdbc:h2:file:" + directory.resolve(database).toAbsolutePath() + OPTIONS);
+    }
+
+    /**
+     * @param url the H2 url of the database, e.g. an {@link #inMemoryUrl(String)} of its own
+     */
+    public EmbeddedDataBaseConfig(String database, String url) {
+        this.database = database;
+        this.url = url;
+    }
+
+    /**
+     * @return the url of an in-memory database kept until the JVM stops
+     */
+    public static String inMemoryUrl(String name) {
+        return "jdbc:h2:mem:" + name + OPTIONS + ";DB_CLOSE_DELAY=-1";
+    }
+
+    @Override
+    public ConnectionPool getConnectionPool() throws ClassNotFoundException {
+        ConnectionPool pool = super.getConnectionPool();
+        if (!initializedUrls.contains(url)) {
+            synchronized (initializedUrls) {
+                if (!initializedUrls.contains(url)) {
+                    createSchemaIfAbsent(pool);
+                    initializedUrls.add(url);
+                }
+            }
+        }
+        return pool;
+    }
+
+    private void createSchemaIfAbsent(ConnectionPool pool) {
+        Connection con = null;
+        try {
+            con = pool.getConnection();
+            // whether each table was there before this schema creation
+            Map<String, Boolean> tables = new LinkedHashMap<>();
+            List<String> createdTables = new ArrayList<>();
+            try (Statement statement = con.createStatement()) {
+                for (String sql : readSchema(database)) {
+                    String table = getStatementTable(sql);
+                    if (table == null) {
+                        continue;
+                    }
+                    if (!tables.containsKey(table)) {
+                        tables.put(table, hasTable(con, table));
+                    }
+                    if (!tables.get(table)) {
+                        statement.execute(sql);
+                        if (!createdTables.contains(table)) {
+                            createdTables.add(table);
+                        }
+                    }
+                }
+            }
+            if (!createdTables.isEmpty()) {
+                logger.info("Created the " + database + " tables " + createdTables + " in " + url);
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Unable to create the " + database + " schema in " + url, e);
+        } finally {
+            closeConnection(con);
+        }
+    }
+
+    /**
+     * @return the table of this schema statement, in lower case, or null for another statement
+     */
+    static String getStatementTable(String sql) {
+        Matcher matcher = STATEMENT_TABLE.matcher(sql);
+        return matcher.matches() ? matcher.group(1).toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static boolean hasTable(Connection con, String table) throws SQLException {
+        try (ResultSet tables = con.getMetaData().getTables(null, null, table, null)) {
+            return tables.next();
+        }
+    }
+
+    /**
+     * @return the statements of the schema script for this database, without the MySQL database switching
+     */
+    static List<String> readSchema(String database) throws IOException {
+        String script;
+        try (InputStream in = EmbeddedDataBaseConfig.class.getClassLoader().getResourceAsStream(SCHEMA_SCRIPT)) {
+            if (in == null) {
+                throw new IOException(SCHEMA_SCRIPT + " not found on the classpath");
+            }
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            script = new String(content.toByteArray(), StandardCharsets.UTF_8);
+        }
+        List<String> statements = new ArrayList<>();
+        String currentDatabase = null;
+        for (String statement : script.replaceAll("(?s)/\\*.*?\\*/", "").split(";")) {
+            String sql = statement.trim();
+            String lowerCase = sql.toLowerCase();
+            if (sql.isEmpty() || lowerCase.startsWith("create database") || lowerCase.equals("commit")) {
+                continue;
+            }
+            if (lowerCase.startsWith("use ")) {
+                currentDatabase = sql.substring(4).trim();
+            } else if (currentDatabase == null || currentDatabase.equalsIgnoreCase(database)) {
+                statements.add(sql);
+            }
+        }
+        if (statements.isEmpty()) {
+            throw new IOException("No statement for database " + database + " in " + SCHEMA_SCRIPT);
+        }
+        return statements;
+    }
+
+    @Override
+    public int getStreamingFetchSize() {
+        return 1000;
+    }
+
+    @Override
+    protected String getDriverClassName() {
+        return "org.h2.Driver";
+    }
+
+    @Override
+    protected String getUrl() {
+        return url;
+    }
+
+    @Override
+    protected String getUser() {
+        return "sa";
+    }
+
+    @Override
+    protected String getPassword() {
+        return "";
+    }
+}
@@ -0,0 +1,216 @@
+package com.parkit.parkingsystem.config;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A primary database with an asynchronous read replica. Writes and transactions go to the primary; lookups and
+ * reports go to the replica while it lags the primary by no more than the staleness bound.
+ * <p>
+ * The lag is measured with a heartbeat: the time written to the primary in {@code replication_heartbeat} is read
+ * back from the replica. A plate written by this process is read from the primary until the replica has a
+ * heartbeat later than the write, so the exit that follows an entry always finds its ticket.
+ */
+public class ReplicatedDataBaseConfig extends DataBaseConfig {
+
+    private static final Logger logger = LogManager.getLogger("ReplicatedDataBaseConfig");
+
+    private final DataBaseConfig primary;
+    private final DataBaseConfig replica;
+    private final long maxStalenessMillis;
+
+    /**
+     * When each plate was last written to the primary, {@link Long#MAX_VALUE} while the write is not committed.
+     */
+    private final Map<String, Long> lastWrites = new ConcurrentHashMap<>();
+
+    /**
+     * The last heartbeat of the primary seen on the replica, 0 when the replica cannot be read.
+     */
+    private volatile long replicaBeat;
+
+    private ScheduledExecutorService heartbeat;
+
+    public ReplicatedDataBaseConfig(DataBaseConfig primary, DataBaseConfig replica, long maxStalenessMillis) {
+        this.primary = primary;
+        this.replica = replica;
+        this.maxStalenessMillis = maxStalenessMillis;
+    }
+
+    /**
+     * @return a connection to the replica when it is fresh enough and, for a plate, already has its last write;
+     * otherwise to the primary
+     */
+    @Override
+    public Connection getReadConnection(String key) throws ClassNotFoundException, SQLException {
+        if (UnitOfWork.getConnection(getUrl()) == null && isReplicaReadable(key)) {
+            try {
+                return replica.getConnection();
+            } catch (SQLException e) {
+                logger.warn("Replica unavailable, reading from the primary", e);
+                replicaBeat = 0;
+            }
+        }
+        return getConnection();
+    }
+
+    public boolean isReplicaReadable(String key) {
+        long beat = replicaBeat;
+        if (System.currentTimeMillis() - beat > maxStalenessMillis) {
+            return false;
+        }
+        Long lastWrite = key == null ? null : lastWrites.get(key);
+        return lastWrite == null || lastWrite < beat;
+    }
+
+    @Override
+    public void recordWrite(String key) {
+        lastWrites.put(key, Long.MAX_VALUE);
+        Runnable written = () -> lastWrites.put(key, System.currentTimeMillis());
+        UnitOfWork unitOfWork = UnitOfWork.getCurrent();
+        if (unitOfWork != null) {
+            // a rolled back write changes nothing, but another one may have been made in the meantime
+            unitOfWork.onRollback(written);
+        }
+        UnitOfWork.runAfterCommit(written);
+    }
+
+    /**
+     * Write a heartbeat to the primary and read the latest one replicated, then forget the writes the replica has.
+     * @return the heartbeat read from the replica, 0 when it cannot be read
+     */
+    public long checkReplica() {
+        try {
+            writeHeartbeat(System.currentTimeMillis());
+        } catch (ClassNotFoundException | SQLException e) {
+            logger.error("Unable to write the heartbeat to the primary", e);
+        }
+        long beat = 0;
+        try {
+            beat = readHeartbeat();
+        } catch (ClassNotFoundException | SQLException e) {
+            logger.error("Unable to read the heartbeat from the replica", e);
+        }
+        replicaBeat = beat;
+        long replicatedUntil = beat;
+        lastWrites.values().removeIf(lastWrite -> lastWrite < replicatedUntil);
+        return beat;
+    }
+
+    private void writeHeartbeat(long now) throws ClassNotFoundException, SQLException {
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            con = primary.getConnection();
+            ps = con.prepareStatement(DBConstants.UPDATE_HEARTBEAT);
+            ps.setLong(1, now);
+            if (ps.executeUpdate() == 0) {
+                primary.closePreparedStatement(ps);
+                ps = con.prepareStatement(DBConstants.SAVE_HEARTBEAT);
+                ps.setLong(1, now);
+                ps.executeUpdate();
+            }
+        } finally {
+            primary.closePreparedStatement(ps);
+            primary.closeConnection(con);
+        }
+    }
+
+    private long readHeartbeat() throws ClassNotFoundException, SQLException {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = replica.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_HEARTBEAT);
+            rs = ps.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        } finally {
+            replica.closeResultSet(rs);
+            replica.closePreparedStatement(ps);
+            replica.closeConnection(con);
+        }
+    }
+
+    /**
+     * Check the replica now and then every period, on a daemon thread, until {@link #shutdownPool()}.
+     */
+    public synchronized void startHeartbeat(long periodMillis) {
+        if (heartbeat != null) {
+            return;
+        }
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleWithFixedDelay(this::checkReplica, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public long getReplicaBeat() {
+        return replicaBeat;
+    }
+
+    @Override
+    public Connection getConnection() throws ClassNotFoundException, SQLException {
+        return primary.getConnection();
+    }
+
+    @Override
+    public UnitOfWork beginUnitOfWork() throws ClassNotFoundException, SQLException {
+        return primary.beginUnitOfWork();
+    }
+
+    @Override
+    public ConnectionPool getConnectionPool() throws ClassNotFoundException {
+        return primary.getConnectionPool();
+    }
+
+    @Override
+    public int getStreamingFetchSize() {
+        return primary.getStreamingFetchSize();
+    }
+
+    @Override
+    protected String getDriverClassName() {
+        return primary.getDriverClassName();
+    }
+
+    @Override
+    protected String getUrl() {
+        return primary.getUrl();
+    }
+
+    @Override
+    protected String getUser() {
+        return primary.getUser();
+    }
+
+    @Override
+    protected String getPassword() {
+        return primary.getPassword();
+    }
+
+    @Override
+    public void shutdownPool() {
+        synchronized (this) {
+            if (heartbeat != null) {
+                heartbeat.shutdownNow();
+                heartbeat = null;
+            }
+        }
+        primary.shutdownPool();
+        replica.shutdownPool();
+    }
+}
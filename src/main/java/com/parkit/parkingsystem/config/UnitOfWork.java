@@ -0,0 +1,130 @@
+package com.parkit.parkingsystem.config;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One database transaction bound to the current thread.
+ * While it is open, every DAO using the same database gets its connection instead of borrowing one from the pool,
+ * so a whole gate event is committed or rolled back at once.
+ */
+public class UnitOfWork implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger("UnitOfWork");
+
+    private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+    private final String url;
+    private final Connection connection;
+    private final List<Runnable> commitActions = new ArrayList<>();
+    private final List<Runnable> rollbackActions = new ArrayList<>();
+    private boolean committed;
+    private boolean closed;
+
+    private UnitOfWork(String url, Connection connection) {
+        this.url = url;
+        this.connection = connection;
+    }
+
+    static UnitOfWork begin(String url, Connection connection) throws SQLException {
+        if (current.get() != null) {
+            connection.close();
+            throw new IllegalStateException("A unit of work is already running on this thread");
+        }
+        try {
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        UnitOfWork unitOfWork = new UnitOfWork(url, connection);
+        current.set(unitOfWork);
+        return unitOfWork;
+    }
+
+    /**
+     * @return the unit of work running on this thread, or null
+     */
+    public static UnitOfWork getCurrent() {
+        return current.get();
+    }
+
+    static Connection getConnection(String url) {
+        UnitOfWork unitOfWork = current.get();
+        return unitOfWork != null && unitOfWork.url.equals(url) ? unitOfWork.connection : null;
+    }
+
+    static boolean isBound(Connection connection) {
+        UnitOfWork unitOfWork = current.get();
+        return unitOfWork != null && unitOfWork.connection == connection;
+    }
+
+    /**
+     * Run an action once the unit of work running on this thread is committed, or right away when there is none.
+     */
+    public static void runAfterCommit(Runnable action) {
+        UnitOfWork unitOfWork = current.get();
+        if (unitOfWork != null) {
+            unitOfWork.onCommit(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Run an action once the transaction is committed, e.g. to update an in-memory copy of the data.
+     */
+    public void onCommit(Runnable action) {
+        commitActions.add(action);
+    }
+
+    /**
+     * Run an action if the transaction is rolled back, e.g. to undo an in-memory change made eagerly.
+     */
+    public void onRollback(Runnable action) {
+        rollbackActions.add(action);
+    }
+
+    public void commit() throws SQLException {
+        if (closed || committed) {
+            throw new IllegalStateException("Unit of work is already finished");
+        }
+        connection.commit();
+        committed = true;
+        for (Runnable action : commitActions) {
+            action.run();
+        }
+    }
+
+    /**
+     * Roll back if the work was not committed, then give the connection back to the pool.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        current.remove();
+        if (!committed) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                logger.error("Error while rolling back unit of work", e);
+            }
+            for (Runnable action : rollbackActions) {
+                action.run();
+            }
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            logger.error("Error while closing connection", e);
+        }
+    }
+}
@@ -2,11 +2,43 @@ package com.parkit.parkingsystem.constants;
 
 public class DBConstants {
 
+    /**
+     * The size of the VEHICLE_REG_NUMBER column of the ticket table.
+     */
+    public static final int MAX_VEHICLE_REG_NUMBER_LENGTH = 10;
+
     public static final String GET_NEXT_PARKING_SPOT = "SELECT MIN(PARKING_NUMBER) FROM parking WHERE AVAILABLE = true and TYPE = ?";
+    public static final String GET_PARKING_SPOTS = "SELECT PARKING_NUMBER, AVAILABLE, TYPE FROM parking";
     public static final String UPDATE_PARKING_SPOT = "UPDATE parking SET available = ? WHERE PARKING_NUMBER = ?";
+    public static final String OCCUPY_PARKING_SPOT = "UPDATE parking SET available = false WHERE PARKING_NUMBER = ? AND AVAILABLE = true";
 
     public static final String SAVE_TICKET = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(?,?,?,?,?)";
-    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=?";
+    public static final String UPDATE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where ID=? and OUT_TIME is null";
+    public static final String SAVE_TICKETS = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values";
+    public static final String SAVE_TICKETS_ROW = "(?,?,?,?,?)";
+    public static final String SAVE_TICKET_IF_ABSENT = "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) select ?,?,?,?,? from dual where not exists (select 1 from ticket where VEHICLE_REG_NUMBER=? and IN_TIME between ? and ?)";
+    public static final String CLOSE_TICKET = "update ticket set PRICE=?, OUT_TIME=? where VEHICLE_REG_NUMBER=? and IN_TIME between ? and ? and OUT_TIME is null";
     public static final String GET_TICKET = "SELECT t.ID, t.PARKING_NUMBER, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE FROM ticket t,parking p WHERE t.PARKING_NUMBER = p.PARKING_NUMBER AND t.VEHICLE_REG_NUMBER=? ORDER BY t.IN_TIME DESC LIMIT 1";
-    public static final String GET_NB_TICKET = "SELECT COUNT(*) as nbTicket FROM ticket WHERE VEHICLE_REG_NUMBER = ?";
+    public static final String GET_OPEN_TICKET = "SELECT t.ID, t.PARKING_NUMBER, t.PRICE, t.IN_TIME, t.OUT_TIME, p.TYPE FROM ticket t,parking p WHERE t.PARKING_NUMBER = p.PARKING_NUMBER AND t.VEHICLE_REG_NUMBER=? AND t.OUT_TIME IS NULL ORDER BY t.IN_TIME DESC LIMIT 1";
+    public static final String GET_OPEN_TICKETS = "SELECT t.ID, t.VEHICLE_REG_NUMBER, t.PARKING_NUMBER, t.IN_TIME, p.TYPE FROM ticket t,parking p WHERE t.PARKING_NUMBER = p.PARKING_NUMBER AND t.OUT_TIME IS NULL ORDER BY t.IN_TIME";
+    public static final String GET_NB_TICKET = "SELECT (SELECT COUNT(*) FROM ticket WHERE VEHICLE_REG_NUMBER = ?) + COALESCE((SELECT NB_TICKET FROM visit_summary WHERE VEHICLE_REG_NUMBER = ?), 0) as nbTicket";
+    public static final String GET_RECENT_NB_TICKETS = "SELECT t.VEHICLE_REG_NUMBER, COUNT(*) + COALESCE(MAX(s.NB_TICKET), 0) as nbTicket FROM ticket t LEFT JOIN visit_summary s ON s.VEHICLE_REG_NUMBER = t.VEHICLE_REG_NUMBER GROUP BY t.VEHICLE_REG_NUMBER ORDER BY MAX(t.IN_TIME) DESC LIMIT ?";
+
+    public static final String GET_REPORT_TICKETS = "SELECT p.TYPE, t.PRICE, t.IN_TIME, t.OUT_TIME FROM ticket t INNER JOIN parking p ON p.PARKING_NUMBER = t.PARKING_NUMBER WHERE t.IN_TIME < ? AND (t.OUT_TIME IS NULL OR t.OUT_TIME >= ?)"
+            + " UNION ALL SELECT p.TYPE, a.PRICE, a.IN_TIME, a.OUT_TIME FROM ticket_archive a INNER JOIN parking p ON p.PARKING_NUMBER = a.PARKING_NUMBER WHERE a.IN_TIME < ? AND a.OUT_TIME >= ?";
+
+    public static final String GET_ARCHIVABLE_TICKET_IDS = "SELECT ID FROM ticket WHERE OUT_TIME < ? ORDER BY ID LIMIT ?";
+    public static final String ARCHIVE_TICKETS = "insert into ticket_archive(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) SELECT ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME FROM ticket WHERE OUT_TIME < ? AND ID <= ?";
+    public static final String GET_ARCHIVED_VISITS = "SELECT VEHICLE_REG_NUMBER, COUNT(*), MAX(OUT_TIME) FROM ticket WHERE OUT_TIME < ? AND ID <= ? GROUP BY VEHICLE_REG_NUMBER";
+    public static final String ADD_VISITS = "update visit_summary set NB_TICKET = NB_TICKET + ?, LAST_OUT_TIME = GREATEST(LAST_OUT_TIME, ?) where VEHICLE_REG_NUMBER = ?";
+    public static final String SAVE_VISITS = "insert into visit_summary(VEHICLE_REG_NUMBER, NB_TICKET, LAST_OUT_TIME) values(?,?,?)";
+    public static final String DELETE_ARCHIVED_TICKETS = "delete from ticket WHERE OUT_TIME < ? AND ID <= ?";
+
+    public static final String UPDATE_HEARTBEAT = "update replication_heartbeat set BEAT_TIME = ? where ID = 1";
+    public static final String SAVE_HEARTBEAT = "insert into replication_heartbeat(ID, BEAT_TIME) values(1,?)";
+    public static final String GET_HEARTBEAT = "SELECT BEAT_TIME FROM replication_heartbeat WHERE ID = 1";
+
+    public static final String SAVE_RESERVATION = "insert into reservation(PARKING_NUMBER, VEHICLE_REG_NUMBER, START_TIME, END_TIME) values(?,?,?,?)";
+    public static final String DELETE_RESERVATION = "delete from reservation where ID = ?";
+    public static final String GET_UPCOMING_RESERVATIONS = "SELECT ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, START_TIME, END_TIME FROM reservation WHERE END_TIME > ?";
 }
@@ -0,0 +1,65 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tickets of the vehicles currently parked, keyed by registration number,
+ * so that exits find their ticket without querying the database.
+ */
+public class ActiveTicketIndex {
+
+    private final Map<String, ActiveTicket> activeTickets = new ConcurrentHashMap<>();
+
+    public void ticketOpened(int id, String vehicleRegNumber, int parkingNumber, ParkingType parkingType, long inTime) {
+        activeTickets.put(vehicleRegNumber, new ActiveTicket(id, parkingNumber, parkingType, inTime));
+    }
+
+    /**
+     * Forget the open ticket of this plate, unless it was replaced by a newer one in the meantime.
+     */
+    public void ticketClosed(String vehicleRegNumber, int id) {
+        activeTickets.computeIfPresent(vehicleRegNumber, (plate, activeTicket) -> activeTicket.id == id ? null : activeTicket);
+    }
+
+    /**
+     * @return a new ticket built from the open ticket of this plate, or null when the vehicle is not parked
+     */
+    public Ticket getTicket(String vehicleRegNumber) {
+        ActiveTicket activeTicket = activeTickets.get(vehicleRegNumber);
+        if (activeTicket == null) {
+            return null;
+        }
+        Ticket ticket = new Ticket();
+        ticket.setId(activeTicket.id);
+        ticket.setParkingSpot(new ParkingSpot(activeTicket.parkingNumber, activeTicket.parkingType, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(0);
+        ticket.setInTime(new Date(activeTicket.inTime));
+        ticket.setOutTime(null);
+        return ticket;
+    }
+
+    public int size() {
+        return activeTickets.size();
+    }
+
+    private static final class ActiveTicket {
+        private final int id;
+        private final int parkingNumber;
+        private final ParkingType parkingType;
+        private final long inTime;
+
+        private ActiveTicket(int id, int parkingNumber, ParkingType parkingType, long inTime) {
+            this.id = id;
+            this.parkingNumber = parkingNumber;
+            this.parkingType = parkingType;
+            this.inTime = inTime;
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tickets and spots of a small lot kept entirely in memory, for gates that do not need a database.
+ * Spots live in a {@link ParkingSpotIndex}, bitsets indexed by spot number; tickets in arrays indexed by
+ * ticket id, with the ticket count and open ticket of every plate. The whole store is written to a snapshot
+ * file periodically and on shutdown, and read back at the next start; spot availability is rebuilt from the
+ * open tickets.
+ */
+public class InMemoryParkingStore implements TicketRepository, ParkingSpotRepository {
+
+    private static final Logger logger = LogManager.getLogger("InMemoryParkingStore");
+
+    public static final String STORAGE_PROPERTY = "parkit.storage";
+    public static final String SNAPSHOT_FILE_PROPERTY = "parkit.storage.snapshot";
+    public static final String MEMORY = "memory";
+    public static final long DEFAULT_SNAPSHOT_PERIOD_MILLIS = 60 * 1000;
+
+    private static final int SNAPSHOT_MAGIC = 0x504b5331;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final ParkingSpotIndex parkingSpotIndex;
+
+    private final Object lock = new Object();
+    // tickets by id, slot 0 unused: guarded by lock
+    private int ticketCount;
+    private int[] parkingNumbers = new int[INITIAL_CAPACITY];
+    private String[] vehicleRegNumbers = new String[INITIAL_CAPACITY];
+    private long[] inTimes = new long[INITIAL_CAPACITY];
+    private long[] outTimes = new long[INITIAL_CAPACITY];
+    private double[] prices = new double[INITIAL_CAPACITY];
+    private final Map<String, Vehicle> vehicles = new HashMap<>();
+
+    private ScheduledExecutorService snapshotWriter;
+    private Path snapshotFile;
+
+    /**
+     * An empty store with the spots of this layout, all free.
+     */
+    public InMemoryParkingStore(ParkingSpotIndex layout) {
+        int maxParkingNumber = layout.getMaxParkingNumber();
+        parkingSpotIndex = new ParkingSpotIndex(maxParkingNumber);
+        for (int number = 1; number <= maxParkingNumber; number++) {
+            ParkingType parkingType = layout.getParkingType(number);
+            if (parkingType != null) {
+                parkingSpotIndex.addParkingSpot(number, parkingType, true);
+            }
+        }
+    }
+
+    public ParkingSpotIndex getParkingSpotIndex() {
+        return parkingSpotIndex;
+    }
+
+    @Override
+    public UnitOfWork beginUnitOfWork() {
+        return null;
+    }
+
+    @Override
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return parkingSpotIndex.getNextAvailableSlot(parkingType);
+    }
+
+    @Override
+    public boolean updateParking(ParkingSpot parkingSpot) {
+        if (parkingSpotIndex.getParkingType(parkingSpot.getId()) == null) {
+            return false;
+        }
+        if (!parkingSpot.isAvailable()) {
+            return parkingSpotIndex.tryReserve(parkingSpot.getId());
+        }
+        parkingSpotIndex.release(parkingSpot.getId());
+        return true;
+    }
+
+    @Override
+    public int reserveNextAvailableSlot(ParkingType parkingType) {
+        return parkingSpotIndex.reserveNextAvailableSlot(parkingType);
+    }
+
+    /**
+     * A vehicle with a ticket still open cannot get a second one.
+     */
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        int parkingNumber = ticket.getParkingSpot().getId();
+        if (parkingSpotIndex.getParkingType(parkingNumber) == null) {
+            return false;
+        }
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        boolean isOpen = ticket.getOutTime() == null;
+        synchronized (lock) {
+            Vehicle vehicle = vehicles.get(vehicleRegNumber);
+            if (isOpen && vehicle != null && vehicle.openTicketId != 0) {
+                return false;
+            }
+            int id = addTicket(parkingNumber, vehicleRegNumber, ticket.getInTime().getTime(),
+                    isOpen ? 0 : ticket.getOutTime().getTime(), ticket.getPrice());
+            ticket.setId(id);
+            return true;
+        }
+    }
+
+    // guarded by lock
+    private int addTicket(int parkingNumber, String vehicleRegNumber, long inTime, long outTime, double price) {
+        int id = ++ticketCount;
+        if (id == parkingNumbers.length) {
+            int capacity = parkingNumbers.length * 2;
+            parkingNumbers = Arrays.copyOf(parkingNumbers, capacity);
+            vehicleRegNumbers = Arrays.copyOf(vehicleRegNumbers, capacity);
+            inTimes = Arrays.copyOf(inTimes, capacity);
+            outTimes = Arrays.copyOf(outTimes, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+        }
+        parkingNumbers[id] = parkingNumber;
+        vehicleRegNumbers[id] = vehicleRegNumber;
+        inTimes[id] = inTime;
+        outTimes[id] = outTime;
+        prices[id] = price;
+        Vehicle vehicle = vehicles.computeIfAbsent(vehicleRegNumber, plate -> new Vehicle());
+        vehicle.nbTicket++;
+        vehicle.latestTicketId = id;
+        if (outTime == 0) {
+            vehicle.openTicketId = id;
+        }
+        return id;
+    }
+
+    @Override
+    public Ticket getTicket(String vehicleRegNumber) {
+        synchronized (lock) {
+            Vehicle vehicle = vehicles.get(vehicleRegNumber);
+            return vehicle == null ? null : getTicket(vehicle.latestTicketId, vehicleRegNumber);
+        }
+    }
+
+    @Override
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        synchronized (lock) {
+            Vehicle vehicle = vehicles.get(vehicleRegNumber);
+            return vehicle == null || vehicle.openTicketId == 0 ? null : getTicket(vehicle.openTicketId, vehicleRegNumber);
+        }
+    }
+
+    // guarded by lock
+    private Ticket getTicket(int id, String vehicleRegNumber) {
+        Ticket ticket = new Ticket();
+        ticket.setId(id);
+        ticket.setParkingSpot(new ParkingSpot(parkingNumbers[id], parkingSpotIndex.getParkingType(parkingNumbers[id]), false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setPrice(prices[id]);
+        ticket.setInTime(new Date(inTimes[id]));
+        ticket.setOutTime(outTimes[id] == 0 ? null : new Date(outTimes[id]));
+        return ticket;
+    }
+
+    /**
+     * A closed ticket keeps its price and out-time.
+     */
+    @Override
+    public boolean updateTicket(Ticket ticket) {
+        int id = ticket.getId();
+        synchronized (lock) {
+            if (id <= 0 || id > ticketCount || outTimes[id] != 0) {
+                return false;
+            }
+            prices[id] = ticket.getPrice();
+            outTimes[id] = ticket.getOutTime() == null ? 0 : ticket.getOutTime().getTime();
+            Vehicle vehicle = vehicles.get(vehicleRegNumbers[id]);
+            if (outTimes[id] != 0 && vehicle.openTicketId == id) {
+                vehicle.openTicketId = 0;
+            }
+            return true;
+        }
+    }
+
+    @Override
+    public int getNbTicket(String vehicleRegNumber) {
+        synchronized (lock) {
+            Vehicle vehicle = vehicles.get(vehicleRegNumber);
+            return vehicle == null ? 0 : vehicle.nbTicket;
+        }
+    }
+
+    /**
+     * Write the spots and tickets to this file, replacing the previous snapshot only once the new one is complete.
+     */
+    public void saveSnapshot(Path file) throws IOException {
+        int count;
+        int[] snapshotParkingNumbers;
+        String[] snapshotVehicleRegNumbers;
+        long[] snapshotInTimes;
+        long[] snapshotOutTimes;
+        double[] snapshotPrices;
+        synchronized (lock) {
+            count = ticketCount;
+            snapshotParkingNumbers = Arrays.copyOf(parkingNumbers, count + 1);
+            snapshotVehicleRegNumbers = Arrays.copyOf(vehicleRegNumbers, count + 1);
+            snapshotInTimes = Arrays.copyOf(inTimes, count + 1);
+            snapshotOutTimes = Arrays.copyOf(outTimes, count + 1);
+            snapshotPrices = Arrays.copyOf(prices, count + 1);
+        }
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                int maxParkingNumber = parkingSpotIndex.getMaxParkingNumber();
+                out.writeInt(maxParkingNumber);
+                for (int number = 1; number <= maxParkingNumber; number++) {
+                    ParkingType parkingType = parkingSpotIndex.getParkingType(number);
+                    out.writeByte(parkingType == null ? -1 : parkingType.ordinal());
+                }
+                out.writeInt(count);
+                for (int id = 1; id <= count; id++) {
+                    out.writeInt(snapshotParkingNumbers[id]);
+                    out.writeUTF(snapshotVehicleRegNumbers[id]);
+                    out.writeLong(snapshotInTimes[id]);
+                    out.writeLong(snapshotOutTimes[id]);
+                    out.writeDouble(snapshotPrices[id]);
+                }
+            }
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    /**
+     * Read a store back from a snapshot file.
+     */
+    public static InMemoryParkingStore loadSnapshot(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(file + " is not a parking snapshot");
+            }
+            int version = in.readInt();
+            if (version != SNAPSHOT_VERSION) {
+                throw new IOException("Unsupported parking snapshot version " + version);
+            }
+            int maxParkingNumber = in.readInt();
+            ParkingSpotIndex layout = new ParkingSpotIndex(maxParkingNumber);
+            for (int number = 1; number <= maxParkingNumber; number++) {
+                byte parkingType = in.readByte();
+                if (parkingType >= 0) {
+                    layout.addParkingSpot(number, ParkingType.values()[parkingType], true);
+                }
+            }
+            InMemoryParkingStore store = new InMemoryParkingStore(layout);
+            int count = in.readInt();
+            synchronized (store.lock) {
+                for (int id = 1; id <= count; id++) {
+                    int parkingNumber = in.readInt();
+                    String vehicleRegNumber = in.readUTF();
+                    long inTime = in.readLong();
+                    long outTime = in.readLong();
+                    double price = in.readDouble();
+                    store.addTicket(parkingNumber, vehicleRegNumber, inTime, outTime, price);
+                    if (outTime == 0) {
+                        store.parkingSpotIndex.setAvailable(parkingNumber, false);
+                    }
+                }
+            }
+            return store;
+        }
+    }
+
+    /**
+     * Write a snapshot to this file every period, and a last one on {@link #shutdown()}.
+     */
+    public synchronized void startSnapshots(Path file, long periodMillis) {
+        if (snapshotWriter != null) {
+            return;
+        }
+        snapshotWriter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "parking-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        snapshotWriter.scheduleWithFixedDelay(() -> writeSnapshot(file), periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        snapshotFile = file;
+    }
+
+    public synchronized void shutdown() {
+        if (snapshotWriter != null) {
+            snapshotWriter.shutdownNow();
+            snapshotWriter = null;
+            writeSnapshot(snapshotFile);
+        }
+    }
+
+    private void writeSnapshot(Path file) {
+        try {
+            saveSnapshot(file);
+        } catch (IOException e) {
+            logger.error("Unable to write the parking snapshot " + file, e);
+        }
+    }
+
+    // guarded by lock
+    private static final class Vehicle {
+        private int nbTicket;
+        private int latestTicketId;
+        private int openTicketId;
+    }
+}
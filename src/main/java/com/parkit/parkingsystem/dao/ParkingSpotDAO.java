@@ -1,8 +1,10 @@
 package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.UnitOfWork;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -10,20 +12,89 @@ import org.apache.logging.log4j.Logger;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
 
-public class ParkingSpotDAO {
+public class ParkingSpotDAO implements ParkingSpotRepository {
     private static final Logger logger = LogManager.getLogger("ParkingSpotDAO");
 
+    private static final OperationMetrics getNextAvailableSlotMetrics = OperationMetrics.forOperation("ParkingSpotDAO.getNextAvailableSlot");
+    private static final OperationMetrics updateParkingMetrics = OperationMetrics.forOperation("ParkingSpotDAO.updateParking");
+    private static final OperationMetrics reserveNextAvailableSlotMetrics = OperationMetrics.forOperation("ParkingSpotDAO.reserveNextAvailableSlot");
+
+    public static final int MAX_RESERVATION_ATTEMPTS = 10;
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
+    public ParkingSpotIndex parkingSpotIndex;
+
+    /**
+     * When set, spots reserved within its hold time are only given to the vehicles that reserved them.
+     */
+    public ReservationIndex reservationIndex;
+
+    /**
+     * When set with the index loaded, spot changes are only made in the index: the table follows
+     * from the ticket records of the journal.
+     */
+    public TicketJournal ticketJournal;
+
+    /**
+     * Load the whole parking table in memory so that next available slots are served from the index.
+     * Later updates made through this DAO are written to both the table and the index.
+     */
+    public boolean loadParkingSpotIndex() {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            rs = ps.executeQuery();
+            List<ParkingSpot> parkingSpots = new ArrayList<>();
+            int maxParkingNumber = 0;
+            while (rs.next()) {
+                ParkingSpot parkingSpot = new ParkingSpot(rs.getInt(1), ParkingType.valueOf(rs.getString(3)), rs.getBoolean(2));
+                parkingSpots.add(parkingSpot);
+                maxParkingNumber = Math.max(maxParkingNumber, parkingSpot.getId());
+            }
+            ParkingSpotIndex index = new ParkingSpotIndex(maxParkingNumber);
+            for (ParkingSpot parkingSpot : parkingSpots) {
+                index.addParkingSpot(parkingSpot.getId(), parkingSpot.getParkingType(), parkingSpot.isAvailable());
+            }
+            parkingSpotIndex = index;
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error loading parking spots", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    @Override
     public int getNextAvailableSlot(ParkingType parkingType) {
+        long start = System.nanoTime();
+        try {
+            return findNextAvailableSlot(parkingType);
+        } finally {
+            getNextAvailableSlotMetrics.recordSince(start);
+        }
+    }
+
+    private int findNextAvailableSlot(ParkingType parkingType) {
+        ParkingSpotIndex index = parkingSpotIndex;
+        if (index != null) {
+            return index.getNextAvailableSlot(parkingType, getHeldSpots());
+        }
 
         Connection con = null;
         int result = -1;
         PreparedStatement ps = null;
         ResultSet rs = null;
         try {
-            System.out.println(parkingType);
             con = dataBaseConfig.getConnection();
             ps = con.prepareStatement(DBConstants.GET_NEXT_PARKING_SPOT);
             ps.setString(1, parkingType.toString());
@@ -33,34 +104,155 @@ public class ParkingSpotDAO {
             }
 
         } catch (Exception ex) {
+            getNextAvailableSlotMetrics.error();
             logger.error("Error fetching next available slot", ex);
         } finally {
-            dataBaseConfig.closeConnection(con);
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
         }
         return result;
     }
 
+    /**
+     * Write the availability of a spot. Taking a spot is conditional on it still being free,
+     * so this returns false when another gate got it first.
+     */
+    @Override
     public boolean updateParking(ParkingSpot parkingSpot) {
+        long start = System.nanoTime();
+        try {
+            return writeParking(parkingSpot);
+        } finally {
+            updateParkingMetrics.recordSince(start);
+        }
+    }
+
+    private boolean writeParking(ParkingSpot parkingSpot) {
+        ParkingSpotIndex index = getIndexFor(parkingSpot.getId());
+        boolean isOccupying = !parkingSpot.isAvailable();
+        if (index != null && ticketJournal != null) {
+            if (isOccupying) {
+                return index.tryReserve(parkingSpot.getId());
+            }
+            index.release(parkingSpot.getId());
+            return true;
+        }
+        if (isOccupying && index != null && !index.tryReserve(parkingSpot.getId())) {
+            return false;
+        }
+        int updateRowCount = executeParkingUpdate(parkingSpot);
+        if (updateRowCount < 0) {
+            updateParkingMetrics.error();
+        }
+        if (index != null) {
+            if (isOccupying && updateRowCount < 0) {
+                index.release(parkingSpot.getId());
+            } else if (isOccupying && updateRowCount == 1) {
+                releaseOnRollback(index, parkingSpot.getId());
+            } else if (!isOccupying && updateRowCount == 1) {
+                UnitOfWork.runAfterCommit(() -> index.release(parkingSpot.getId()));
+            }
+        }
+        return updateRowCount == 1;
+    }
+
+    /**
+     * Atomically take the lowest free spot of this type, retrying on the next candidate
+     * when a concurrent gate takes it first.
+     * @return the reserved spot number, 0 when the lot is full for this type, -1 on error
+     */
+    @Override
+    public int reserveNextAvailableSlot(ParkingType parkingType) {
+        long start = System.nanoTime();
+        try {
+            return reserveSlot(parkingType);
+        } finally {
+            reserveNextAvailableSlotMetrics.recordSince(start);
+        }
+    }
 
+    private int reserveSlot(ParkingType parkingType) {
+        for (int attempt = 0; attempt < MAX_RESERVATION_ATTEMPTS; attempt++) {
+            ParkingSpotIndex index = parkingSpotIndex;
+            int parkingNumber;
+            if (index != null) {
+                parkingNumber = index.reserveNextAvailableSlot(parkingType, getHeldSpots());
+                if (parkingNumber <= 0 || ticketJournal != null) {
+                    return parkingNumber;
+                }
+                int updateRowCount = executeParkingUpdate(new ParkingSpot(parkingNumber, parkingType, false));
+                if (updateRowCount == 1) {
+                    releaseOnRollback(index, parkingNumber);
+                    return parkingNumber;
+                }
+                if (updateRowCount < 0) {
+                    reserveNextAvailableSlotMetrics.error();
+                    index.release(parkingNumber);
+                    return -1;
+                }
+                // taken in the table by a process that does not share this index: keep it out of the index
+            } else {
+                parkingNumber = getNextAvailableSlot(parkingType);
+                if (parkingNumber <= 0) {
+                    return parkingNumber;
+                }
+                if (updateParking(new ParkingSpot(parkingNumber, parkingType, false))) {
+                    return parkingNumber;
+                }
+            }
+        }
+        reserveNextAvailableSlotMetrics.error();
+        logger.error("Unable to reserve a " + parkingType + " spot after " + MAX_RESERVATION_ATTEMPTS + " attempts");
+        return -1;
+    }
+
+    @Override
+    public int getReservedSlot(String vehicleRegNumber, ParkingType parkingType) {
+        ReservationIndex reservations = reservationIndex;
+        return reservations == null ? 0 : reservations.getReservedSlot(vehicleRegNumber, parkingType);
+    }
+
+    private long[] getHeldSpots() {
+        ReservationIndex reservations = reservationIndex;
+        return reservations == null ? null : reservations.getHeldSpots();
+    }
+
+    private void releaseOnRollback(ParkingSpotIndex index, int parkingNumber) {
+        UnitOfWork unitOfWork = UnitOfWork.getCurrent();
+        if (unitOfWork != null) {
+            unitOfWork.onRollback(() -> index.release(parkingNumber));
+        }
+    }
+
+    private ParkingSpotIndex getIndexFor(int parkingNumber) {
+        ParkingSpotIndex index = parkingSpotIndex;
+        return index != null && index.getParkingType(parkingNumber) != null ? index : null;
+    }
+
+    /**
+     * @return the number of updated rows, or -1 on error
+     */
+    private int executeParkingUpdate(ParkingSpot parkingSpot) {
         Connection con = null;
         PreparedStatement ps = null;
-        boolean isUpdated = false;
         try {
             con = dataBaseConfig.getConnection();
-            ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
-            ps.setBoolean(1, parkingSpot.isAvailable());
-            ps.setInt(2, parkingSpot.getId());
-            int updateRowCount = ps.executeUpdate();
-            isUpdated = (updateRowCount == 1);
+            if (parkingSpot.isAvailable()) {
+                ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+                ps.setBoolean(1, true);
+                ps.setInt(2, parkingSpot.getId());
+            } else {
+                ps = con.prepareStatement(DBConstants.OCCUPY_PARKING_SPOT);
+                ps.setInt(1, parkingSpot.getId());
+            }
+            return ps.executeUpdate();
         } catch (Exception ex) {
             logger.error("Error updating parking info", ex);
-            return false;
+            return -1;
         } finally {
             dataBaseConfig.closePreparedStatement(ps);
             dataBaseConfig.closeConnection(con);
         }
-        return isUpdated;
     }
 }
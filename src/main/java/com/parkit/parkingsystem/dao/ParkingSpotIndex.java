@@ -0,0 +1,184 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory copy of the parking table: one bitset of free spot numbers per parking type,
+ * so the lowest free spot is found without querying the database.
+ * Bits are flipped with compare-and-set, so two gates can never reserve the same spot.
+ * Spots must all be added before the index is shared between threads.
+ */
+public class ParkingSpotIndex {
+
+    private final ParkingType[] typeBySpot;
+    private final AtomicLongArray[] availableSpots;
+
+    public ParkingSpotIndex(int maxParkingNumber) {
+        typeBySpot = new ParkingType[maxParkingNumber + 1];
+        availableSpots = new AtomicLongArray[ParkingType.values().length];
+        for (int i = 0; i < availableSpots.length; i++) {
+            availableSpots[i] = new AtomicLongArray((maxParkingNumber >> 6) + 1);
+        }
+    }
+
+    public void addParkingSpot(int number, ParkingType parkingType, boolean available) {
+        if (number <= 0 || number >= typeBySpot.length) {
+            throw new IllegalArgumentException("Invalid parking number: " + number);
+        }
+        ParkingType previousType = typeBySpot[number];
+        if (previousType != null) {
+            clearBit(availableSpots[previousType.ordinal()], number);
+        }
+        typeBySpot[number] = parkingType;
+        if (available) {
+            setBit(availableSpots[parkingType.ordinal()], number);
+        }
+    }
+
+    /**
+     * @return the lowest free spot number for this type, or 0 when the lot is full for it
+     */
+    public int getNextAvailableSlot(ParkingType parkingType) {
+        return getNextAvailableSlot(parkingType, null);
+    }
+
+    /**
+     * @param excluded spots not to give, as a bitset by spot number, e.g. held by reservations; may be null
+     * @return the lowest free spot number for this type outside the excluded ones, or 0 when there is none
+     */
+    public int getNextAvailableSlot(ParkingType parkingType, long[] excluded) {
+        AtomicLongArray words = availableSpots[parkingType.ordinal()];
+        for (int i = 0; i < words.length(); i++) {
+            long word = words.get(i) & ~excludedWord(excluded, i);
+            if (word != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Atomically take the lowest free spot of this type.
+     * @return the reserved spot number, or 0 when the lot is full for this type
+     */
+    public int reserveNextAvailableSlot(ParkingType parkingType) {
+        return reserveNextAvailableSlot(parkingType, null);
+    }
+
+    /**
+     * Atomically take the lowest free spot of this type outside the excluded ones.
+     * @param excluded spots not to give, as a bitset by spot number; may be null
+     * @return the reserved spot number, or 0 when there is none
+     */
+    public int reserveNextAvailableSlot(ParkingType parkingType, long[] excluded) {
+        AtomicLongArray words = availableSpots[parkingType.ordinal()];
+        for (int i = 0; i < words.length(); i++) {
+            long mask = ~excludedWord(excluded, i);
+            long word;
+            while (((word = words.get(i)) & mask) != 0) {
+                long lowestBit = Long.lowestOneBit(word & mask);
+                if (words.compareAndSet(i, word, word & ~lowestBit)) {
+                    return (i << 6) + Long.numberOfTrailingZeros(lowestBit);
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Atomically take the given spot.
+     * @return false when the spot was already taken
+     */
+    public boolean tryReserve(int number) {
+        return clearBit(availableSpots[getKnownParkingType(number).ordinal()], number);
+    }
+
+    public void release(int number) {
+        setBit(availableSpots[getKnownParkingType(number).ordinal()], number);
+    }
+
+    public void setAvailable(int number, boolean available) {
+        if (available) {
+            release(number);
+        } else {
+            tryReserve(number);
+        }
+    }
+
+    public boolean isAvailable(int number) {
+        ParkingType parkingType = getParkingType(number);
+        return parkingType != null
+                && (availableSpots[parkingType.ordinal()].get(number >> 6) & (1L << number)) != 0;
+    }
+
+    public int getMaxParkingNumber() {
+        return typeBySpot.length - 1;
+    }
+
+    public ParkingType getParkingType(int number) {
+        return number > 0 && number < typeBySpot.length ? typeBySpot[number] : null;
+    }
+
+    public int getSpotCount(ParkingType parkingType) {
+        int count = 0;
+        for (ParkingType spotType : typeBySpot) {
+            if (spotType == parkingType) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getAvailableCount(ParkingType parkingType) {
+        AtomicLongArray words = availableSpots[parkingType.ordinal()];
+        int count = 0;
+        for (int i = 0; i < words.length(); i++) {
+            count += Long.bitCount(words.get(i));
+        }
+        return count;
+    }
+
+    /**
+     * @return the free spots of this type numbered from 64 * i to 64 * i + 63, as bits
+     */
+    long getAvailableWord(ParkingType parkingType, int i) {
+        AtomicLongArray words = availableSpots[parkingType.ordinal()];
+        return i < words.length() ? words.get(i) : 0;
+    }
+
+    private static long excludedWord(long[] excluded, int i) {
+        return excluded != null && i < excluded.length ? excluded[i] : 0;
+    }
+
+    private ParkingType getKnownParkingType(int number) {
+        ParkingType parkingType = getParkingType(number);
+        if (parkingType == null) {
+            throw new IllegalArgumentException("Unknown parking number: " + number);
+        }
+        return parkingType;
+    }
+
+    private static boolean clearBit(AtomicLongArray words, int number) {
+        int i = number >> 6;
+        long mask = 1L << number;
+        long word;
+        do {
+            word = words.get(i);
+            if ((word & mask) == 0) {
+                return false;
+            }
+        } while (!words.compareAndSet(i, word, word & ~mask));
+        return true;
+    }
+
+    private static void setBit(AtomicLongArray words, int number) {
+        int i = number >> 6;
+        long mask = 1L << number;
+        long word;
+        do {
+            word = words.get(i);
+        } while ((word & mask) == 0 && !words.compareAndSet(i, word, word | mask));
+    }
+}
@@ -0,0 +1,34 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.ParkingSpot;
+
+/**
+ * Storage of spot availability used by the gate flows, implemented on the database by {@link ParkingSpotDAO}
+ * and in memory by {@link InMemoryParkingStore}.
+ */
+public interface ParkingSpotRepository {
+
+    /**
+     * @return the lowest free spot number for this type, 0 when the lot is full for it, -1 on error
+     */
+    int getNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * Write the availability of a spot; taking a spot returns false when another gate got it first.
+     */
+    boolean updateParking(ParkingSpot parkingSpot);
+
+    /**
+     * Atomically take the lowest free spot of this type.
+     * @return the reserved spot number, 0 when the lot is full for this type, -1 on error
+     */
+    int reserveNextAvailableSlot(ParkingType parkingType);
+
+    /**
+     * @return the spot reserved in advance for this vehicle, for now or shortly, 0 when it has none
+     */
+    default int getReservedSlot(String vehicleRegNumber, ParkingType parkingType) {
+        return 0;
+    }
+}
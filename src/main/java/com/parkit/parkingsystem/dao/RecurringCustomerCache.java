@@ -0,0 +1,121 @@
+package com.parkit.parkingsystem.dao;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded cache of ticket counts per vehicle registration number, used for the recurring customer discount.
+ * Least recently used plates are evicted first, and entries expire after a time to live
+ * so tickets saved by other processes are eventually seen.
+ */
+public class RecurringCustomerCache implements RecurringCustomerCacheMBean {
+
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TTL_MILLIS = 24 * 60 * 60 * 1000L;
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final LinkedHashMap<String, CachedCount> counts;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    public RecurringCustomerCache(int maxSize, long ttlMillis) {
+        this(maxSize, ttlMillis, System::currentTimeMillis);
+    }
+
+    public RecurringCustomerCache(int maxSize, long ttlMillis, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.counts = new LinkedHashMap<String, CachedCount>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedCount> eldest) {
+                if (size() > RecurringCustomerCache.this.maxSize) {
+                    evictionCount++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cached ticket count of this plate, or null when it has to be read from the database
+     */
+    public synchronized Integer getNbTicket(String vehicleRegNumber) {
+        CachedCount cachedCount = counts.get(vehicleRegNumber);
+        if (cachedCount != null && clock.getAsLong() - cachedCount.loadedAt > ttlMillis) {
+            counts.remove(vehicleRegNumber);
+            cachedCount = null;
+        }
+        if (cachedCount == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return cachedCount.nbTicket;
+    }
+
+    public synchronized void put(String vehicleRegNumber, int nbTicket) {
+        counts.put(vehicleRegNumber, new CachedCount(nbTicket, clock.getAsLong()));
+    }
+
+    /**
+     * Count a newly saved ticket. Plates that are not cached are left alone: their next lookup reads the database.
+     */
+    public synchronized void ticketSaved(String vehicleRegNumber) {
+        CachedCount cachedCount = counts.get(vehicleRegNumber);
+        if (cachedCount != null) {
+            cachedCount.nbTicket++;
+        }
+    }
+
+    public synchronized void invalidate(String vehicleRegNumber) {
+        counts.remove(vehicleRegNumber);
+    }
+
+    public synchronized int size() {
+        return counts.size();
+    }
+
+    @Override
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    @Override
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized double getHitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RecurringCustomerCache[size=" + counts.size() + " hits=" + hitCount + " misses=" + missCount
+                + " evictions=" + evictionCount + " hitRate=" + getHitRate() + "]";
+    }
+
+    private static final class CachedCount {
+        private int nbTicket;
+        private final long loadedAt;
+
+        private CachedCount(int nbTicket, long loadedAt) {
+            this.nbTicket = nbTicket;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
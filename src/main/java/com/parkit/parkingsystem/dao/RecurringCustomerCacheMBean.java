@@ -0,0 +1,15 @@
+package com.parkit.parkingsystem.dao;
+
+/**
+ * JMX view of a {@link RecurringCustomerCache}.
+ */
+public interface RecurringCustomerCacheMBean {
+
+    long getHitCount();
+
+    long getMissCount();
+
+    long getEvictionCount();
+
+    double getHitRate();
+}
@@ -0,0 +1,153 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Reservations of spots in advance: stored in the reservation table, looked up in the {@link ReservationIndex}
+ * loaded from it, which decides which spot is free.
+ */
+public class ReservationDAO {
+
+    private static final Logger logger = LogManager.getLogger("ReservationDAO");
+
+    private static final OperationMetrics reserveMetrics = OperationMetrics.forOperation("ReservationDAO.reserve");
+
+    public DataBaseConfig dataBaseConfig = new DataBaseConfig();
+
+    public ReservationIndex reservationIndex;
+
+    /**
+     * Load the reservations not over yet in a new index of the spots of the lot.
+     */
+    public boolean loadReservationIndex(ParkingSpotIndex parkingSpotIndex) {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ReservationIndex index = new ReservationIndex(parkingSpotIndex, ReservationIndex.DEFAULT_SLOT_MILLIS,
+                    ReservationIndex.DEFAULT_HORIZON_SLOTS, ReservationIndex.DEFAULT_HOLD_MILLIS);
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_UPCOMING_RESERVATIONS);
+            ps.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+            rs = ps.executeQuery();
+            while (rs.next()) {
+                int parkingNumber = rs.getInt(2);
+                String vehicleRegNumber = rs.getString(3);
+                long start = rs.getTimestamp(4).getTime();
+                long end = rs.getTimestamp(5).getTime();
+                try {
+                    if (!index.add(parkingNumber, vehicleRegNumber, start, end)) {
+                        logger.warn("Reservation " + rs.getInt(1) + " overlaps another one of spot " + parkingNumber);
+                    }
+                } catch (IllegalArgumentException e) {
+                    logger.warn("Reservation " + rs.getInt(1) + " ignored: " + e.getMessage());
+                }
+            }
+            reservationIndex = index;
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error loading reservations", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Reserve the lowest spot of this type free for the whole period.
+     * @return the saved reservation, or null when no spot of this type is free for the whole period or on error
+     * @throws IllegalArgumentException when the period is over or too far ahead
+     */
+    public Reservation reserve(ParkingType parkingType, String vehicleRegNumber, Date startTime, Date endTime) {
+        long start = System.nanoTime();
+        try {
+            return saveReservation(parkingType, vehicleRegNumber, startTime, endTime);
+        } finally {
+            reserveMetrics.recordSince(start);
+        }
+    }
+
+    private Reservation saveReservation(ParkingType parkingType, String vehicleRegNumber, Date startTime, Date endTime) {
+        ReservationIndex index = reservationIndex;
+        if (index == null) {
+            throw new IllegalStateException("Reservations are not loaded");
+        }
+        // whole seconds, as stored by a DATETIME column, so that the index loaded at the next start is the same
+        long start = startTime.getTime() / 1000 * 1000;
+        long end = endTime.getTime() / 1000 * 1000;
+        int parkingNumber = index.reserve(parkingType, vehicleRegNumber, start, end);
+        if (parkingNumber <= 0) {
+            return null;
+        }
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.SAVE_RESERVATION, Statement.RETURN_GENERATED_KEYS);
+            ps.setInt(1, parkingNumber);
+            ps.setString(2, vehicleRegNumber);
+            ps.setTimestamp(3, new Timestamp(start));
+            ps.setTimestamp(4, new Timestamp(end));
+            ps.executeUpdate();
+            Reservation reservation = new Reservation();
+            rs = ps.getGeneratedKeys();
+            if (rs.next()) {
+                reservation.setId(rs.getInt(1));
+            }
+            reservation.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, true));
+            reservation.setVehicleRegNumber(vehicleRegNumber);
+            reservation.setStartTime(new Date(start));
+            reservation.setEndTime(new Date(end));
+            return reservation;
+        } catch (Exception ex) {
+            reserveMetrics.error();
+            logger.error("Error saving reservation", ex);
+            index.remove(parkingNumber, vehicleRegNumber, start, end);
+            return null;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    public boolean cancelReservation(Reservation reservation) {
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.DELETE_RESERVATION);
+            ps.setInt(1, reservation.getId());
+            boolean isDeleted = ps.executeUpdate() == 1;
+            ReservationIndex index = reservationIndex;
+            if (isDeleted && index != null) {
+                index.remove(reservation.getParkingSpot().getId(), reservation.getVehicleRegNumber(),
+                        reservation.getStartTime().getTime(), reservation.getEndTime().getTime());
+            }
+            return isDeleted;
+        } catch (Exception ex) {
+            logger.error("Error cancelling reservation", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+}
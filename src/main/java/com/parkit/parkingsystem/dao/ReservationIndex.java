@@ -0,0 +1,351 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory time-slot index of the reservations of a lot. Time is cut into slots and every slot of the booking
+ * horizon has a bitset of the spot numbers reserved during it, laid out like the bitsets of the
+ * {@link ParkingSpotIndex}, so "is a CAR spot free from 14:00 to 18:00" is a few thousand word operations even
+ * with tens of thousands of spots. Slots live in a ring reused as time passes; a reservation occupies every slot
+ * it overlaps, so two reservations of a spot never share a slot.
+ * <p>
+ * Spots reserved within the hold time are kept from walk-in vehicles by {@link ParkingSpotDAO}, and given to
+ * the vehicle that reserved them when it arrives.
+ */
+public class ReservationIndex {
+
+    public static final long DEFAULT_SLOT_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    public static final int DEFAULT_HORIZON_SLOTS = (int) (TimeUnit.DAYS.toMillis(14) / DEFAULT_SLOT_MILLIS);
+    public static final long DEFAULT_HOLD_MILLIS = TimeUnit.HOURS.toMillis(2);
+
+    private final ParkingSpotIndex parkingSpotIndex;
+    private final long slotMillis;
+    private final int horizonSlots;
+    private final long holdMillis;
+    private final int words;
+    private final long[][] spotsByType;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // by ring position, guarded by lock: the slot number held there, and its reserved spots, null while none
+    private final long[] slotNumbers;
+    private final long[][] reservedSpots;
+    private final Map<String, List<Booking>> bookings = new HashMap<>();
+    // the same bookings, cancelled ones included, soonest over first: guarded by lock
+    private final PriorityQueue<Booking> bookingsByEnd = new PriorityQueue<>(Comparator.comparingLong((Booking booking) -> booking.end));
+
+    /**
+     * @param parkingSpotIndex the spots of the lot and their current availability
+     * @param horizonSlots how many slots ahead reservations can be made
+     * @param holdMillis how long before it starts a reservation keeps its spot from walk-in vehicles
+     */
+    public ReservationIndex(ParkingSpotIndex parkingSpotIndex, long slotMillis, int horizonSlots, long holdMillis) {
+        if (slotMillis <= 0 || horizonSlots <= 0 || holdMillis < 0 || holdMillis >= slotMillis * horizonSlots) {
+            throw new IllegalArgumentException("Invalid reservation index: slot=" + slotMillis + "ms horizon=" + horizonSlots + " hold=" + holdMillis + "ms");
+        }
+        this.parkingSpotIndex = parkingSpotIndex;
+        this.slotMillis = slotMillis;
+        this.horizonSlots = horizonSlots;
+        this.holdMillis = holdMillis;
+        int maxParkingNumber = parkingSpotIndex.getMaxParkingNumber();
+        words = (maxParkingNumber >> 6) + 1;
+        spotsByType = new long[ParkingType.values().length][words];
+        for (int number = 1; number <= maxParkingNumber; number++) {
+            ParkingType parkingType = parkingSpotIndex.getParkingType(number);
+            if (parkingType != null) {
+                spotsByType[parkingType.ordinal()][number >> 6] |= 1L << number;
+            }
+        }
+        slotNumbers = new long[horizonSlots];
+        Arrays.fill(slotNumbers, Long.MIN_VALUE);
+        reservedSpots = new long[horizonSlots][];
+    }
+
+    /**
+     * Reserve the lowest spot of this type free for the whole period. A period starting within the hold time
+     * also needs the spot to be free now.
+     * @return the reserved spot number, or 0 when every spot of this type is taken at some point of the period
+     * @throws IllegalArgumentException when the period is over or ends beyond the horizon
+     */
+    public int reserve(ParkingType parkingType, String vehicleRegNumber, long start, long end) {
+        long now = System.currentTimeMillis();
+        checkPeriod(start, end, now);
+        lock.writeLock().lock();
+        try {
+            int parkingNumber = findFreeSpot(parkingType, start, end, now);
+            if (parkingNumber > 0) {
+                mark(parkingNumber, vehicleRegNumber, start, end, now);
+            }
+            return parkingNumber;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reserve this spot, e.g. for a reservation read back from the database.
+     * @return false when the spot is already reserved at some point of the period
+     */
+    public boolean add(int parkingNumber, String vehicleRegNumber, long start, long end) {
+        long now = System.currentTimeMillis();
+        checkPeriod(start, end, now);
+        if (parkingSpotIndex.getParkingType(parkingNumber) == null) {
+            throw new IllegalArgumentException("Unknown parking number: " + parkingNumber);
+        }
+        lock.writeLock().lock();
+        try {
+            long mask = 1L << parkingNumber;
+            for (long slot = firstSlot(start, now); slot <= lastSlot(end); slot++) {
+                long[] reserved = getSlot(slot);
+                if (reserved != null && (reserved[parkingNumber >> 6] & mask) != 0) {
+                    return false;
+                }
+            }
+            mark(parkingNumber, vehicleRegNumber, start, end, now);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Give back the slots of a reservation made with {@link #reserve} or {@link #add}.
+     */
+    public void remove(int parkingNumber, String vehicleRegNumber, long start, long end) {
+        long now = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            forgetBookingsOver(now);
+            List<Booking> plateBookings = bookings.get(vehicleRegNumber);
+            if (plateBookings == null || !plateBookings.removeIf(booking -> booking.parkingNumber == parkingNumber
+                    && booking.start == start && booking.end == end)) {
+                return;
+            }
+            if (plateBookings.isEmpty()) {
+                bookings.remove(vehicleRegNumber);
+            }
+            long mask = 1L << parkingNumber;
+            for (long slot = firstSlot(start, now); slot <= lastSlot(end) && slot < nowSlot(now) + horizonSlots; slot++) {
+                long[] reserved = getSlot(slot);
+                if (reserved != null) {
+                    reserved[parkingNumber >> 6] &= ~mask;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the lowest spot of this type free for the whole period, or 0 when there is none
+     */
+    public int findFreeSpot(ParkingType parkingType, long start, long end) {
+        long now = System.currentTimeMillis();
+        checkPeriod(start, end, now);
+        lock.readLock().lock();
+        try {
+            return findFreeSpot(parkingType, start, end, now);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of spots of this type free for the whole period
+     */
+    public int countFreeSpots(ParkingType parkingType, long start, long end) {
+        long now = System.currentTimeMillis();
+        checkPeriod(start, end, now);
+        lock.readLock().lock();
+        try {
+            long[] taken = getTakenSpots(start, end, now);
+            long[] spots = spotsByType[parkingType.ordinal()];
+            int count = 0;
+            for (int i = 0; i < words; i++) {
+                count += Long.bitCount(spots[i] & ~taken[i]);
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the spots reserved at some point between now and the end of the hold time, as a bitset by spot number
+     */
+    public long[] getHeldSpots() {
+        long now = System.currentTimeMillis();
+        lock.readLock().lock();
+        try {
+            long[] held = new long[words];
+            long nowSlot = nowSlot(now);
+            union(held, nowSlot, Math.min(lastSlot(now + holdMillis), nowSlot + horizonSlots - 1));
+            return held;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the spot reserved for this vehicle from now or within the hold time, 0 when it has none
+     */
+    public int getReservedSlot(String vehicleRegNumber, ParkingType parkingType) {
+        long now = System.currentTimeMillis();
+        lock.readLock().lock();
+        try {
+            List<Booking> plateBookings = bookings.get(vehicleRegNumber);
+            if (plateBookings != null) {
+                for (Booking booking : plateBookings) {
+                    if (booking.start - holdMillis <= now && now < booking.end
+                            && parkingSpotIndex.getParkingType(booking.parkingNumber) == parkingType) {
+                        return booking.parkingNumber;
+                    }
+                }
+            }
+            return 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getSlotMillis() {
+        return slotMillis;
+    }
+
+    private int findFreeSpot(ParkingType parkingType, long start, long end, long now) {
+        long[] taken = getTakenSpots(start, end, now);
+        long[] spots = spotsByType[parkingType.ordinal()];
+        boolean startsSoon = start < now + holdMillis;
+        for (int i = 0; i < words; i++) {
+            long free = spots[i] & ~taken[i];
+            if (startsSoon) {
+                free &= parkingSpotIndex.getAvailableWord(parkingType, i);
+            }
+            if (free != 0) {
+                return (i << 6) + Long.numberOfTrailingZeros(free);
+            }
+        }
+        return 0;
+    }
+
+    private long[] getTakenSpots(long start, long end, long now) {
+        long[] taken = new long[words];
+        union(taken, firstSlot(start, now), lastSlot(end));
+        return taken;
+    }
+
+    private void union(long[] into, long firstSlot, long lastSlot) {
+        for (long slot = firstSlot; slot <= lastSlot; slot++) {
+            long[] reserved = getSlot(slot);
+            if (reserved != null) {
+                for (int i = 0; i < words; i++) {
+                    into[i] |= reserved[i];
+                }
+            }
+        }
+    }
+
+    private void mark(int parkingNumber, String vehicleRegNumber, long start, long end, long now) {
+        long mask = 1L << parkingNumber;
+        for (long slot = firstSlot(start, now); slot <= lastSlot(end); slot++) {
+            getSlotForWrite(slot)[parkingNumber >> 6] |= mask;
+        }
+        forgetBookingsOver(now);
+        Booking booking = new Booking(vehicleRegNumber, parkingNumber, start, end);
+        bookings.computeIfAbsent(vehicleRegNumber, plate -> new ArrayList<>(1)).add(booking);
+        bookingsByEnd.add(booking);
+    }
+
+    /**
+     * Forget the reservations that are over, so that the bookings kept are those of the horizon however many
+     * vehicles reserved before; a cancelled one is already gone from the bookings of its vehicle.
+     */
+    private void forgetBookingsOver(long now) {
+        while (!bookingsByEnd.isEmpty() && bookingsByEnd.peek().end <= now) {
+            Booking booking = bookingsByEnd.poll();
+            List<Booking> plateBookings = bookings.get(booking.vehicleRegNumber);
+            if (plateBookings != null && plateBookings.remove(booking) && plateBookings.isEmpty()) {
+                bookings.remove(booking.vehicleRegNumber);
+            }
+        }
+    }
+
+    /**
+     * @return the number of vehicles with a reservation not known to be over
+     */
+    public int getBookedVehicleCount() {
+        lock.readLock().lock();
+        try {
+            return bookings.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long[] getSlot(long slot) {
+        int position = (int) Math.floorMod(slot, (long) horizonSlots);
+        return slotNumbers[position] == slot ? reservedSpots[position] : null;
+    }
+
+    private long[] getSlotForWrite(long slot) {
+        int position = (int) Math.floorMod(slot, (long) horizonSlots);
+        if (slotNumbers[position] != slot) {
+            // the slot held there is over: reuse its bitset
+            slotNumbers[position] = slot;
+            if (reservedSpots[position] != null) {
+                Arrays.fill(reservedSpots[position], 0);
+            }
+        }
+        if (reservedSpots[position] == null) {
+            reservedSpots[position] = new long[words];
+        }
+        return reservedSpots[position];
+    }
+
+    private void checkPeriod(long start, long end, long now) {
+        if (end <= start) {
+            throw new IllegalArgumentException("A reservation must end after it starts");
+        }
+        if (end <= now) {
+            throw new IllegalArgumentException("A reservation cannot be over already");
+        }
+        if (lastSlot(end) >= nowSlot(now) + horizonSlots) {
+            throw new IllegalArgumentException("Reservations can only be made " + horizonSlots * slotMillis / 60000 + " minutes ahead");
+        }
+    }
+
+    private long nowSlot(long now) {
+        return Math.floorDiv(now, slotMillis);
+    }
+
+    private long firstSlot(long start, long now) {
+        return Math.max(Math.floorDiv(start, slotMillis), nowSlot(now));
+    }
+
+    private long lastSlot(long end) {
+        return Math.floorDiv(end - 1, slotMillis);
+    }
+
+    private static final class Booking {
+        private final String vehicleRegNumber;
+        private final int parkingNumber;
+        private final long start;
+        private final long end;
+
+        private Booking(String vehicleRegNumber, int parkingNumber, long start, long end) {
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.parkingNumber = parkingNumber;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the ticket table small: closed tickets older than the retention window are moved in batches to
+ * ticket_archive, and their number is added to visit_summary so that the loyalty count of a plate is
+ * unchanged. Each batch is one transaction, so a ticket is always in exactly one of the two tables.
+ */
+public class TicketArchiver {
+
+    private static final Logger logger = LogManager.getLogger("TicketArchiver");
+
+    public static final String RETENTION_DAYS_PROPERTY = "parkit.archive.days";
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final long DEFAULT_PERIOD_MILLIS = 60 * 60 * 1000;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final int batchSize;
+
+    private ScheduledExecutorService archiver;
+
+    public TicketArchiver(DataBaseConfig dataBaseConfig, int batchSize) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Move every ticket closed before this time to the archive.
+     * @return the number of archived tickets
+     */
+    public int archiveClosedBefore(long outTime) throws ClassNotFoundException, SQLException {
+        int total = 0;
+        int archived;
+        do {
+            archived = archiveBatch(new Timestamp(outTime));
+            total += archived;
+        } while (archived == batchSize);
+        if (total > 0) {
+            logger.info(total + " tickets closed before " + new Timestamp(outTime) + " archived");
+        }
+        return total;
+    }
+
+    private int archiveBatch(Timestamp outTime) throws ClassNotFoundException, SQLException {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            ps = con.prepareStatement(DBConstants.GET_ARCHIVABLE_TICKET_IDS);
+            ps.setTimestamp(1, outTime);
+            ps.setInt(2, batchSize);
+            rs = ps.executeQuery();
+            int count = 0;
+            int maxId = 0;
+            while (rs.next()) {
+                count++;
+                maxId = rs.getInt(1);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            rs = null;
+            dataBaseConfig.closePreparedStatement(ps);
+            ps = null;
+            if (count == 0) {
+                con.commit();
+                return 0;
+            }
+            // the batch is every archivable ticket up to the highest id selected
+            ps = con.prepareStatement(DBConstants.ARCHIVE_TICKETS);
+            ps.setTimestamp(1, outTime);
+            ps.setInt(2, maxId);
+            ps.executeUpdate();
+            dataBaseConfig.closePreparedStatement(ps);
+            ps = null;
+            addVisits(con, outTime, maxId);
+            ps = con.prepareStatement(DBConstants.DELETE_ARCHIVED_TICKETS);
+            ps.setTimestamp(1, outTime);
+            ps.setInt(2, maxId);
+            int deleted = ps.executeUpdate();
+            con.commit();
+            return deleted;
+        } catch (SQLException | RuntimeException e) {
+            dataBaseConfig.rollback(con);
+            throw e;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.restoreAutoCommit(con);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private void addVisits(Connection con, Timestamp outTime, int maxId) throws SQLException {
+        PreparedStatement visits = null;
+        PreparedStatement addVisits = null;
+        PreparedStatement saveVisits = null;
+        ResultSet rs = null;
+        try {
+            visits = con.prepareStatement(DBConstants.GET_ARCHIVED_VISITS);
+            visits.setTimestamp(1, outTime);
+            visits.setInt(2, maxId);
+            rs = visits.executeQuery();
+            addVisits = con.prepareStatement(DBConstants.ADD_VISITS);
+            while (rs.next()) {
+                String vehicleRegNumber = rs.getString(1);
+                int nbTicket = rs.getInt(2);
+                Timestamp lastOutTime = rs.getTimestamp(3);
+                addVisits.setInt(1, nbTicket);
+                addVisits.setTimestamp(2, lastOutTime);
+                addVisits.setString(3, vehicleRegNumber);
+                if (addVisits.executeUpdate() == 0) {
+                    if (saveVisits == null) {
+                        saveVisits = con.prepareStatement(DBConstants.SAVE_VISITS);
+                    }
+                    saveVisits.setString(1, vehicleRegNumber);
+                    saveVisits.setInt(2, nbTicket);
+                    saveVisits.setTimestamp(3, lastOutTime);
+                    saveVisits.addBatch();
+                }
+            }
+            if (saveVisits != null) {
+                saveVisits.executeBatch();
+            }
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(visits);
+            dataBaseConfig.closePreparedStatement(addVisits);
+            dataBaseConfig.closePreparedStatement(saveVisits);
+        }
+    }
+
+    /**
+     * Archive tickets closed more than the retention window ago, now and then every period.
+     */
+    public synchronized void start(long retentionMillis, long periodMillis) {
+        if (archiver != null) {
+            return;
+        }
+        archiver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        archiver.scheduleWithFixedDelay(() -> {
+            try {
+                archiveClosedBefore(System.currentTimeMillis() - retentionMillis);
+            } catch (Exception e) {
+                logger.error("Unable to archive closed tickets", e);
+            }
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (archiver != null) {
+            archiver.shutdownNow();
+            archiver = null;
+        }
+    }
+}
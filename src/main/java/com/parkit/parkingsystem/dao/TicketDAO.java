@@ -1,8 +1,10 @@
 package com.parkit.parkingsystem.dao;
 
 import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.UnitOfWork;
 import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import org.apache.logging.log4j.LogManager;
@@ -11,42 +13,249 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
 
-public class TicketDAO {
+public class TicketDAO implements TicketRepository {
 
     private static final Logger logger = LogManager.getLogger("TicketDAO");
 
+    private static final OperationMetrics beginUnitOfWorkMetrics = OperationMetrics.forOperation("TicketDAO.beginUnitOfWork");
+    private static final OperationMetrics saveTicketMetrics = OperationMetrics.forOperation("TicketDAO.saveTicket");
+    private static final OperationMetrics getTicketMetrics = OperationMetrics.forOperation("TicketDAO.getTicket");
+    private static final OperationMetrics updateTicketMetrics = OperationMetrics.forOperation("TicketDAO.updateTicket");
+    private static final OperationMetrics getNbTicketMetrics = OperationMetrics.forOperation("TicketDAO.getNbTicket");
+
     public DataBaseConfig dataBaseConfig = new DataBaseConfig();
 
-    public boolean saveTicket(Ticket ticket){
+    public RecurringCustomerCache recurringCustomerCache;
+
+    public ActiveTicketIndex activeTicketIndex;
+
+    /**
+     * When set, tickets are written to this journal and reach the database later through a {@link TicketJournalWriter}.
+     */
+    public TicketJournal ticketJournal;
+
+    /**
+     * Start a transaction on the ticket database; ticket and parking updates made on this thread join it until it is closed.
+     * @return null in write-behind mode, where every gate event is one journal record
+     */
+    @Override
+    public UnitOfWork beginUnitOfWork() throws ClassNotFoundException, SQLException {
+        if (ticketJournal != null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            return dataBaseConfig.beginUnitOfWork();
+        } catch (ClassNotFoundException | SQLException | RuntimeException e) {
+            beginUnitOfWorkMetrics.error();
+            throw e;
+        } finally {
+            beginUnitOfWorkMetrics.recordSince(start);
+        }
+    }
+
+    /**
+     * Create the recurring customer cache and fill it with the ticket counts of the most recently seen plates.
+     */
+    public boolean warmRecurringCustomerCache(int maxSize, long ttlMillis) {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_RECENT_NB_TICKETS);
+            ps.setInt(1, maxSize);
+            rs = ps.executeQuery();
+            List<String> vehicleRegNumbers = new ArrayList<>();
+            List<Integer> nbTickets = new ArrayList<>();
+            while (rs.next()) {
+                vehicleRegNumbers.add(rs.getString(1));
+                nbTickets.add(rs.getInt(2));
+            }
+            RecurringCustomerCache cache = new RecurringCustomerCache(maxSize, ttlMillis);
+            // least recent first, so that the most recent plates are the last to be evicted
+            for (int i = vehicleRegNumbers.size() - 1; i >= 0; i--) {
+                cache.put(vehicleRegNumbers.get(i), nbTickets.get(i));
+            }
+            recurringCustomerCache = cache;
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error warming recurring customer cache", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Load the tickets of the vehicles currently parked, so that exits are served without a read query.
+     */
+    public boolean loadActiveTicketIndex() {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_OPEN_TICKETS);
+            rs = ps.executeQuery();
+            ActiveTicketIndex index = new ActiveTicketIndex();
+            while (rs.next()) {
+                index.ticketOpened(rs.getInt(1), rs.getString(2), rs.getInt(3), ParkingType.valueOf(rs.getString(5)), rs.getTimestamp(4).getTime());
+            }
+            activeTicketIndex = index;
+            return true;
+        } catch (Exception ex) {
+            logger.error("Error loading active tickets", ex);
+            return false;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    @Override
+    public boolean saveTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        try {
+            return writeTicket(ticket);
+        } finally {
+            saveTicketMetrics.recordSince(start);
+        }
+    }
+
+    private boolean writeTicket(Ticket ticket) {
+        TicketJournal journal = ticketJournal;
+        if (journal != null) {
+            // the ticket gets its database id when the journal is written to the database
+            if (!appendToJournal(journal, TicketJournal.ENTRY, ticket, saveTicketMetrics)) {
+                return false;
+            }
+            ticketSaved(ticket);
+            return true;
+        }
         Connection con = null;
         PreparedStatement ps = null;
+        ResultSet rs = null;
         try {
             con = dataBaseConfig.getConnection();
-            ps = con.prepareStatement(DBConstants.SAVE_TICKET);
+            ps = con.prepareStatement(DBConstants.SAVE_TICKET, Statement.RETURN_GENERATED_KEYS);
             ps.setInt(1, ticket.getParkingSpot().getId());
             ps.setString(2, ticket.getVehicleRegNumber());
             ps.setDouble(3, ticket.getPrice());
             ps.setTimestamp(4, new java.sql.Timestamp(ticket.getInTime().getTime()));
             ps.setTimestamp(5, (ticket.getOutTime() == null)?null: (new java.sql.Timestamp(ticket.getOutTime().getTime())) );
-            return ps.executeUpdate() > 0;
+            boolean isSaved = ps.executeUpdate() > 0;
+            if (isSaved) {
+                dataBaseConfig.recordWrite(ticket.getVehicleRegNumber());
+                rs = ps.getGeneratedKeys();
+                if (rs.next()) {
+                    ticket.setId(rs.getInt(1));
+                }
+                ticketSaved(ticket);
+            }
+            return isSaved;
         }catch (Exception ex){
+            saveTicketMetrics.error();
             logger.error("Error saving ticket",ex);
             return false;
         }finally {
-            dataBaseConfig.closeConnection(con);
+            dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
         }
     }
 
+    private void ticketSaved(Ticket ticket) {
+        String vehicleRegNumber = ticket.getVehicleRegNumber();
+        RecurringCustomerCache cache = recurringCustomerCache;
+        if (cache != null) {
+            UnitOfWork.runAfterCommit(() -> cache.ticketSaved(vehicleRegNumber));
+        }
+        ActiveTicketIndex index = activeTicketIndex;
+        if (index != null && ticket.getOutTime() == null) {
+            int id = ticket.getId();
+            int parkingNumber = ticket.getParkingSpot().getId();
+            ParkingType parkingType = ticket.getParkingSpot().getParkingType();
+            long inTime = ticket.getInTime().getTime();
+            UnitOfWork.runAfterCommit(() -> index.ticketOpened(id, vehicleRegNumber, parkingNumber, parkingType, inTime));
+        }
+    }
+
+    /**
+     * Append the ticket to the journal and wait until it is on disk.
+     */
+    private boolean appendToJournal(TicketJournal journal, byte type, Ticket ticket, OperationMetrics metrics) {
+        try {
+            long seq = journal.append(type, ticket.getVehicleRegNumber(), ticket.getParkingSpot().getId(),
+                    ticket.getParkingSpot().getParkingType(), ticket.getInTime().getTime(),
+                    ticket.getOutTime() == null ? 0 : ticket.getOutTime().getTime(), ticket.getPrice());
+            journal.sync(seq);
+            return true;
+        } catch (Exception ex) {
+            metrics.error();
+            logger.error("Error writing ticket to the journal", ex);
+            return false;
+        }
+    }
+
+    /**
+     * @return the open ticket of this vehicle from the active ticket index when it is loaded,
+     * otherwise its latest ticket from the database, open or not
+     */
+    @Override
     public Ticket getTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        try {
+            ActiveTicketIndex index = activeTicketIndex;
+            if (index != null) {
+                Ticket activeTicket = index.getTicket(vehicleRegNumber);
+                if (activeTicket != null) {
+                    return activeTicket;
+                }
+            }
+            return readTicket(vehicleRegNumber, DBConstants.GET_TICKET);
+        } finally {
+            getTicketMetrics.recordSince(start);
+        }
+    }
+
+    /**
+     * @return the open ticket of this vehicle from the active ticket index when it is loaded, otherwise from the
+     * database; in write-behind mode only from the index, the database not having the exits still in the journal
+     */
+    @Override
+    public Ticket getOpenTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        try {
+            ActiveTicketIndex index = activeTicketIndex;
+            if (index != null) {
+                Ticket activeTicket = index.getTicket(vehicleRegNumber);
+                if (activeTicket != null || ticketJournal != null) {
+                    return activeTicket;
+                }
+            }
+            return readTicket(vehicleRegNumber, DBConstants.GET_OPEN_TICKET);
+        } finally {
+            getTicketMetrics.recordSince(start);
+        }
+    }
+
+    private Ticket readTicket(String vehicleRegNumber, String query) {
         Connection con = null;
         Ticket ticket = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
         try {
-            con = dataBaseConfig.getConnection();
-            ps = con.prepareStatement(DBConstants.GET_TICKET);
+            con = dataBaseConfig.getReadConnection(vehicleRegNumber);
+            ps = con.prepareStatement(query);
             ps.setString(1,vehicleRegNumber);
             rs = ps.executeQuery();
             if(rs.next()){
@@ -60,17 +269,39 @@ public class TicketDAO {
                 ticket.setOutTime(rs.getTimestamp(5));
             }
         }catch (Exception ex){
+            getTicketMetrics.error();
             logger.error("Error retrieving ticket from DB",ex);
             return null;
         }finally {
-            dataBaseConfig.closeConnection(con);
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
         }
         return ticket;
     }
 
+    @Override
     public boolean updateTicket(Ticket ticket) {
+        long start = System.nanoTime();
+        try {
+            return closeTicket(ticket);
+        } finally {
+            updateTicketMetrics.recordSince(start);
+        }
+    }
+
+    private boolean closeTicket(Ticket ticket) {
+        TicketJournal journal = ticketJournal;
+        if (journal != null) {
+            if (!appendToJournal(journal, TicketJournal.EXIT, ticket, updateTicketMetrics)) {
+                return false;
+            }
+            ActiveTicketIndex index = activeTicketIndex;
+            if (index != null) {
+                index.ticketClosed(ticket.getVehicleRegNumber(), ticket.getId());
+            }
+            return true;
+        }
         Connection con = null;
         PreparedStatement ps = null;
         try {
@@ -80,38 +311,84 @@ public class TicketDAO {
             ps.setTimestamp(2, new java.sql.Timestamp(ticket.getOutTime().getTime()));
             ps.setInt(3, ticket.getId());
             int updatedRowsCount = ps.executeUpdate();
+            if (updatedRowsCount == 1) {
+                dataBaseConfig.recordWrite(ticket.getVehicleRegNumber());
+            }
+            ActiveTicketIndex index = activeTicketIndex;
+            if (updatedRowsCount == 1 && index != null) {
+                String vehicleRegNumber = ticket.getVehicleRegNumber();
+                int id = ticket.getId();
+                UnitOfWork.runAfterCommit(() -> index.ticketClosed(vehicleRegNumber, id));
+            }
             return (updatedRowsCount == 1);
         }catch (Exception ex){
+            updateTicketMetrics.error();
             logger.error("Error updating ticket ",ex);
             return false;
         }finally {
-            dataBaseConfig.closeConnection(con);
             dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
         }
     }
 
+    @Override
     public int getNbTicket(String vehicleRegNumber) {
+        long start = System.nanoTime();
+        try {
+            return countTickets(vehicleRegNumber);
+        } finally {
+            getNbTicketMetrics.recordSince(start);
+        }
+    }
+
+    private int countTickets(String vehicleRegNumber) {
+        RecurringCustomerCache cache = recurringCustomerCache;
+        if (cache != null) {
+            Integer cachedNbTicket = cache.getNbTicket(vehicleRegNumber);
+            if (cachedNbTicket != null) {
+                return cachedNbTicket;
+            }
+        }
         Connection con = null;
         PreparedStatement ps = null;
         ResultSet rs = null;
         int nbTicket = 0;
+        TicketJournal journal = ticketJournal;
+        // keeps the journal writer from committing entries between the query and the pending count
+        Lock countLock = journal != null ? journal.getCountLock() : null;
+        if (countLock != null) {
+            countLock.lock();
+        }
         try {
-            con = dataBaseConfig.getConnection();
+            con = dataBaseConfig.getReadConnection(vehicleRegNumber);
             ps = con.prepareStatement(DBConstants.GET_NB_TICKET);
             ps.setString(1, vehicleRegNumber);
+            ps.setString(2, vehicleRegNumber);
             rs = ps.executeQuery();
             if(rs.next()){
                 nbTicket = rs.getInt(1);
             }
+            if (journal != null) {
+                nbTicket += journal.getPendingEntryCount(vehicleRegNumber);
+            }
+            if (cache != null) {
+                int loadedNbTicket = nbTicket;
+                UnitOfWork.runAfterCommit(() -> cache.put(vehicleRegNumber, loadedNbTicket));
+            }
         } catch (SQLException ex) {
+            getNbTicketMetrics.error();
             logger.error("Error fetching ticket count",ex);
             return 0;
         } catch (ClassNotFoundException e) {
+            getNbTicketMetrics.error();
             throw new RuntimeException(e);
         } finally {
-            dataBaseConfig.closeConnection(con);
             dataBaseConfig.closeResultSet(rs);
             dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+            if (countLock != null) {
+                countLock.unlock();
+            }
         }
         return nbTicket;
     }
@@ -0,0 +1,372 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Local write-ahead journal of gate events for the write-behind mode of {@link TicketDAO}.
+ * Events are appended as fixed size, checksummed records to a memory-mapped file and made durable by one
+ * fsync for every batch of concurrent appends; {@link TicketJournalWriter} later copies them to the database.
+ * The file is a circular log: the record with sequence number {@code seq} goes in slot {@code (seq - 1) % capacity},
+ * whose previous record must already be in the database. The header keeps the sequence number of the last record
+ * written to the database, so records still pending when the process stops are found again when the journal is reopened.
+ */
+public class TicketJournal implements Closeable {
+
+    public static final byte ENTRY = 1;
+    public static final byte EXIT = 2;
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+    public static final int MAX_PLATE_BYTES = 20;
+
+    static final int HEADER_SIZE = 64;
+    static final int RECORD_SIZE = 64;
+
+    private static final int MAGIC = 0x504b4a31;
+    // version 1 started again from the first slot when nothing was pending
+    private static final int VERSION = 2;
+    private static final long FULL_JOURNAL_WAIT_MILLIS = 5000;
+
+    // record layout
+    private static final int SEQ = 0;
+    private static final int TYPE = 8;
+    private static final int PARKING_TYPE = 9;
+    private static final int PLATE_LENGTH = 10;
+    private static final int PARKING_NUMBER = 12;
+    private static final int IN_TIME = 16;
+    private static final int OUT_TIME = 24;
+    private static final int PRICE = 32;
+    private static final int PLATE = 40;
+    private static final int CHECKSUM = 60;
+
+    private final RandomAccessFile file;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+
+    private final Object appendLock = new Object();
+    private final Object syncLock = new Object();
+    // sequence number of the last appended record: guarded by appendLock
+    private long lastSeq;
+    private volatile long durableSeq;
+    private volatile long appliedSeq;
+    private volatile boolean closed;
+
+    // entries of each plate not yet in the database: incremented before the record is published by lastSeq
+    private final Map<String, Integer> pendingEntries = new ConcurrentHashMap<>();
+    // write-locked from the commit of records to the database until they are no longer pending
+    private final ReentrantReadWriteLock applyLock = new ReentrantReadWriteLock();
+
+    private TicketJournal(RandomAccessFile file, MappedByteBuffer buffer, int capacity) {
+        this.file = file;
+        this.buffer = buffer;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Open the journal file, creating it when needed, and find the records not yet written to the database.
+     */
+    public static TicketJournal open(Path path, int capacity) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+        try {
+            long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+            if (file.length() > size) {
+                // keep the records of a journal created with a larger capacity
+                capacity = (int) ((file.length() - HEADER_SIZE) / RECORD_SIZE);
+                size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+            }
+            MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+            TicketJournal journal = new TicketJournal(file, buffer, capacity);
+            journal.recover();
+            return journal;
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private void recover() throws IOException {
+        if (buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putLong(8, 0);
+            buffer.force();
+        } else if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported ticket journal version " + buffer.getInt(4));
+        }
+        appliedSeq = buffer.getLong(8);
+        long first = appliedSeq + 1;
+        long last = appliedSeq;
+        if (hasRecord(first)) {
+            while (last - first + 1 < capacity && hasRecord(last + 1)) {
+                last++;
+            }
+        } else {
+            // the header is not forced when records are applied, so it may be behind: the pending records are
+            // the ones before the last record written, the ones they overwrote having been applied
+            for (long slot = 0; slot < capacity; slot++) {
+                if (isValid(slot)) {
+                    last = Math.max(last, buffer.getLong(slotOffset(slot) + SEQ));
+                }
+            }
+            first = last + 1;
+            while (first - 1 > appliedSeq && last - first + 1 < capacity && hasRecord(first - 1)) {
+                first--;
+            }
+            appliedSeq = first - 1;
+        }
+        lastSeq = last;
+        for (Record record : read(first, last)) {
+            if (record.type == ENTRY) {
+                pendingEntries.merge(record.vehicleRegNumber, 1, Integer::sum);
+            }
+        }
+        durableSeq = lastSeq;
+    }
+
+    private long slotOf(long seq) {
+        return (seq - 1) % capacity;
+    }
+
+    private boolean hasRecord(long seq) {
+        long slot = slotOf(seq);
+        return isValid(slot) && buffer.getLong(slotOffset(slot) + SEQ) == seq;
+    }
+
+    private static int slotOffset(long slot) {
+        return (int) (HEADER_SIZE + slot * RECORD_SIZE);
+    }
+
+    private boolean isValid(long slot) {
+        int offset = slotOffset(slot);
+        return buffer.getLong(offset + SEQ) != 0 && buffer.getInt(offset + CHECKSUM) == checksum(offset);
+    }
+
+    private int checksum(int offset) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset);
+        record.limit(offset + CHECKSUM);
+        CRC32 crc = new CRC32();
+        byte[] bytes = new byte[CHECKSUM];
+        record.get(bytes);
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Append a record; it is durable once {@link #sync(long)} returned for its sequence number.
+     * Waits for the database writer when the journal is full.
+     * @return the sequence number of the record
+     */
+    public long append(byte type, String vehicleRegNumber, int parkingNumber, ParkingType parkingType,
+                       long inTime, long outTime, double price) throws IOException {
+        byte[] plate = vehicleRegNumber.getBytes(StandardCharsets.UTF_8);
+        if (plate.length > MAX_PLATE_BYTES) {
+            throw new IllegalArgumentException("Vehicle registration number too long for the journal: " + vehicleRegNumber);
+        }
+        long seq;
+        synchronized (appendLock) {
+            long deadline = System.currentTimeMillis() + FULL_JOURNAL_WAIT_MILLIS;
+            while (lastSeq - appliedSeq >= capacity) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (closed || remaining <= 0) {
+                    throw new IOException("Ticket journal is full: " + capacity + " records waiting for the database");
+                }
+                try {
+                    appendLock.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for space in the ticket journal", e);
+                }
+            }
+            if (closed) {
+                throw new IOException("Ticket journal is closed");
+            }
+            seq = lastSeq + 1;
+            int offset = slotOffset(slotOf(seq));
+            buffer.putLong(offset + SEQ, seq);
+            buffer.put(offset + TYPE, type);
+            buffer.put(offset + PARKING_TYPE, (byte) parkingType.ordinal());
+            buffer.put(offset + PLATE_LENGTH, (byte) plate.length);
+            buffer.putInt(offset + PARKING_NUMBER, parkingNumber);
+            buffer.putLong(offset + IN_TIME, inTime);
+            buffer.putLong(offset + OUT_TIME, outTime);
+            buffer.putDouble(offset + PRICE, price);
+            for (int i = 0; i < MAX_PLATE_BYTES; i++) {
+                buffer.put(offset + PLATE + i, i < plate.length ? plate[i] : 0);
+            }
+            buffer.putInt(offset + CHECKSUM, checksum(offset));
+            if (type == ENTRY) {
+                // before lastSeq, so that the record cannot be synced and applied before it is counted
+                pendingEntries.merge(vehicleRegNumber, 1, Integer::sum);
+            }
+            lastSeq = seq;
+        }
+        return seq;
+    }
+
+    /**
+     * Make the record with this sequence number durable. Concurrent callers share one fsync:
+     * the first one forces every record appended so far.
+     */
+    public void sync(long seq) {
+        if (durableSeq >= seq) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durableSeq >= seq) {
+                return;
+            }
+            long target;
+            synchronized (appendLock) {
+                target = lastSeq;
+            }
+            buffer.force();
+            durableSeq = target;
+        }
+    }
+
+    /**
+     * Make every appended record durable.
+     */
+    public void sync() {
+        long target;
+        synchronized (appendLock) {
+            target = lastSeq;
+        }
+        sync(target);
+    }
+
+    /**
+     * @return at most {@code max} durable records not yet written to the database, oldest first
+     */
+    public List<Record> readPending(int max) {
+        long from = appliedSeq + 1;
+        long to = Math.min(durableSeq, from + max - 1);
+        synchronized (appendLock) {
+            return read(from, to);
+        }
+    }
+
+    private List<Record> read(long from, long to) {
+        List<Record> records = new ArrayList<>();
+        for (long seq = from; seq <= to; seq++) {
+            int offset = slotOffset(slotOf(seq));
+            byte[] plate = new byte[buffer.get(offset + PLATE_LENGTH)];
+            for (int i = 0; i < plate.length; i++) {
+                plate[i] = buffer.get(offset + PLATE + i);
+            }
+            records.add(new Record(buffer.getLong(offset + SEQ), buffer.get(offset + TYPE),
+                    new String(plate, StandardCharsets.UTF_8), buffer.getInt(offset + PARKING_NUMBER),
+                    ParkingType.values()[buffer.get(offset + PARKING_TYPE)], buffer.getLong(offset + IN_TIME),
+                    buffer.getLong(offset + OUT_TIME), buffer.getDouble(offset + PRICE)));
+        }
+        return records;
+    }
+
+    /**
+     * Record that these records are in the database, freeing their slots.
+     */
+    public void markApplied(List<Record> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        long seq = records.get(records.size() - 1).seq;
+        synchronized (appendLock) {
+            buffer.putLong(8, seq);
+            appliedSeq = seq;
+            appendLock.notifyAll();
+        }
+        for (Record record : records) {
+            if (record.type == ENTRY) {
+                pendingEntries.compute(record.vehicleRegNumber, (plate, count) -> count == null || count <= 1 ? null : count - 1);
+            }
+        }
+    }
+
+    /**
+     * Held while the pending entries of a plate are added to its tickets in the database, so that records
+     * being applied are counted in one place or the other, never in both.
+     */
+    public Lock getCountLock() {
+        return applyLock.readLock();
+    }
+
+    /**
+     * Held by the database writer from the commit of records until {@link #markApplied(List)} returned.
+     */
+    public ReentrantReadWriteLock.WriteLock getApplyLock() {
+        return applyLock.writeLock();
+    }
+
+    /**
+     * @return the number of tickets of this plate that are in the journal but not yet in the database
+     */
+    public int getPendingEntryCount(String vehicleRegNumber) {
+        return pendingEntries.getOrDefault(vehicleRegNumber, 0);
+    }
+
+    public long getPendingCount() {
+        return durableSeq - appliedSeq;
+    }
+
+    public long getAppliedSeq() {
+        return appliedSeq;
+    }
+
+    public long getDurableSeq() {
+        return durableSeq;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (appendLock) {
+            closed = true;
+            appendLock.notifyAll();
+        }
+        synchronized (syncLock) {
+            buffer.force();
+        }
+        file.close();
+    }
+
+    /**
+     * A gate event: a ticket opened (ENTRY) or closed with its price (EXIT) on a spot.
+     */
+    public static final class Record {
+        public final long seq;
+        public final byte type;
+        public final String vehicleRegNumber;
+        public final int parkingNumber;
+        public final ParkingType parkingType;
+        public final long inTime;
+        public final long outTime;
+        public final double price;
+
+        Record(long seq, byte type, String vehicleRegNumber, int parkingNumber, ParkingType parkingType,
+               long inTime, long outTime, double price) {
+            this.seq = seq;
+            this.type = type;
+            this.vehicleRegNumber = vehicleRegNumber;
+            this.parkingNumber = parkingNumber;
+            this.parkingType = parkingType;
+            this.inTime = inTime;
+            this.outTime = outTime;
+            this.price = price;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Copies the records of a {@link TicketJournal} to the ticket and parking tables, one transaction per batch.
+ * Records are written so that applying them twice has no effect: a ticket is identified by its plate and
+ * in-time (within a second, as the DATETIME columns drop milliseconds) and only inserted if absent, an exit
+ * only closes a ticket still open, and spots get the availability of their last record in the batch.
+ * This is what makes replaying the journal after a crash safe.
+ */
+public class TicketJournalWriter {
+
+    private static final Logger logger = LogManager.getLogger("TicketJournalWriter");
+
+    public static final String JOURNAL_FILE_PROPERTY = "parkit.journal";
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_PERIOD_MILLIS = 50;
+
+    private static final long IN_TIME_TOLERANCE_MILLIS = 1000;
+
+    private final TicketJournal journal;
+    private final DataBaseConfig dataBaseConfig;
+    private final int batchSize;
+
+    private ScheduledExecutorService writer;
+
+    public TicketJournalWriter(TicketJournal journal, DataBaseConfig dataBaseConfig, int batchSize) {
+        this.journal = journal;
+        this.dataBaseConfig = dataBaseConfig;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Write the next batch of durable records to the database.
+     * @return the number of records written
+     */
+    public synchronized int flush() throws ClassNotFoundException, SQLException {
+        journal.sync();
+        List<TicketJournal.Record> records = journal.readPending(batchSize);
+        if (records.isEmpty()) {
+            return 0;
+        }
+        ReentrantReadWriteLock.WriteLock applyLock = journal.getApplyLock();
+        try {
+            writeBatch(records, applyLock);
+            // the pending entries of a plate are only forgotten once its reads go to the database that has them
+            for (TicketJournal.Record record : records) {
+                dataBaseConfig.recordWrite(record.vehicleRegNumber);
+            }
+            journal.markApplied(records);
+        } finally {
+            if (applyLock.isHeldByCurrentThread()) {
+                applyLock.unlock();
+            }
+        }
+        return records.size();
+    }
+
+    /**
+     * Write the records in one transaction, taking the apply lock of the journal for its commit.
+     */
+    private void writeBatch(List<TicketJournal.Record> records, ReentrantReadWriteLock.WriteLock applyLock)
+            throws ClassNotFoundException, SQLException {
+        Connection con = null;
+        PreparedStatement saveTicket = null;
+        PreparedStatement closeTicket = null;
+        PreparedStatement updateParking = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            saveTicket = con.prepareStatement(DBConstants.SAVE_TICKET_IF_ABSENT);
+            closeTicket = con.prepareStatement(DBConstants.CLOSE_TICKET);
+            Map<Integer, Boolean> spots = new LinkedHashMap<>();
+            // consecutive records of the same kind go in one batch, keeping an entry before the exit of its ticket
+            PreparedStatement pending = null;
+            for (TicketJournal.Record record : records) {
+                PreparedStatement statement = record.type == TicketJournal.ENTRY ? saveTicket : closeTicket;
+                if (pending != null && pending != statement) {
+                    pending.executeBatch();
+                }
+                pending = statement;
+                if (record.type == TicketJournal.ENTRY) {
+                    addSaveTicket(saveTicket, record);
+                } else {
+                    addCloseTicket(closeTicket, record);
+                }
+                spots.remove(record.parkingNumber);
+                spots.put(record.parkingNumber, record.type == TicketJournal.EXIT);
+            }
+            pending.executeBatch();
+            updateParking = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            for (Map.Entry<Integer, Boolean> spot : spots.entrySet()) {
+                updateParking.setBoolean(1, spot.getValue());
+                updateParking.setInt(2, spot.getKey());
+                updateParking.addBatch();
+            }
+            updateParking.executeBatch();
+            // from now until markApplied, the entries would be counted both in the database and in the journal
+            applyLock.lock();
+            con.commit();
+        } catch (SQLException | RuntimeException e) {
+            dataBaseConfig.rollback(con);
+            throw e;
+        } finally {
+            dataBaseConfig.closePreparedStatement(saveTicket);
+            dataBaseConfig.closePreparedStatement(closeTicket);
+            dataBaseConfig.closePreparedStatement(updateParking);
+            dataBaseConfig.restoreAutoCommit(con);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Write every pending record to the database, e.g. at startup to replay the journal of a stopped process.
+     * @return the number of records written
+     */
+    public int drain() throws ClassNotFoundException, SQLException {
+        int total = 0;
+        for (int written = flush(); written > 0; written = flush()) {
+            total += written;
+        }
+        return total;
+    }
+
+    /**
+     * Write pending records every period; a failed batch is kept in the journal and tried again.
+     */
+    public synchronized void start(long periodMillis) {
+        if (writer != null) {
+            return;
+        }
+        writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ticket-journal-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                drain();
+            } catch (Exception e) {
+                logger.error("Unable to write the ticket journal to the database, " + journal.getPendingCount() + " records pending", e);
+            }
+        }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the periodic writes, then write what is still pending.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (writer != null) {
+                writer.shutdownNow();
+                writer = null;
+            }
+        }
+        try {
+            drain();
+        } catch (Exception e) {
+            logger.error("Unable to write the ticket journal to the database, " + journal.getPendingCount() + " records left for the next start", e);
+        }
+    }
+
+    private static void addSaveTicket(PreparedStatement ps, TicketJournal.Record record) throws SQLException {
+        ps.setInt(1, record.parkingNumber);
+        ps.setString(2, record.vehicleRegNumber);
+        ps.setDouble(3, record.price);
+        ps.setTimestamp(4, new Timestamp(record.inTime));
+        ps.setTimestamp(5, null);
+        ps.setString(6, record.vehicleRegNumber);
+        ps.setTimestamp(7, new Timestamp(record.inTime - IN_TIME_TOLERANCE_MILLIS));
+        ps.setTimestamp(8, new Timestamp(record.inTime + IN_TIME_TOLERANCE_MILLIS));
+        ps.addBatch();
+    }
+
+    private static void addCloseTicket(PreparedStatement ps, TicketJournal.Record record) throws SQLException {
+        ps.setDouble(1, record.price);
+        ps.setTimestamp(2, new Timestamp(record.outTime));
+        ps.setString(3, record.vehicleRegNumber);
+        ps.setTimestamp(4, new Timestamp(record.inTime - IN_TIME_TOLERANCE_MILLIS));
+        ps.setTimestamp(5, new Timestamp(record.inTime + IN_TIME_TOLERANCE_MILLIS));
+        ps.addBatch();
+    }
+}
@@ -0,0 +1,43 @@
+package com.parkit.parkingsystem.dao;
+
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.model.Ticket;
+
+import java.sql.SQLException;
+
+/**
+ * Storage of tickets used by the gate flows, implemented on the database by {@link TicketDAO}
+ * and in memory by {@link InMemoryParkingStore}.
+ */
+public interface TicketRepository {
+
+    /**
+     * @return the transaction the changes of this gate event join, or null when the storage has none
+     */
+    UnitOfWork beginUnitOfWork() throws ClassNotFoundException, SQLException;
+
+    /**
+     * Store a new ticket and set its id.
+     */
+    boolean saveTicket(Ticket ticket);
+
+    /**
+     * @return the latest ticket of this vehicle, or null when it has none
+     */
+    Ticket getTicket(String vehicleRegNumber);
+
+    /**
+     * @return the ticket of this vehicle while it is parked, or null when it has no open ticket
+     */
+    default Ticket getOpenTicket(String vehicleRegNumber) {
+        Ticket ticket = getTicket(vehicleRegNumber);
+        return ticket == null || ticket.getOutTime() != null ? null : ticket;
+    }
+
+    /**
+     * Store the price and out-time of a ticket.
+     */
+    boolean updateTicket(Ticket ticket);
+
+    int getNbTicket(String vehicleRegNumber);
+}
@@ -0,0 +1,113 @@
+package com.parkit.parkingsystem.display;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hands messages to a background thread that writes them to another sink in batches, so that the calling
+ * thread never waits on terminal I/O. When the queue is full, messages are dropped and counted rather than
+ * making a gate wait.
+ */
+public class AsyncDisplaySink implements DisplaySink {
+
+    private static final Logger logger = LogManager.getLogger("AsyncDisplaySink");
+
+    public static final int DEFAULT_CAPACITY = 8192;
+    private static final int MAX_BATCH_SIZE = 256;
+
+    private final DisplaySink sink;
+    private final BlockingQueue<String> queue;
+    private final Thread writer;
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    // guarded by this, which flush waits on
+    private long written;
+    private volatile boolean closed;
+
+    public AsyncDisplaySink(DisplaySink sink, int capacity) {
+        this.sink = sink;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::writeMessages, "display-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @Override
+    public void show(String message) {
+        if (closed || !queue.offer(message)) {
+            dropped.increment();
+            return;
+        }
+        queued.increment();
+    }
+
+    private void writeMessages() {
+        List<String> batch = new ArrayList<>(MAX_BATCH_SIZE);
+        while (!closed || !queue.isEmpty()) {
+            try {
+                String first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+                sink.showAll(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                logger.error("Unable to display " + batch.size() + " messages", e);
+            }
+            synchronized (this) {
+                written += batch.size();
+                notifyAll();
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Wait until the messages shown so far by any thread are written.
+     */
+    @Override
+    public void flush() {
+        long target = queued.sum();
+        synchronized (this) {
+            while (written < target && writer.isAlive()) {
+                try {
+                    wait(100);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+        sink.flush();
+    }
+
+    /**
+     * Write the queued messages, then stop the writer.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sink.close();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+}
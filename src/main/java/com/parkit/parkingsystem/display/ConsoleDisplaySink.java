@@ -0,0 +1,36 @@
+package com.parkit.parkingsystem.display;
+
+import java.io.PrintStream;
+import java.util.List;
+
+/**
+ * Writes messages to a console stream, a batch of them in one write.
+ */
+public class ConsoleDisplaySink implements DisplaySink {
+
+    private final PrintStream out;
+
+    public ConsoleDisplaySink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void show(String message) {
+        out.println(message);
+    }
+
+    @Override
+    public void showAll(List<String> messages) {
+        StringBuilder batch = new StringBuilder();
+        for (String message : messages) {
+            batch.append(message).append(System.lineSeparator());
+        }
+        out.print(batch);
+        out.flush();
+    }
+
+    @Override
+    public void flush() {
+        out.flush();
+    }
+}
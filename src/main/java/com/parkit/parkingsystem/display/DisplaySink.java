@@ -0,0 +1,50 @@
+package com.parkit.parkingsystem.display;
+
+import java.util.List;
+
+/**
+ * Where the messages for drivers go: the console, a log, or the screen of a kiosk.
+ */
+public interface DisplaySink {
+
+    String DISPLAY_PROPERTY = "parkit.display";
+    String CONSOLE = "console";
+    String LOG = "log";
+    String KIOSK = "kiosk";
+
+    void show(String message);
+
+    /**
+     * Show messages in this order, in one write when the sink can.
+     */
+    default void showAll(List<String> messages) {
+        for (String message : messages) {
+            show(message);
+        }
+    }
+
+    /**
+     * Wait until the messages shown so far are visible, e.g. before prompting the user.
+     */
+    default void flush() {
+    }
+
+    default void close() {
+    }
+
+    /**
+     * The sink selected by the system property {@value #DISPLAY_PROPERTY}: {@value #LOG} for the asynchronous
+     * Display logger, {@value #KIOSK} for the last messages kept in memory, otherwise the console, written by a
+     * background thread.
+     */
+    static DisplaySink fromSystemProperties() {
+        String display = System.getProperty(DISPLAY_PROPERTY, CONSOLE);
+        if (LOG.equals(display)) {
+            return new LogDisplaySink();
+        }
+        if (KIOSK.equals(display)) {
+            return new RingBufferDisplaySink(RingBufferDisplaySink.DEFAULT_CAPACITY);
+        }
+        return new AsyncDisplaySink(new ConsoleDisplaySink(System.out), AsyncDisplaySink.DEFAULT_CAPACITY);
+    }
+}
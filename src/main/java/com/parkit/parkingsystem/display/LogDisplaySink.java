@@ -0,0 +1,17 @@
+package com.parkit.parkingsystem.display;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Sends messages to the Display logger, which log4j2.properties writes through an asynchronous appender.
+ */
+public class LogDisplaySink implements DisplaySink {
+
+    private static final Logger logger = LogManager.getLogger("Display");
+
+    @Override
+    public void show(String message) {
+        logger.info(message);
+    }
+}
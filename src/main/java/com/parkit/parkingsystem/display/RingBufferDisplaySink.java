@@ -0,0 +1,44 @@
+package com.parkit.parkingsystem.display;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Keeps the last messages in memory for a kiosk screen to poll. Gates never wait: a message takes the next
+ * slot of a fixed array, overwriting the oldest one.
+ */
+public class RingBufferDisplaySink implements DisplaySink {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final AtomicReferenceArray<String> messages;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public RingBufferDisplaySink(int capacity) {
+        messages = new AtomicReferenceArray<>(capacity);
+    }
+
+    @Override
+    public void show(String message) {
+        long slot = sequence.getAndIncrement();
+        messages.set((int) (slot % messages.length()), message);
+    }
+
+    /**
+     * @return the messages still in the buffer, oldest first; a message being written may be missing
+     */
+    public List<String> getRecentMessages() {
+        long end = sequence.get();
+        long start = Math.max(0, end - messages.length());
+        List<String> recent = new ArrayList<>((int) (end - start));
+        for (long slot = start; slot < end; slot++) {
+            String message = messages.get((int) (slot % messages.length()));
+            if (message != null) {
+                recent.add(message);
+            }
+        }
+        return recent;
+    }
+}
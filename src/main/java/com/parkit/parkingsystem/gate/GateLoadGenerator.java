@@ -0,0 +1,199 @@
+package com.parkit.parkingsystem.gate;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for the {@link GateServer}: every worker is a gate parking a car then letting it out,
+ * as fast as the server answers, and the sustained number of events per second is reported.
+ * <pre>
+ * java -cp parking-system.jar com.parkit.parkingsystem.gate.GateLoadGenerator [url] [workers] [seconds]
+ * </pre>
+ */
+public class GateLoadGenerator {
+
+    private final URL url;
+    private final int workers;
+    private final long durationMillis;
+
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong full = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private volatile long elapsedNanos;
+    private volatile String lastFailure;
+
+    public GateLoadGenerator(String baseUrl, int workers, long durationMillis) throws MalformedURLException {
+        this.url = new URL(baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl);
+        this.workers = workers;
+        this.durationMillis = durationMillis;
+    }
+
+    public static void main(String[] args) throws InterruptedException, MalformedURLException {
+        String url = args.length > 0 ? args[0] : "http://localhost:" + GateServer.DEFAULT_PORT;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        GateLoadGenerator loadGenerator = new GateLoadGenerator(url, workers, seconds * 1000L);
+        loadGenerator.run();
+        System.out.println(loadGenerator.getReport());
+    }
+
+    /**
+     * Run the workers until the duration has elapsed.
+     */
+    public void run() throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = System.currentTimeMillis() + durationMillis;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < workers; i++) {
+            int worker = i;
+            Thread thread = new Thread(() -> runGate(worker, deadline), "gate-load-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        elapsedNanos = System.nanoTime() - start;
+    }
+
+    private void runGate(int worker, long deadline) {
+        GateConnection connection = new GateConnection();
+        long visit = 0;
+        try {
+            while (System.currentTimeMillis() < deadline) {
+                // at most 10 characters, as the registration number column
+                String plate = "L" + Integer.toString(worker, 36) + "-" + Long.toString(visit++ % 60466176, 36);
+                int status = post(connection, "/entries?type=CAR&plate=" + plate);
+                if (status == 201) {
+                    post(connection, "/exits?plate=" + plate);
+                } else if (status == 409) {
+                    full.incrementAndGet();
+                }
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private int post(GateConnection connection, String pathAndQuery) {
+        long start = System.nanoTime();
+        try {
+            int status = connection.post(pathAndQuery);
+            if (status == 200 || status == 201) {
+                events.incrementAndGet();
+                totalLatencyNanos.addAndGet(System.nanoTime() - start);
+            } else if (status != 409) {
+                failures.incrementAndGet();
+                lastFailure = "HTTP " + status + " on " + pathAndQuery;
+            }
+            return status;
+        } catch (IOException e) {
+            failures.incrementAndGet();
+            lastFailure = e.toString();
+            connection.close();
+            return -1;
+        }
+    }
+
+    public long getEvents() {
+        return events.get();
+    }
+
+    public long getFailures() {
+        return failures.get();
+    }
+
+    public double getEventsPerSecond() {
+        return elapsedNanos == 0 ? 0 : events.get() * 1e9 / elapsedNanos;
+    }
+
+    public String getReport() {
+        long count = events.get();
+        return String.format("%d workers, %d events in %.1f s: %.0f events/s, mean latency %.2f ms, %d rejected (full), %d failures",
+                workers, count, elapsedNanos / 1e9, getEventsPerSecond(),
+                count == 0 ? 0.0 : totalLatencyNanos.get() / 1e6 / count, full.get(), failures.get())
+                + (lastFailure == null ? "" : " (last: " + lastFailure + ")");
+    }
+
+    /**
+     * Minimal keep-alive HTTP/1.1 client: each request is sent in a single write with TCP_NODELAY, so the
+     * measure is not spoiled by delayed ACKs as with HttpURLConnection writing headers and body separately.
+     */
+    private final class GateConnection {
+
+        private Socket socket;
+        private InputStream in;
+        private OutputStream out;
+
+        int post(String pathAndQuery) throws IOException {
+            if (socket == null) {
+                socket = new Socket(url.getHost(), url.getPort() < 0 ? 80 : url.getPort());
+                socket.setTcpNoDelay(true);
+                in = new BufferedInputStream(socket.getInputStream());
+                out = socket.getOutputStream();
+            }
+            String request = "POST " + url.getPath() + pathAndQuery + " HTTP/1.1\r\nHost: " + url.getHost()
+                    + "\r\nContent-Length: 0\r\n\r\n";
+            out.write(request.getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+
+            String statusLine = readLine();
+            int status = Integer.parseInt(statusLine.split(" ")[1]);
+            int contentLength = 0;
+            boolean close = false;
+            for (String header = readLine(); !header.isEmpty(); header = readLine()) {
+                String lowerCase = header.toLowerCase();
+                if (lowerCase.startsWith("content-length:")) {
+                    contentLength = Integer.parseInt(header.substring("content-length:".length()).trim());
+                } else if (lowerCase.startsWith("connection:") && lowerCase.contains("close")) {
+                    close = true;
+                }
+            }
+            for (int i = 0; i < contentLength; i++) {
+                if (in.read() < 0) {
+                    throw new EOFException("Response body truncated");
+                }
+            }
+            if (close) {
+                close();
+            }
+            return status;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new EOFException("Connection closed by the gate server");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        void close() {
+            if (socket != null) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // already unusable
+                }
+                socket = null;
+            }
+        }
+    }
+}
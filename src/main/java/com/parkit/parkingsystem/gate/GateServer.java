@@ -0,0 +1,705 @@
+package com.parkit.parkingsystem.gate;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.RecurringCustomerCache;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.display.RingBufferDisplaySink;
+import com.parkit.parkingsystem.metrics.OccupancyCounters;
+import com.parkit.parkingsystem.metrics.OccupancyListener;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * HTTP front-end letting many gates and kiosks send entry and exit events at the same time.
+ * <pre>
+ * POST /entries?type=CAR&amp;plate=AB123CD  201 with the ticket, 409 when no spot is available or the vehicle is parked
+ * POST /exits?plate=AB123CD              200 with the ticket and its price, 404 when the vehicle is not parked
+ * POST /reservations?type=CAR&amp;plate=AB123CD&amp;start=2024-01-10T14:00&amp;end=2024-01-10T18:00
+ *                                        201 with the reserved spot, 409 when no spot is free for the whole period,
+ *                                        404 when the site takes no reservations
+ * GET  /display                          the last messages for drivers, oldest first, for a kiosk screen to poll;
+ *                                        404 when the site has no kiosk display
+ * GET  /occupancy                        free spots, active sessions and revenue per parking type
+ * GET  /occupancy/events                 the same, pushed as server-sent events whenever it changes
+ * GET  /metrics                          the same counters, the recurring customer cache hits, misses and evictions
+ *                                        of every site, the connections, waits, timeouts, leaks and prepared
+ *                                        statement cache hits and misses of every connection pool, then the
+ *                                        latency and errors of every operation, in the Prometheus text format
+ * </pre>
+ * Parameters can also be sent as a form body. Requests are served by a fixed pool of worker threads;
+ * occupancy events are written by the publisher thread of the counters, not by a worker.
+ * <p>
+ * Serving the sites of a multi-site deployment, every request but /metrics takes a {@code site} parameter, and
+ * the counters of /metrics get a site label. A site gets at most {@value #SITE_MAX_CONCURRENT_REQUESTS} workers
+ * at a time, further requests being answered 503 at once, so that a slow site cannot hold every worker.
+ */
+public class GateServer {
+
+    private static final Logger logger = LogManager.getLogger("GateServer");
+
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_THREADS = 32;
+    private static final int BACKLOG = 1024;
+    public static final int SITE_MAX_CONCURRENT_REQUESTS = DataBaseConfig.POOL_MAX_SIZE;
+
+    private final Map<String, Site> sites = new LinkedHashMap<>();
+    private final boolean multiSite;
+    private final int port;
+    private final int threads;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    public GateServer(ParkingService parkingService, int port, int threads) {
+        this.sites.put(null, new Site(null, parkingService, 0));
+        this.multiSite = false;
+        this.port = port;
+        this.threads = threads;
+    }
+
+    /**
+     * @param parkingServices the parking service of every site, by site id
+     */
+    public GateServer(Map<String, ParkingService> parkingServices, int port, int threads) {
+        for (Map.Entry<String, ParkingService> site : parkingServices.entrySet()) {
+            this.sites.put(site.getKey(), new Site(site.getKey(), site.getValue(), Math.min(threads, SITE_MAX_CONCURRENT_REQUESTS)));
+        }
+        this.multiSite = true;
+        this.port = port;
+        this.threads = threads;
+    }
+
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        // responses are written as headers then body: without TCP_NODELAY every exchange waits for a delayed ACK
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "gate-http-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress(port), BACKLOG);
+        server.createContext("/entries", this::handleEntry);
+        server.createContext("/exits", this::handleExit);
+        server.createContext("/reservations", this::handleReservation);
+        server.createContext("/display", this::handleDisplay);
+        server.createContext("/metrics", this::handleMetrics);
+        if (hasOccupancyCounters()) {
+            server.createContext("/occupancy", this::handleOccupancy);
+            server.createContext("/occupancy/events", this::handleOccupancyEvents);
+        }
+        for (Site site : sites.values()) {
+            if (site.occupancyCounters != null) {
+                site.occupancyCounters.addListener(site.occupancyPublisher);
+            }
+        }
+        server.setExecutor(executor);
+        server.start();
+        logger.info("Gate server listening on port " + getPort());
+    }
+
+    /**
+     * @return the port the server listens on, useful when started on port 0
+     */
+    public synchronized int getPort() {
+        return server == null ? port : server.getAddress().getPort();
+    }
+
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        for (Site site : sites.values()) {
+            if (site.occupancyCounters != null) {
+                site.occupancyCounters.removeListener(site.occupancyPublisher);
+            }
+            for (HttpExchange subscriber : site.occupancySubscribers) {
+                subscriber.close();
+            }
+            site.occupancySubscribers.clear();
+        }
+        server.stop(0);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * Take reservations for this site, null with a single site; until then, and with the in-memory storage,
+     * reservations are answered 404.
+     */
+    public void setReservationDAO(String siteId, ReservationDAO reservationDAO) {
+        Site site = sites.get(siteId);
+        if (site == null) {
+            throw new IllegalArgumentException("Unknown site: " + siteId);
+        }
+        site.reservationDAO = reservationDAO;
+    }
+
+    /**
+     * Serve the hits, misses and evictions of the recurring customer cache of this site, null with a single site,
+     * on /metrics.
+     */
+    public void setRecurringCustomerCache(String siteId, RecurringCustomerCache recurringCustomerCache) {
+        Site site = sites.get(siteId);
+        if (site == null) {
+            throw new IllegalArgumentException("Unknown site: " + siteId);
+        }
+        site.recurringCustomerCache = recurringCustomerCache;
+    }
+
+    /**
+     * Show the spot of every entry and the fare of every exit of this site, null with a single site, on this
+     * kiosk display, served by /display; until then /display is answered 404.
+     */
+    public void setKioskDisplay(String siteId, RingBufferDisplaySink kioskDisplay) {
+        Site site = sites.get(siteId);
+        if (site == null) {
+            throw new IllegalArgumentException("Unknown site: " + siteId);
+        }
+        site.kioskDisplay = kioskDisplay;
+    }
+
+    private boolean hasOccupancyCounters() {
+        for (Site site : sites.values()) {
+            if (site.occupancyCounters != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @throws UnknownSiteException when the site parameter does not name a site of this server
+     */
+    private Site getSite(Map<String, String> parameters) {
+        if (!multiSite) {
+            return sites.get(null);
+        }
+        String siteId = parameters.get("site");
+        if (siteId == null || siteId.trim().isEmpty()) {
+            throw new IllegalArgumentException("Parameter site is required");
+        }
+        Site site = sites.get(siteId.trim());
+        if (site == null) {
+            throw new UnknownSiteException("Unknown site: " + siteId);
+        }
+        return site;
+    }
+
+    private void handleEntry(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("Use POST"));
+                return;
+            }
+            Map<String, String> parameters = readParameters(exchange);
+            Site site = getSite(parameters);
+            ParkingType parkingType = parseParkingType(parameters.get("type"));
+            String vehicleRegNumber = parsePlate(parameters.get("plate"));
+            if (!site.tryAcquire()) {
+                respondBusy(exchange, site);
+                return;
+            }
+            Ticket ticket;
+            try {
+                ticket = site.parkingService.processIncomingVehicle(parkingType, vehicleRegNumber);
+            } finally {
+                site.release();
+            }
+            if (ticket == null) {
+                respond(exchange, 409, error("No " + parkingType + " spot available"));
+            } else {
+                site.show(vehicleRegNumber + ": please park your vehicle in spot number " + ticket.getParkingSpot().getId());
+                respond(exchange, 201, toJson(ticket));
+            }
+        } catch (UnknownSiteException e) {
+            respond(exchange, 404, error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (IllegalStateException e) {
+            respond(exchange, 409, error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Unable to process incoming vehicle", e);
+            respond(exchange, 500, error("Unable to process incoming vehicle"));
+        }
+    }
+
+    private void handleExit(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("Use POST"));
+                return;
+            }
+            Map<String, String> parameters = readParameters(exchange);
+            Site site = getSite(parameters);
+            String vehicleRegNumber = parsePlate(parameters.get("plate"));
+            if (!site.tryAcquire()) {
+                respondBusy(exchange, site);
+                return;
+            }
+            Ticket ticket;
+            try {
+                ticket = site.parkingService.processExitingVehicle(vehicleRegNumber);
+            } finally {
+                site.release();
+            }
+            if (ticket == null) {
+                respond(exchange, 404, error("No ticket found for vehicle number: " + vehicleRegNumber));
+            } else {
+                site.show(vehicleRegNumber + ": please pay the parking fare " + ticket.getPrice());
+                respond(exchange, 200, toJson(ticket));
+            }
+        } catch (UnknownSiteException e) {
+            respond(exchange, 404, error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Unable to process exiting vehicle", e);
+            respond(exchange, 500, error("Unable to process exiting vehicle"));
+        }
+    }
+
+    private void handleReservation(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                respond(exchange, 405, error("Use POST"));
+                return;
+            }
+            Map<String, String> parameters = readParameters(exchange);
+            Site site = getSite(parameters);
+            ReservationDAO reservationDAO = site.reservationDAO;
+            if (reservationDAO == null) {
+                respond(exchange, 404, error("No reservations for this site"));
+                return;
+            }
+            ParkingType parkingType = parseParkingType(parameters.get("type"));
+            String vehicleRegNumber = parsePlate(parameters.get("plate"));
+            Date startTime = parseTime(parameters.get("start"), "start");
+            Date endTime = parseTime(parameters.get("end"), "end");
+            if (!site.tryAcquire()) {
+                respondBusy(exchange, site);
+                return;
+            }
+            Reservation reservation;
+            try {
+                reservation = reservationDAO.reserve(parkingType, vehicleRegNumber, startTime, endTime);
+            } finally {
+                site.release();
+            }
+            if (reservation == null) {
+                respond(exchange, 409, error("No " + parkingType + " spot free for the whole period"));
+            } else {
+                respond(exchange, 201, toJson(reservation));
+            }
+        } catch (UnknownSiteException e) {
+            respond(exchange, 404, error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Unable to reserve a spot", e);
+            respond(exchange, 500, error("Unable to reserve a spot"));
+        }
+    }
+
+    private void handleDisplay(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, error("Use GET"));
+            return;
+        }
+        Site site;
+        try {
+            site = getSite(readParameters(exchange));
+        } catch (UnknownSiteException e) {
+            respond(exchange, 404, error(e.getMessage()));
+            return;
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+            return;
+        }
+        RingBufferDisplaySink kioskDisplay = site.kioskDisplay;
+        if (kioskDisplay == null) {
+            respond(exchange, 404, error("No kiosk display for this site"));
+            return;
+        }
+        StringBuilder json = new StringBuilder("{\"messages\":[");
+        for (String message : kioskDisplay.getRecentMessages()) {
+            if (json.charAt(json.length() - 1) != '[') {
+                json.append(',');
+            }
+            json.append('"').append(escape(message)).append('"');
+        }
+        respond(exchange, 200, json.append("]}").toString());
+    }
+
+    private static void respondBusy(HttpExchange exchange, Site site) throws IOException {
+        exchange.getResponseHeaders().set("Retry-After", "1");
+        respond(exchange, 503, error("Site " + site.id + " is busy, try again"));
+    }
+
+    /**
+     * @return the site of the request with its counters, after answering the request when there is none
+     */
+    private Site getOccupancySite(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, error("Use GET"));
+            return null;
+        }
+        Site site;
+        try {
+            site = getSite(readParameters(exchange));
+        } catch (UnknownSiteException e) {
+            respond(exchange, 404, error(e.getMessage()));
+            return null;
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, error(e.getMessage()));
+            return null;
+        }
+        if (site.occupancyCounters == null) {
+            respond(exchange, 404, error("No occupancy counters for site " + site.id));
+            return null;
+        }
+        return site;
+    }
+
+    private void handleOccupancy(HttpExchange exchange) throws IOException {
+        Site site = getOccupancySite(exchange);
+        if (site == null) {
+            return;
+        }
+        OccupancyCounters occupancyCounters = site.occupancyCounters;
+        StringBuilder json = new StringBuilder("{");
+        for (ParkingType parkingType : ParkingType.values()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(parkingType).append("\":{\"freeSpots\":").append(occupancyCounters.getFreeSpots(parkingType))
+                    .append(",\"activeSessions\":").append(occupancyCounters.getActiveSessions(parkingType))
+                    .append(",\"entries\":").append(occupancyCounters.getEntryCount(parkingType))
+                    .append(",\"exits\":").append(occupancyCounters.getExitCount(parkingType))
+                    .append(",\"revenue\":").append(occupancyCounters.getRevenue(parkingType)).append('}');
+        }
+        respond(exchange, 200, json.append('}').toString());
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            respond(exchange, 405, error("Use GET"));
+            return;
+        }
+        StringBuilder metrics = new StringBuilder();
+        if (hasOccupancyCounters()) {
+            appendMetric(metrics, "parkit_free_spots", "gauge", OccupancyCounters::getFreeSpots);
+            appendMetric(metrics, "parkit_active_sessions", "gauge", OccupancyCounters::getActiveSessions);
+            appendMetric(metrics, "parkit_entries_total", "counter", OccupancyCounters::getEntryCount);
+            appendMetric(metrics, "parkit_exits_total", "counter", OccupancyCounters::getExitCount);
+            appendMetric(metrics, "parkit_revenue_total", "counter", OccupancyCounters::getRevenue);
+        }
+        appendCacheMetric(metrics, "parkit_recurring_customer_cache_hits_total", "counter", RecurringCustomerCache::getHitCount);
+        appendCacheMetric(metrics, "parkit_recurring_customer_cache_misses_total", "counter", RecurringCustomerCache::getMissCount);
+        appendCacheMetric(metrics, "parkit_recurring_customer_cache_evictions_total", "counter", RecurringCustomerCache::getEvictionCount);
+        appendCacheMetric(metrics, "parkit_recurring_customer_cache_hit_ratio", "gauge", RecurringCustomerCache::getHitRate);
+        appendPoolMetric(metrics, "parkit_connection_pool_active_connections", "gauge", ConnectionPool::getActiveCount);
+        appendPoolMetric(metrics, "parkit_connection_pool_idle_connections", "gauge", ConnectionPool::getIdleCount);
+        appendPoolMetric(metrics, "parkit_connection_pool_borrows_total", "counter", ConnectionPool::getBorrowCount);
+        appendPoolMetric(metrics, "parkit_connection_pool_wait_seconds_total", "counter", pool -> pool.getTotalWaitMillis() / 1000);
+        appendPoolMetric(metrics, "parkit_connection_pool_max_wait_seconds", "gauge", pool -> pool.getMaxWaitMillis() / 1000);
+        appendPoolMetric(metrics, "parkit_connection_pool_timeouts_total", "counter", ConnectionPool::getTimeoutCount);
+        appendPoolMetric(metrics, "parkit_connection_pool_leaks_total", "counter", ConnectionPool::getLeakCount);
+        appendPoolMetric(metrics, "parkit_statement_cache_hits_total", "counter", ConnectionPool::getStatementCacheHitCount);
+        appendPoolMetric(metrics, "parkit_statement_cache_misses_total", "counter", ConnectionPool::getStatementCacheMissCount);
+        OperationMetrics.appendPrometheus(metrics);
+        respond(exchange, 200, "text/plain; version=0.0.4; charset=utf-8", metrics.toString());
+    }
+
+    private void appendMetric(StringBuilder metrics, String name, String type, BiFunction<OccupancyCounters, ParkingType, Number> value) {
+        metrics.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        for (Site site : sites.values()) {
+            if (site.occupancyCounters == null) {
+                continue;
+            }
+            for (ParkingType parkingType : ParkingType.values()) {
+                metrics.append(name).append('{');
+                if (site.id != null) {
+                    metrics.append("site=\"").append(site.id).append("\",");
+                }
+                metrics.append("type=\"").append(parkingType).append("\"} ")
+                        .append(value.apply(site.occupancyCounters, parkingType)).append('\n');
+            }
+        }
+    }
+
+    private void appendCacheMetric(StringBuilder metrics, String name, String type, Function<RecurringCustomerCache, Number> value) {
+        metrics.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        for (Site site : sites.values()) {
+            RecurringCustomerCache cache = site.recurringCustomerCache;
+            if (cache == null) {
+                continue;
+            }
+            metrics.append(name);
+            if (site.id != null) {
+                metrics.append("{site=\"").append(site.id).append("\"}");
+            }
+            metrics.append(' ').append(value.apply(cache)).append('\n');
+        }
+    }
+
+    private static void appendPoolMetric(StringBuilder metrics, String name, String type, Function<ConnectionPool, Number> value) {
+        metrics.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        for (ConnectionPool pool : DataBaseConfig.getConnectionPools()) {
+            metrics.append(name).append("{pool=\"").append(pool.getName().replace("\\", "\\\\").replace("\"", "\\\""))
+                    .append("\"} ").append(value.apply(pool)).append('\n');
+        }
+    }
+
+    /**
+     * Keep the response open and write the current occupancy to it; the publisher writes the next ones.
+     */
+    private void handleOccupancyEvents(HttpExchange exchange) throws IOException {
+        Site site = getOccupancySite(exchange);
+        if (site == null) {
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+        exchange.sendResponseHeaders(200, 0);
+        site.occupancySubscribers.add(exchange);
+        for (ParkingType parkingType : ParkingType.values()) {
+            site.sendOccupancy(exchange, parkingType, site.occupancyCounters.getFreeSpots(parkingType),
+                    site.occupancyCounters.getActiveSessions(parkingType));
+        }
+    }
+
+    private static ParkingType parseParkingType(String type) {
+        if (type == null) {
+            throw new IllegalArgumentException("Parameter type is required");
+        }
+        try {
+            return ParkingType.valueOf(type.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown parking type: " + type);
+        }
+    }
+
+    private static String parsePlate(String plate) {
+        if (plate == null || plate.trim().isEmpty()) {
+            throw new IllegalArgumentException("Parameter plate is required");
+        }
+        // as stored by the gates, so that a reservation is found at the entry
+        String vehicleRegNumber = ParkingService.normalizeVehicleRegNumber(plate);
+        if (vehicleRegNumber == null) {
+            throw new IllegalArgumentException("Vehicle registration number must have 1 to "
+                    + DBConstants.MAX_VEHICLE_REG_NUMBER_LENGTH + " letters or digits");
+        }
+        return vehicleRegNumber;
+    }
+
+    /**
+     * @param time an ISO local date-time such as 2024-01-10T14:00, in the time zone of the server
+     */
+    private static Date parseTime(String time, String name) {
+        if (time == null || time.trim().isEmpty()) {
+            throw new IllegalArgumentException("Parameter " + name + " is required");
+        }
+        try {
+            return Date.from(LocalDateTime.parse(time.trim()).atZone(ZoneId.systemDefault()).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid " + name + " time: " + time);
+        }
+    }
+
+    private static Map<String, String> readParameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), parameters);
+        try (InputStream body = exchange.getRequestBody()) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            byte[] buffer = new byte[512];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                content.write(buffer, 0, read);
+            }
+            parseForm(new String(content.toByteArray(), StandardCharsets.UTF_8), parameters);
+        }
+        return parameters;
+    }
+
+    private static void parseForm(String form, Map<String, String> parameters) throws IOException {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                parameters.put(URLDecoder.decode(pair.substring(0, equals), "UTF-8"),
+                        URLDecoder.decode(pair.substring(equals + 1), "UTF-8"));
+            }
+        }
+    }
+
+    private static String toJson(Ticket ticket) {
+        return "{\"id\":" + ticket.getId()
+                + ",\"vehicleRegNumber\":\"" + escape(ticket.getVehicleRegNumber()) + "\""
+                + ",\"parkingNumber\":" + ticket.getParkingSpot().getId()
+                + ",\"parkingType\":\"" + ticket.getParkingSpot().getParkingType() + "\""
+                + ",\"inTime\":" + ticket.getInTime().getTime()
+                + ",\"outTime\":" + (ticket.getOutTime() == null ? "null" : String.valueOf(ticket.getOutTime().getTime()))
+                + ",\"price\":" + ticket.getPrice()
+                + ",\"regularCustomer\":" + ticket.isRegularCustomer()
+                + (ticket.getSiteId() == null ? "" : ",\"site\":\"" + escape(ticket.getSiteId()) + "\"") + "}";
+    }
+
+    private static String toJson(Reservation reservation) {
+        return "{\"id\":" + reservation.getId()
+                + ",\"vehicleRegNumber\":\"" + escape(reservation.getVehicleRegNumber()) + "\""
+                + ",\"parkingNumber\":" + reservation.getParkingSpot().getId()
+                + ",\"parkingType\":\"" + reservation.getParkingSpot().getParkingType() + "\""
+                + ",\"startTime\":" + reservation.getStartTime().getTime()
+                + ",\"endTime\":" + reservation.getEndTime().getTime() + "}";
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + escape(message) + "\"}";
+    }
+
+    private static String escape(String value) {
+        StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                escaped.append('\\').append(c);
+            } else if (c < 0x20) {
+                escaped.append(String.format("\\u%04x", (int) c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        respond(exchange, status, "application/json; charset=utf-8", json);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String content) throws IOException {
+        byte[] body = content.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static class UnknownSiteException extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        UnknownSiteException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The service, counters and occupancy subscribers of a site, and the workers it may take.
+     */
+    private static class Site {
+        final String id;
+        final ParkingService parkingService;
+        final OccupancyCounters occupancyCounters;
+        final List<HttpExchange> occupancySubscribers = new CopyOnWriteArrayList<>();
+        final OccupancyListener occupancyPublisher = this::publishOccupancy;
+        // null when the site takes no reservations
+        volatile ReservationDAO reservationDAO;
+        // null when the site caches no ticket counts
+        volatile RecurringCustomerCache recurringCustomerCache;
+        // null when the site has no kiosk screen
+        volatile RingBufferDisplaySink kioskDisplay;
+        // null when the site may take every worker
+        final Semaphore workers;
+
+        Site(String id, ParkingService parkingService, int maxConcurrentRequests) {
+            this.id = id;
+            this.parkingService = parkingService;
+            this.occupancyCounters = parkingService.getOccupancyCounters();
+            this.workers = maxConcurrentRequests > 0 ? new Semaphore(maxConcurrentRequests) : null;
+        }
+
+        boolean tryAcquire() {
+            return workers == null || workers.tryAcquire();
+        }
+
+        void release() {
+            if (workers != null) {
+                workers.release();
+            }
+        }
+
+        void show(String message) {
+            RingBufferDisplaySink display = kioskDisplay;
+            if (display != null) {
+                display.show(message);
+            }
+        }
+
+        private void publishOccupancy(ParkingType parkingType, long freeSpots, long activeSessions) {
+            for (HttpExchange subscriber : occupancySubscribers) {
+                sendOccupancy(subscriber, parkingType, freeSpots, activeSessions);
+            }
+        }
+
+        void sendOccupancy(HttpExchange subscriber, ParkingType parkingType, long freeSpots, long activeSessions) {
+            byte[] event = ("event: occupancy\ndata: {\"parkingType\":\"" + parkingType + "\",\"freeSpots\":" + freeSpots
+                    + ",\"activeSessions\":" + activeSessions + "}\n\n").getBytes(StandardCharsets.UTF_8);
+            synchronized (subscriber) {
+                try {
+                    subscriber.getResponseBody().write(event);
+                    subscriber.getResponseBody().flush();
+                } catch (IOException e) {
+                    // the sign went away
+                    occupancySubscribers.remove(subscriber);
+                    subscriber.close();
+                }
+            }
+        }
+    }
+}
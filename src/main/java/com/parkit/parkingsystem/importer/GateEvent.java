@@ -0,0 +1,71 @@
+package com.parkit.parkingsystem.importer;
+
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.ParkingService;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A line of a gate event file: a vehicle entering or leaving a spot at some time. Lines are
+ * {@code time,ENTRY|EXIT,vehicle registration number,parking number,parking type}, the time being an ISO local
+ * date-time such as {@code 2024-01-10T08:00:00}; blank lines and lines starting with {@code #} are ignored.
+ * Plates are normalized as stored by the gates.
+ */
+public final class GateEvent {
+
+    public static final String ENTRY = "ENTRY";
+    public static final String EXIT = "EXIT";
+
+    public final long time;
+    public final boolean entry;
+    public final String vehicleRegNumber;
+    public final int parkingNumber;
+    public final ParkingType parkingType;
+
+    public GateEvent(long time, boolean entry, String vehicleRegNumber, int parkingNumber, ParkingType parkingType) {
+        this.time = time;
+        this.entry = entry;
+        this.vehicleRegNumber = vehicleRegNumber;
+        this.parkingNumber = parkingNumber;
+        this.parkingType = parkingType;
+    }
+
+    /**
+     * @return the event of this line, or null for a blank or comment line
+     * @throws IllegalArgumentException when the line is not a gate event
+     */
+    public static GateEvent parse(String line, ZoneId zone) {
+        String trimmed = line.trim();
+        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+            return null;
+        }
+        String[] fields = trimmed.split(",");
+        if (fields.length != 5) {
+            throw new IllegalArgumentException("Expected 5 fields: " + line);
+        }
+        String event = fields[1].trim();
+        if (!ENTRY.equals(event) && !EXIT.equals(event)) {
+            throw new IllegalArgumentException("Unknown gate event " + event + ": " + line);
+        }
+        if (fields[2].trim().isEmpty()) {
+            throw new IllegalArgumentException("Missing vehicle registration number: " + line);
+        }
+        // as stored by the gates, so that a vehicle still parked is found at the exit
+        String vehicleRegNumber = ParkingService.normalizeVehicleRegNumber(fields[2]);
+        if (vehicleRegNumber == null) {
+            // rejected here rather than failing the whole insert of its batch
+            throw new IllegalArgumentException("Vehicle registration number must have 1 to "
+                    + DBConstants.MAX_VEHICLE_REG_NUMBER_LENGTH + " letters or digits: " + line);
+        }
+        try {
+            long time = LocalDateTime.parse(fields[0].trim()).atZone(zone).toInstant().toEpochMilli();
+            return new GateEvent(time, ENTRY.equals(event), vehicleRegNumber, Integer.parseInt(fields[3].trim()),
+                    ParkingType.valueOf(fields[4].trim()));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time: " + line, e);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.parkit.parkingsystem.importer;
+
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.service.ParkingSystem;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Capacity test: replays a file of {@link GateEvent}s through {@link ParkingService} as fast as it answers,
+ * on several gates at once. Events of a plate always go to the same gate, in the order of the file; spots and
+ * times are the ones the service gives now, not the recorded ones. Entries refused because the lot is full and
+ * exits of vehicles that never got in are counted as rejected.
+ * <pre>
+ * java -cp parking-system.jar com.parkit.parkingsystem.importer.GateEventReplayer events.csv [gates]
+ * </pre>
+ */
+public class GateEventReplayer {
+
+    private static final Logger logger = LogManager.getLogger("GateEventReplayer");
+
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final GateEvent END = new GateEvent(0, false, "", 0, null);
+
+    private final ParkingService parkingService;
+    private final int gates;
+
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public GateEventReplayer(ParkingService parkingService, int gates) {
+        this.parkingService = parkingService;
+        this.gates = gates;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: GateEventReplayer <gate event file> [gates]");
+            System.exit(1);
+        }
+        int gates = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        ParkingSystem parkingSystem = new ParkingSystem(new InputReaderUtil());
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            System.out.println(new GateEventReplayer(parkingSystem.getParkingService(), gates).replay(reader));
+        } finally {
+            parkingSystem.shutdown();
+        }
+    }
+
+    public synchronized ImportResult replay(BufferedReader reader) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        processed.reset();
+        rejected.reset();
+        List<BlockingQueue<GateEvent>> queues = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < gates; i++) {
+            BlockingQueue<GateEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            Thread thread = new Thread(() -> runGate(queue), "replay-gate-" + i);
+            queues.add(queue);
+            threads.add(thread);
+            thread.start();
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        long events = 0;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                GateEvent event;
+                try {
+                    event = GateEvent.parse(line, zone);
+                } catch (IllegalArgumentException e) {
+                    rejected.increment();
+                    continue;
+                }
+                if (event != null) {
+                    events++;
+                    queues.get(Math.floorMod(event.vehicleRegNumber.hashCode(), gates)).put(event);
+                }
+            }
+        } finally {
+            for (BlockingQueue<GateEvent> queue : queues) {
+                queue.put(END);
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        ImportResult result = new ImportResult(events, processed.sum(), rejected.sum(), System.nanoTime() - start);
+        logger.info("Replay done: " + result);
+        return result;
+    }
+
+    private void runGate(BlockingQueue<GateEvent> queue) {
+        try {
+            for (GateEvent event = queue.take(); event != END; event = queue.take()) {
+                try {
+                    Ticket ticket = event.entry
+                            ? parkingService.processIncomingVehicle(event.parkingType, event.vehicleRegNumber)
+                            : parkingService.processExitingVehicle(event.vehicleRegNumber);
+                    if (ticket == null) {
+                        rejected.increment();
+                    } else {
+                        processed.increment();
+                    }
+                } catch (Exception e) {
+                    rejected.increment();
+                    logger.error("Unable to replay the event of " + event.vehicleRegNumber, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
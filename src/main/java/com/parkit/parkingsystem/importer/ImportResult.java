@@ -0,0 +1,54 @@
+package com.parkit.parkingsystem.importer;
+
+/**
+ * Counts of an import or a replay of gate events, and its throughput.
+ */
+public class ImportResult {
+
+    private final long events;
+    private final long rows;
+    private final long rejected;
+    private final long elapsedNanos;
+
+    public ImportResult(long events, long rows, long rejected, long elapsedNanos) {
+        this.events = events;
+        this.rows = rows;
+        this.rejected = rejected;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return the number of gate events read
+     */
+    public long getEvents() {
+        return events;
+    }
+
+    /**
+     * @return the number of tickets written by an import, or of events processed by a replay
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    /**
+     * @return the number of events left out: malformed, unknown spot, exit without entry, lot full...
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d events, %d rows, %d rejected in %.1f s: %.0f rows/s",
+                events, rows, rejected, elapsedNanos / 1e9, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,343 @@
+package com.parkit.parkingsystem.importer;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Loads the history of a site from a file of {@link GateEvent}s, e.g. when it starts using the application.
+ * Entries and exits are paired by plate; the closed tickets are priced in parallel on a fork/join pool, with the
+ * loyalty tier given by the earlier tickets of the plate in the file, while the previous batch is written with
+ * multi-row inserts, one transaction per batch. Vehicles still parked at the end of the file get an open ticket
+ * and their spot is marked taken, unless the spot is already taken in the database, the other spots being left
+ * as they are. The file is streamed: memory holds two batches, the open tickets and a visit count per plate.
+ * <pre>
+ * java -cp parking-system.jar com.parkit.parkingsystem.importer.TicketImporter events.csv
+ * </pre>
+ */
+public class TicketImporter {
+
+    private static final Logger logger = LogManager.getLogger("TicketImporter");
+
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    static final int ROWS_PER_INSERT = 100;
+    private static final int SEQUENTIAL_THRESHOLD = 256;
+    private static final int MAX_LOGGED_REJECTIONS = 10;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final FareCalculatorService fareCalculatorService;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    private long rejected;
+
+    public TicketImporter(DataBaseConfig dataBaseConfig, FareCalculatorService fareCalculatorService, ForkJoinPool pool, int batchSize) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.fareCalculatorService = fareCalculatorService;
+        this.pool = pool;
+        this.batchSize = batchSize;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length != 1) {
+            System.err.println("Usage: TicketImporter <gate event file>");
+            System.exit(1);
+        }
+        TicketImporter importer = new TicketImporter(DataBaseConfig.fromSystemProperties(), new FareCalculatorService(),
+                ForkJoinPool.commonPool(), DEFAULT_BATCH_SIZE);
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            System.out.println(importer.importEvents(reader));
+        } finally {
+            DataBaseConfig.shutdownPools();
+        }
+    }
+
+    /**
+     * Write the tickets of these events. Batches already written stay in the database if a later one fails.
+     */
+    public synchronized ImportResult importEvents(BufferedReader reader) throws IOException, ClassNotFoundException, SQLException {
+        long start = System.nanoTime();
+        ZoneId zone = ZoneId.systemDefault();
+        // whether each spot of the lot is available in the database
+        Map<Integer, Boolean> parkingSpots = getParkingSpots();
+        Map<String, Ticket> openTickets = new LinkedHashMap<>();
+        Map<String, Integer> visits = new HashMap<>();
+        rejected = 0;
+        long events = 0;
+        long rows = 0;
+        Batch batch = new Batch(batchSize);
+        Batch pricedBatch = null;
+        ForkJoinTask<Void> pricing = null;
+        String line;
+        int lineNumber = 0;
+        try {
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                GateEvent event;
+                try {
+                    event = GateEvent.parse(line, zone);
+                } catch (IllegalArgumentException e) {
+                    reject(lineNumber, e.getMessage());
+                    continue;
+                }
+                if (event == null) {
+                    continue;
+                }
+                events++;
+                if (!parkingSpots.containsKey(event.parkingNumber)) {
+                    reject(lineNumber, "unknown parking number " + event.parkingNumber);
+                } else if (event.entry) {
+                    if (openTickets.containsKey(event.vehicleRegNumber)) {
+                        reject(lineNumber, event.vehicleRegNumber + " is already parked");
+                        continue;
+                    }
+                    Ticket ticket = new Ticket();
+                    ticket.setParkingSpot(new ParkingSpot(event.parkingNumber, event.parkingType, false));
+                    ticket.setVehicleRegNumber(event.vehicleRegNumber);
+                    ticket.setInTime(new Date(event.time));
+                    openTickets.put(event.vehicleRegNumber, ticket);
+                } else {
+                    Ticket ticket = openTickets.remove(event.vehicleRegNumber);
+                    if (ticket == null || event.time < ticket.getInTime().getTime()) {
+                        reject(lineNumber, "no entry of " + event.vehicleRegNumber + " before this exit");
+                        continue;
+                    }
+                    ticket.setOutTime(new Date(event.time));
+                    batch.add(ticket, visits.merge(event.vehicleRegNumber, 1, Integer::sum) - 1);
+                    if (batch.size == batchSize) {
+                        // price this batch while the previous one is written
+                        ForkJoinTask<Void> nextPricing = pool.submit(new PriceTask(batch, 0, batch.size));
+                        if (pricing != null) {
+                            pricing.join();
+                            rows += write(pricedBatch);
+                        }
+                        pricing = nextPricing;
+                        pricedBatch = batch;
+                        batch = new Batch(batchSize);
+                    }
+                }
+            }
+            if (pricing != null) {
+                pricing.join();
+                rows += write(pricedBatch);
+                pricing = null;
+            }
+            pool.invoke(new PriceTask(batch, 0, batch.size));
+            rows += write(batch);
+            List<Ticket> stillParked = new ArrayList<>();
+            for (Ticket ticket : openTickets.values()) {
+                int parkingNumber = ticket.getParkingSpot().getId();
+                if (parkingSpots.put(parkingNumber, false)) {
+                    stillParked.add(ticket);
+                } else {
+                    // a vehicle already parked there, or another vehicle of the file still parked at the end
+                    reject(ticket.getVehicleRegNumber() + " still parked on spot " + parkingNumber + ", which is already taken");
+                }
+            }
+            rows += writeOpenTickets(stillParked);
+            updateParking(stillParked);
+        } finally {
+            if (pricing != null) {
+                pricing.cancel(false);
+            }
+        }
+        ImportResult result = new ImportResult(events, rows, rejected, System.nanoTime() - start);
+        logger.info("Import done: " + result);
+        return result;
+    }
+
+    private void reject(int lineNumber, String reason) {
+        reject("Line " + lineNumber + " rejected: " + reason);
+    }
+
+    private void reject(String reason) {
+        if (++rejected <= MAX_LOGGED_REJECTIONS) {
+            logger.warn(reason);
+        }
+    }
+
+    private Map<Integer, Boolean> getParkingSpots() throws ClassNotFoundException, SQLException {
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.GET_PARKING_SPOTS);
+            rs = ps.executeQuery();
+            Map<Integer, Boolean> parkingSpots = new HashMap<>();
+            while (rs.next()) {
+                parkingSpots.put(rs.getInt(1), rs.getBoolean(2));
+            }
+            return parkingSpots;
+        } finally {
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private int writeOpenTickets(List<Ticket> tickets) throws ClassNotFoundException, SQLException {
+        int rows = 0;
+        for (int from = 0; from < tickets.size(); from += batchSize) {
+            Batch batch = new Batch(batchSize);
+            for (Ticket ticket : tickets.subList(from, Math.min(tickets.size(), from + batchSize))) {
+                batch.add(ticket, 0);
+            }
+            rows += write(batch);
+        }
+        return rows;
+    }
+
+    /**
+     * Insert the tickets of a batch in one transaction, {@value #ROWS_PER_INSERT} rows per statement.
+     */
+    private int write(Batch batch) throws ClassNotFoundException, SQLException {
+        if (batch.size == 0) {
+            return 0;
+        }
+        Connection con = null;
+        PreparedStatement insert = null;
+        PreparedStatement insertRest = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            con.setAutoCommit(false);
+            int fullInserts = batch.size / ROWS_PER_INSERT;
+            if (fullInserts > 0) {
+                insert = con.prepareStatement(insertStatement(ROWS_PER_INSERT));
+                for (int i = 0; i < fullInserts; i++) {
+                    setRows(insert, batch, i * ROWS_PER_INSERT, (i + 1) * ROWS_PER_INSERT);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            int rest = batch.size % ROWS_PER_INSERT;
+            if (rest > 0) {
+                insertRest = con.prepareStatement(insertStatement(rest));
+                setRows(insertRest, batch, batch.size - rest, batch.size);
+                insertRest.executeUpdate();
+            }
+            con.commit();
+            return batch.size;
+        } catch (SQLException | RuntimeException e) {
+            dataBaseConfig.rollback(con);
+            throw e;
+        } finally {
+            dataBaseConfig.closePreparedStatement(insert);
+            dataBaseConfig.closePreparedStatement(insertRest);
+            dataBaseConfig.restoreAutoCommit(con);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    static String insertStatement(int rows) {
+        return DBConstants.SAVE_TICKETS + String.join(",", Collections.nCopies(rows, DBConstants.SAVE_TICKETS_ROW));
+    }
+
+    private static void setRows(PreparedStatement ps, Batch batch, int from, int to) throws SQLException {
+        int parameter = 1;
+        for (int i = from; i < to; i++) {
+            Ticket ticket = batch.tickets[i];
+            ps.setInt(parameter++, ticket.getParkingSpot().getId());
+            ps.setString(parameter++, ticket.getVehicleRegNumber());
+            ps.setDouble(parameter++, ticket.getPrice());
+            ps.setTimestamp(parameter++, new Timestamp(ticket.getInTime().getTime()));
+            ps.setTimestamp(parameter++, ticket.getOutTime() == null ? null : new Timestamp(ticket.getOutTime().getTime()));
+        }
+    }
+
+    /**
+     * Mark the spots of the open tickets taken; the spots of the tickets already in the database are left as they are.
+     */
+    private void updateParking(List<Ticket> openTickets) throws ClassNotFoundException, SQLException {
+        if (openTickets.isEmpty()) {
+            return;
+        }
+        Connection con = null;
+        PreparedStatement ps = null;
+        try {
+            con = dataBaseConfig.getConnection();
+            ps = con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT);
+            for (Ticket ticket : openTickets) {
+                ps.setBoolean(1, false);
+                ps.setInt(2, ticket.getParkingSpot().getId());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } finally {
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Tickets to insert, with the number of earlier tickets of their plate.
+     */
+    private static class Batch {
+        final Ticket[] tickets;
+        final int[] previousVisits;
+        int size;
+
+        Batch(int capacity) {
+            tickets = new Ticket[capacity];
+            previousVisits = new int[capacity];
+        }
+
+        void add(Ticket ticket, int visits) {
+            tickets[size] = ticket;
+            previousVisits[size] = visits;
+            size++;
+        }
+    }
+
+    private class PriceTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Batch batch;
+        private final int from;
+        private final int to;
+
+        PriceTask(Batch batch, int from, int to) {
+            this.batch = batch;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SEQUENTIAL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PriceTask(batch, from, middle), new PriceTask(batch, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                fareCalculatorService.calculateFare(batch.tickets[i], batch.previousVisits[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Registration of the MBeans of objects that come and go with a site or a database, under
+ * {@value OperationMetrics#JMX_DOMAIN}. A failed registration is logged, never thrown: JMX is for monitoring only.
+ */
+public final class MBeans {
+
+    private static final Logger logger = LogManager.getLogger("MBeans");
+
+    private MBeans() {
+    }
+
+    /**
+     * @param name the name of the object, quoted so that it may be a url
+     * @return the name it is registered under, or null when it could not be registered
+     */
+    public static ObjectName register(Object mbean, String type, String name) {
+        try {
+            ObjectName objectName = new ObjectName(OperationMetrics.JMX_DOMAIN + ":type=" + type + ",name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(mbean, objectName);
+            return objectName;
+        } catch (JMException e) {
+            logger.warn("Unable to register the " + type + " " + name + " with JMX", e);
+            return null;
+        }
+    }
+
+    public static void unregister(ObjectName objectName) {
+        if (objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.warn("Unable to unregister " + objectName + " from JMX", e);
+        }
+    }
+}
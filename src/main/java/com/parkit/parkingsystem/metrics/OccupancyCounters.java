@@ -0,0 +1,144 @@
+package com.parkit.parkingsystem.metrics;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareEngine;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live free spots, active sessions and revenue per parking type, updated by the gates on every entry and exit.
+ * The counters are striped, so gates never contend on them, and they are read without querying the database.
+ * Listeners are pushed the new occupancy of a type from a single publisher thread, at most once per period.
+ */
+public class OccupancyCounters {
+
+    private static final Logger logger = LogManager.getLogger("OccupancyCounters");
+
+    public static final long DEFAULT_PUBLISH_PERIOD_MILLIS = 200;
+
+    private final LongAdder[] freeSpots = newAdders();
+    private final LongAdder[] activeSessions = newAdders();
+    private final LongAdder[] entries = newAdders();
+    private final LongAdder[] exits = newAdders();
+    private final LongAdder[] revenueUnits = newAdders();
+    private final List<OccupancyListener> listeners = new CopyOnWriteArrayList<>();
+
+    private ScheduledExecutorService publisher;
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[ParkingType.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Start from the spots of the lot; to call before the gates open.
+     */
+    public void initialize(ParkingType parkingType, long freeSpotCount, long activeSessionCount) {
+        freeSpots[parkingType.ordinal()].reset();
+        freeSpots[parkingType.ordinal()].add(freeSpotCount);
+        activeSessions[parkingType.ordinal()].reset();
+        activeSessions[parkingType.ordinal()].add(activeSessionCount);
+    }
+
+    public void vehicleParked(ParkingType parkingType) {
+        int type = parkingType.ordinal();
+        freeSpots[type].decrement();
+        activeSessions[type].increment();
+        entries[type].increment();
+    }
+
+    public void vehicleLeft(ParkingType parkingType, double price) {
+        int type = parkingType.ordinal();
+        freeSpots[type].increment();
+        activeSessions[type].decrement();
+        exits[type].increment();
+        revenueUnits[type].add(FareEngine.toPriceUnits(price));
+    }
+
+    public long getFreeSpots(ParkingType parkingType) {
+        return freeSpots[parkingType.ordinal()].sum();
+    }
+
+    public long getActiveSessions(ParkingType parkingType) {
+        return activeSessions[parkingType.ordinal()].sum();
+    }
+
+    public long getEntryCount(ParkingType parkingType) {
+        return entries[parkingType.ordinal()].sum();
+    }
+
+    public long getExitCount(ParkingType parkingType) {
+        return exits[parkingType.ordinal()].sum();
+    }
+
+    /**
+     * @return the price of the tickets closed since the start
+     */
+    public double getRevenue(ParkingType parkingType) {
+        return FareEngine.toPrice(revenueUnits[parkingType.ordinal()].sum());
+    }
+
+    public void addListener(OccupancyListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OccupancyListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Push the occupancy of every type to the listeners now, then every period when it has changed.
+     */
+    public synchronized void startPublishing(long periodMillis) {
+        if (publisher != null) {
+            return;
+        }
+        publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occupancy-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long[] published = new long[ParkingType.values().length * 2];
+        boolean[] first = {true};
+        publisher.scheduleAtFixedRate(() -> {
+            for (ParkingType parkingType : ParkingType.values()) {
+                long free = getFreeSpots(parkingType);
+                long active = getActiveSessions(parkingType);
+                int slot = parkingType.ordinal() * 2;
+                if (first[0] || published[slot] != free || published[slot + 1] != active) {
+                    published[slot] = free;
+                    published[slot + 1] = active;
+                    publish(parkingType, free, active);
+                }
+            }
+            first[0] = false;
+        }, 0, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void publish(ParkingType parkingType, long free, long active) {
+        for (OccupancyListener listener : listeners) {
+            try {
+                listener.occupancyChanged(parkingType, free, active);
+            } catch (RuntimeException e) {
+                logger.error("Occupancy listener failed", e);
+            }
+        }
+    }
+
+    public synchronized void shutdown() {
+        if (publisher != null) {
+            publisher.shutdownNow();
+            publisher = null;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.parkit.parkingsystem.metrics;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Told when the occupancy of a parking type has changed, e.g. to refresh a "spots left" sign.
+ */
+public interface OccupancyListener {
+
+    void occupancyChanged(ParkingType parkingType, long freeSpots, long activeSessions);
+}
@@ -0,0 +1,147 @@
+package com.parkit.parkingsystem.metrics;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram and error count of one operation of the gate path. Operations are created once per name
+ * and kept for the life of the JVM; each is registered as an MBean under {@value #JMX_DOMAIN}:type=Operation.
+ * <pre>
+ * long start = System.nanoTime();
+ * try {
+ *     ...
+ * } catch (Exception e) {
+ *     metrics.error();
+ * } finally {
+ *     metrics.recordSince(start);
+ * }
+ * </pre>
+ */
+public class OperationMetrics implements OperationMetricsMBean {
+
+    private static final Logger logger = LogManager.getLogger("OperationMetrics");
+
+    public static final String JMX_DOMAIN = "com.parkit.parkingsystem";
+
+    private static final Map<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    private OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return the metrics of this operation, created and registered with JMX on first use
+     */
+    public static OperationMetrics forOperation(String name) {
+        return operations.computeIfAbsent(name, operationName -> {
+            OperationMetrics metrics = new OperationMetrics(operationName);
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(metrics,
+                        new ObjectName(JMX_DOMAIN + ":type=Operation,name=" + operationName));
+            } catch (JMException e) {
+                logger.warn("Unable to register the metrics of " + operationName + " with JMX", e);
+            }
+            return metrics;
+        });
+    }
+
+    /**
+     * @return every operation, by name
+     */
+    public static List<OperationMetrics> getOperations() {
+        List<OperationMetrics> all = new ArrayList<>(operations.values());
+        all.sort(Comparator.comparing(OperationMetrics::getName));
+        return all;
+    }
+
+    public void recordSince(long startNanos) {
+        histogram.record(System.nanoTime() - startNanos);
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getCount() {
+        return histogram.getCount();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getMeanMillis() {
+        return histogram.getMeanNanos() / 1e6;
+    }
+
+    @Override
+    public double getMedianMillis() {
+        return histogram.getValueAtPercentile(50) / 1e6;
+    }
+
+    @Override
+    public double get99thPercentileMillis() {
+        return histogram.getValueAtPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double get999thPercentileMillis() {
+        return histogram.getValueAtPercentile(99.9) / 1e6;
+    }
+
+    @Override
+    public double getMaxMillis() {
+        return histogram.getMaxNanos() / 1e6;
+    }
+
+    /**
+     * Append every operation in the Prometheus text format: a latency summary in seconds and an error counter.
+     */
+    public static void appendPrometheus(StringBuilder metrics) {
+        List<OperationMetrics> all = getOperations();
+        metrics.append("# TYPE parkit_operation_duration_seconds summary\n");
+        for (OperationMetrics operation : all) {
+            LatencyHistogram histogram = operation.histogram;
+            for (double quantile : new double[]{0.5, 0.9, 0.99, 0.999}) {
+                metrics.append("parkit_operation_duration_seconds{operation=\"").append(operation.name)
+                        .append("\",quantile=\"").append(quantile).append("\"} ")
+                        .append(histogram.getValueAtPercentile(quantile * 100) / 1e9).append('\n');
+            }
+            metrics.append("parkit_operation_duration_seconds_sum{operation=\"").append(operation.name).append("\"} ")
+                    .append(histogram.getTotalNanos() / 1e9).append('\n');
+            metrics.append("parkit_operation_duration_seconds_count{operation=\"").append(operation.name).append("\"} ")
+                    .append(histogram.getCount()).append('\n');
+        }
+        metrics.append("# TYPE parkit_operation_errors_total counter\n");
+        for (OperationMetrics operation : all) {
+            metrics.append("parkit_operation_errors_total{operation=\"").append(operation.name).append("\"} ")
+                    .append(operation.getErrorCount()).append('\n');
+        }
+    }
+}
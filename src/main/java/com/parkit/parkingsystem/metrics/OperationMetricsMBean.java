@@ -0,0 +1,23 @@
+package com.parkit.parkingsystem.metrics;
+
+/**
+ * JMX view of an {@link OperationMetrics}, durations in milliseconds.
+ */
+public interface OperationMetricsMBean {
+
+    String getName();
+
+    long getCount();
+
+    long getErrorCount();
+
+    double getMeanMillis();
+
+    double getMedianMillis();
+
+    double get99thPercentileMillis();
+
+    double get999thPercentileMillis();
+
+    double getMaxMillis();
+}
@@ -2,9 +2,13 @@ package com.parkit.parkingsystem.model;
 
 import com.parkit.parkingsystem.constants.ParkingType;
 
+/**
+ * A parking spot as seen by one gate event: its number and type never change, its availability is the
+ * state this event wants to write.
+ */
 public class ParkingSpot {
-    private int number;
-    private ParkingType parkingType;
+    private final int number;
+    private final ParkingType parkingType;
     private boolean isAvailable;
 
     public ParkingSpot(int number, ParkingType parkingType, boolean isAvailable) {
@@ -17,18 +21,10 @@ public class ParkingSpot {
         return number;
     }
 
-    public void setId(int number) {
-        this.number = number;
-    }
-
     public ParkingType getParkingType() {
         return parkingType;
     }
 
-    public void setParkingType(ParkingType parkingType) {
-        this.parkingType = parkingType;
-    }
-
     public boolean isAvailable() {
         return isAvailable;
     }
@@ -0,0 +1,57 @@
+package com.parkit.parkingsystem.model;
+import java.util.Date;
+
+/**
+ * A spot booked in advance for a vehicle, from its start time to its end time.
+ */
+public class Reservation {
+    private int id;
+    private ParkingSpot parkingSpot;
+    private String vehicleRegNumber;
+    private Date startTime;
+    private Date endTime;
+
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public ParkingSpot getParkingSpot() {
+        return parkingSpot;
+    }
+
+    public void setParkingSpot(ParkingSpot parkingSpot) {
+        this.parkingSpot = parkingSpot;
+    }
+
+    public String getVehicleRegNumber() {
+        return vehicleRegNumber;
+    }
+
+    public void setVehicleRegNumber(String vehicleRegNumber) {
+        this.vehicleRegNumber = vehicleRegNumber;
+    }
+
+    public Date getStartTime() {
+        return copy(startTime);
+    }
+
+    public void setStartTime(Date startTime) {
+        this.startTime = copy(startTime);
+    }
+
+    public Date getEndTime() {
+        return copy(endTime);
+    }
+
+    public void setEndTime(Date endTime) {
+        this.endTime = copy(endTime);
+    }
+
+    private static Date copy(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+}
@@ -1,14 +1,20 @@
 package com.parkit.parkingsystem.model;
 import java.util.Date;
 
+/**
+ * A parking session. Tickets are not shared between threads: each gate event reads or builds its own instance,
+ * and dates are copied in and out so callers cannot change them behind the ticket.
+ */
 public class Ticket {
     private int id;
     private ParkingSpot parkingSpot;
-    public static String vehicleRegNumber;
+    private String vehicleRegNumber;
     private double price;
     private Date inTime;
     private Date outTime;
     private boolean regularCustomer;
+    private int previousVisits;
+    private String siteId;
 
     public int getId() {
         return id;
@@ -43,18 +49,52 @@ public class Ticket {
     }
 
     public Date getInTime() {
-        return inTime;
+        return copy(inTime);
     }
 
     public void setInTime(Date inTime) {
-        this.inTime = inTime;
+        this.inTime = copy(inTime);
     }
 
     public Date getOutTime() {
-        return outTime;
+        return copy(outTime);
     }
 
     public void setOutTime(Date outTime) {
-        this.outTime = outTime;
+        this.outTime = copy(outTime);
+    }
+
+    private static Date copy(Date date) {
+        return date == null ? null : new Date(date.getTime());
+    }
+
+    public boolean isRegularCustomer() {
+        return regularCustomer;
+    }
+
+    public void setRegularCustomer(boolean regularCustomer) {
+        this.regularCustomer = regularCustomer;
+    }
+
+    /**
+     * @return the number of tickets of the vehicle before this one, counted when the vehicle entered or left
+     */
+    public int getPreviousVisits() {
+        return previousVisits;
+    }
+
+    public void setPreviousVisits(int previousVisits) {
+        this.previousVisits = previousVisits;
+    }
+
+    /**
+     * @return the site of a multi-site deployment where this session takes place, null with a single site
+     */
+    public String getSiteId() {
+        return siteId;
+    }
+
+    public void setSiteId(String siteId) {
+        this.siteId = siteId;
     }
 }
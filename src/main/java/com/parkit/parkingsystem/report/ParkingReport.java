@@ -0,0 +1,185 @@
+package com.parkit.parkingsystem.report;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareEngine;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Date;
+
+/**
+ * Occupancy, revenue, stays and entries by hour of the day over a period, aggregated from tickets one at a
+ * time. Its size depends on the period and the bucket length only, and two reports of the same period can be
+ * merged, so that parts of the ticket history can be aggregated in parallel.
+ */
+public class ParkingReport {
+
+    private static final long HOUR_MILLIS = 60 * 60 * 1000;
+
+    private final long from;
+    private final long to;
+    private final long bucketMillis;
+    private final ZoneRules zoneRules;
+
+    // vehicles entering minus vehicles gone, per bucket: the occupancy is the running sum
+    private final long[] occupancyChanges;
+    private final long[] entries = new long[ParkingType.values().length];
+    private final long[] exits = new long[ParkingType.values().length];
+    private final long[] revenueUnits = new long[ParkingType.values().length];
+    private final long[] stayMillis = new long[ParkingType.values().length];
+    private final long[] entriesPerHour = new long[24];
+
+    /**
+     * @param from start of the period, included
+     * @param to end of the period, excluded
+     * @param bucketMillis length of the occupancy buckets
+     */
+    public ParkingReport(long from, long to, long bucketMillis, ZoneId zone) {
+        if (to <= from || bucketMillis <= 0) {
+            throw new IllegalArgumentException("Invalid report period");
+        }
+        this.from = from;
+        this.to = to;
+        this.bucketMillis = bucketMillis;
+        this.zoneRules = zone.getRules();
+        this.occupancyChanges = new long[(int) ((to - from + bucketMillis - 1) / bucketMillis)];
+    }
+
+    /**
+     * Count a ticket of the period.
+     * @param outTime 0 for a vehicle still parked
+     */
+    public void add(ParkingType parkingType, long inTime, long outTime, long priceUnits) {
+        if (inTime >= to || (outTime != 0 && outTime < from)) {
+            return;
+        }
+        int type = parkingType.ordinal();
+        int firstBucket = inTime < from ? 0 : (int) ((inTime - from) / bucketMillis);
+        occupancyChanges[firstBucket]++;
+        if (outTime != 0 && outTime < to) {
+            int lastBucket = (int) ((outTime - from) / bucketMillis);
+            if (lastBucket + 1 < occupancyChanges.length) {
+                occupancyChanges[lastBucket + 1]--;
+            }
+            exits[type]++;
+            revenueUnits[type] += priceUnits;
+            stayMillis[type] += outTime - inTime;
+        }
+        if (inTime >= from) {
+            entries[type]++;
+            long localTime = inTime + zoneRules.getOffset(Instant.ofEpochMilli(inTime)).getTotalSeconds() * 1000L;
+            entriesPerHour[(int) Math.floorMod(localTime / HOUR_MILLIS, 24L)]++;
+        }
+    }
+
+    /**
+     * Add the tickets of another report of the same period to this one.
+     */
+    public ParkingReport merge(ParkingReport other) {
+        if (other.from != from || other.to != to || other.bucketMillis != bucketMillis) {
+            throw new IllegalArgumentException("Reports of different periods");
+        }
+        addAll(occupancyChanges, other.occupancyChanges);
+        addAll(entries, other.entries);
+        addAll(exits, other.exits);
+        addAll(revenueUnits, other.revenueUnits);
+        addAll(stayMillis, other.stayMillis);
+        addAll(entriesPerHour, other.entriesPerHour);
+        return this;
+    }
+
+    private static void addAll(long[] values, long[] otherValues) {
+        for (int i = 0; i < values.length; i++) {
+            values[i] += otherValues[i];
+        }
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    /**
+     * @return per bucket, the number of vehicles parked at some time during the bucket
+     */
+    public long[] getOccupancy() {
+        long[] occupancy = new long[occupancyChanges.length];
+        long parked = 0;
+        for (int i = 0; i < occupancy.length; i++) {
+            parked += occupancyChanges[i];
+            occupancy[i] = parked;
+        }
+        return occupancy;
+    }
+
+    public long getEntryCount(ParkingType parkingType) {
+        return entries[parkingType.ordinal()];
+    }
+
+    public long getExitCount(ParkingType parkingType) {
+        return exits[parkingType.ordinal()];
+    }
+
+    /**
+     * @return the price of the tickets closed during the period
+     */
+    public double getRevenue(ParkingType parkingType) {
+        return FareEngine.toPrice(revenueUnits[parkingType.ordinal()]);
+    }
+
+    /**
+     * @return the average stay of the tickets closed during the period, 0 without any
+     */
+    public long getAverageStayMillis(ParkingType parkingType) {
+        long count = exits[parkingType.ordinal()];
+        return count == 0 ? 0 : stayMillis[parkingType.ordinal()] / count;
+    }
+
+    /**
+     * @return per hour of the day, the number of vehicles entering
+     */
+    public long[] getEntriesPerHour() {
+        return entriesPerHour.clone();
+    }
+
+    /**
+     * @return the hour of the day with the most entries, the earliest on a tie
+     */
+    public int getPeakHour() {
+        int peakHour = 0;
+        for (int hour = 1; hour < entriesPerHour.length; hour++) {
+            if (entriesPerHour[hour] > entriesPerHour[peakHour]) {
+                peakHour = hour;
+            }
+        }
+        return peakHour;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append("Report from ").append(new Date(from)).append(" to ").append(new Date(to)).append('\n');
+        for (ParkingType parkingType : ParkingType.values()) {
+            report.append(parkingType)
+                    .append(": ").append(getEntryCount(parkingType)).append(" entries, ")
+                    .append(getExitCount(parkingType)).append(" exits, revenue ")
+                    .append(String.format("%.2f", getRevenue(parkingType))).append(", average stay ")
+                    .append(getAverageStayMillis(parkingType) / (60 * 1000)).append(" min\n");
+        }
+        report.append("Peak hour: ").append(getPeakHour()).append("h\n");
+        report.append("Occupancy:\n");
+        long[] occupancy = getOccupancy();
+        for (int i = 0; i < occupancy.length; i++) {
+            report.append(new Date(from + i * bucketMillis)).append(' ').append(occupancy[i]).append('\n');
+        }
+        return report.toString();
+    }
+}
@@ -0,0 +1,201 @@
+package com.parkit.parkingsystem.report;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareEngine;
+import com.parkit.parkingsystem.service.ParkingSites;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Builds a {@link ParkingReport} from the ticket history, archived tickets included. The tickets are streamed
+ * from a forward-only result set into fixed-size chunks of rows, aggregated in parallel on a fork/join pool
+ * while the next ones are read. At most two chunks per worker are in flight, so memory does not grow with the
+ * number of tickets.
+ * <pre>
+ * java -cp parking-system.jar com.parkit.parkingsystem.report.ParkingReporter [days] [bucket minutes]
+ * </pre>
+ * With the sites of a multi-site deployment in {@value ParkingSites#SITES_PROPERTY}, every site is reported, then their total.
+ */
+public class ParkingReporter {
+
+    private static final Logger logger = LogManager.getLogger("ParkingReporter");
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+    private final DataBaseConfig dataBaseConfig;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParkingReporter(DataBaseConfig dataBaseConfig, ForkJoinPool pool, int chunkSize) {
+        this.dataBaseConfig = dataBaseConfig;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int bucketMinutes = args.length > 1 ? Integer.parseInt(args[1]) : 60;
+        long to = System.currentTimeMillis();
+        long from = to - days * 24 * 60 * 60 * 1000L;
+        List<String> siteIds = ParkingSites.getConfiguredSiteIds();
+        try {
+            if (siteIds.isEmpty()) {
+                ParkingReporter reporter = new ParkingReporter(DataBaseConfig.fromSystemProperties(), ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+                System.out.println(reporter.report(from, to, bucketMinutes * 60 * 1000L));
+                return;
+            }
+            Map<String, DataBaseConfig> sites = new LinkedHashMap<>();
+            for (String siteId : siteIds) {
+                sites.put(siteId, DataBaseConfig.fromSystemProperties(siteId));
+            }
+            SiteReporter reporter = new SiteReporter(sites, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+            for (Map.Entry<String, ParkingReport> report : reporter.report(from, to, bucketMinutes * 60 * 1000L).entrySet()) {
+                System.out.println("== " + report.getKey());
+                System.out.println(report.getValue());
+            }
+        } finally {
+            DataBaseConfig.shutdownPools();
+        }
+    }
+
+    /**
+     * Aggregate the tickets parked at some time between these two dates.
+     * @param from start of the period, included
+     * @param to end of the period, excluded
+     * @param bucketMillis length of the occupancy buckets
+     */
+    public ParkingReport report(long from, long to, long bucketMillis) throws ClassNotFoundException, SQLException {
+        ZoneId zone = ZoneId.systemDefault();
+        ParkingReport report = new ParkingReport(from, to, bucketMillis, zone);
+        Deque<Chunk> freeChunks = new ArrayDeque<>();
+        Deque<ForkJoinTask<ParkingReport>> pending = new ArrayDeque<>();
+        Deque<Chunk> pendingChunks = new ArrayDeque<>();
+        int maxPending = 2 * pool.getParallelism();
+        long rows = 0;
+        Connection con = null;
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            con = dataBaseConfig.getReadConnection(null);
+            ps = con.prepareStatement(DBConstants.GET_REPORT_TICKETS, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(dataBaseConfig.getStreamingFetchSize());
+            Timestamp fromTime = new Timestamp(from);
+            Timestamp toTime = new Timestamp(to);
+            ps.setTimestamp(1, toTime);
+            ps.setTimestamp(2, fromTime);
+            ps.setTimestamp(3, toTime);
+            ps.setTimestamp(4, fromTime);
+            rs = ps.executeQuery();
+            Chunk chunk = new Chunk(chunkSize);
+            while (rs.next()) {
+                Timestamp outTime = rs.getTimestamp(4);
+                chunk.parkingTypes[chunk.size] = ParkingType.valueOf(rs.getString(1));
+                chunk.priceUnits[chunk.size] = FareEngine.toPriceUnits(rs.getDouble(2));
+                chunk.inTimes[chunk.size] = rs.getTimestamp(3).getTime();
+                chunk.outTimes[chunk.size] = outTime == null ? 0 : outTime.getTime();
+                if (++chunk.size == chunkSize) {
+                    rows += chunk.size;
+                    if (pending.size() == maxPending) {
+                        report.merge(pending.removeFirst().join());
+                        freeChunks.addLast(pendingChunks.removeFirst().clear());
+                    }
+                    pending.addLast(pool.submit(new AggregateTask(chunk, 0, chunk.size, report, zone)));
+                    pendingChunks.addLast(chunk);
+                    chunk = freeChunks.isEmpty() ? new Chunk(chunkSize) : freeChunks.removeFirst();
+                }
+            }
+            rows += chunk.size;
+            if (chunk.size > 0) {
+                report.merge(pool.invoke(new AggregateTask(chunk, 0, chunk.size, report, zone)));
+            }
+            while (!pending.isEmpty()) {
+                report.merge(pending.removeFirst().join());
+            }
+        } finally {
+            // never leave tasks reading a chunk after an error
+            for (ForkJoinTask<ParkingReport> task : pending) {
+                task.cancel(false);
+            }
+            dataBaseConfig.closeResultSet(rs);
+            dataBaseConfig.closePreparedStatement(ps);
+            dataBaseConfig.closeConnection(con);
+        }
+        logger.info(rows + " tickets aggregated");
+        return report;
+    }
+
+    /**
+     * Rows of the result set, in columns.
+     */
+    private static class Chunk {
+        final ParkingType[] parkingTypes;
+        final long[] priceUnits;
+        final long[] inTimes;
+        final long[] outTimes;
+        int size;
+
+        Chunk(int capacity) {
+            parkingTypes = new ParkingType[capacity];
+            priceUnits = new long[capacity];
+            inTimes = new long[capacity];
+            outTimes = new long[capacity];
+        }
+
+        Chunk clear() {
+            size = 0;
+            return this;
+        }
+    }
+
+    private static class AggregateTask extends RecursiveTask<ParkingReport> {
+        private static final long serialVersionUID = 1L;
+
+        private final Chunk chunk;
+        private final int from;
+        private final int to;
+        private final ParkingReport period;
+        private final ZoneId zone;
+
+        AggregateTask(Chunk chunk, int from, int to, ParkingReport period, ZoneId zone) {
+            this.chunk = chunk;
+            this.from = from;
+            this.to = to;
+            this.period = period;
+            this.zone = zone;
+        }
+
+        @Override
+        protected ParkingReport compute() {
+            if (to - from > SEQUENTIAL_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                AggregateTask second = new AggregateTask(chunk, middle, to, period, zone);
+                second.fork();
+                ParkingReport first = new AggregateTask(chunk, from, middle, period, zone).compute();
+                return first.merge(second.join());
+            }
+            ParkingReport report = new ParkingReport(period.getFrom(), period.getTo(), period.getBucketMillis(), zone);
+            for (int i = from; i < to; i++) {
+                report.add(chunk.parkingTypes[i], chunk.inTimes[i], chunk.outTimes[i], chunk.priceUnits[i]);
+            }
+            return report;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.parkit.parkingsystem.report;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.SQLException;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Headquarters report of a multi-site deployment: every site database is read by its own thread, its tickets
+ * being aggregated on the shared fork/join pool, and the site reports are merged into a total.
+ */
+public class SiteReporter {
+
+    private static final Logger logger = LogManager.getLogger("SiteReporter");
+
+    public static final String TOTAL = "total";
+
+    private final Map<String, DataBaseConfig> sites;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public SiteReporter(Map<String, DataBaseConfig> sites, ForkJoinPool pool, int chunkSize) {
+        this.sites = sites;
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Aggregate the tickets of every site parked at some time between these two dates.
+     * @return the report of every site by site id, in the order of the sites, then the {@value #TOTAL} of all sites
+     */
+    public Map<String, ParkingReport> report(long from, long to, long bucketMillis) throws ClassNotFoundException, SQLException {
+        ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, sites.size()), runnable -> {
+            Thread thread = new Thread(runnable, "site-report");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Map<String, Future<ParkingReport>> pending = new LinkedHashMap<>();
+            for (Map.Entry<String, DataBaseConfig> site : sites.entrySet()) {
+                ParkingReporter reporter = new ParkingReporter(site.getValue(), pool, chunkSize);
+                pending.put(site.getKey(), readers.submit(() -> reporter.report(from, to, bucketMillis)));
+            }
+            Map<String, ParkingReport> reports = new LinkedHashMap<>();
+            ParkingReport total = new ParkingReport(from, to, bucketMillis, ZoneId.systemDefault());
+            for (Map.Entry<String, Future<ParkingReport>> site : pending.entrySet()) {
+                ParkingReport report = join(site.getKey(), site.getValue());
+                reports.put(site.getKey(), report);
+                total.merge(report);
+            }
+            reports.put(TOTAL, total);
+            return reports;
+        } finally {
+            readers.shutdownNow();
+        }
+    }
+
+    private static ParkingReport join(String siteId, Future<ParkingReport> report) throws ClassNotFoundException, SQLException {
+        try {
+            return report.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while reporting on site " + siteId, e);
+        } catch (ExecutionException e) {
+            logger.error("Unable to report on site " + siteId, e.getCause());
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            if (e.getCause() instanceof ClassNotFoundException) {
+                throw (ClassNotFoundException) e.getCause();
+            }
+            throw new IllegalStateException("Unable to report on site " + siteId, e.getCause());
+        }
+    }
+}
@@ -1,57 +1,73 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.Ticket;
 
 public class FareCalculatorService {
+
+    private static final OperationMetrics calculateFareMetrics = OperationMetrics.forOperation("FareCalculatorService.calculateFare");
+
+    private final FareEngine fareEngine;
+
+    public FareCalculatorService() {
+        this(new FareEngine());
+    }
+
+    public FareCalculatorService(FareEngine fareEngine) {
+        this.fareEngine = fareEngine;
+    }
+
     /**
      * Calculate the price with the duration time
      * @param ticket
-     * @return
      */
     public void calculateFare(Ticket ticket) {
         calculateFare(ticket, false);
     }
 
+    /**
+     * Calculate the price with the duration time and store it in the ticket
+     * @param ticket
+     * @param discount 5% off for recurring customers
+     * @return the price of the ticket
+     */
     public double calculateFare(Ticket ticket, boolean discount) {
-        if ((ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime()))) {
-            throw new IllegalArgumentException("Out time provided is incorrect:" + ticket.getOutTime().toString());
+        return calculateFare(ticket, discount ? 1 : 0);
+    }
+
+    /**
+     * Calculate the price with the duration time and the loyalty tier of the customer, and store it in the ticket
+     * @param ticket
+     * @param previousVisits number of tickets of the vehicle before this one
+     * @return the price of the ticket
+     */
+    public double calculateFare(Ticket ticket, int previousVisits) {
+        long start = System.nanoTime();
+        try {
+            if ((ticket.getOutTime() == null) || (ticket.getOutTime().before(ticket.getInTime()))) {
+                throw new IllegalArgumentException("Out time provided is incorrect:" + ticket.getOutTime());
+            }
+            long priceUnits = fareEngine.price(ticket.getParkingSpot().getParkingType(),
+                    ticket.getInTime().getTime(), ticket.getOutTime().getTime(), previousVisits);
+            double price = FareEngine.toPrice(priceUnits);
+            ticket.setPrice(price);
+            return price;
+        } catch (RuntimeException e) {
+            calculateFareMetrics.error();
+            throw e;
+        } finally {
+            calculateFareMetrics.recordSince(start);
         }
-        double CAR_RATE_PER_MINUTES = Fare.CAR_RATE_PER_HOUR / 60;
-        double BIKE_RATE_PER_MINUTES = Fare.BIKE_RATE_PER_HOUR / 60;
-        long inTime = ticket.getInTime().getTime();
-        long outTime = ticket.getOutTime().getTime();
-
-        double duration = (double) (outTime - inTime) / (1000 * 60); //duration in minute
-        System.out.println("duration = " + duration);
-        System.out.println("Parking Type: " + ticket.getParkingSpot().getParkingType());
-
-                if (duration <= 30) {
-                    ticket.setPrice(0);
-                    return 0.0;
-                }
-                else {
-                    switch (ticket.getParkingSpot().getParkingType()) {
-                        case CAR: {
-                            if (discount) {
-                                ticket.setPrice(duration * (CAR_RATE_PER_MINUTES * 0.95));
-                            } else {
-                                ticket.setPrice(duration * CAR_RATE_PER_MINUTES);
-                            }
-                            break;
-                        }
-                    case BIKE: {
-                        if (discount) {
-                            ticket.setPrice((duration) * (BIKE_RATE_PER_MINUTES * 0.95));
-                        } else {
-                            ticket.setPrice((duration) * BIKE_RATE_PER_MINUTES);
-                        }
-                        break;
-                    }
-                        default:
-                            throw new IllegalArgumentException("Unkown Parking Type: " + ticket.getParkingSpot().getParkingType());
-                     }
-                }
-        return CAR_RATE_PER_MINUTES;
     }
-}
\ No newline at end of file
+
+    /**
+     * @return the loyalty discount of the current tariff after this number of previous visits, in percent
+     */
+    public int getDiscountPercent(int previousVisits) {
+        return fareEngine.getTariff().getDiscountPercent(previousVisits);
+    }
+
+    public FareEngine getFareEngine() {
+        return fareEngine;
+    }
+}
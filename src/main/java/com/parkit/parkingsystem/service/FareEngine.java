@@ -0,0 +1,77 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+
+/**
+ * Prices parking sessions from epoch milliseconds with integer arithmetic only.
+ * Prices are fixed point longs in {@link #PRICE_SCALE} units per currency unit: a hundredth of a cent,
+ * fine enough to keep the exact value of fares such as 45 minutes of car (1.125).
+ * Pricing is a lookup in the compiled {@link Tariff}, which can be replaced at any time, and allocates nothing.
+ */
+public class FareEngine {
+
+    public static final long PRICE_SCALE = 10000;
+    public static final long FREE_DURATION_MILLIS = 30 * 60 * 1000;
+    public static final int DISCOUNT_PERCENT = 5;
+
+    private volatile Tariff tariff;
+
+    public FareEngine() {
+        this(Tariff.defaultTariff());
+    }
+
+    public FareEngine(Tariff tariff) {
+        this.tariff = tariff;
+    }
+
+    /**
+     * @return the price of the session in price units; the first 30 minutes are free
+     */
+    public long price(ParkingType parkingType, long inTime, long outTime, boolean discount) {
+        return tariff.price(parkingType, inTime, outTime, discount ? 1 : 0);
+    }
+
+    /**
+     * @return the price of the session in price units, with the loyalty discount of this number of previous visits
+     */
+    public long price(ParkingType parkingType, long inTime, long outTime, int previousVisits) {
+        return tariff.price(parkingType, inTime, outTime, previousVisits);
+    }
+
+    /**
+     * Price the sessions from index {@code from} (inclusive) to {@code to} (exclusive) of the given arrays into {@code prices}.
+     * The whole batch is priced with the same tariff.
+     */
+    public void priceAll(ParkingType[] parkingTypes, long[] inTimes, long[] outTimes, boolean[] discounts, long[] prices, int from, int to) {
+        Tariff currentTariff = tariff;
+        for (int i = from; i < to; i++) {
+            prices[i] = currentTariff.price(parkingTypes[i], inTimes[i], outTimes[i], discounts[i] ? 1 : 0);
+        }
+    }
+
+    public void priceAll(ParkingType[] parkingTypes, long[] inTimes, long[] outTimes, boolean[] discounts, long[] prices) {
+        priceAll(parkingTypes, inTimes, outTimes, discounts, prices, 0, prices.length);
+    }
+
+    public Tariff getTariff() {
+        return tariff;
+    }
+
+    /**
+     * Switch to another tariff; sessions priced afterwards use it.
+     */
+    public void setTariff(Tariff tariff) {
+        if (tariff == null) {
+            throw new IllegalArgumentException("Tariff is required");
+        }
+        this.tariff = tariff;
+    }
+
+    public static long toPriceUnits(double price) {
+        return Math.round(price * PRICE_SCALE);
+    }
+
+    public static double toPrice(long priceUnits) {
+        return (double) priceUnits / PRICE_SCALE;
+    }
+}
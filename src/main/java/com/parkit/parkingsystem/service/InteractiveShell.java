@@ -1,28 +1,33 @@
 package com.parkit.parkingsystem.service;
 
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.display.DisplaySink;
 import com.parkit.parkingsystem.util.InputReaderUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+
 public class InteractiveShell {
 
     private static final Logger logger = LogManager.getLogger("InteractiveShell");
 
-    public static void loadInterface(){
+    public static void loadInterface() throws IOException {
+        if (DisplaySink.KIOSK.equals(System.getProperty(DisplaySink.DISPLAY_PROPERTY))) {
+            // the menu and prompts would only reach the kiosk buffer, which the gate server serves
+            throw new IllegalStateException("The " + DisplaySink.KIOSK + " display needs the gate server: start the App with --gate-server");
+        }
         logger.info("App initialized!!!");
-        System.out.println("Welcome to Parking System!");
 
         boolean continueApp = true;
-        FareCalculatorService fareCalculatorService = new FareCalculatorService();
         InputReaderUtil inputReaderUtil = new InputReaderUtil();
-        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
-        TicketDAO ticketDAO = new TicketDAO();
-        ParkingService parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService);
+        ParkingSystem parkingSystem = new ParkingSystem(inputReaderUtil);
+        ParkingService parkingService = parkingSystem.getParkingService();
+        DisplaySink display = parkingSystem.getDisplay();
+        display.show("Welcome to Parking System!");
 
         while(continueApp){
-            loadMenu();
+            loadMenu(display);
+            display.flush();
             int option = inputReaderUtil.readSelection();
             switch(option){
                 case 1: {
@@ -34,20 +39,21 @@ public class InteractiveShell {
                     break;
                 }
                 case 3: {
-                    System.out.println("Exiting from the system!");
+                    display.show("Exiting from the system!");
+                    parkingSystem.shutdown();
                     continueApp = false;
                     break;
                 }
-                default: System.out.println("Unsupported option. Please enter a number corresponding to the provided menu");
+                default: display.show("Unsupported option. Please enter a number corresponding to the provided menu");
             }
         }
     }
 
-    private static void loadMenu(){
-        System.out.println("Please select an option. Simply enter the number to choose an action");
-        System.out.println("1 New Vehicle Entering - Allocate Parking Space");
-        System.out.println("2 Vehicle Exiting - Generate Ticket Price");
-        System.out.println("3 Shutdown System");
+    private static void loadMenu(DisplaySink display){
+        display.show("Please select an option. Simply enter the number to choose an action");
+        display.show("1 New Vehicle Entering - Allocate Parking Space");
+        display.show("2 Vehicle Exiting - Generate Ticket Price");
+        display.show("3 Shutdown System");
     }
 
 }
@@ -1,8 +1,14 @@
 package com.parkit.parkingsystem.service;
 
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.constants.DBConstants;
 import com.parkit.parkingsystem.constants.ParkingType;
-import com.parkit.parkingsystem.dao.ParkingSpotDAO;
-import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.display.ConsoleDisplaySink;
+import com.parkit.parkingsystem.display.DisplaySink;
+import com.parkit.parkingsystem.metrics.OccupancyCounters;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.util.InputReaderUtil;
@@ -10,66 +16,182 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import java.sql.SQLException;
 import java.util.Date;
+import java.util.Locale;
 
 public class ParkingService {
 
     private static final Logger logger = LogManager.getLogger("ParkingService");
 
-    private static FareCalculatorService fareCalculatorService = new FareCalculatorService();
+    private static final OperationMetrics incomingVehicleMetrics = OperationMetrics.forOperation("ParkingService.processIncomingVehicle");
+    private static final OperationMetrics exitingVehicleMetrics = OperationMetrics.forOperation("ParkingService.processExitingVehicle");
 
-    private InputReaderUtil inputReaderUtil;
-    private ParkingSpotDAO parkingSpotDAO;
-    private  TicketDAO ticketDAO;
+    private final FareCalculatorService fareCalculatorService;
+    private final InputReaderUtil inputReaderUtil;
+    private final ParkingSpotRepository parkingSpotDAO;
+    private final TicketRepository ticketDAO;
+    private final OccupancyCounters occupancyCounters;
+    private final DisplaySink display;
+    private final String siteId;
 
-    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotDAO parkingSpotDAO, TicketDAO ticketDAO, FareCalculatorService fareCalculatorService){
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, FareCalculatorService fareCalculatorService){
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService, new OccupancyCounters());
+    }
+
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, FareCalculatorService fareCalculatorService,
+                          OccupancyCounters occupancyCounters){
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService, occupancyCounters, new ConsoleDisplaySink(System.out));
+    }
+
+    /**
+     * @param display where the messages of the console flows go
+     */
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, FareCalculatorService fareCalculatorService,
+                          OccupancyCounters occupancyCounters, DisplaySink display){
+        this(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService, occupancyCounters, display, null);
+    }
+
+    /**
+     * @param siteId the site whose repositories these are in a multi-site deployment, set on the tickets; null with a single site
+     */
+    public ParkingService(InputReaderUtil inputReaderUtil, ParkingSpotRepository parkingSpotDAO, TicketRepository ticketDAO, FareCalculatorService fareCalculatorService,
+                          OccupancyCounters occupancyCounters, DisplaySink display, String siteId){
         this.inputReaderUtil = inputReaderUtil;
         this.parkingSpotDAO = parkingSpotDAO;
         this.ticketDAO = ticketDAO;
-        ParkingService.fareCalculatorService = fareCalculatorService;
+        this.fareCalculatorService = fareCalculatorService;
+        this.occupancyCounters = occupancyCounters;
+        this.display = display;
+        this.siteId = siteId;
+    }
+
+    public String getSiteId() {
+        return siteId;
+    }
+
+    /**
+     * @return the live occupancy, updated on every entry and exit made through this service
+     */
+    public OccupancyCounters getOccupancyCounters() {
+        return occupancyCounters;
     }
 
     public void processIncomingVehicle() {
         try {
-            ParkingSpot parkingSpot = getNextParkingNumberIfAvailable();
-            if(parkingSpot != null && parkingSpot.getId() > 0) {
-                String vehicleRegNumber = getVehichleRegNumber();
-                int nbTicket = ticketDAO.getNbTicket(vehicleRegNumber);
-                if (nbTicket >= 1) {
-                    System.out.println("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de 5%");
+            ParkingType parkingType = getVehichleType();
+            String vehicleRegNumber = getVehichleRegNumber();
+            Ticket ticket = processIncomingVehicle(parkingType, vehicleRegNumber);
+            if(ticket != null) {
+                if (ticket.isRegularCustomer()) {
+                    // the loyalty tiers of the tariff give the discount, if any, of this visit
+                    int discountPercent = fareCalculatorService.getDiscountPercent(ticket.getPreviousVisits());
+                    if (discountPercent > 0) {
+                        display.show("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de "
+                                + discountPercent + "%");
+                    }
                 }
-                parkingSpot.setAvailable(false);
-                if(!parkingSpotDAO.updateParking(parkingSpot)) {
+                display.show("Generated Ticket and saved in DB");
+                display.show("Please park your vehicle in spot number:"+ticket.getParkingSpot().getId());
+                display.show("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+ticket.getInTime());
+            } else {
+                display.show("not available parking spot");
+            }
+
+        }catch(Exception e){
+            logger.error("Unable to process incoming vehicle",e);
+        }
+    }
+
+    /**
+     * Park a vehicle without console interaction; safe to call from several gates at the same time.
+     * The plate is normalized, so that the vehicle is found at the exit however a gate or camera spells it.
+     * @return the saved ticket, or null when no spot of this type is available
+     * @throws IllegalStateException when the vehicle is already parked
+     */
+    public Ticket processIncomingVehicle(ParkingType parkingType, String vehicleRegNumber) throws Exception {
+        if (parkingType == null || vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty()) {
+            throw new IllegalArgumentException("Parking type and vehicle registration number are required");
+        }
+        vehicleRegNumber = requireVehicleRegNumber(vehicleRegNumber);
+        long start = System.nanoTime();
+        try {
+            // a vehicle that reserved its spot gets it, even when the lot is full for walk-in vehicles
+            int parkingNumber = parkingSpotDAO.getReservedSlot(vehicleRegNumber, parkingType);
+            if (parkingNumber <= 0) {
+                parkingNumber = parkingSpotDAO.getNextAvailableSlot(parkingType);
+            }
+            if (parkingNumber <= 0) {
+                return null;
+            }
+            return parkVehicle(new ParkingSpot(parkingNumber, parkingType, true), vehicleRegNumber);
+        } catch (Exception e) {
+            incomingVehicleMetrics.error();
+            throw e;
+        } finally {
+            incomingVehicleMetrics.recordSince(start);
+        }
+    }
+
+    private Ticket parkVehicle(ParkingSpot parkingSpot, String vehicleRegNumber) throws Exception {
+        // looked up before the unit of work, whose reads all go to the primary, so that they can go to a read replica
+        if (ticketDAO.getOpenTicket(vehicleRegNumber) != null) {
+            // a second open ticket would hold a second spot that its exit never frees
+            throw new IllegalStateException("Vehicle " + vehicleRegNumber + " is already parked");
+        }
+        int nbTicket = ticketDAO.getNbTicket(vehicleRegNumber);
+        UnitOfWork unitOfWork = ticketDAO.beginUnitOfWork();
+        try {
+            parkingSpot.setAvailable(false);
+            if(!parkingSpotDAO.updateParking(parkingSpot)) {
+                // another gate took this spot since it was looked up: reserve the next free one atomically
+                int parkingNumber = parkingSpotDAO.reserveNextAvailableSlot(parkingSpot.getParkingType());
+                if(parkingNumber <= 0) {
                     throw new Exception("erreur lors de l'update du parkingspot");
                 }
+                parkingSpot = new ParkingSpot(parkingNumber, parkingSpot.getParkingType(), false);
+            }
 
-                Date inTime = new Date();
-                Ticket ticket = new Ticket();
-                ticket.setParkingSpot(parkingSpot);
-                ticket.setVehicleRegNumber(vehicleRegNumber);
-                ticket.setPrice(0);
-                ticket.setInTime(inTime);
-                ticket.setOutTime(null);
-                System.out.println("Generated Ticket and saved in DB");
-                System.out.println("Please park your vehicle in spot number:"+parkingSpot.getId());
-                System.out.println("Recorded in-time for vehicle number:"+vehicleRegNumber+" is:"+inTime);
-
-                boolean isSaved = ticketDAO.saveTicket(ticket);
-                if(!isSaved) {
-                    throw new Exception("erreur lors de la sauvegarde du ticket");
-                }
+            Date inTime = new Date();
+            Ticket ticket = new Ticket();
+            ticket.setParkingSpot(parkingSpot);
+            ticket.setVehicleRegNumber(vehicleRegNumber);
+            ticket.setPrice(0);
+            ticket.setInTime(inTime);
+            ticket.setOutTime(null);
+            ticket.setRegularCustomer(nbTicket >= 1);
+            ticket.setPreviousVisits(nbTicket);
+            ticket.setSiteId(siteId);
 
-                else {
-                    System.out.println("not available parking spot");
+            boolean isSaved = ticketDAO.saveTicket(ticket);
+            if(!isSaved) {
+                if(unitOfWork == null) {
+                    // no transaction to roll the spot back with: give it back
+                    parkingSpot.setAvailable(true);
+                    parkingSpotDAO.updateParking(parkingSpot);
                 }
+                throw new Exception("erreur lors de la sauvegarde du ticket");
             }
+            if(unitOfWork != null) {
+                unitOfWork.commit();
+            }
+            occupancyCounters.vehicleParked(parkingSpot.getParkingType());
+            return ticket;
+        } finally {
+            closeUnitOfWork(unitOfWork);
+        }
+    }
 
-        }catch(Exception e){
-            logger.error("Unable to process incoming vehicle",e);
+    /**
+     * Give the connection of a gate event back, rolling its changes back if they were not committed.
+     */
+    private void closeUnitOfWork(UnitOfWork unitOfWork) {
+        if(unitOfWork != null) {
+            unitOfWork.close();
         }
     }
 
     public String getVehichleRegNumber() throws Exception {
-        System.out.println("Please type the vehicle registration number and press enter key");
+        display.show("Please type the vehicle registration number and press enter key");
+        display.flush();
         return inputReaderUtil.readVehicleRegistrationNumber();
     }
 
@@ -95,9 +217,10 @@ public class ParkingService {
     }
 
     public ParkingType getVehichleType(){
-        System.out.println("Please select vehicle type from menu");
-        System.out.println("1 CAR");
-        System.out.println("2 BIKE");
+        display.show("Please select vehicle type from menu");
+        display.show("1 CAR");
+        display.show("2 BIKE");
+        display.flush();
         int input = inputReaderUtil.readSelection();
         switch(input){
             case 1: {
@@ -107,7 +230,7 @@ public class ParkingService {
                 return ParkingType.BIKE;
             }
             default: {
-                System.out.println("Incorrect input provided");
+                display.show("Incorrect input provided");
                 throw new IllegalArgumentException("Entered input is invalid");
             }
         }
@@ -116,26 +239,13 @@ public class ParkingService {
     public void processExitingVehicle() {
         try{
             String vehicleRegNumber = getVehichleRegNumber();
-            System.out.println("Exiting vehicle with register number "+vehicleRegNumber);
-            Ticket ticket = ticketDAO.getTicket(vehicleRegNumber);
+            display.show("Exiting vehicle with register number "+vehicleRegNumber);
+            Ticket ticket = processExitingVehicle(vehicleRegNumber);
             if (ticket == null) {
-                System.out.println("No ticket found for vehicle number: " + vehicleRegNumber);
+                display.show("No ticket found for vehicle number: " + vehicleRegNumber);
                 return;
             }
-            Date outTime = new Date();
-            ticket.setOutTime(outTime);
-            int nbTickets = ticketDAO.getNbTicket(vehicleRegNumber);
-            boolean isRecurringUser = nbTickets > 1;
-            double calculatedFare = fareCalculatorService.calculateFare(ticket, isRecurringUser);
-            ticket.setPrice(calculatedFare);
-            if(ticketDAO.updateTicket(ticket)) {
-                ParkingSpot parkingSpot = ticket.getParkingSpot();
-                parkingSpot.setAvailable(true);
-                parkingSpotDAO.updateParking(parkingSpot);
-                System.out.println("Thank you for your trust, please pay the parking fare:" + ticket.getPrice());
-            }else{
-                System.out.println("Unable to update ticket information. Error occurred");
-            }
+            display.show("Thank you for your trust, please pay the parking fare:" + ticket.getPrice());
         }catch (SQLException e) {
             logger.error("Database error while processing exiting vehicle", e);
         }
@@ -143,4 +253,84 @@ public class ParkingService {
             logger.error("Unable to process exiting vehicle",e);
         }
     }
+
+    /**
+     * Close the ticket of a leaving vehicle and free its spot, without console interaction;
+     * safe to call from several gates at the same time.
+     * @return the closed ticket with its price, or null when the vehicle has no open ticket
+     */
+    public Ticket processExitingVehicle(String vehicleRegNumber) throws Exception {
+        if (vehicleRegNumber == null || vehicleRegNumber.trim().isEmpty()) {
+            throw new IllegalArgumentException("Vehicle registration number is required");
+        }
+        vehicleRegNumber = requireVehicleRegNumber(vehicleRegNumber);
+        long start = System.nanoTime();
+        try {
+            return closeTicket(vehicleRegNumber);
+        } catch (Exception e) {
+            exitingVehicleMetrics.error();
+            throw e;
+        } finally {
+            exitingVehicleMetrics.recordSince(start);
+        }
+    }
+
+    /**
+     * Upper case letters and digits only, so that "ab-123 cd" and "AB123CD" are the same vehicle.
+     * @return the plate as stored, or null when nothing is left or it is longer than
+     * {@value DBConstants#MAX_VEHICLE_REG_NUMBER_LENGTH}
+     */
+    public static String normalizeVehicleRegNumber(String vehicleRegNumber) {
+        StringBuilder normalized = new StringBuilder(vehicleRegNumber.length());
+        for (char c : vehicleRegNumber.toUpperCase(Locale.ROOT).toCharArray()) {
+            if ((c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')) {
+                normalized.append(c);
+            }
+        }
+        return normalized.length() == 0 || normalized.length() > DBConstants.MAX_VEHICLE_REG_NUMBER_LENGTH ? null : normalized.toString();
+    }
+
+    private static String requireVehicleRegNumber(String vehicleRegNumber) {
+        String normalized = normalizeVehicleRegNumber(vehicleRegNumber);
+        if (normalized == null) {
+            throw new IllegalArgumentException("Vehicle registration number must have 1 to "
+                    + DBConstants.MAX_VEHICLE_REG_NUMBER_LENGTH + " letters or digits: " + vehicleRegNumber);
+        }
+        return normalized;
+    }
+
+    private Ticket closeTicket(String vehicleRegNumber) throws Exception {
+        // looked up before the unit of work so that they can go to a read replica: the update only closes an open ticket
+        Ticket ticket = ticketDAO.getOpenTicket(vehicleRegNumber);
+        if (ticket == null || ticket.getOutTime() != null) {
+            // not parked, or already left: its spot may be someone else's now
+            return null;
+        }
+        int nbTickets = ticketDAO.getNbTicket(vehicleRegNumber);
+        UnitOfWork unitOfWork = ticketDAO.beginUnitOfWork();
+        try {
+            ticket.setSiteId(siteId);
+            Date outTime = new Date();
+            ticket.setOutTime(outTime);
+            double calculatedFare = fareCalculatorService.calculateFare(ticket, nbTickets - 1);
+            ticket.setPrice(calculatedFare);
+            ticket.setRegularCustomer(nbTickets > 1);
+            ticket.setPreviousVisits(nbTickets - 1);
+            if(!ticketDAO.updateTicket(ticket)) {
+                throw new Exception("Unable to update ticket information. Error occurred");
+            }
+            ParkingSpot parkingSpot = ticket.getParkingSpot();
+            parkingSpot.setAvailable(true);
+            if(!parkingSpotDAO.updateParking(parkingSpot)) {
+                throw new Exception("Unable to free parking spot " + parkingSpot.getId());
+            }
+            if(unitOfWork != null) {
+                unitOfWork.commit();
+            }
+            occupancyCounters.vehicleLeft(parkingSpot.getParkingType(), ticket.getPrice());
+            return ticket;
+        } finally {
+            closeUnitOfWork(unitOfWork);
+        }
+    }
 }
@@ -0,0 +1,121 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.report.SiteReporter;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The lots of a multi-site deployment, each one a {@link ParkingSystem} with its own database, connection pool,
+ * indexes and counters, so that a busy or failing site does not take the others down with it. Gate events are
+ * routed to a site by its id, which cannot be {@value SiteReporter#TOTAL}, the key of the report of all sites.
+ */
+public class ParkingSites {
+
+    private static final Logger logger = LogManager.getLogger("ParkingSites");
+
+    public static final String SITES_PROPERTY = "parkit.sites";
+
+    private final Map<String, ParkingSystem> sites;
+
+    public ParkingSites(Map<String, ParkingSystem> sites) {
+        if (sites.containsKey(SiteReporter.TOTAL)) {
+            throw new IllegalArgumentException("Site id " + SiteReporter.TOTAL + " is kept for the report of all sites");
+        }
+        this.sites = Collections.unmodifiableMap(new LinkedHashMap<>(sites));
+    }
+
+    /**
+     * @return the ids of the sites listed, comma separated, by the system property {@value #SITES_PROPERTY};
+     * empty with a single site
+     * @throws IllegalStateException when a site is named {@value SiteReporter#TOTAL}
+     */
+    public static List<String> getConfiguredSiteIds() {
+        Set<String> siteIds = new LinkedHashSet<>();
+        for (String siteId : System.getProperty(SITES_PROPERTY, "").split(",")) {
+            if (SiteReporter.TOTAL.equals(siteId.trim())) {
+                throw new IllegalStateException("Site id " + SiteReporter.TOTAL + " in the system property " + SITES_PROPERTY
+                        + " is kept for the report of all sites");
+            }
+            if (!siteId.trim().isEmpty()) {
+                siteIds.add(siteId.trim());
+            }
+        }
+        return new ArrayList<>(siteIds);
+    }
+
+    /**
+     * Start the sites of {@value #SITES_PROPERTY}, each on the database given by
+     * {@link DataBaseConfig#fromSystemProperties(String)}.
+     */
+    public static ParkingSites fromSystemProperties(InputReaderUtil inputReaderUtil) throws IOException {
+        List<String> siteIds = getConfiguredSiteIds();
+        if (siteIds.isEmpty()) {
+            throw new IllegalStateException("No site in the system property " + SITES_PROPERTY);
+        }
+        Map<String, ParkingSystem> sites = new LinkedHashMap<>();
+        try {
+            for (String siteId : siteIds) {
+                sites.put(siteId, new ParkingSystem(inputReaderUtil, siteId, DataBaseConfig.fromSystemProperties(siteId)));
+                logger.info("Site " + siteId + " started");
+            }
+        } catch (IOException | RuntimeException e) {
+            new ParkingSites(sites).shutdown();
+            throw e;
+        }
+        return new ParkingSites(sites);
+    }
+
+    /**
+     * @throws IllegalArgumentException when there is no such site
+     */
+    public ParkingSystem getSite(String siteId) {
+        ParkingSystem site = siteId == null ? null : sites.get(siteId);
+        if (site == null) {
+            throw new IllegalArgumentException("Unknown site: " + siteId);
+        }
+        return site;
+    }
+
+    public Map<String, ParkingSystem> getSites() {
+        return sites;
+    }
+
+    /**
+     * @return the parking service of every site, by site id
+     */
+    public Map<String, ParkingService> getParkingServices() {
+        Map<String, ParkingService> parkingServices = new LinkedHashMap<>();
+        for (Map.Entry<String, ParkingSystem> site : sites.entrySet()) {
+            parkingServices.put(site.getKey(), site.getValue().getParkingService());
+        }
+        return parkingServices;
+    }
+
+    /**
+     * @return the database of every site, by site id, e.g. for reports over all of them
+     */
+    public Map<String, DataBaseConfig> getDataBaseConfigs() {
+        Map<String, DataBaseConfig> dataBaseConfigs = new LinkedHashMap<>();
+        for (Map.Entry<String, ParkingSystem> site : sites.entrySet()) {
+            dataBaseConfigs.put(site.getKey(), site.getValue().getDataBaseConfig());
+        }
+        return dataBaseConfigs;
+    }
+
+    public void shutdown() {
+        for (ParkingSystem site : sites.values()) {
+            site.shutdown();
+        }
+    }
+}
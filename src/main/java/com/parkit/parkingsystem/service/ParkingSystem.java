@@ -0,0 +1,253 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.ParkingSpotRepository;
+import com.parkit.parkingsystem.dao.RecurringCustomerCache;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.dao.TicketArchiver;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketJournal;
+import com.parkit.parkingsystem.dao.TicketJournalWriter;
+import com.parkit.parkingsystem.dao.TicketRepository;
+import com.parkit.parkingsystem.display.DisplaySink;
+import com.parkit.parkingsystem.metrics.MBeans;
+import com.parkit.parkingsystem.metrics.OccupancyCounters;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wires the storage, the fare calculation and the parking service used by the interactive shell
+ * and the gate server.
+ */
+public class ParkingSystem {
+
+    private static final Logger logger = LogManager.getLogger("ParkingSystem");
+
+    private final String siteId;
+    private final DataBaseConfig dataBaseConfig;
+    private final FareCalculatorService fareCalculatorService;
+    private final ParkingService parkingService;
+    private final OccupancyCounters occupancyCounters = new OccupancyCounters();
+    private final DisplaySink display = DisplaySink.fromSystemProperties();
+    private ParkingSpotRepository parkingSpotRepository;
+    private TicketRepository ticketRepository;
+    private TariffReloader tariffReloader;
+    private TicketJournal ticketJournal;
+    private TicketJournalWriter ticketJournalWriter;
+    private InMemoryParkingStore inMemoryParkingStore;
+    private TicketArchiver ticketArchiver;
+    private ReservationDAO reservationDAO;
+    private RecurringCustomerCache recurringCustomerCache;
+    private ObjectName recurringCustomerCacheName;
+
+    /**
+     * With the system property {@value InMemoryParkingStore#STORAGE_PROPERTY}={@value InMemoryParkingStore#MEMORY},
+     * tickets and spots are kept in memory and saved to the snapshot file {@value InMemoryParkingStore#SNAPSHOT_FILE_PROPERTY};
+     * the first run takes the spots from the database. Otherwise they are stored in the database; with
+     * {@value TicketJournalWriter#JOURNAL_FILE_PROPERTY} set to a file, gate events are acknowledged once in that
+     * journal and written to the database in the background, records left by a previous run being written first;
+     * with {@value TicketArchiver#RETENTION_DAYS_PROPERTY} set, tickets closed for longer are archived every hour;
+     * reservations are loaded and held from walk-in vehicles.
+     * The occupancy counters start from the spots of the lot. Messages for drivers go to the sink selected by
+     * {@value DisplaySink#DISPLAY_PROPERTY}.
+     */
+    public ParkingSystem(InputReaderUtil inputReaderUtil) throws IOException {
+        this(inputReaderUtil, null, DataBaseConfig.fromSystemProperties());
+    }
+
+    /**
+     * The parking of one site of a multi-site deployment, stored in this database. The journal and snapshot
+     * files of the system properties get the site id as suffix, so that sites never share them.
+     */
+    public ParkingSystem(InputReaderUtil inputReaderUtil, String siteId, DataBaseConfig dataBaseConfig) throws IOException {
+        this.siteId = siteId;
+        this.dataBaseConfig = dataBaseConfig;
+        fareCalculatorService = new FareCalculatorService();
+        String tariffFile = System.getProperty(TariffReloader.TARIFF_FILE_PROPERTY);
+        if (tariffFile != null) {
+            tariffReloader = new TariffReloader(Paths.get(tariffFile), fareCalculatorService.getFareEngine());
+            tariffReloader.start(TariffReloader.DEFAULT_PERIOD_MILLIS);
+        }
+        if (InMemoryParkingStore.MEMORY.equals(System.getProperty(InMemoryParkingStore.STORAGE_PROPERTY))) {
+            openInMemoryStorage(dataBaseConfig);
+        } else {
+            openDataBaseStorage(dataBaseConfig);
+        }
+        occupancyCounters.startPublishing(OccupancyCounters.DEFAULT_PUBLISH_PERIOD_MILLIS);
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotRepository, ticketRepository, fareCalculatorService, occupancyCounters, display, siteId);
+    }
+
+    private void initializeOccupancyCounters(ParkingSpotIndex parkingSpotIndex) {
+        if (parkingSpotIndex == null) {
+            logger.warn("Parking spots not loaded, the occupancy counters start from zero");
+            return;
+        }
+        for (ParkingType parkingType : ParkingType.values()) {
+            int freeSpots = parkingSpotIndex.getAvailableCount(parkingType);
+            occupancyCounters.initialize(parkingType, freeSpots, parkingSpotIndex.getSpotCount(parkingType) - freeSpots);
+        }
+    }
+
+    private void openInMemoryStorage(DataBaseConfig dataBaseConfig) throws IOException {
+        Path snapshotFile = Paths.get(siteFile(System.getProperty(InMemoryParkingStore.SNAPSHOT_FILE_PROPERTY, "parking.snapshot")));
+        if (Files.exists(snapshotFile)) {
+            inMemoryParkingStore = InMemoryParkingStore.loadSnapshot(snapshotFile);
+        } else {
+            ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+            parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+            if (!parkingSpotDAO.loadParkingSpotIndex()) {
+                throw new IOException("No snapshot " + snapshotFile + " and no database to read the spots from");
+            }
+            inMemoryParkingStore = new InMemoryParkingStore(parkingSpotDAO.parkingSpotIndex);
+        }
+        inMemoryParkingStore.startSnapshots(snapshotFile, InMemoryParkingStore.DEFAULT_SNAPSHOT_PERIOD_MILLIS);
+        initializeOccupancyCounters(inMemoryParkingStore.getParkingSpotIndex());
+        parkingSpotRepository = inMemoryParkingStore;
+        ticketRepository = inMemoryParkingStore;
+    }
+
+    private void openDataBaseStorage(DataBaseConfig dataBaseConfig) throws IOException {
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        String journalFile = System.getProperty(TicketJournalWriter.JOURNAL_FILE_PROPERTY);
+        if (journalFile != null) {
+            openTicketJournal(siteFile(journalFile), dataBaseConfig);
+        }
+        if (parkingSpotDAO.loadParkingSpotIndex()) {
+            ReservationDAO reservations = new ReservationDAO();
+            reservations.dataBaseConfig = dataBaseConfig;
+            if (reservations.loadReservationIndex(parkingSpotDAO.parkingSpotIndex)) {
+                reservationDAO = reservations;
+                parkingSpotDAO.reservationIndex = reservations.reservationIndex;
+            }
+        }
+        if (ticketDAO.warmRecurringCustomerCache(RecurringCustomerCache.DEFAULT_MAX_SIZE, RecurringCustomerCache.DEFAULT_TTL_MILLIS)) {
+            recurringCustomerCache = ticketDAO.recurringCustomerCache;
+            recurringCustomerCacheName = MBeans.register(recurringCustomerCache, "RecurringCustomerCache", siteId == null ? "default" : siteId);
+        }
+        ticketDAO.loadActiveTicketIndex();
+        initializeOccupancyCounters(parkingSpotDAO.parkingSpotIndex);
+        if (ticketJournal != null) {
+            if (parkingSpotDAO.parkingSpotIndex == null || ticketDAO.activeTicketIndex == null) {
+                throw new IOException("The ticket journal needs the parking spot and active ticket indexes");
+            }
+            parkingSpotDAO.ticketJournal = ticketJournal;
+            ticketDAO.ticketJournal = ticketJournal;
+            ticketJournalWriter.start(TicketJournalWriter.DEFAULT_PERIOD_MILLIS);
+        }
+        String retentionDays = System.getProperty(TicketArchiver.RETENTION_DAYS_PROPERTY);
+        if (retentionDays != null) {
+            ticketArchiver = new TicketArchiver(dataBaseConfig, TicketArchiver.DEFAULT_BATCH_SIZE);
+            ticketArchiver.start(TimeUnit.DAYS.toMillis(Long.parseLong(retentionDays)), TicketArchiver.DEFAULT_PERIOD_MILLIS);
+        }
+        parkingSpotRepository = parkingSpotDAO;
+        ticketRepository = ticketDAO;
+    }
+
+    private void openTicketJournal(String journalFile, DataBaseConfig dataBaseConfig) throws IOException {
+        ticketJournal = TicketJournal.open(Paths.get(journalFile), TicketJournal.DEFAULT_CAPACITY);
+        ticketJournalWriter = new TicketJournalWriter(ticketJournal, dataBaseConfig, TicketJournalWriter.DEFAULT_BATCH_SIZE);
+        try {
+            int replayed = ticketJournalWriter.drain();
+            if (replayed > 0) {
+                logger.info(replayed + " gate events replayed from " + journalFile);
+            }
+        } catch (Exception e) {
+            ticketJournal.close();
+            throw new IOException("Unable to replay the ticket journal " + journalFile, e);
+        }
+    }
+
+    private String siteFile(String file) {
+        return siteId == null ? file : file + "." + siteId;
+    }
+
+    public String getSiteId() {
+        return siteId;
+    }
+
+    public DataBaseConfig getDataBaseConfig() {
+        return dataBaseConfig;
+    }
+
+    public ParkingService getParkingService() {
+        return parkingService;
+    }
+
+    public ParkingSpotRepository getParkingSpotRepository() {
+        return parkingSpotRepository;
+    }
+
+    public TicketRepository getTicketRepository() {
+        return ticketRepository;
+    }
+
+    public FareCalculatorService getFareCalculatorService() {
+        return fareCalculatorService;
+    }
+
+    public DisplaySink getDisplay() {
+        return display;
+    }
+
+    public OccupancyCounters getOccupancyCounters() {
+        return occupancyCounters;
+    }
+
+    /**
+     * @return the reservations of the lot, null with the in-memory storage or when they could not be loaded
+     */
+    public ReservationDAO getReservationDAO() {
+        return reservationDAO;
+    }
+
+    /**
+     * @return the ticket counts cached for the recurring customer discount, null with the in-memory storage or
+     * when they could not be loaded
+     */
+    public RecurringCustomerCache getRecurringCustomerCache() {
+        return recurringCustomerCache;
+    }
+
+    public TicketJournal getTicketJournal() {
+        return ticketJournal;
+    }
+
+    public void shutdown() {
+        occupancyCounters.shutdown();
+        if (tariffReloader != null) {
+            tariffReloader.shutdown();
+        }
+        if (inMemoryParkingStore != null) {
+            inMemoryParkingStore.shutdown();
+        }
+        if (ticketArchiver != null) {
+            ticketArchiver.shutdown();
+        }
+        if (ticketJournalWriter != null) {
+            ticketJournalWriter.shutdown();
+            try {
+                ticketJournal.close();
+            } catch (IOException e) {
+                logger.error("Error closing the ticket journal", e);
+            }
+        }
+        MBeans.unregister(recurringCustomerCacheName);
+        dataBaseConfig.shutdownPool();
+        display.close();
+    }
+}
@@ -0,0 +1,274 @@
+package com.parkit.parkingsystem.service;
+
+import com.parkit.parkingsystem.constants.Fare;
+import com.parkit.parkingsystem.constants.ParkingType;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+/**
+ * Tariff rules compiled into per minute of day price tables, so that pricing a session is a
+ * constant time lookup whatever the number of bands.
+ * Rules are read from properties:
+ * <pre>
+ * free.minutes=30
+ * loyalty.tiers=1=5,10=10
+ * timezone=Europe/Paris
+ * car.rate.per.hour=1.5
+ * car.bands=07:00-10:00=2.5,17:00-19:00=2.5
+ * car.daily.cap=20
+ * bike.rate.per.hour=1.0
+ * </pre>
+ * Bands override the hourly rate between two times of day and may wrap around midnight, later bands
+ * winning over earlier ones. The daily cap bounds the price of each calendar day of the session.
+ * Loyalty tiers map a number of previous visits to a discount percent.
+ */
+public class Tariff {
+
+    static final long MILLIS_PER_MINUTE = 60 * 1000;
+    static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+    static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final long NO_CAP = Long.MAX_VALUE;
+
+    private final long freeDurationMillis;
+    private final TimeZone timeZone;
+    private final boolean localTimeDependent;
+    // per parking type ordinal, in price units per hour times milliseconds
+    private final long[][] costAtMinute;
+    private final long[][] ratePerHourAtMinute;
+    private final long[] dailyCap;
+    // discount percent indexed by number of previous visits, the last entry applying to any higher number
+    private final int[] discountPercentByVisits;
+
+    private Tariff(long freeDurationMillis, TimeZone timeZone, long[][] ratePerHourAtMinute, long[] dailyCapUnits, int[] discountPercentByVisits) {
+        this.freeDurationMillis = freeDurationMillis;
+        this.timeZone = timeZone;
+        this.ratePerHourAtMinute = ratePerHourAtMinute;
+        this.discountPercentByVisits = discountPercentByVisits;
+        this.costAtMinute = new long[ratePerHourAtMinute.length][];
+        this.dailyCap = new long[dailyCapUnits.length];
+        boolean timeOfDayRates = false;
+        boolean capped = false;
+        for (int type = 0; type < ratePerHourAtMinute.length; type++) {
+            long[] rates = ratePerHourAtMinute[type];
+            long[] cost = new long[MINUTES_PER_DAY + 1];
+            for (int minute = 0; minute < MINUTES_PER_DAY; minute++) {
+                cost[minute + 1] = cost[minute] + rates[minute] * MILLIS_PER_MINUTE;
+                timeOfDayRates |= rates[minute] != rates[0];
+            }
+            costAtMinute[type] = cost;
+            dailyCap[type] = dailyCapUnits[type] == NO_CAP ? NO_CAP : dailyCapUnits[type] * MILLIS_PER_HOUR;
+            capped |= dailyCapUnits[type] != NO_CAP;
+        }
+        this.localTimeDependent = timeOfDayRates || capped;
+    }
+
+    /**
+     * @return the tariff of {@link Fare}: flat hourly rates, 30 free minutes and 5% off from the second visit
+     */
+    public static Tariff defaultTariff() {
+        ParkingType[] parkingTypes = ParkingType.values();
+        long[][] rates = new long[parkingTypes.length][];
+        long[] caps = new long[parkingTypes.length];
+        for (ParkingType parkingType : parkingTypes) {
+            rates[parkingType.ordinal()] = flatRate(FareEngine.toPriceUnits(getDefaultRatePerHour(parkingType)));
+            caps[parkingType.ordinal()] = NO_CAP;
+        }
+        return new Tariff(FareEngine.FREE_DURATION_MILLIS, TimeZone.getDefault(), rates, caps,
+                new int[]{0, FareEngine.DISCOUNT_PERCENT});
+    }
+
+    private static double getDefaultRatePerHour(ParkingType parkingType) {
+        switch (parkingType) {
+            case CAR:
+                return Fare.CAR_RATE_PER_HOUR;
+            case BIKE:
+                return Fare.BIKE_RATE_PER_HOUR;
+            default:
+                throw new IllegalArgumentException("Unkown Parking Type: " + parkingType);
+        }
+    }
+
+    public static Tariff load(InputStream inputStream) throws IOException {
+        Properties properties = new Properties();
+        properties.load(inputStream);
+        return compile(properties);
+    }
+
+    /**
+     * Compile tariff rules into price tables.
+     * @throws IllegalArgumentException when a rule is missing or malformed
+     */
+    public static Tariff compile(Properties properties) {
+        long freeDurationMillis = parseLong(properties, "free.minutes", "0") * MILLIS_PER_MINUTE;
+        String timeZoneId = properties.getProperty("timezone");
+        TimeZone timeZone = timeZoneId == null ? TimeZone.getDefault() : TimeZone.getTimeZone(timeZoneId.trim());
+
+        ParkingType[] parkingTypes = ParkingType.values();
+        long[][] rates = new long[parkingTypes.length][];
+        long[] caps = new long[parkingTypes.length];
+        for (ParkingType parkingType : parkingTypes) {
+            String prefix = parkingType.name().toLowerCase() + ".";
+            String ratePerHour = properties.getProperty(prefix + "rate.per.hour");
+            if (ratePerHour == null) {
+                throw new IllegalArgumentException("Missing tariff rule " + prefix + "rate.per.hour");
+            }
+            long[] minuteRates = flatRate(parsePrice(ratePerHour));
+            String bands = properties.getProperty(prefix + "bands", "").trim();
+            if (!bands.isEmpty()) {
+                for (String band : bands.split(",")) {
+                    applyBand(minuteRates, band.trim());
+                }
+            }
+            String dailyCap = properties.getProperty(prefix + "daily.cap");
+            rates[parkingType.ordinal()] = minuteRates;
+            caps[parkingType.ordinal()] = dailyCap == null ? NO_CAP : parsePrice(dailyCap);
+        }
+        return new Tariff(freeDurationMillis, timeZone, rates, caps, parseLoyaltyTiers(properties.getProperty("loyalty.tiers", "")));
+    }
+
+    private static long[] flatRate(long ratePerHour) {
+        long[] minuteRates = new long[MINUTES_PER_DAY + 1];
+        Arrays.fill(minuteRates, 0, MINUTES_PER_DAY, ratePerHour);
+        return minuteRates;
+    }
+
+    // 07:00-10:00=2.5
+    private static void applyBand(long[] minuteRates, String band) {
+        int equals = band.indexOf('=');
+        int dash = band.indexOf('-');
+        if (equals < 0 || dash < 0 || dash > equals) {
+            throw new IllegalArgumentException("Invalid tariff band: " + band);
+        }
+        int from = parseMinuteOfDay(band.substring(0, dash));
+        int to = parseMinuteOfDay(band.substring(dash + 1, equals));
+        long ratePerHour = parsePrice(band.substring(equals + 1));
+        // a band ending at its start time covers the whole day
+        int minute = from;
+        do {
+            minuteRates[minute] = ratePerHour;
+            minute = (minute + 1) % MINUTES_PER_DAY;
+        } while (minute != to);
+    }
+
+    private static int parseMinuteOfDay(String time) {
+        String[] hoursAndMinutes = time.trim().split(":");
+        try {
+            int hours = Integer.parseInt(hoursAndMinutes[0]);
+            int minutes = hoursAndMinutes.length > 1 ? Integer.parseInt(hoursAndMinutes[1]) : 0;
+            if (hoursAndMinutes.length > 2 || hours < 0 || hours > 24 || minutes < 0 || minutes > 59 || hours * 60 + minutes > MINUTES_PER_DAY) {
+                throw new IllegalArgumentException("Invalid time of day: " + time);
+            }
+            return (hours * 60 + minutes) % MINUTES_PER_DAY;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid time of day: " + time, e);
+        }
+    }
+
+    // 1=5,10=10
+    private static int[] parseLoyaltyTiers(String tiers) {
+        TreeMap<Integer, Integer> discountByVisits = new TreeMap<>();
+        discountByVisits.put(0, 0);
+        for (String tier : tiers.split(",")) {
+            if (tier.trim().isEmpty()) {
+                continue;
+            }
+            String[] visitsAndPercent = tier.split("=");
+            try {
+                int visits = Integer.parseInt(visitsAndPercent[0].trim());
+                int percent = Integer.parseInt(visitsAndPercent[1].trim());
+                if (visitsAndPercent.length != 2 || visits < 0 || percent < 0 || percent > 100) {
+                    throw new IllegalArgumentException("Invalid loyalty tier: " + tier);
+                }
+                discountByVisits.put(visits, percent);
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid loyalty tier: " + tier, e);
+            }
+        }
+        int[] discountPercentByVisits = new int[discountByVisits.lastKey() + 1];
+        for (int visits = 0; visits < discountPercentByVisits.length; visits++) {
+            discountPercentByVisits[visits] = discountByVisits.floorEntry(visits).getValue();
+        }
+        return discountPercentByVisits;
+    }
+
+    private static long parseLong(Properties properties, String key, String defaultValue) {
+        String value = properties.getProperty(key, defaultValue).trim();
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid tariff rule " + key + "=" + value, e);
+        }
+    }
+
+    private static long parsePrice(String price) {
+        try {
+            long priceUnits = FareEngine.toPriceUnits(Double.parseDouble(price.trim()));
+            if (priceUnits < 0) {
+                throw new IllegalArgumentException("Negative price in tariff: " + price);
+            }
+            return priceUnits;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid price in tariff: " + price, e);
+        }
+    }
+
+    /**
+     * @return the price of the session in price units
+     */
+    public long price(ParkingType parkingType, long inTime, long outTime, int previousVisits) {
+        long duration = outTime - inTime;
+        if (duration < 0) {
+            throw new IllegalArgumentException("Out time provided is incorrect: " + outTime + " is before " + inTime);
+        }
+        int type = parkingType.ordinal();
+        if (duration <= freeDurationMillis) {
+            return 0;
+        }
+        // the offset of the in time is used for the whole session, so the billed duration is the real one
+        long localInTime = localTimeDependent ? inTime + timeZone.getOffset(inTime) : inTime;
+        long inDay = Math.floorDiv(localInTime, MILLIS_PER_DAY);
+        long inTimeOfDay = localInTime - inDay * MILLIS_PER_DAY;
+        long outTimeOfDay = inTimeOfDay + duration;
+
+        long cost;
+        if (outTimeOfDay <= MILLIS_PER_DAY) {
+            cost = capped(type, costUntil(type, outTimeOfDay) - costUntil(type, inTimeOfDay));
+        } else {
+            long fullDays = outTimeOfDay / MILLIS_PER_DAY - 1;
+            outTimeOfDay -= (fullDays + 1) * MILLIS_PER_DAY;
+            long dayCost = costAtMinute[type][MINUTES_PER_DAY];
+            cost = capped(type, dayCost - costUntil(type, inTimeOfDay))
+                    + fullDays * capped(type, dayCost)
+                    + capped(type, costUntil(type, outTimeOfDay));
+        }
+        long price = cost / MILLIS_PER_HOUR;
+        return price * (100 - getDiscountPercent(previousVisits)) / 100;
+    }
+
+    private long costUntil(int type, long timeOfDay) {
+        int minute = (int) (timeOfDay / MILLIS_PER_MINUTE);
+        return costAtMinute[type][minute] + ratePerHourAtMinute[type][minute] * (timeOfDay - minute * MILLIS_PER_MINUTE);
+    }
+
+    private long capped(int type, long cost) {
+        return Math.min(cost, dailyCap[type]);
+    }
+
+    public int getDiscountPercent(int previousVisits) {
+        if (previousVisits <= 0) {
+            return discountPercentByVisits[0];
+        }
+        return discountPercentByVisits[Math.min(previousVisits, discountPercentByVisits.length - 1)];
+    }
+
+    public long getFreeDurationMillis() {
+        return freeDurationMillis;
+    }
+}
@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem.service;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches a tariff file and hands every new version of it to a {@link FareEngine}, without restarting the gates.
+ * A file that does not compile is reported and the current tariff is kept.
+ */
+public class TariffReloader {
+
+    private static final Logger logger = LogManager.getLogger("TariffReloader");
+
+    public static final String TARIFF_FILE_PROPERTY = "parkit.tariff";
+    public static final long DEFAULT_PERIOD_MILLIS = 5000;
+
+    private final Path tariffFile;
+    private final FareEngine fareEngine;
+
+    private long lastModified = -1;
+    private long lastSize = -1;
+    private ScheduledExecutorService watcher;
+
+    public TariffReloader(Path tariffFile, FareEngine fareEngine) {
+        this.tariffFile = tariffFile;
+        this.fareEngine = fareEngine;
+    }
+
+    /**
+     * Load the tariff file if it changed since the last load.
+     * @return true when a new tariff is in use
+     */
+    public synchronized boolean reload() {
+        try {
+            long modified = Files.getLastModifiedTime(tariffFile).toMillis();
+            long size = Files.size(tariffFile);
+            if (modified == lastModified && size == lastSize) {
+                return false;
+            }
+            lastModified = modified;
+            lastSize = size;
+            Tariff tariff;
+            try (InputStream inputStream = Files.newInputStream(tariffFile)) {
+                tariff = Tariff.load(inputStream);
+            }
+            fareEngine.setTariff(tariff);
+            logger.info("Tariff loaded from " + tariffFile);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.error("Unable to load tariff from " + tariffFile + ", keeping the current one", e);
+            return false;
+        }
+    }
+
+    /**
+     * Load the tariff file now, then check it for changes every period.
+     */
+    public synchronized void start(long periodMillis) {
+        if (watcher != null) {
+            return;
+        }
+        reload();
+        watcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tariff-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watcher.scheduleWithFixedDelay(this::reload, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+            watcher = null;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ActiveTicketIndex;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ActiveTicketIndexTest {
+
+    private ActiveTicketIndex activeTicketIndex;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        activeTicketIndex = new ActiveTicketIndex();
+    }
+
+    @Test
+    public void openTicketIsFoundByPlate() {
+
+        //GIVEN
+
+        long inTime = System.currentTimeMillis() - (60 * 60 * 1000);
+
+        //WHEN
+
+        activeTicketIndex.ticketOpened(7, "ABCDEF", 2, ParkingType.CAR, inTime);
+        Ticket ticket = activeTicketIndex.getTicket("ABCDEF");
+
+        //THEN
+
+        assertNotNull(ticket);
+        assertEquals(7, ticket.getId());
+        assertEquals(2, ticket.getParkingSpot().getId());
+        assertEquals(ParkingType.CAR, ticket.getParkingSpot().getParkingType());
+        assertEquals(inTime, ticket.getInTime().getTime());
+        assertNull(ticket.getOutTime());
+    }
+
+    @Test
+    public void closedTicketIsForgotten() {
+
+        //GIVEN
+
+        activeTicketIndex.ticketOpened(7, "ABCDEF", 2, ParkingType.CAR, System.currentTimeMillis());
+
+        //WHEN
+
+        activeTicketIndex.ticketClosed("ABCDEF", 7);
+
+        //THEN
+
+        assertNull(activeTicketIndex.getTicket("ABCDEF"));
+        assertEquals(0, activeTicketIndex.size());
+    }
+
+    @Test
+    public void closingAnOlderTicketKeepsTheNewerOne() {
+
+        //GIVEN
+
+        activeTicketIndex.ticketOpened(7, "ABCDEF", 2, ParkingType.CAR, System.currentTimeMillis());
+        activeTicketIndex.ticketOpened(8, "ABCDEF", 3, ParkingType.CAR, System.currentTimeMillis());
+
+        //WHEN
+
+        activeTicketIndex.ticketClosed("ABCDEF", 7);
+
+        //THEN
+
+        assertEquals(8, activeTicketIndex.getTicket("ABCDEF").getId());
+    }
+}
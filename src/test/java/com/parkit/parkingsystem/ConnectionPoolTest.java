@@ -0,0 +1,225 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.ConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ConnectionPoolTest {
+
+    private List<Connection> physicalConnections;
+    private ConnectionPool connectionPool;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        physicalConnections = new ArrayList<>();
+        connectionPool = new ConnectionPool("test", () -> {
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            when(connection.getAutoCommit()).thenReturn(true);
+            physicalConnections.add(connection);
+            return connection;
+        }, 0, 2);
+        connectionPool.setBorrowTimeoutMillis(50);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connectionPool.shutdown();
+    }
+
+    @Test
+    public void closedConnectionIsReused() throws SQLException {
+
+        //WHEN
+
+        Connection first = connectionPool.getConnection();
+        first.close();
+        Connection second = connectionPool.getConnection();
+        second.close();
+
+        //THEN
+
+        assertEquals(1, physicalConnections.size());
+        verify(physicalConnections.get(0), never()).close();
+        assertTrue(first.isClosed());
+        assertEquals(0, connectionPool.getActiveCount());
+        assertEquals(1, connectionPool.getIdleCount());
+        assertEquals(2, connectionPool.getBorrowCount());
+    }
+
+    @Test
+    public void exhaustedPoolTimesOut() throws SQLException {
+
+        //GIVEN
+
+        connectionPool.getConnection();
+        connectionPool.getConnection();
+
+        //WHEN
+
+        SQLException exception = assertThrows(SQLException.class, () -> connectionPool.getConnection());
+
+        //THEN
+
+        assertTrue(exception.getMessage().startsWith("Timed out"));
+        assertEquals(2, connectionPool.getActiveCount());
+        assertEquals(1, connectionPool.getTimeoutCount());
+    }
+
+    @Test
+    public void invalidIdleConnectionIsReplaced() throws SQLException {
+
+        //GIVEN
+
+        // every idle connection validated
+        connectionPool.setValidationIdleMillis(-1);
+        connectionPool.getConnection().close();
+        connectionPool.getConnection().close();
+        when(physicalConnections.get(0).isValid(anyInt())).thenReturn(false);
+
+        //WHEN
+
+        Connection connection = connectionPool.getConnection();
+
+        //THEN
+
+        assertNotNull(connection);
+        assertEquals(2, physicalConnections.size());
+        verify(physicalConnections.get(0)).close();
+        assertEquals(1, connectionPool.getTotalCount());
+    }
+
+    @Test
+    public void onlyConnectionsIdleForLongAreValidated() throws Exception {
+
+        //GIVEN
+
+        ConnectionPool filledPool = new ConnectionPool("filled", () -> {
+            Connection connection = mock(Connection.class);
+            when(connection.isValid(anyInt())).thenReturn(true);
+            when(connection.getAutoCommit()).thenReturn(true);
+            physicalConnections.add(connection);
+            return connection;
+        }, 1, 2);
+        filledPool.setValidationIdleMillis(20);
+
+        //WHEN
+
+        try {
+            filledPool.start(60_000);
+            // opened at start and never borrowed, for longer than the validation idle time
+            Thread.sleep(50);
+            filledPool.getConnection().close();
+            filledPool.getConnection().close();
+
+            //THEN
+
+            assertEquals(1, physicalConnections.size());
+            verify(physicalConnections.get(0), times(1)).isValid(anyInt());
+        } finally {
+            filledPool.shutdown();
+        }
+    }
+
+    @Test
+    public void startedPoolIsShownWithJmx() throws Exception {
+
+        //GIVEN
+
+        ObjectName objectName = new ObjectName("com.parkit.parkingsystem:type=ConnectionPool,name=" + ObjectName.quote("test"));
+        MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+
+        //WHEN
+
+        connectionPool.start(60_000);
+        Connection connection = connectionPool.getConnection();
+
+        //THEN
+
+        try {
+            assertEquals(1, mBeanServer.getAttribute(objectName, "ActiveCount"));
+            assertEquals(1L, mBeanServer.getAttribute(objectName, "BorrowCount"));
+        } finally {
+            connection.close();
+            connectionPool.shutdown();
+        }
+        assertFalse(mBeanServer.isRegistered(objectName));
+    }
+
+    @Test
+    public void uncommittedWorkIsRolledBackOnRelease() throws SQLException {
+
+        //GIVEN
+
+        Connection connection = connectionPool.getConnection();
+        when(physicalConnections.get(0).getAutoCommit()).thenReturn(false);
+
+        //WHEN
+
+        connection.close();
+
+        //THEN
+
+        verify(physicalConnections.get(0)).rollback();
+        verify(physicalConnections.get(0)).setAutoCommit(true);
+    }
+
+    @Test
+    public void usingClosedHandleFails() throws SQLException {
+
+        //GIVEN
+
+        Connection connection = connectionPool.getConnection();
+        connection.close();
+
+        //THEN
+
+        assertThrows(SQLException.class, () -> connection.prepareStatement("SELECT 1"));
+    }
+
+    @Test
+    public void preparedStatementIsReusedAcrossBorrows() throws SQLException {
+
+        //GIVEN
+
+        Connection connection = connectionPool.getConnection();
+        PreparedStatement physicalStatement = mock(PreparedStatement.class);
+        when(physicalConnections.get(0).prepareStatement("SELECT ?")).thenReturn(physicalStatement);
+
+        //WHEN
+
+        PreparedStatement first = connection.prepareStatement("SELECT ?");
+        first.setInt(1, 1);
+        first.close();
+        connection.close();
+        connection = connectionPool.getConnection();
+        PreparedStatement second = connection.prepareStatement("SELECT ?");
+        PreparedStatement concurrent = connection.prepareStatement("SELECT ?");
+        second.close();
+        concurrent.close();
+        connection.close();
+
+        //THEN
+
+        verify(physicalConnections.get(0), times(2)).prepareStatement("SELECT ?");
+        verify(physicalStatement).setInt(1, 1);
+        verify(physicalStatement, times(2)).clearParameters();
+        verify(physicalStatement).close();
+        assertTrue(first.isClosed());
+        assertEquals(1, connectionPool.getStatementCacheHitCount());
+        assertEquals(2, connectionPool.getStatementCacheMissCount());
+    }
+}
@@ -0,0 +1,135 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.display.AsyncDisplaySink;
+import com.parkit.parkingsystem.display.DisplaySink;
+import com.parkit.parkingsystem.display.RingBufferDisplaySink;
+import com.parkit.parkingsystem.metrics.OccupancyCounters;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class DisplaySinkTest {
+
+    private static class RecordingDisplaySink implements DisplaySink {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void show(String message) {
+            showAll(Collections.singletonList(message));
+        }
+
+        @Override
+        public void showAll(List<String> batch) {
+            messages.addAll(batch);
+            batchSizes.add(batch.size());
+        }
+    }
+
+    @Test
+    public void asyncSinkWritesEveryMessageInOrderBeforeFlushReturns() {
+        //GIVEN
+        RecordingDisplaySink console = new RecordingDisplaySink();
+        AsyncDisplaySink display = new AsyncDisplaySink(console, 1000);
+        List<String> expected = new ArrayList<>();
+
+        //WHEN
+        for (int i = 0; i < 500; i++) {
+            display.show("message " + i);
+            expected.add("message " + i);
+        }
+        display.flush();
+
+        //THEN
+        assertEquals(expected, console.messages);
+        assertTrue(console.batchSizes.size() <= 500);
+        assertEquals(0, display.getDroppedCount());
+        display.close();
+    }
+
+    @Test
+    public void asyncSinkDropsMessagesInsteadOfWaitingWhenFull() throws Exception {
+        //GIVEN
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingDisplaySink console = new RecordingDisplaySink() {
+            @Override
+            public void showAll(List<String> batch) {
+                writing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.showAll(batch);
+            }
+        };
+        AsyncDisplaySink display = new AsyncDisplaySink(console, 2);
+        display.show("first");
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        //WHEN
+        display.show("second");
+        display.show("third");
+        display.show("fourth");
+        release.countDown();
+        display.flush();
+
+        //THEN
+        assertEquals(1, display.getDroppedCount());
+        assertEquals(Arrays.asList("first", "second", "third"), console.messages);
+        display.close();
+    }
+
+    @Test
+    public void ringBufferKeepsTheLastMessages() {
+        //GIVEN
+        RingBufferDisplaySink display = new RingBufferDisplaySink(3);
+
+        //WHEN
+        display.show("a");
+        display.show("b");
+        display.show("c");
+        display.show("d");
+
+        //THEN
+        assertEquals(Arrays.asList("b", "c", "d"), display.getRecentMessages());
+    }
+
+    @Test
+    public void parkingServiceShowsTicketMessagesOnTheSink() throws Exception {
+        //GIVEN
+        ParkingSpotIndex layout = new ParkingSpotIndex(1);
+        layout.addParkingSpot(1, ParkingType.CAR, true);
+        InMemoryParkingStore store = new InMemoryParkingStore(layout);
+        RingBufferDisplaySink display = new RingBufferDisplaySink(16);
+        InputReaderUtil inputReaderUtil = mock(InputReaderUtil.class);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
+        ParkingService parkingService = new ParkingService(inputReaderUtil, store, store, new FareCalculatorService(),
+                new OccupancyCounters(), display);
+
+        //WHEN
+        parkingService.processIncomingVehicle();
+
+        //THEN
+        List<String> messages = display.getRecentMessages();
+        assertTrue(messages.contains("Generated Ticket and saved in DB"));
+        assertTrue(messages.contains("Please park your vehicle in spot number:1"));
+    }
+}
@@ -0,0 +1,166 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketJournal;
+import com.parkit.parkingsystem.dao.TicketJournalWriter;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DAOs against the in-process database created from the schema script.
+ */
+public class EmbeddedDataBaseTest {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    private DataBaseTestConfig dataBaseConfig;
+    private ParkingSpotDAO parkingSpotDAO;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        dataBaseConfig = new DataBaseTestConfig("dao" + databases.incrementAndGet());
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        DataBaseConfig.shutdownPools();
+    }
+
+    @Test
+    public void daosRunOnTheSchemaScript() {
+
+        //GIVEN
+
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+
+        //WHEN
+
+        boolean isOccupied = parkingSpotDAO.updateParking(new ParkingSpot(1, ParkingType.CAR, false));
+        boolean isSaved = ticketDAO.saveTicket(ticket);
+        Ticket savedTicket = ticketDAO.getTicket("ABCDEF");
+
+        //THEN
+
+        assertTrue(isOccupied);
+        assertTrue(isSaved);
+        assertEquals(2, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(4, parkingSpotDAO.getNextAvailableSlot(ParkingType.BIKE));
+        assertEquals(ticket.getId(), savedTicket.getId());
+        assertEquals(ParkingType.CAR, savedTicket.getParkingSpot().getParkingType());
+        assertNull(savedTicket.getOutTime());
+        assertEquals(1, ticketDAO.getNbTicket("ABCDEF"));
+    }
+
+    @Test
+    public void closedTicketIsNotOpenAnyMore() {
+
+        //GIVEN
+
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(System.currentTimeMillis() - 60 * 60 * 1000));
+        ticketDAO.saveTicket(ticket);
+        ticket.setOutTime(new Date());
+        ticket.setPrice(1.5);
+        ticketDAO.updateTicket(ticket);
+
+        //WHEN
+
+        Ticket latestTicket = ticketDAO.getTicket("ABCDEF");
+        Ticket openTicket = ticketDAO.getOpenTicket("ABCDEF");
+
+        //THEN
+
+        assertEquals(ticket.getId(), latestTicket.getId());
+        assertNotNull(latestTicket.getOutTime());
+        assertNull(openTicket);
+    }
+
+    @Test
+    public void replayedJournalRecordsAreWrittenOnce() throws Exception {
+
+        //GIVEN
+
+        long inTime = System.currentTimeMillis() - 60 * 60 * 1000;
+        Path first = Files.createTempFile("tickets", ".journal");
+        Path second = Files.createTempFile("tickets", ".journal");
+        Files.delete(first);
+        Files.delete(second);
+
+        //WHEN
+
+        // the same gate events written twice, as after a crash between the database commit and the journal header
+        for (Path journalFile : new Path[]{first, second}) {
+            try (TicketJournal journal = TicketJournal.open(journalFile, 16)) {
+                journal.append(TicketJournal.ENTRY, "ABCDEF", 2, ParkingType.CAR, inTime, 0, 0);
+                journal.append(TicketJournal.EXIT, "ABCDEF", 2, ParkingType.CAR, inTime, inTime + 60 * 60 * 1000, 1.5);
+                journal.append(TicketJournal.ENTRY, "GHIJKL", 3, ParkingType.CAR, inTime, 0, 0);
+                new TicketJournalWriter(journal, dataBaseConfig, 100).drain();
+            }
+            Files.delete(journalFile);
+        }
+
+        //THEN
+
+        assertEquals(2, dataBaseConfig.count("select count(*) from ticket"));
+        assertEquals(1, dataBaseConfig.count("select count(*) from ticket where VEHICLE_REG_NUMBER = 'ABCDEF' and OUT_TIME is not null and PRICE = 1.5"));
+        assertEquals(1, dataBaseConfig.count("select count(*) from parking where PARKING_NUMBER = 2 and AVAILABLE = true"));
+        assertEquals(1, dataBaseConfig.count("select count(*) from parking where PARKING_NUMBER = 3 and AVAILABLE = false"));
+    }
+
+    @Test
+    public void tablesAddedSinceADatabaseWasCreatedAreCreated() throws Exception {
+
+        //GIVEN
+
+        String database = "older" + databases.incrementAndGet();
+        String url = EmbeddedDataBaseConfig.inMemoryUrl(database);
+        // the tables of the first version of the schema, with a spot of its own
+        try (Connection con = DriverManager.getConnection(url, "sa", ""); Statement statement = con.createStatement()) {
+            statement.execute("create table parking(PARKING_NUMBER int PRIMARY KEY, AVAILABLE bool NOT NULL, TYPE varchar(10) NOT NULL)");
+            statement.execute("create table ticket(ID int PRIMARY KEY AUTO_INCREMENT, PARKING_NUMBER int NOT NULL,"
+                    + " VEHICLE_REG_NUMBER varchar(10) NOT NULL, PRICE double, IN_TIME DATETIME NOT NULL, OUT_TIME DATETIME)");
+            statement.execute("insert into parking(PARKING_NUMBER,AVAILABLE,TYPE) values(7,true,'CAR')");
+        }
+        dataBaseConfig = new DataBaseTestConfig(database);
+
+        //WHEN
+
+        int reservations = dataBaseConfig.count("select count(*) from reservation");
+
+        //THEN
+
+        assertEquals(0, reservations);
+        assertEquals(0, dataBaseConfig.count("select count(*) from ticket_archive"));
+        assertEquals(0, dataBaseConfig.count("select count(*) from visit_summary"));
+        assertEquals(0, dataBaseConfig.count("select count(*) from replication_heartbeat"));
+        assertEquals(1, dataBaseConfig.count("select count(*) from parking"));
+    }
+}
@@ -267,4 +267,27 @@ public class FareCalculatorServiceTest {
         double delta = 0.001;
         assertEquals((0.95 * Fare.BIKE_RATE_PER_HOUR), ticket.getPrice(), delta);
     }
+
+    @Test
+    public void calculateFareReturnsTicketPrice() {
+
+        //GIVEN
+
+        Date inTime = new Date();
+        inTime.setTime(System.currentTimeMillis() - (2 * 60 * 60 * 1000));
+        Date outTime = new Date(inTime.getTime() + (2 * 60 * 60 * 1000));
+        ParkingSpot parkingSpot = new ParkingSpot(1, ParkingType.CAR, false);
+
+        //WHEN
+
+        ticket.setInTime(inTime);
+        ticket.setOutTime(outTime);
+        ticket.setParkingSpot(parkingSpot);
+        double price = fareCalculatorService.calculateFare(ticket, false);
+
+        //THEN
+
+        assertEquals(2 * Fare.CAR_RATE_PER_HOUR, price);
+        assertEquals(price, ticket.getPrice());
+    }
 }
@@ -0,0 +1,58 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareEngine;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FareEngineTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    private static FareEngine fareEngine;
+
+    @BeforeAll
+    public static void setUp() {
+        fareEngine = new FareEngine();
+    }
+
+    @Test
+    public void priceIsExactInPriceUnits() {
+        assertEquals(11250, fareEngine.price(ParkingType.CAR, 0, 45 * MINUTE, false));
+        assertEquals(7500, fareEngine.price(ParkingType.BIKE, 0, 45 * MINUTE, false));
+        assertEquals(14250, fareEngine.price(ParkingType.CAR, 0, 60 * MINUTE, true));
+        assertEquals(0, fareEngine.price(ParkingType.CAR, 0, 30 * MINUTE, false));
+        assertEquals(1.125, FareEngine.toPrice(11250));
+    }
+
+    @Test
+    public void priceAllMatchesSinglePricing() {
+
+        //GIVEN
+
+        ParkingType[] parkingTypes = {ParkingType.CAR, ParkingType.BIKE, ParkingType.CAR, ParkingType.BIKE};
+        long[] inTimes = {0, 0, 1000, 5000};
+        long[] outTimes = {90 * MINUTE, 20 * MINUTE, 1000 + 24 * 60 * MINUTE, 5000 + 61 * MINUTE};
+        boolean[] discounts = {false, false, true, true};
+        long[] prices = new long[4];
+
+        //WHEN
+
+        fareEngine.priceAll(parkingTypes, inTimes, outTimes, discounts, prices);
+
+        //THEN
+
+        for (int i = 0; i < prices.length; i++) {
+            assertEquals(fareEngine.price(parkingTypes[i], inTimes[i], outTimes[i], discounts[i]), prices[i]);
+        }
+        assertEquals(22500, prices[0]);
+        assertEquals(0, prices[1]);
+    }
+
+    @Test
+    public void outTimeBeforeInTimeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> fareEngine.price(ParkingType.CAR, MINUTE, 0, false));
+    }
+}
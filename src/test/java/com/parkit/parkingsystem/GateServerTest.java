@@ -0,0 +1,358 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.RecurringCustomerCache;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.display.RingBufferDisplaySink;
+import com.parkit.parkingsystem.gate.GateLoadGenerator;
+import com.parkit.parkingsystem.gate.GateServer;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.metrics.OccupancyCounters;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.ParkingService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class GateServerTest {
+
+    private ParkingService parkingService;
+    private OccupancyCounters occupancyCounters;
+    private GateServer gateServer;
+
+    @BeforeEach
+    public void setUpPerTest() throws IOException {
+        parkingService = mock(ParkingService.class);
+        occupancyCounters = new OccupancyCounters();
+        when(parkingService.getOccupancyCounters()).thenReturn(occupancyCounters);
+        gateServer = new GateServer(parkingService, 0, 4);
+        gateServer.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        gateServer.stop();
+        occupancyCounters.shutdown();
+    }
+
+    private static Ticket ticket(String vehicleRegNumber, Date outTime, double price) {
+        Ticket ticket = new Ticket();
+        ticket.setId(12);
+        ticket.setParkingSpot(new ParkingSpot(3, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(1000));
+        ticket.setOutTime(outTime);
+        ticket.setPrice(price);
+        return ticket;
+    }
+
+    private String post(String path, String form, int expectedStatus) throws IOException {
+        return post(gateServer, path, form, expectedStatus);
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + gateServer.getPort() + path).openConnection();
+        assertEquals(200, connection.getResponseCode());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = connection.getInputStream()) {
+            int read;
+            while ((read = in.read()) != -1) {
+                body.write(read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static String post(GateServer gateServer, String path, String form, int expectedStatus) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + gateServer.getPort() + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(form.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(expectedStatus, connection.getResponseCode());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = expectedStatus < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            int read;
+            while ((read = in.read()) != -1) {
+                body.write(read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void entryAndExitAreForwardedToTheParkingService() throws Exception {
+
+        //GIVEN
+
+        when(parkingService.processIncomingVehicle(ParkingType.CAR, "AB123")).thenReturn(ticket("AB123", null, 0));
+        when(parkingService.processExitingVehicle("AB123")).thenReturn(ticket("AB123", new Date(7201000), 3.0));
+
+        //WHEN
+
+        String entry = post("/entries", "type=car&plate=AB-123", 201);
+        String exit = post("/exits?plate=AB-123", "", 200);
+
+        //THEN
+
+        assertTrue(entry.contains("\"parkingNumber\":3"));
+        assertTrue(entry.contains("\"outTime\":null"));
+        assertTrue(exit.contains("\"price\":3.0"));
+        assertTrue(exit.contains("\"outTime\":7201000"));
+    }
+
+    @Test
+    public void kioskScreensPollTheMessagesOfEntriesAndExits() throws Exception {
+
+        //GIVEN
+
+        when(parkingService.processIncomingVehicle(ParkingType.CAR, "AB123")).thenReturn(ticket("AB123", null, 0));
+        when(parkingService.processExitingVehicle("AB123")).thenReturn(ticket("AB123", new Date(7201000), 3.0));
+        HttpURLConnection withoutKiosk = (HttpURLConnection) new URL("http://localhost:" + gateServer.getPort() + "/display").openConnection();
+        assertEquals(404, withoutKiosk.getResponseCode());
+        gateServer.setKioskDisplay(null, new RingBufferDisplaySink(RingBufferDisplaySink.DEFAULT_CAPACITY));
+
+        //WHEN
+
+        post("/entries", "type=CAR&plate=AB-123", 201);
+        post("/exits", "plate=AB-123", 200);
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + gateServer.getPort() + "/display").openConnection();
+        String display;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            display = reader.readLine();
+        }
+
+        //THEN
+
+        assertEquals("{\"messages\":[\"AB123: please park your vehicle in spot number 3\",\"AB123: please pay the parking fare 3.0\"]}", display);
+    }
+
+    @Test
+    public void reservationsAreForwardedToTheReservationDAO() throws Exception {
+
+        //GIVEN
+
+        ReservationDAO reservationDAO = mock(ReservationDAO.class);
+        Date startTime = Date.from(LocalDateTime.parse("2026-01-10T14:00").atZone(ZoneId.systemDefault()).toInstant());
+        Date endTime = Date.from(LocalDateTime.parse("2026-01-10T18:00").atZone(ZoneId.systemDefault()).toInstant());
+        Reservation reservation = new Reservation();
+        reservation.setId(7);
+        reservation.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, true));
+        reservation.setVehicleRegNumber("AB123");
+        reservation.setStartTime(startTime);
+        reservation.setEndTime(endTime);
+        when(reservationDAO.reserve(ParkingType.CAR, "AB123", startTime, endTime)).thenReturn(reservation);
+        when(reservationDAO.reserve(eq(ParkingType.BIKE), anyString(), any(Date.class), any(Date.class))).thenReturn(null);
+
+        //WHEN
+
+        post("/reservations", "type=CAR&plate=AB-123&start=2026-01-10T14:00&end=2026-01-10T18:00", 404);
+        gateServer.setReservationDAO(null, reservationDAO);
+        String reserved = post("/reservations", "type=CAR&plate=AB-123&start=2026-01-10T14:00&end=2026-01-10T18:00", 201);
+
+        //THEN
+
+        assertTrue(reserved.contains("\"id\":7"));
+        assertTrue(reserved.contains("\"parkingNumber\":2"));
+        assertTrue(reserved.contains("\"startTime\":" + startTime.getTime()));
+        post("/reservations", "type=BIKE&plate=AB-123&start=2026-01-10T14:00&end=2026-01-10T18:00", 409);
+        post("/reservations", "type=CAR&plate=AB-123&start=tomorrow&end=2026-01-10T18:00", 400);
+        post("/reservations", "type=CAR&plate=AB-123&start=2026-01-10T14:00", 400);
+    }
+
+    @Test
+    public void refusedEventsGetTheirStatus() throws Exception {
+
+        //GIVEN
+
+        when(parkingService.processIncomingVehicle(eq(ParkingType.BIKE), anyString())).thenReturn(null);
+        when(parkingService.processExitingVehicle("UNKNOWN")).thenReturn(null);
+        when(parkingService.processExitingVehicle("BROKEN")).thenThrow(new Exception("database down"));
+
+        //THEN
+
+        post("/entries", "type=BIKE&plate=AB-123", 409);
+        post("/entries", "type=BOAT&plate=AB-123", 400);
+        post("/entries", "type=CAR&plate=ABCDEFGHIJKLMNOP", 400);
+        post("/exits", "plate=UNKNOWN", 404);
+        post("/exits", "plate=BROKEN", 500);
+        verify(parkingService, never()).processIncomingVehicle(eq(ParkingType.CAR), anyString());
+    }
+
+    @Test
+    public void eventsAreRoutedToTheirSite() throws Exception {
+
+        //GIVEN
+
+        ParkingService north = mock(ParkingService.class);
+        ParkingService south = mock(ParkingService.class);
+        Ticket southTicket = ticket("AB123", null, 0);
+        southTicket.setSiteId("south");
+        when(south.processIncomingVehicle(ParkingType.CAR, "AB123")).thenReturn(southTicket);
+        Map<String, ParkingService> sites = new LinkedHashMap<>();
+        sites.put("north", north);
+        sites.put("south", south);
+        GateServer multiSiteServer = new GateServer(sites, 0, 4);
+        multiSiteServer.start();
+        try {
+
+            //WHEN
+
+            String entry = post(multiSiteServer, "/entries?site=south", "type=CAR&plate=AB-123", 201);
+
+            //THEN
+
+            assertTrue(entry.contains("\"site\":\"south\""), entry);
+            post(multiSiteServer, "/entries", "type=CAR&plate=AB-123", 400);
+            post(multiSiteServer, "/exits?site=west", "plate=AB-123", 404);
+            verify(north, never()).processIncomingVehicle(any(ParkingType.class), anyString());
+        } finally {
+            multiSiteServer.stop();
+        }
+    }
+
+    @Test
+    public void loadGeneratorSustainsConcurrentGates() throws Exception {
+
+        //GIVEN
+
+        when(parkingService.processIncomingVehicle(eq(ParkingType.CAR), anyString())).thenReturn(ticket("LOAD", null, 0));
+        when(parkingService.processExitingVehicle(anyString())).thenReturn(ticket("LOAD", new Date(), 0));
+        GateLoadGenerator loadGenerator = new GateLoadGenerator("http://localhost:" + gateServer.getPort(), 4, 500);
+
+        //WHEN
+
+        loadGenerator.run();
+
+        //THEN
+
+        assertTrue(loadGenerator.getEvents() > 0, loadGenerator.getReport());
+        assertEquals(0, loadGenerator.getFailures(), loadGenerator.getReport());
+        assertTrue(loadGenerator.getEventsPerSecond() > 0);
+    }
+
+    @Test
+    public void recurringCustomerCacheIsServedWithTheMetrics() throws Exception {
+
+        //GIVEN
+
+        RecurringCustomerCache cache = new RecurringCustomerCache(1, 60 * 1000);
+        cache.put("ABCDEF", 3);
+        cache.put("GHIJKL", 1);
+        cache.getNbTicket("GHIJKL");
+        cache.getNbTicket("ABCDEF");
+        gateServer.setRecurringCustomerCache(null, cache);
+
+        //WHEN
+
+        String metrics = get("/metrics");
+
+        //THEN
+
+        assertTrue(metrics.contains("parkit_recurring_customer_cache_hits_total 1\n"), metrics);
+        assertTrue(metrics.contains("parkit_recurring_customer_cache_misses_total 1\n"), metrics);
+        assertTrue(metrics.contains("parkit_recurring_customer_cache_evictions_total 1\n"), metrics);
+        assertTrue(metrics.contains("parkit_recurring_customer_cache_hit_ratio 0.5\n"), metrics);
+    }
+
+    @Test
+    public void connectionPoolsAreServedWithTheMetrics() throws Exception {
+
+        //GIVEN
+
+        DataBaseConfig dataBaseConfig = new DataBaseTestConfig("gate-metrics");
+        Connection connection = dataBaseConfig.getConnection();
+
+        //WHEN
+
+        String metrics;
+        try {
+            metrics = get("/metrics");
+        } finally {
+            dataBaseConfig.closeConnection(connection);
+            dataBaseConfig.shutdownPool();
+        }
+
+        //THEN
+
+        String pool = "{pool=\"" + EmbeddedDataBaseConfig.inMemoryUrl("gate-metrics") + "\"} ";
+        assertTrue(metrics.contains("parkit_connection_pool_active_connections" + pool + "1\n"), metrics);
+        assertTrue(metrics.contains("parkit_connection_pool_borrows_total" + pool), metrics);
+        assertTrue(metrics.contains("parkit_connection_pool_wait_seconds_total" + pool), metrics);
+        assertTrue(metrics.contains("parkit_connection_pool_leaks_total" + pool + "0\n"), metrics);
+    }
+
+    @Test
+    public void occupancyIsServedAndPushed() throws Exception {
+
+        //GIVEN
+
+        occupancyCounters.initialize(ParkingType.CAR, 10, 0);
+        occupancyCounters.initialize(ParkingType.BIKE, 5, 0);
+        HttpURLConnection events = (HttpURLConnection) new URL("http://localhost:" + gateServer.getPort() + "/occupancy/events").openConnection();
+
+        //WHEN
+
+        String metrics;
+        String lastCarEvent = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(events.getInputStream(), StandardCharsets.UTF_8))) {
+            assertEquals(200, events.getResponseCode());
+            occupancyCounters.vehicleParked(ParkingType.CAR);
+            occupancyCounters.startPublishing(10);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.contains("\"CAR\"")) {
+                    lastCarEvent = line;
+                    if (line.contains("\"freeSpots\":9")) {
+                        break;
+                    }
+                }
+            }
+            HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + gateServer.getPort() + "/metrics").openConnection();
+            try (BufferedReader metricsReader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                StringBuilder content = new StringBuilder();
+                while ((line = metricsReader.readLine()) != null) {
+                    content.append(line).append('\n');
+                }
+                metrics = content.toString();
+            }
+        } finally {
+            events.disconnect();
+        }
+
+        //THEN
+
+        assertEquals("data: {\"parkingType\":\"CAR\",\"freeSpots\":9,\"activeSessions\":1}", lastCarEvent);
+        assertTrue(metrics.contains("parkit_free_spots{type=\"CAR\"} 9\n"), metrics);
+        assertTrue(metrics.contains("parkit_active_sessions{type=\"CAR\"} 1\n"), metrics);
+        assertTrue(metrics.contains("parkit_free_spots{type=\"BIKE\"} 5\n"), metrics);
+        verifyZeroInteractions(ignoreStubs(parkingService));
+    }
+}
@@ -0,0 +1,134 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryParkingStoreTest {
+
+    private InMemoryParkingStore store;
+    private ParkingService parkingService;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        ParkingSpotIndex layout = new ParkingSpotIndex(5);
+        for (int number = 1; number <= 5; number++) {
+            layout.addParkingSpot(number, number <= 3 ? ParkingType.CAR : ParkingType.BIKE, false);
+        }
+        store = new InMemoryParkingStore(layout);
+        parkingService = new ParkingService(new InputReaderUtil(), store, store, new FareCalculatorService());
+    }
+
+    @Test
+    public void gateFlowsRunOnTheStore() throws Exception {
+
+        //GIVEN
+
+        parkingService.processExitingVehicle(parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF").getVehicleRegNumber());
+
+        //WHEN
+
+        Ticket entry = parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        Ticket exit = parkingService.processExitingVehicle("ABCDEF");
+
+        //THEN
+
+        assertEquals(2, entry.getId());
+        assertEquals(1, entry.getParkingSpot().getId());
+        assertTrue(entry.isRegularCustomer());
+        assertEquals(2, exit.getId());
+        assertNotNull(exit.getOutTime());
+        assertEquals(2, store.getNbTicket("ABCDEF"));
+        assertEquals(3, store.getParkingSpotIndex().getAvailableCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void parkedVehicleCannotEnterTwice() throws Exception {
+
+        //GIVEN
+
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+
+        //WHEN
+
+        assertThrows(Exception.class, () -> parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF"));
+
+        //THEN
+
+        assertEquals(2, store.getParkingSpotIndex().getAvailableCount(ParkingType.CAR));
+        assertEquals(1, store.getNbTicket("ABCDEF"));
+    }
+
+    @Test
+    public void vehicleThatLeftCannotExitAgain() throws Exception {
+
+        //GIVEN
+
+        parkingService.processIncomingVehicle(ParkingType.CAR, "AAAAAA");
+        Ticket left = parkingService.processExitingVehicle("AAAAAA");
+        Ticket parked = parkingService.processIncomingVehicle(ParkingType.CAR, "BBBBBB");
+
+        //WHEN
+
+        Ticket exitAgain = parkingService.processExitingVehicle("AAAAAA");
+        Ticket next = parkingService.processIncomingVehicle(ParkingType.CAR, "CCCCCC");
+
+        //THEN
+
+        assertNull(exitAgain);
+        assertNull(store.getOpenTicket("AAAAAA"));
+        assertEquals(left.getPrice(), store.getTicket("AAAAAA").getPrice());
+        assertEquals(left.getOutTime(), store.getTicket("AAAAAA").getOutTime());
+        assertFalse(store.updateTicket(left));
+        assertEquals(1, parked.getParkingSpot().getId());
+        assertEquals(2, next.getParkingSpot().getId());
+    }
+
+    @Test
+    public void snapshotRestoresTicketsAndOccupiedSpots() throws Exception {
+
+        //GIVEN
+
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        parkingService.processIncomingVehicle(ParkingType.BIKE, "GHIJKL");
+        parkingService.processExitingVehicle("ABCDEF");
+        parkingService.processIncomingVehicle(ParkingType.CAR, "MNOPQR");
+        Path snapshot = Files.createTempFile("parking", ".snapshot");
+
+        //WHEN
+
+        InMemoryParkingStore restored;
+        try {
+            store.saveSnapshot(snapshot);
+            restored = InMemoryParkingStore.loadSnapshot(snapshot);
+        } finally {
+            Files.delete(snapshot);
+        }
+
+        //THEN
+
+        assertEquals(2, restored.getParkingSpotIndex().getAvailableCount(ParkingType.CAR));
+        assertEquals(1, restored.getParkingSpotIndex().getAvailableCount(ParkingType.BIKE));
+        assertFalse(restored.getParkingSpotIndex().isAvailable(1));
+        assertNotNull(restored.getTicket("ABCDEF").getOutTime());
+        Ticket parked = restored.getTicket("GHIJKL");
+        assertNull(parked.getOutTime());
+        assertEquals(4, parked.getParkingSpot().getId());
+        assertEquals(ParkingType.BIKE, parked.getParkingSpot().getParkingType());
+        Ticket next = new ParkingService(new InputReaderUtil(), restored, restored, new FareCalculatorService())
+                .processIncomingVehicle(ParkingType.CAR, "STUVWX");
+        assertEquals(4, next.getId());
+        assertEquals(2, next.getParkingSpot().getId());
+    }
+}
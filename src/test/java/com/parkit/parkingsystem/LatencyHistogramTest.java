@@ -0,0 +1,56 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.metrics.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void percentilesAreWithinTheHistogramPrecision() {
+
+        //GIVEN
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //WHEN
+
+        // 1 µs to 10 ms
+        for (long micros = 1; micros <= 10000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        //THEN
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10_000_000, histogram.getMaxNanos());
+        assertEquals(5_000_500, histogram.getMeanNanos(), 1);
+        assertEquals(5_000_000, histogram.getValueAtPercentile(50), 5_000_000 * 0.07);
+        assertEquals(9_900_000, histogram.getValueAtPercentile(99), 9_900_000 * 0.07);
+        assertEquals(10_000_000, histogram.getValueAtPercentile(100));
+        assertTrue(histogram.getValueAtPercentile(50) >= 5_000_000);
+    }
+
+    @Test
+    public void smallAndOutOfRangeValuesAreCounted() {
+
+        //GIVEN
+
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        //WHEN
+
+        histogram.record(7);
+        histogram.record(-3);
+        histogram.record(Long.MAX_VALUE);
+
+        //THEN
+
+        assertEquals(3, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(10));
+        assertEquals(7, histogram.getValueAtPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getMaxNanos());
+        assertTrue(histogram.getValueAtPercentile(100) >= LatencyHistogram.MAX_TRACKABLE_NANOS * 0.9);
+    }
+}
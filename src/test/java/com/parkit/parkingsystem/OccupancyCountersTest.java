@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.metrics.OccupancyCounters;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OccupancyCountersTest {
+
+    private OccupancyCounters occupancyCounters;
+    private ParkingService parkingService;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        ParkingSpotIndex layout = new ParkingSpotIndex(5);
+        for (int number = 1; number <= 5; number++) {
+            layout.addParkingSpot(number, number <= 3 ? ParkingType.CAR : ParkingType.BIKE, number != 1);
+        }
+        InMemoryParkingStore store = new InMemoryParkingStore(layout);
+        occupancyCounters = new OccupancyCounters();
+        occupancyCounters.initialize(ParkingType.CAR, layout.getAvailableCount(ParkingType.CAR), 1);
+        occupancyCounters.initialize(ParkingType.BIKE, layout.getAvailableCount(ParkingType.BIKE), 0);
+        parkingService = new ParkingService(new InputReaderUtil(), store, store, new FareCalculatorService(), occupancyCounters);
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        occupancyCounters.shutdown();
+    }
+
+    @Test
+    public void gatesUpdateTheCounters() throws Exception {
+
+        //WHEN
+
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        parkingService.processIncomingVehicle(ParkingType.BIKE, "GHIJKL");
+        parkingService.processIncomingVehicle(ParkingType.CAR, "MNOPQR");
+        parkingService.processExitingVehicle("ABCDEF");
+        parkingService.processExitingVehicle("UNKNOWN");
+
+        //THEN
+
+        assertEquals(1, occupancyCounters.getFreeSpots(ParkingType.CAR));
+        assertEquals(2, occupancyCounters.getActiveSessions(ParkingType.CAR));
+        assertEquals(1, occupancyCounters.getFreeSpots(ParkingType.BIKE));
+        assertEquals(1, occupancyCounters.getActiveSessions(ParkingType.BIKE));
+        assertEquals(2, occupancyCounters.getEntryCount(ParkingType.CAR));
+        assertEquals(1, occupancyCounters.getExitCount(ParkingType.CAR));
+        assertEquals(0.0, occupancyCounters.getRevenue(ParkingType.CAR));
+    }
+
+    @Test
+    public void listenersArePushedChangesOnly() throws Exception {
+
+        //GIVEN
+
+        BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        occupancyCounters.addListener((parkingType, freeSpots, activeSessions) -> events.add(parkingType + " " + freeSpots + " " + activeSessions));
+        occupancyCounters.startPublishing(10);
+        assertEquals("CAR 2 1", events.poll(5, TimeUnit.SECONDS));
+        assertEquals("BIKE 2 0", events.poll(5, TimeUnit.SECONDS));
+
+        //WHEN
+
+        parkingService.processIncomingVehicle(ParkingType.BIKE, "GHIJKL");
+
+        //THEN
+
+        assertEquals("BIKE 1 1", events.poll(5, TimeUnit.SECONDS));
+        assertNull(events.poll(100, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,85 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.metrics.OperationMetrics;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class OperationMetricsTest {
+
+    @Test
+    public void gateEventsAreTimedAndFailuresCounted() throws Exception {
+
+        //GIVEN
+
+        ParkingSpotIndex layout = new ParkingSpotIndex(3);
+        for (int number = 1; number <= 3; number++) {
+            layout.addParkingSpot(number, ParkingType.CAR, true);
+        }
+        InMemoryParkingStore store = new InMemoryParkingStore(layout);
+        ParkingService parkingService = new ParkingService(new InputReaderUtil(), store, store, new FareCalculatorService());
+        OperationMetrics incoming = OperationMetrics.forOperation("ParkingService.processIncomingVehicle");
+        OperationMetrics exiting = OperationMetrics.forOperation("ParkingService.processExitingVehicle");
+        OperationMetrics calculateFare = OperationMetrics.forOperation("FareCalculatorService.calculateFare");
+        long incomingCount = incoming.getCount();
+        long incomingErrors = incoming.getErrorCount();
+        long exitingCount = exiting.getCount();
+        long calculateFareCount = calculateFare.getCount();
+
+        //WHEN
+
+        parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        assertThrows(Exception.class, () -> parkingService.processIncomingVehicle(ParkingType.CAR, "ABCDEF"));
+        parkingService.processExitingVehicle("ABCDEF");
+
+        //THEN
+
+        assertEquals(incomingCount + 2, incoming.getCount());
+        assertEquals(incomingErrors + 1, incoming.getErrorCount());
+        assertEquals(exitingCount + 1, exiting.getCount());
+        assertEquals(calculateFareCount + 1, calculateFare.getCount());
+        assertTrue(incoming.getMaxMillis() > 0);
+        assertEquals(incoming.getCount(), ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName(OperationMetrics.JMX_DOMAIN + ":type=Operation,name=ParkingService.processIncomingVehicle"), "Count"));
+        StringBuilder scrape = new StringBuilder();
+        OperationMetrics.appendPrometheus(scrape);
+        assertTrue(scrape.toString().contains("parkit_operation_duration_seconds_count{operation=\"ParkingService.processExitingVehicle\"} " + exiting.getCount() + "\n"));
+        assertTrue(scrape.toString().contains("parkit_operation_errors_total{operation=\"ParkingService.processIncomingVehicle\"} " + incoming.getErrorCount() + "\n"));
+    }
+
+    @Test
+    public void consoleEntriesAreTimed() throws Exception {
+
+        //GIVEN
+
+        ParkingSpotIndex layout = new ParkingSpotIndex(1);
+        layout.addParkingSpot(1, ParkingType.CAR, true);
+        InMemoryParkingStore store = new InMemoryParkingStore(layout);
+        InputReaderUtil inputReaderUtil = mock(InputReaderUtil.class);
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("GHIJKL");
+        ParkingService parkingService = new ParkingService(inputReaderUtil, store, store, new FareCalculatorService());
+        OperationMetrics incoming = OperationMetrics.forOperation("ParkingService.processIncomingVehicle");
+        long incomingCount = incoming.getCount();
+
+        //WHEN
+
+        parkingService.processIncomingVehicle();
+
+        //THEN
+
+        assertEquals(incomingCount + 1, incoming.getCount());
+        assertNotNull(store.getOpenTicket("GHIJKL"));
+    }
+}
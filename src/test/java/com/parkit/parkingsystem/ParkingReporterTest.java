@@ -0,0 +1,101 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.report.ParkingReport;
+import com.parkit.parkingsystem.report.ParkingReporter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingReporterTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+
+    private DataBaseConfig dataBaseConfig;
+    private TicketDAO ticketDAO;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        dataBaseConfig = new DataBaseTestConfig("report");
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        pool = new ForkJoinPool(1);
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        pool.shutdown();
+        DataBaseConfig.shutdownPools();
+    }
+
+    private static long time(int day, int hour, int minute) {
+        return LocalDateTime.of(2026, 1, day, hour, minute).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void saveTicket(int parkingNumber, ParkingType parkingType, long inTime, long outTime, double price) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(parkingNumber, parkingType, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(inTime));
+        ticketDAO.saveTicket(ticket);
+        if (outTime != 0) {
+            ticket.setOutTime(new Date(outTime));
+            ticket.setPrice(price);
+            ticketDAO.updateTicket(ticket);
+        }
+    }
+
+    @Test
+    public void ticketsOfThePeriodAreAggregated() throws Exception {
+
+        //GIVEN
+
+        saveTicket(1, ParkingType.CAR, time(10, 8, 0), time(10, 10, 0), 3.0);
+        saveTicket(2, ParkingType.CAR, time(10, 8, 30), time(10, 14, 0), 5.0);
+        saveTicket(4, ParkingType.BIKE, time(10, 9, 0), 0, 0);
+        saveTicket(3, ParkingType.CAR, time(9, 22, 0), time(10, 1, 0), 2.0);
+        saveTicket(3, ParkingType.CAR, time(9, 10, 0), time(9, 11, 0), 2.0);
+        Connection con = dataBaseConfig.getConnection();
+        try (PreparedStatement ps = con.prepareStatement("insert into ticket_archive(ID, PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(100, 1, 'GHIJKL', 1.5, ?, ?)")) {
+            ps.setTimestamp(1, new Timestamp(time(10, 19, 0)));
+            ps.setTimestamp(2, new Timestamp(time(10, 20, 0)));
+            ps.executeUpdate();
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+
+        //WHEN
+
+        // chunks of two rows on one worker, so that reading waits for the aggregation of the oldest chunk
+        ParkingReport report = new ParkingReporter(dataBaseConfig, pool, 2).report(time(10, 0, 0), time(11, 0, 0), 6 * HOUR);
+
+        //THEN
+
+        assertArrayEquals(new long[]{1, 3, 2, 2}, report.getOccupancy());
+        assertEquals(3, report.getEntryCount(ParkingType.CAR));
+        assertEquals(4, report.getExitCount(ParkingType.CAR));
+        assertEquals(11.5, report.getRevenue(ParkingType.CAR));
+        assertEquals((2 * HOUR + 5 * HOUR + HOUR / 2 + 3 * HOUR + HOUR) / 4, report.getAverageStayMillis(ParkingType.CAR));
+        assertEquals(1, report.getEntryCount(ParkingType.BIKE));
+        assertEquals(0, report.getExitCount(ParkingType.BIKE));
+        assertEquals(0, report.getAverageStayMillis(ParkingType.BIKE));
+        assertEquals(8, report.getPeakHour());
+        assertEquals(2, report.getEntriesPerHour()[8]);
+    }
+}
@@ -0,0 +1,256 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.UnitOfWork;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Many gates running the entry and exit flows of one ParkingService at the same time,
+ * on in-memory DAOs so that only the service and the model are under test.
+ */
+public class ParkingServiceConcurrencyTest {
+
+    private static final int GATES = 32;
+    private static final int CAR_SPOTS = 500;
+    private static final int BIKE_SPOTS = 100;
+
+    private InMemoryParkingSpotDAO parkingSpotDAO;
+    private InMemoryTicketDAO ticketDAO;
+    private ParkingService parkingService;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        parkingSpotDAO = new InMemoryParkingSpotDAO(CAR_SPOTS, BIKE_SPOTS);
+        ticketDAO = new InMemoryTicketDAO();
+        parkingService = new ParkingService(new InputReaderUtil(), parkingSpotDAO, ticketDAO, new FareCalculatorService());
+    }
+
+    private static void runGates(int gates, GateTask task) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        ConcurrentLinkedQueue<Throwable> errors = new ConcurrentLinkedQueue<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int gate = 0; gate < gates; gate++) {
+            int gateNumber = gate;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                    task.run(gateNumber);
+                } catch (Throwable t) {
+                    errors.add(t);
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (!errors.isEmpty()) {
+            fail(errors.peek());
+        }
+    }
+
+    private interface GateTask {
+        void run(int gate) throws Exception;
+    }
+
+    @Test
+    public void thousandsOfSessionsKeepTheirOwnTicket() throws InterruptedException {
+
+        //GIVEN
+
+        int sessionsPerGate = 200;
+        Set<Integer> ticketIds = ConcurrentHashMap.newKeySet();
+
+        //WHEN
+
+        runGates(GATES, gate -> {
+            for (int session = 0; session < sessionsPerGate; session++) {
+                String plate = "G" + gate + "S" + session;
+                ParkingType parkingType = session % 4 == 0 ? ParkingType.BIKE : ParkingType.CAR;
+                Ticket entry = parkingService.processIncomingVehicle(parkingType, plate);
+                assertNotNull(entry, "spot for " + plate);
+                assertEquals(plate, entry.getVehicleRegNumber());
+                assertEquals(parkingType, entry.getParkingSpot().getParkingType());
+                assertTrue(ticketIds.add(entry.getId()), "ticket id given twice");
+
+                Ticket exit = parkingService.processExitingVehicle(plate);
+                assertNotNull(exit, "ticket of " + plate);
+                assertEquals(plate, exit.getVehicleRegNumber());
+                assertEquals(entry.getId(), exit.getId());
+                assertEquals(entry.getParkingSpot().getId(), exit.getParkingSpot().getId());
+                assertNotNull(exit.getOutTime());
+            }
+        });
+
+        //THEN
+
+        assertEquals(GATES * sessionsPerGate, ticketIds.size());
+        assertEquals(GATES * sessionsPerGate, ticketDAO.closedTickets.get());
+        assertEquals(CAR_SPOTS, parkingSpotDAO.parkingSpotIndex.getAvailableCount(ParkingType.CAR));
+        assertEquals(BIKE_SPOTS, parkingSpotDAO.parkingSpotIndex.getAvailableCount(ParkingType.BIKE));
+        for (Ticket ticket : ticketDAO.tickets.values()) {
+            assertTrue(ticket.getVehicleRegNumber().startsWith("G"));
+            assertNotNull(ticket.getOutTime());
+        }
+    }
+
+    @Test
+    public void fullParkingNeverGivesASpotTwice() throws InterruptedException {
+
+        //GIVEN
+
+        int arrivalsPerGate = 50;
+        Map<Integer, String> occupiedSpots = new ConcurrentHashMap<>();
+        AtomicInteger refused = new AtomicInteger();
+
+        //WHEN
+
+        runGates(GATES, gate -> {
+            for (int arrival = 0; arrival < arrivalsPerGate; arrival++) {
+                String plate = "F" + gate + "A" + arrival;
+                Ticket ticket = parkingService.processIncomingVehicle(ParkingType.CAR, plate);
+                if (ticket == null) {
+                    refused.incrementAndGet();
+                } else {
+                    String previous = occupiedSpots.putIfAbsent(ticket.getParkingSpot().getId(), plate);
+                    assertNull(previous, "spot " + ticket.getParkingSpot().getId() + " given to " + previous + " and " + plate);
+                }
+            }
+        });
+
+        //THEN
+
+        assertEquals(CAR_SPOTS, occupiedSpots.size());
+        assertEquals(GATES * arrivalsPerGate - CAR_SPOTS, refused.get());
+        assertEquals(0, parkingSpotDAO.parkingSpotIndex.getAvailableCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void ticketDatesCannotBeChangedFromOutside() {
+
+        //GIVEN
+
+        Date inTime = new Date(1000);
+        Ticket ticket = new Ticket();
+        ticket.setInTime(inTime);
+
+        //WHEN
+
+        inTime.setTime(2000);
+        ticket.getInTime().setTime(3000);
+
+        //THEN
+
+        assertEquals(1000, ticket.getInTime().getTime());
+    }
+
+    /**
+     * Spots held in the same lock-free index as ParkingSpotDAO uses in production.
+     */
+    private static class InMemoryParkingSpotDAO extends ParkingSpotDAO {
+
+        InMemoryParkingSpotDAO(int carSpots, int bikeSpots) {
+            parkingSpotIndex = new ParkingSpotIndex(carSpots + bikeSpots);
+            for (int number = 1; number <= carSpots + bikeSpots; number++) {
+                parkingSpotIndex.addParkingSpot(number, number <= carSpots ? ParkingType.CAR : ParkingType.BIKE, true);
+            }
+        }
+
+        @Override
+        public int getNextAvailableSlot(ParkingType parkingType) {
+            return parkingSpotIndex.getNextAvailableSlot(parkingType);
+        }
+
+        @Override
+        public boolean updateParking(ParkingSpot parkingSpot) {
+            if (parkingSpot.isAvailable()) {
+                parkingSpotIndex.release(parkingSpot.getId());
+                return true;
+            }
+            return parkingSpotIndex.tryReserve(parkingSpot.getId());
+        }
+
+        @Override
+        public int reserveNextAvailableSlot(ParkingType parkingType) {
+            return parkingSpotIndex.reserveNextAvailableSlot(parkingType);
+        }
+    }
+
+    /**
+     * Tickets stored as copies, the way the database hands out fresh instances.
+     */
+    private static class InMemoryTicketDAO extends TicketDAO {
+
+        final Map<Integer, Ticket> tickets = new ConcurrentHashMap<>();
+        final Map<String, Integer> openTickets = new ConcurrentHashMap<>();
+        final AtomicInteger nextId = new AtomicInteger();
+        final AtomicInteger closedTickets = new AtomicInteger();
+
+        @Override
+        public UnitOfWork beginUnitOfWork() {
+            return null;
+        }
+
+        @Override
+        public boolean saveTicket(Ticket ticket) {
+            ticket.setId(nextId.incrementAndGet());
+            tickets.put(ticket.getId(), copy(ticket));
+            return openTickets.putIfAbsent(ticket.getVehicleRegNumber(), ticket.getId()) == null;
+        }
+
+        @Override
+        public Ticket getOpenTicket(String vehicleRegNumber) {
+            Integer id = openTickets.get(vehicleRegNumber);
+            return id == null ? null : copy(tickets.get(id));
+        }
+
+        @Override
+        public boolean updateTicket(Ticket ticket) {
+            tickets.put(ticket.getId(), copy(ticket));
+            if (openTickets.remove(ticket.getVehicleRegNumber(), ticket.getId())) {
+                closedTickets.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public int getNbTicket(String vehicleRegNumber) {
+            return openTickets.containsKey(vehicleRegNumber) ? 1 : 0;
+        }
+
+        private static Ticket copy(Ticket ticket) {
+            Ticket copy = new Ticket();
+            copy.setId(ticket.getId());
+            copy.setParkingSpot(new ParkingSpot(ticket.getParkingSpot().getId(), ticket.getParkingSpot().getParkingType(), ticket.getParkingSpot().isAvailable()));
+            copy.setVehicleRegNumber(ticket.getVehicleRegNumber());
+            copy.setPrice(ticket.getPrice());
+            copy.setInTime(ticket.getInTime());
+            copy.setOutTime(ticket.getOutTime());
+            return copy;
+        }
+    }
+}
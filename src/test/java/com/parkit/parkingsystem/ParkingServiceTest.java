@@ -1,9 +1,11 @@
 package com.parkit.parkingsystem;
 
+import com.parkit.parkingsystem.config.UnitOfWork;
 import com.parkit.parkingsystem.constants.Fare;
 import com.parkit.parkingsystem.constants.ParkingType;
 import com.parkit.parkingsystem.dao.ParkingSpotDAO;
 import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.metrics.OccupancyCounters;
 import com.parkit.parkingsystem.model.ParkingSpot;
 import com.parkit.parkingsystem.model.Ticket;
 import com.parkit.parkingsystem.service.FareCalculatorService;
@@ -16,7 +18,9 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -43,7 +47,7 @@ public class ParkingServiceTest {
             ticket.setInTime(new Date(System.currentTimeMillis() - (60*60*1000)));
             ticket.setParkingSpot(parkingSpot);
             ticket.setVehicleRegNumber("ABCDEF");
-            lenient().when(ticketDAO.getTicket(anyString())).thenReturn(ticket);
+            lenient().when(ticketDAO.getOpenTicket(anyString())).thenReturn(ticket);
             lenient().when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
             lenient().when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
             parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService);
@@ -68,7 +72,7 @@ public class ParkingServiceTest {
 
         //WHEN
 
-        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket); // Mock ticket services
+        when(ticketDAO.getOpenTicket("ABCDEF")).thenReturn(ticket); // Mock ticket services
         when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(true);
         when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(5);
@@ -95,7 +99,7 @@ public class ParkingServiceTest {
 
         //WHEN
 
-        when(ticketDAO.getTicket(anyString())).thenReturn(null); // Simulate ticket is not found
+        when(ticketDAO.getOpenTicket(anyString())).thenReturn(null); // Simulate ticket is not found
         parkingService.processExitingVehicle(); // Process vehicle exit
 
         //THEN
@@ -115,7 +119,7 @@ public class ParkingServiceTest {
 
         // THEN
 
-        verify(ticketDAO, Mockito.times(0)).getTicket(anyString()); // verify getTicket don't have any interaction
+        verify(ticketDAO, Mockito.times(0)).getOpenTicket(anyString()); // verify getOpenTicket don't have any interaction
     }
 
 
@@ -137,6 +141,7 @@ public class ParkingServiceTest {
         when(inputReaderUtil.readSelection()).thenReturn(1); // Mock input selections and services
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF");
         when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.getOpenTicket("ABCDEF")).thenReturn(null); // vehicle not parked yet
         when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
         when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
         when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(0);
@@ -165,6 +170,60 @@ public class ParkingServiceTest {
         }
     }
 
+    @Test
+    public void regularCustomerIsToldTheDiscountOfTheTariff() throws Exception {
+
+        //GIVEN
+
+        List<String> messages = new ArrayList<>();
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.getOpenTicket("ABCDEF")).thenReturn(null);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+        when(ticketDAO.getNbTicket("ABCDEF")).thenReturn(10);
+        when(fareCalculatorService.getDiscountPercent(10)).thenReturn(20);
+        parkingService = new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService,
+                new OccupancyCounters(), messages::add);
+
+        //WHEN
+
+        parkingService.processIncomingVehicle();
+
+        //THEN
+
+        assertTrue(messages.contains("Heureux de vous revoir ! En tant qu’utilisateur régulier de notre parking, vous allez obtenir une remise de 20%"), messages.toString());
+    }
+
+    @Test
+    public void platesAreNormalizedToTheTicketColumn() {
+        assertEquals("AB123CD", ParkingService.normalizeVehicleRegNumber(" ab-123.cd "));
+        assertEquals("1234567890", ParkingService.normalizeVehicleRegNumber("1234 5678 90"));
+        assertNull(ParkingService.normalizeVehicleRegNumber("12345678901"));
+        assertNull(ParkingService.normalizeVehicleRegNumber("--"));
+    }
+
+    @Test
+    public void vehicleIsFoundAtTheExitHoweverItsPlateIsSpelt() throws Exception {
+
+        //GIVEN
+
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.getOpenTicket("AB123CD")).thenReturn(null);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+
+        //WHEN
+
+        Ticket ticket = parkingService.processIncomingVehicle(ParkingType.CAR, "ab-123-cd");
+        parkingService.processExitingVehicle("AB-123 CD");
+
+        //THEN
+
+        assertEquals("AB123CD", ticket.getVehicleRegNumber());
+        verify(ticketDAO).getNbTicket("AB123CD");
+        verify(ticketDAO, times(2)).getOpenTicket("AB123CD");
+        assertThrows(IllegalArgumentException.class, () -> parkingService.processExitingVehicle("AB-123-CD-WXYZ"));
+    }
+
     @Test
     public void processIncomingVehicleTestError() throws Exception {
 
@@ -172,7 +231,7 @@ public class ParkingServiceTest {
 
         when(inputReaderUtil.readSelection()).thenReturn(1); // Mock input selections with error
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenThrow(new RuntimeException("Invalid input provided"));
-        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        lenient().when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1); // the plate is read before the spot is looked up
         parkingService =  new ParkingService(inputReaderUtil, parkingSpotDAO, ticketDAO, fareCalculatorService); // Initialize parking service and process incoming vehicle
         parkingService.processIncomingVehicle();
 
@@ -192,13 +251,13 @@ public class ParkingServiceTest {
         ticket.setVehicleRegNumber("ABCDEF");
         ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR,false));
         ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000))); // Set ticket timestamps and initial status
-        ticket.setOutTime(new Date());
+        ticket.setOutTime(null);
         ticket.setPrice(0);
 
         //WHEN
 
         when(inputReaderUtil.readVehicleRegistrationNumber()).thenReturn("ABCDEF"); // Mock ticket services for exit scenario
-        when(ticketDAO.getTicket("ABCDEF")).thenReturn(ticket);
+        when(ticketDAO.getOpenTicket("ABCDEF")).thenReturn(ticket);
         when(ticketDAO.updateTicket(any(Ticket.class))).thenReturn(false);
         lenient().when(parkingSpotDAO.updateParking(any(ParkingSpot.class))).thenReturn(true);
         parkingService.processExitingVehicle(); // Process vehicle exit
@@ -265,4 +324,92 @@ public class ParkingServiceTest {
         assertThrows(IllegalArgumentException.class, () -> parkingService.getVehichleType());
     }
 
+    @Test
+    public void reservedVehicleIsParkedWhenTheLotIsFull() throws Exception {
+
+        //WHEN
+
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(parkingSpotDAO.getReservedSlot("ABCDEF", ParkingType.CAR)).thenReturn(2); // no walk-in spot left, but one reserved
+        when(ticketDAO.getOpenTicket("ABCDEF")).thenReturn(null);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(true);
+        parkingService.processIncomingVehicle();
+
+        //THEN
+
+        verify(parkingSpotDAO, never()).getNextAvailableSlot(any(ParkingType.class));
+        ArgumentCaptor<Ticket> ticketCaptor = ArgumentCaptor.forClass(Ticket.class);
+        verify(ticketDAO).saveTicket(ticketCaptor.capture());
+        assertEquals(2, ticketCaptor.getValue().getParkingSpot().getId());
+        assertEquals("ABCDEF", ticketCaptor.getValue().getVehicleRegNumber());
+    }
+
+    @Test
+    public void processIncomingVehicleRollsBackWhenTicketIsNotSaved() throws Exception {
+
+        //GIVEN
+
+        UnitOfWork unitOfWork = mock(UnitOfWork.class);
+
+        //WHEN
+
+        when(inputReaderUtil.readSelection()).thenReturn(1);
+        when(parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR)).thenReturn(1);
+        when(ticketDAO.beginUnitOfWork()).thenReturn(unitOfWork);
+        when(ticketDAO.getOpenTicket("ABCDEF")).thenReturn(null);
+        when(ticketDAO.saveTicket(any(Ticket.class))).thenReturn(false);
+        parkingService.processIncomingVehicle();
+
+        //THEN
+
+        verify(parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class)); // spot taken inside the unit of work
+        verify(unitOfWork, never()).commit(); // so the spot is given back by the rollback
+        verify(unitOfWork, times(1)).close();
+    }
+
+    @Test
+    public void repeatedExitDoesNotCloseTheTicketAgain() throws Exception {
+
+        //GIVEN
+
+        Ticket ticket = new Ticket(); // ticket of a vehicle that already left
+        ticket.setId(123);
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR,false));
+        ticket.setInTime(new Date(System.currentTimeMillis() - (60 * 60 * 1000)));
+        ticket.setOutTime(new Date(System.currentTimeMillis() - (10 * 60 * 1000)));
+        ticket.setPrice(1.5);
+
+        //WHEN
+
+        when(ticketDAO.getOpenTicket("ABCDEF")).thenReturn(ticket);
+        Ticket exit = parkingService.processExitingVehicle("ABCDEF");
+
+        //THEN
+
+        assertNull(exit);
+        verify(ticketDAO, never()).updateTicket(any(Ticket.class)); // price and out-time kept
+        verify(parkingSpotDAO, never()).updateParking(any(ParkingSpot.class)); // spot 1 may be another vehicle's now
+    }
+
+    @Test
+    public void processExitingVehicleCommitsOnce() throws Exception {
+
+        //GIVEN
+
+        UnitOfWork unitOfWork = mock(UnitOfWork.class);
+
+        //WHEN
+
+        when(ticketDAO.beginUnitOfWork()).thenReturn(unitOfWork);
+        parkingService.processExitingVehicle();
+
+        //THEN
+
+        verify(ticketDAO, times(1)).updateTicket(any(Ticket.class));
+        verify(parkingSpotDAO, times(1)).updateParking(any(ParkingSpot.class));
+        verify(unitOfWork, times(1)).commit();
+        verify(unitOfWork, times(1)).close();
+    }
+
 }
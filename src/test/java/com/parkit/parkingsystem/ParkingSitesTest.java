@@ -0,0 +1,83 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.report.ParkingReport;
+import com.parkit.parkingsystem.report.SiteReporter;
+import com.parkit.parkingsystem.service.ParkingSites;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingSitesTest {
+
+    private ParkingSites parkingSites;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        System.setProperty(DataBaseConfig.DB_PROPERTY, DataBaseConfig.EMBEDDED);
+        System.setProperty(ParkingSites.SITES_PROPERTY, "north, south,north");
+        parkingSites = ParkingSites.fromSystemProperties(new InputReaderUtil());
+        pool = new ForkJoinPool(2);
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        parkingSites.shutdown();
+        pool.shutdown();
+        System.clearProperty(DataBaseConfig.DB_PROPERTY);
+        System.clearProperty(ParkingSites.SITES_PROPERTY);
+        DataBaseConfig.shutdownPools();
+    }
+
+    @Test
+    public void eachSiteKeepsItsTicketsInItsOwnDatabase() throws Exception {
+
+        //WHEN
+
+        Ticket northTicket = parkingSites.getSite("north").getParkingService().processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        parkingSites.getSite("south").getParkingService().processIncomingVehicle(ParkingType.CAR, "ABCDEF");
+        parkingSites.getSite("south").getParkingService().processIncomingVehicle(ParkingType.BIKE, "GHIJKL");
+        long now = System.currentTimeMillis();
+        Map<String, ParkingReport> reports = new SiteReporter(parkingSites.getDataBaseConfigs(), pool, 2)
+                .report(now - 60 * 60 * 1000L, now + 60 * 1000L, 60 * 60 * 1000L);
+
+        //THEN
+
+        assertEquals(Arrays.asList("north", "south"), ParkingSites.getConfiguredSiteIds());
+        assertEquals("north", northTicket.getSiteId());
+        assertEquals(1, parkingSites.getSite("north").getTicketRepository().getNbTicket("ABCDEF"));
+        assertEquals(0, parkingSites.getSite("north").getTicketRepository().getNbTicket("GHIJKL"));
+        assertEquals(1, parkingSites.getSite("south").getTicketRepository().getNbTicket("GHIJKL"));
+        assertEquals(2, parkingSites.getSite("north").getOccupancyCounters().getFreeSpots(ParkingType.CAR));
+        assertEquals(1, parkingSites.getSite("south").getOccupancyCounters().getFreeSpots(ParkingType.BIKE));
+        assertEquals(1, reports.get("north").getEntryCount(ParkingType.CAR));
+        assertEquals(1, reports.get("south").getEntryCount(ParkingType.BIKE));
+        assertEquals(2, reports.get(SiteReporter.TOTAL).getEntryCount(ParkingType.CAR));
+        assertEquals(1, reports.get(SiteReporter.TOTAL).getEntryCount(ParkingType.BIKE));
+        assertThrows(IllegalArgumentException.class, () -> parkingSites.getSite("west"));
+    }
+
+    @Test
+    public void noSiteCanTakeTheIdOfTheTotal() {
+
+        //GIVEN
+
+        System.setProperty(ParkingSites.SITES_PROPERTY, "north," + SiteReporter.TOTAL);
+
+        //THEN
+
+        assertThrows(IllegalStateException.class, ParkingSites::getConfiguredSiteIds);
+        assertThrows(IllegalArgumentException.class, () -> new ParkingSites(Collections.singletonMap(SiteReporter.TOTAL, null)));
+    }
+}
@@ -0,0 +1,64 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ParkingSpotIndexTest {
+
+    private ParkingSpotIndex parkingSpotIndex;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        parkingSpotIndex = new ParkingSpotIndex(5);
+        parkingSpotIndex.addParkingSpot(1, ParkingType.CAR, true);
+        parkingSpotIndex.addParkingSpot(2, ParkingType.CAR, true);
+        parkingSpotIndex.addParkingSpot(3, ParkingType.CAR, true);
+        parkingSpotIndex.addParkingSpot(4, ParkingType.BIKE, true);
+        parkingSpotIndex.addParkingSpot(5, ParkingType.BIKE, true);
+    }
+
+    @Test
+    public void lowestFreeSpotIsReturnedPerType() {
+        assertEquals(1, parkingSpotIndex.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(4, parkingSpotIndex.getNextAvailableSlot(ParkingType.BIKE));
+    }
+
+    @Test
+    public void occupiedSpotIsSkippedUntilReleased() {
+
+        //WHEN
+
+        parkingSpotIndex.setAvailable(1, false);
+        parkingSpotIndex.setAvailable(2, false);
+
+        //THEN
+
+        assertEquals(3, parkingSpotIndex.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(1, parkingSpotIndex.getAvailableCount(ParkingType.CAR));
+        parkingSpotIndex.setAvailable(1, true);
+        assertEquals(1, parkingSpotIndex.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void fullLotReturnsZero() {
+
+        //WHEN
+
+        parkingSpotIndex.setAvailable(4, false);
+        parkingSpotIndex.setAvailable(5, false);
+
+        //THEN
+
+        assertEquals(0, parkingSpotIndex.getNextAvailableSlot(ParkingType.BIKE));
+        assertFalse(parkingSpotIndex.isAvailable(4));
+    }
+
+    @Test
+    public void unknownSpotCannotBeUpdated() {
+        assertThrows(IllegalArgumentException.class, () -> parkingSpotIndex.setAvailable(42, true));
+    }
+}
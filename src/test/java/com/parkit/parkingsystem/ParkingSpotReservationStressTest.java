@@ -0,0 +1,178 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class ParkingSpotReservationStressTest {
+
+    private static final int SPOTS = 4000;
+    private static final int GATES = 16;
+
+    private ParkingSpotDAO parkingSpotDAO;
+    private Set<Integer> occupiedInDataBase;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        occupiedInDataBase = ConcurrentHashMap.newKeySet();
+        Connection connection = mock(Connection.class);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> fakeStatement(invocation.getArgument(0)));
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        when(dataBaseConfig.getConnection()).thenReturn(connection);
+
+        parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        parkingSpotDAO.parkingSpotIndex = new ParkingSpotIndex(SPOTS);
+        for (int number = 1; number <= SPOTS; number++) {
+            parkingSpotDAO.parkingSpotIndex.addParkingSpot(number, ParkingType.CAR, true);
+        }
+    }
+
+    /**
+     * Statement behaving like the parking table: a conditional occupy only succeeds on a free spot.
+     */
+    private PreparedStatement fakeStatement(String sql) throws Exception {
+        PreparedStatement ps = mock(PreparedStatement.class);
+        AtomicInteger parkingNumber = new AtomicInteger();
+        int parkingNumberIndex = DBConstants.OCCUPY_PARKING_SPOT.equals(sql) ? 1 : 2;
+        doAnswer(invocation -> {
+            if ((int) invocation.getArgument(0) == parkingNumberIndex) {
+                parkingNumber.set(invocation.getArgument(1));
+            }
+            return null;
+        }).when(ps).setInt(anyInt(), anyInt());
+        when(ps.executeUpdate()).thenAnswer(invocation -> {
+            if (DBConstants.OCCUPY_PARKING_SPOT.equals(sql)) {
+                return occupiedInDataBase.add(parkingNumber.get()) ? 1 : 0;
+            }
+            occupiedInDataBase.remove(parkingNumber.get());
+            return 1;
+        });
+        return ps;
+    }
+
+    @Test
+    public void concurrentGatesNeverShareASpot() throws Exception {
+
+        //GIVEN
+
+        List<Integer> reservedSpots = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService gates = Executors.newFixedThreadPool(GATES);
+
+        //WHEN
+
+        for (int gate = 0; gate < GATES; gate++) {
+            gates.submit(() -> {
+                start.await();
+                int parkingNumber;
+                while ((parkingNumber = parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR)) > 0) {
+                    reservedSpots.add(parkingNumber);
+                }
+                return null;
+            });
+        }
+        start.countDown();
+        gates.shutdown();
+        assertTrue(gates.awaitTermination(1, TimeUnit.MINUTES));
+
+        //THEN
+
+        assertEquals(SPOTS, reservedSpots.size());
+        assertEquals(SPOTS, reservedSpots.stream().distinct().count(), "a spot was handed out twice");
+        assertEquals(SPOTS, occupiedInDataBase.size());
+        assertEquals(0, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+    }
+
+    @Test
+    public void lookupThenUpdateRaceHasASingleWinner() throws Exception {
+
+        //GIVEN
+
+        int rounds = 500;
+        AtomicInteger winners = new AtomicInteger();
+        ExecutorService gates = Executors.newFixedThreadPool(GATES);
+
+        //WHEN
+
+        for (int round = 0; round < rounds; round++) {
+            int parkingNumber = parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR);
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(GATES);
+            for (int gate = 0; gate < GATES; gate++) {
+                gates.submit(() -> {
+                    start.await();
+                    if (parkingSpotDAO.updateParking(new ParkingSpot(parkingNumber, ParkingType.CAR, false))) {
+                        winners.incrementAndGet();
+                    }
+                    done.countDown();
+                    return null;
+                });
+            }
+            start.countDown();
+            assertTrue(done.await(10, TimeUnit.SECONDS));
+        }
+        gates.shutdown();
+
+        //THEN
+
+        assertEquals(rounds, winners.get());
+        assertEquals(rounds, occupiedInDataBase.size());
+    }
+
+    @Test
+    public void spotTakenOutsideTheIndexIsSkipped() {
+
+        //GIVEN
+
+        occupiedInDataBase.add(1);
+        occupiedInDataBase.add(2);
+
+        //WHEN
+
+        int parkingNumber = parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR);
+
+        //THEN
+
+        assertEquals(3, parkingNumber);
+        assertFalse(parkingSpotDAO.parkingSpotIndex.isAvailable(1));
+        assertFalse(parkingSpotDAO.parkingSpotIndex.isAvailable(2));
+    }
+
+    @Test
+    public void releasedSpotIsReservedAgain() {
+
+        //GIVEN
+
+        int parkingNumber = parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR);
+
+        //WHEN
+
+        parkingSpotDAO.updateParking(new ParkingSpot(parkingNumber, ParkingType.CAR, true));
+
+        //THEN
+
+        assertEquals(parkingNumber, parkingSpotDAO.reserveNextAvailableSlot(ParkingType.CAR));
+    }
+}
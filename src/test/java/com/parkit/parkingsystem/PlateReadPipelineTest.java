@@ -0,0 +1,200 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.camera.PlateReadPipeline;
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class PlateReadPipelineTest {
+
+    private static final String READS = String.join("\n",
+            "# time,lane,plate[,type]",
+            "2026-01-10T08:00:00.000,ENTRY,ab-123-cd",
+            "2026-01-10T08:00:00.400,ENTRY,AB 123 CD",
+            "2026-01-10T08:00:03.000,ENTRY,AB123CD",
+            "2026-01-10T08:00:04.000,ENTRY,EF456GH,BIKE",
+            "2026-01-10T08:00:05.000,ENTRY,THISPLATEISTOOLONG",
+            "2026-01-10T08:00:06.000,TURNSTILE,AB123CD",
+            "2026-01-10T08:00:09.000,EXIT,AB123CD",
+            "2026-01-10T08:00:09.200,EXIT,AB123CD",
+            "2026-01-10T08:00:10.000,EXIT,ZZ999ZZ",
+            "");
+
+    private InMemoryParkingStore store;
+    private PlateReadPipeline pipeline;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        ParkingSpotIndex layout = new ParkingSpotIndex(5);
+        for (int number = 1; number <= 5; number++) {
+            layout.addParkingSpot(number, number <= 3 ? ParkingType.CAR : ParkingType.BIKE, true);
+        }
+        store = new InMemoryParkingStore(layout);
+        ParkingService parkingService = new ParkingService(new InputReaderUtil(), store, store, new FareCalculatorService());
+        pipeline = new PlateReadPipeline(parkingService, 2, 4, 2, PlateReadPipeline.DEFAULT_DEDUPLICATION_WINDOW_MILLIS);
+        pipeline.start();
+    }
+
+    @AfterEach
+    public void tearDownPerTest() throws Exception {
+        pipeline.close();
+    }
+
+    @Test
+    public void burstsOfReadsBecomeOneGateEvent() throws Exception {
+
+        //WHEN
+
+        pipeline.ingest(new BufferedReader(new StringReader(READS)));
+        pipeline.close();
+
+        //THEN
+
+        assertEquals(7, pipeline.getReadCount());
+        assertEquals(3, pipeline.getDuplicateCount());
+        assertEquals(2, pipeline.getRejectedCount());
+        assertEquals(3, pipeline.getProcessedCount());
+        assertEquals(1, pipeline.getRefusedCount());
+        assertEquals(1, store.getNbTicket("AB123CD"));
+        assertNull(store.getOpenTicket("AB123CD"));
+        assertEquals(ParkingType.BIKE, store.getOpenTicket("EF456GH").getParkingSpot().getParkingType());
+    }
+
+    @Test
+    public void camerasAreNotReadWhileTheQueueIsFull() throws Exception {
+
+        //GIVEN
+
+        CountDownLatch gateOpen = new CountDownLatch(1);
+        ParkingService slowGate = mock(ParkingService.class);
+        when(slowGate.processIncomingVehicle(any(ParkingType.class), anyString())).thenAnswer(invocation -> {
+            gateOpen.await();
+            return null;
+        });
+        PlateReadPipeline slowPipeline = new PlateReadPipeline(slowGate, 1, 1, 2, PlateReadPipeline.DEFAULT_DEDUPLICATION_WINDOW_MILLIS);
+        slowPipeline.start();
+        StringBuilder reads = new StringBuilder();
+        for (int car = 0; car < 10; car++) {
+            reads.append("2026-01-10T08:00:0").append(car).append(".000,ENTRY,CAR").append(car).append('\n');
+        }
+        Thread camera = new Thread(() -> {
+            try {
+                slowPipeline.ingest(new BufferedReader(new StringReader(reads.toString())));
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        //WHEN
+
+        camera.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while ((slowPipeline.getReadCount() < 4 || camera.getState() != Thread.State.WAITING) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        long readWhileBlocked = slowPipeline.getReadCount();
+        Thread.State stateWhileBlocked = camera.getState();
+        gateOpen.countDown();
+        camera.join(10000);
+        slowPipeline.close();
+
+        //THEN
+
+        // one read at the gate, two queued, the fourth waiting for room
+        assertEquals(4, readWhileBlocked);
+        assertEquals(Thread.State.WAITING, stateWhileBlocked);
+        assertFalse(camera.isAlive());
+        assertEquals(10, slowPipeline.getReadCount());
+        assertEquals(10, slowPipeline.getRefusedCount());
+    }
+
+    @Test
+    public void parkedVehicleIsRefusedASecondTicketByTheDatabase() throws Exception {
+
+        //GIVEN
+
+        DataBaseConfig dataBaseConfig = new DataBaseTestConfig("cameras");
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        assertTrue(parkingSpotDAO.loadParkingSpotIndex());
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        assertTrue(ticketDAO.loadActiveTicketIndex());
+        PlateReadPipeline databasePipeline = new PlateReadPipeline(
+                new ParkingService(new InputReaderUtil(), parkingSpotDAO, ticketDAO, new FareCalculatorService()),
+                2, 4, 2, PlateReadPipeline.DEFAULT_DEDUPLICATION_WINDOW_MILLIS);
+        databasePipeline.start();
+
+        //WHEN
+
+        // the same car read again once the deduplication window is over
+        try {
+            databasePipeline.ingest(new BufferedReader(new StringReader(String.join("\n",
+                    "2026-01-10T08:00:00.000,ENTRY,AB123CD",
+                    "2026-01-10T08:00:30.000,ENTRY,AB123CD",
+                    "2026-01-10T08:01:00.000,EXIT,AB123CD"))));
+            databasePipeline.close();
+        } finally {
+            DataBaseConfig.shutdownPools();
+        }
+
+        //THEN
+
+        assertEquals(0, databasePipeline.getDuplicateCount());
+        assertEquals(2, databasePipeline.getProcessedCount());
+        assertEquals(1, databasePipeline.getRefusedCount());
+        assertEquals(1, ticketDAO.getNbTicket("AB123CD"));
+        assertEquals(3, parkingSpotDAO.parkingSpotIndex.getAvailableCount(ParkingType.CAR));
+    }
+
+    @Test
+    public void camerasSendReadsOverASocket() throws Exception {
+
+        //GIVEN
+
+        int port = pipeline.listen(0);
+
+        //WHEN
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8)) {
+            writer.write(READS);
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (pipeline.getProcessedCount() + pipeline.getRefusedCount() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        //THEN
+
+        assertEquals(3, pipeline.getProcessedCount());
+        assertEquals(1, pipeline.getRefusedCount());
+        assertNull(store.getOpenTicket("AB123CD"));
+    }
+}
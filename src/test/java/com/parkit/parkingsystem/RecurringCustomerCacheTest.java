@@ -0,0 +1,105 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.dao.RecurringCustomerCache;
+import com.parkit.parkingsystem.metrics.MBeans;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RecurringCustomerCacheTest {
+
+    private AtomicLong now;
+    private RecurringCustomerCache recurringCustomerCache;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        now = new AtomicLong(1000);
+        recurringCustomerCache = new RecurringCustomerCache(2, 60 * 1000, now::get);
+    }
+
+    @Test
+    public void savedTicketIsCountedForCachedPlate() {
+
+        //GIVEN
+
+        recurringCustomerCache.put("ABCDEF", 1);
+
+        //WHEN
+
+        recurringCustomerCache.ticketSaved("ABCDEF");
+        recurringCustomerCache.ticketSaved("GHIJKL");
+
+        //THEN
+
+        assertEquals(Integer.valueOf(2), recurringCustomerCache.getNbTicket("ABCDEF"));
+        assertNull(recurringCustomerCache.getNbTicket("GHIJKL"));
+        assertEquals(0.5, recurringCustomerCache.getHitRate());
+    }
+
+    @Test
+    public void leastRecentlyUsedPlateIsEvicted() {
+
+        //GIVEN
+
+        recurringCustomerCache.put("AAA", 1);
+        recurringCustomerCache.put("BBB", 2);
+        recurringCustomerCache.getNbTicket("AAA");
+
+        //WHEN
+
+        recurringCustomerCache.put("CCC", 3);
+
+        //THEN
+
+        assertEquals(2, recurringCustomerCache.size());
+        assertEquals(1, recurringCustomerCache.getEvictionCount());
+        assertNull(recurringCustomerCache.getNbTicket("BBB"));
+        assertEquals(Integer.valueOf(1), recurringCustomerCache.getNbTicket("AAA"));
+    }
+
+    @Test
+    public void expiredEntryIsReadAgain() {
+
+        //GIVEN
+
+        recurringCustomerCache.put("ABCDEF", 3);
+
+        //WHEN
+
+        now.addAndGet(61 * 1000);
+
+        //THEN
+
+        assertNull(recurringCustomerCache.getNbTicket("ABCDEF"));
+        assertEquals(0, recurringCustomerCache.size());
+        assertEquals(1, recurringCustomerCache.getMissCount());
+    }
+
+    @Test
+    public void hitRateIsShownWithJmx() throws Exception {
+
+        //GIVEN
+
+        recurringCustomerCache.put("ABCDEF", 1);
+        recurringCustomerCache.getNbTicket("ABCDEF");
+
+        //WHEN
+
+        ObjectName objectName = MBeans.register(recurringCustomerCache, "RecurringCustomerCache", "test");
+
+        //THEN
+
+        try {
+            assertNotNull(objectName);
+            assertEquals(1.0, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "HitRate"));
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "HitCount"));
+        } finally {
+            MBeans.unregister(objectName);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.config.ReplicatedDataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicaRoutingTest {
+
+    private static final double PRIMARY_PRICE = 1.5;
+    private static final double REPLICA_PRICE = 9.5;
+
+    private DataBaseConfig primary;
+    private DataBaseConfig replica;
+    private ReplicatedDataBaseConfig replicated;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    public void setUpPerTest() throws Exception {
+        primary = new DataBaseTestConfig("replication-primary");
+        replica = new DataBaseTestConfig("replication-replica");
+        // the same ticket with a different price on each side tells which database answered
+        saveOldTicket(primary, PRIMARY_PRICE);
+        saveOldTicket(replica, REPLICA_PRICE);
+        replicated = new ReplicatedDataBaseConfig(primary, replica, 60 * 1000L);
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = replicated;
+    }
+
+    @AfterEach
+    public void tearDownPerTest() throws Exception {
+        for (DataBaseConfig dataBaseConfig : new DataBaseConfig[]{primary, replica}) {
+            execute(dataBaseConfig, "delete from ticket");
+            execute(dataBaseConfig, "delete from replication_heartbeat");
+            execute(dataBaseConfig, "update parking set AVAILABLE = true");
+        }
+        replicated.shutdownPool();
+    }
+
+    private static void saveOldTicket(DataBaseConfig dataBaseConfig, double price) throws Exception {
+        saveOldTicket(dataBaseConfig, "OLD", price);
+    }
+
+    private static void saveOldTicket(DataBaseConfig dataBaseConfig, String vehicleRegNumber, double price) throws Exception {
+        Connection con = dataBaseConfig.getConnection();
+        try (PreparedStatement ps = con.prepareStatement(
+                "insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME, OUT_TIME) values(1, ?, ?, ?, ?)")) {
+            ps.setString(1, vehicleRegNumber);
+            ps.setDouble(2, price);
+            ps.setTimestamp(3, new Timestamp(System.currentTimeMillis() - 2 * 60 * 60 * 1000L));
+            ps.setTimestamp(4, new Timestamp(System.currentTimeMillis() - 60 * 60 * 1000L));
+            ps.executeUpdate();
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    private static void execute(DataBaseConfig dataBaseConfig, String sql) throws ClassNotFoundException, SQLException {
+        Connection con = dataBaseConfig.getConnection();
+        try (Statement statement = con.createStatement()) {
+            statement.executeUpdate(sql);
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+    }
+
+    /**
+     * Stand-in for replication: copy the heartbeat of the primary, as it was some time ago, to the replica.
+     */
+    private void replicateHeartbeat(long lagMillis) throws ClassNotFoundException, SQLException {
+        execute(replica, "delete from replication_heartbeat");
+        execute(replica, "insert into replication_heartbeat(ID, BEAT_TIME) values(1, " + (System.currentTimeMillis() - lagMillis) + ")");
+    }
+
+    @Test
+    public void readsGoToThePrimaryUntilTheReplicaIsKnownToBeFresh() {
+
+        //WHEN
+
+        Ticket ticket = ticketDAO.getTicket("OLD");
+
+        //THEN
+
+        assertEquals(PRIMARY_PRICE, ticket.getPrice());
+    }
+
+    @Test
+    public void readsGoToAFreshReplica() throws Exception {
+
+        //GIVEN
+
+        replicateHeartbeat(0);
+        replicated.checkReplica();
+
+        //WHEN
+
+        Ticket ticket = ticketDAO.getTicket("OLD");
+
+        //THEN
+
+        assertEquals(REPLICA_PRICE, ticket.getPrice());
+        assertEquals(1, ticketDAO.getNbTicket("OLD"));
+        assertTrue(replicated.isReplicaReadable(null));
+    }
+
+    @Test
+    public void readsGoBackToThePrimaryWhenTheReplicaLagsTooMuch() throws Exception {
+
+        //GIVEN
+
+        replicateHeartbeat(2 * 60 * 1000L);
+        replicated.checkReplica();
+
+        //WHEN
+
+        Ticket ticket = ticketDAO.getTicket("OLD");
+
+        //THEN
+
+        assertEquals(PRIMARY_PRICE, ticket.getPrice());
+    }
+
+    @Test
+    public void aVehicleReadsItsOwnWritesUntilTheReplicaHasThem() throws Exception {
+
+        //GIVEN
+
+        replicateHeartbeat(0);
+        replicated.checkReplica();
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(2, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("NEW");
+        ticket.setInTime(new Date());
+
+        //WHEN
+
+        assertTrue(ticketDAO.saveTicket(ticket));
+        Ticket enteredTicket = ticketDAO.getTicket("NEW");
+        int nbTicket = ticketDAO.getNbTicket("NEW");
+        Ticket otherTicket = ticketDAO.getTicket("OLD");
+
+        //THEN
+
+        assertNotNull(enteredTicket);
+        assertEquals(ticket.getId(), enteredTicket.getId());
+        assertEquals(1, nbTicket);
+        assertEquals(REPLICA_PRICE, otherTicket.getPrice());
+        assertFalse(replicated.isReplicaReadable("NEW"));
+    }
+
+    @Test
+    public void gateLookupsGoToAFreshReplica() throws Exception {
+
+        //GIVEN
+
+        replicateHeartbeat(0);
+        replicated.checkReplica();
+        // a visit only the replica knows of: the entry can only see it there
+        saveOldTicket(replica, "VISITOR", REPLICA_PRICE);
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = replicated;
+        ParkingService parkingService = new ParkingService(new InputReaderUtil(), parkingSpotDAO, ticketDAO, new FareCalculatorService());
+
+        //WHEN
+
+        Ticket enteredTicket = parkingService.processIncomingVehicle(ParkingType.CAR, "VISITOR");
+        Ticket exitedTicket = parkingService.processExitingVehicle("VISITOR");
+
+        //THEN
+
+        assertTrue(enteredTicket.isRegularCustomer());
+        // the exit reads the ticket of the entry from the primary, the replica not having it yet
+        assertNotNull(exitedTicket);
+        assertEquals(enteredTicket.getId(), exitedTicket.getId());
+        assertFalse(replicated.isReplicaReadable("VISITOR"));
+    }
+}
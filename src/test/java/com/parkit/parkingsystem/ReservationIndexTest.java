@@ -0,0 +1,169 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ParkingSpotDAO;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.dao.ReservationDAO;
+import com.parkit.parkingsystem.dao.ReservationIndex;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.model.Reservation;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReservationIndexTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+    private ParkingSpotIndex parkingSpotIndex;
+    private ReservationIndex reservationIndex;
+    // tomorrow at midnight, past the hold time
+    private long day;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        parkingSpotIndex = new ParkingSpotIndex(5);
+        for (int number = 1; number <= 5; number++) {
+            parkingSpotIndex.addParkingSpot(number, number <= 3 ? ParkingType.CAR : ParkingType.BIKE, true);
+        }
+        reservationIndex = new ReservationIndex(parkingSpotIndex, ReservationIndex.DEFAULT_SLOT_MILLIS,
+                ReservationIndex.DEFAULT_HORIZON_SLOTS, ReservationIndex.DEFAULT_HOLD_MILLIS);
+        day = (System.currentTimeMillis() / (24 * HOUR) + 1) * 24 * HOUR;
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        DataBaseConfig.shutdownPools();
+    }
+
+    @Test
+    public void spotsAreReservedForPeriodsThatDoNotOverlap() {
+
+        //WHEN
+
+        int first = reservationIndex.reserve(ParkingType.CAR, "AAAAAA", day + 14 * HOUR, day + 18 * HOUR);
+        int second = reservationIndex.reserve(ParkingType.CAR, "BBBBBB", day + 16 * HOUR, day + 20 * HOUR);
+        int afterFirst = reservationIndex.reserve(ParkingType.CAR, "CCCCCC", day + 18 * HOUR, day + 19 * HOUR);
+        int freeCars = reservationIndex.countFreeSpots(ParkingType.CAR, day + 14 * HOUR, day + 18 * HOUR);
+        int third = reservationIndex.reserve(ParkingType.CAR, "DDDDDD", day + 15 * HOUR, day + 17 * HOUR);
+        int full = reservationIndex.reserve(ParkingType.CAR, "EEEEEE", day + 16 * HOUR, day + 17 * HOUR);
+        reservationIndex.remove(first, "AAAAAA", day + 14 * HOUR, day + 18 * HOUR);
+        int cancelled = reservationIndex.reserve(ParkingType.CAR, "EEEEEE", day + 16 * HOUR, day + 17 * HOUR);
+
+        //THEN
+
+        assertEquals(1, first);
+        assertEquals(2, second);
+        assertEquals(1, afterFirst);
+        assertEquals(1, freeCars);
+        assertEquals(3, third);
+        assertEquals(0, full);
+        assertEquals(1, cancelled);
+        assertEquals(2, reservationIndex.countFreeSpots(ParkingType.BIKE, day + 16 * HOUR, day + 17 * HOUR));
+        assertFalse(reservationIndex.add(2, "FFFFFF", day + 19 * HOUR, day + 21 * HOUR));
+        assertThrows(IllegalArgumentException.class,
+                () -> reservationIndex.reserve(ParkingType.CAR, "FFFFFF", day + 30 * 24 * HOUR, day + 31 * 24 * HOUR));
+    }
+
+    @Test
+    public void reservationsOverAreForgotten() throws Exception {
+
+        //GIVEN
+
+        // 50 ms slots, so that reservations are soon over
+        ReservationIndex shortIndex = new ReservationIndex(parkingSpotIndex, 50, 100, 0);
+        long now = System.currentTimeMillis();
+        for (String plate : new String[]{"AAAAAA", "BBBBBB", "CCCCCC"}) {
+            assertTrue(shortIndex.reserve(ParkingType.CAR, plate, now, now + 60) > 0);
+        }
+
+        //WHEN
+
+        Thread.sleep(150);
+        long later = System.currentTimeMillis();
+        int parkingNumber = shortIndex.reserve(ParkingType.CAR, "DDDDDD", later + 1000, later + 2000);
+
+        //THEN
+
+        assertEquals(1, parkingNumber);
+        assertEquals(1, shortIndex.getBookedVehicleCount());
+        assertEquals(0, shortIndex.getReservedSlot("AAAAAA", ParkingType.CAR));
+    }
+
+    @Test
+    public void upcomingReservationsAreHeldFromWalkInVehicles() {
+
+        //GIVEN
+
+        long now = System.currentTimeMillis();
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.parkingSpotIndex = parkingSpotIndex;
+        parkingSpotDAO.reservationIndex = reservationIndex;
+        parkingSpotIndex.tryReserve(1);
+
+        //WHEN
+
+        // spot 1 is taken now, spot 2 is reserved from within the hold time, spot 3 only tomorrow
+        int soon = reservationIndex.reserve(ParkingType.CAR, "RESERV", now + HOUR / 2, now + 3 * HOUR);
+        int tomorrow = reservationIndex.reserve(ParkingType.CAR, "LATER", day + 30 * HOUR, day + 32 * HOUR);
+
+        //THEN
+
+        assertEquals(2, soon);
+        assertEquals(1, tomorrow);
+        assertEquals(3, parkingSpotDAO.getNextAvailableSlot(ParkingType.CAR));
+        assertEquals(2, parkingSpotDAO.getReservedSlot("RESERV", ParkingType.CAR));
+        assertEquals(0, parkingSpotDAO.getReservedSlot("RESERV", ParkingType.BIKE));
+        assertEquals(0, parkingSpotDAO.getReservedSlot("LATER", ParkingType.CAR));
+    }
+
+    @Test
+    public void reservedVehicleGetsItsSpotAndReservationsSurviveARestart() throws Exception {
+
+        //GIVEN
+
+        DataBaseConfig dataBaseConfig = new DataBaseTestConfig("reservations");
+        ParkingSpotDAO parkingSpotDAO = new ParkingSpotDAO();
+        parkingSpotDAO.dataBaseConfig = dataBaseConfig;
+        assertTrue(parkingSpotDAO.loadParkingSpotIndex());
+        ReservationDAO reservationDAO = new ReservationDAO();
+        reservationDAO.dataBaseConfig = dataBaseConfig;
+        assertTrue(reservationDAO.loadReservationIndex(parkingSpotDAO.parkingSpotIndex));
+        parkingSpotDAO.reservationIndex = reservationDAO.reservationIndex;
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ParkingService parkingService = new ParkingService(new InputReaderUtil(), parkingSpotDAO, ticketDAO, new FareCalculatorService());
+        long now = System.currentTimeMillis();
+        Reservation reservation = reservationDAO.reserve(ParkingType.CAR, "RESERV", new Date(now + HOUR), new Date(now + 3 * HOUR));
+        Reservation tomorrow = reservationDAO.reserve(ParkingType.CAR, "LATER", new Date(day + 30 * HOUR), new Date(day + 32 * HOUR));
+
+        //WHEN
+
+        Ticket walkIn = parkingService.processIncomingVehicle(ParkingType.CAR, "WALKIN");
+        Ticket reserved = parkingService.processIncomingVehicle(ParkingType.CAR, "RESERV");
+        ReservationDAO restarted = new ReservationDAO();
+        restarted.dataBaseConfig = dataBaseConfig;
+        assertTrue(restarted.loadReservationIndex(parkingSpotDAO.parkingSpotIndex));
+        boolean cancelled = restarted.cancelReservation(tomorrow);
+
+        //THEN
+
+        assertEquals(1, reservation.getParkingSpot().getId());
+        assertEquals(2, walkIn.getParkingSpot().getId());
+        assertEquals(1, reserved.getParkingSpot().getId());
+        assertEquals(1, restarted.reservationIndex.getReservedSlot("RESERV", ParkingType.CAR));
+        assertTrue(cancelled);
+        assertEquals(3, restarted.reservationIndex.countFreeSpots(ParkingType.CAR, day + 30 * HOUR, day + 32 * HOUR));
+    }
+}
@@ -0,0 +1,152 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.service.FareEngine;
+import com.parkit.parkingsystem.service.Tariff;
+import com.parkit.parkingsystem.service.TariffReloader;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TariffTest {
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+    private static final long DAY = 24 * HOUR;
+
+    private Properties rules;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        rules = new Properties();
+        rules.setProperty("timezone", "UTC");
+        rules.setProperty("free.minutes", "30");
+        rules.setProperty("car.rate.per.hour", "1.5");
+        rules.setProperty("bike.rate.per.hour", "1.0");
+    }
+
+    @Test
+    public void defaultTariffMatchesFlatRules() {
+
+        //GIVEN
+
+        rules.setProperty("loyalty.tiers", "1=5");
+        Tariff tariff = Tariff.compile(rules);
+        Tariff defaultTariff = Tariff.defaultTariff();
+
+        //THEN
+
+        long[] durations = {10 * MINUTE, 45 * MINUTE, 61 * MINUTE + 7, 26 * HOUR, 3 * DAY + 5 * MINUTE};
+        for (long duration : durations) {
+            for (ParkingType parkingType : ParkingType.values()) {
+                for (int previousVisits = 0; previousVisits < 3; previousVisits++) {
+                    long inTime = 12345678;
+                    assertEquals(defaultTariff.price(parkingType, inTime, inTime + duration, previousVisits),
+                            tariff.price(parkingType, inTime, inTime + duration, previousVisits));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void timeOfDayBandsArePricedMinuteByMinute() {
+
+        //GIVEN
+
+        rules.setProperty("car.bands", "07:00-10:00=3.0, 22:00-06:00=0.5");
+        Tariff tariff = Tariff.compile(rules);
+
+        //WHEN
+
+        // 06:00 to 08:00: one hour at 1.5 then one hour at 3.0
+        long morning = tariff.price(ParkingType.CAR, 6 * HOUR, 8 * HOUR, 0);
+        // 21:00 to 07:00 the next day: 1h at 1.5, 8h at 0.5, 1h at 1.5
+        long night = tariff.price(ParkingType.CAR, 21 * HOUR, DAY + 7 * HOUR, 0);
+
+        //THEN
+
+        assertEquals(45000, morning);
+        assertEquals(70000, night);
+        assertEquals(20000, tariff.price(ParkingType.BIKE, 6 * HOUR, 8 * HOUR, 0));
+    }
+
+    @Test
+    public void dailyCapBoundsEachDay() {
+
+        //GIVEN
+
+        rules.setProperty("car.daily.cap", "10");
+        Tariff tariff = Tariff.compile(rules);
+
+        //WHEN
+
+        // 12:00 to 04:00 two days later: 12h capped to 10, 24h capped to 10, 4h at 1.5
+        long price = tariff.price(ParkingType.CAR, 12 * HOUR, 2 * DAY + 4 * HOUR, 0);
+
+        //THEN
+
+        assertEquals(260000, price);
+    }
+
+    @Test
+    public void loyaltyTiersGrowWithVisits() {
+
+        //GIVEN
+
+        rules.setProperty("loyalty.tiers", "1=5,10=20");
+        Tariff tariff = Tariff.compile(rules);
+
+        //THEN
+
+        assertEquals(0, tariff.getDiscountPercent(0));
+        assertEquals(5, tariff.getDiscountPercent(9));
+        assertEquals(20, tariff.getDiscountPercent(10));
+        assertEquals(20, tariff.getDiscountPercent(500));
+        assertEquals(12000, tariff.price(ParkingType.CAR, 0, HOUR, 25));
+    }
+
+    @Test
+    public void malformedRulesAreRejected() {
+        rules.remove("bike.rate.per.hour");
+        assertThrows(IllegalArgumentException.class, () -> Tariff.compile(rules));
+        rules.setProperty("bike.rate.per.hour", "1.0");
+        rules.setProperty("car.bands", "07:00=3.0");
+        assertThrows(IllegalArgumentException.class, () -> Tariff.compile(rules));
+    }
+
+    @Test
+    public void changedTariffFileIsReloaded() throws IOException {
+
+        //GIVEN
+
+        Path tariffFile = Files.createTempFile("tariff", ".properties");
+        tariffFile.toFile().deleteOnExit();
+        Files.write(tariffFile, "free.minutes=30\ncar.rate.per.hour=1.5\nbike.rate.per.hour=1.0\n".getBytes(StandardCharsets.ISO_8859_1));
+        FareEngine fareEngine = new FareEngine();
+        TariffReloader tariffReloader = new TariffReloader(tariffFile, fareEngine);
+        assertTrue(tariffReloader.reload());
+        assertFalse(tariffReloader.reload());
+
+        //WHEN
+
+        Files.write(tariffFile, "free.minutes=0\ncar.rate.per.hour=2.0\nbike.rate.per.hour=1.0\n".getBytes(StandardCharsets.ISO_8859_1));
+        Files.setLastModifiedTime(tariffFile, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+        boolean reloaded = tariffReloader.reload();
+        Files.write(tariffFile, "car.rate.per.hour=oops\n".getBytes(StandardCharsets.ISO_8859_1));
+        boolean brokenReloaded = tariffReloader.reload();
+
+        //THEN
+
+        assertTrue(reloaded);
+        assertFalse(brokenReloaded);
+        assertEquals(20000, fareEngine.price(ParkingType.CAR, 0, HOUR, false));
+    }
+}
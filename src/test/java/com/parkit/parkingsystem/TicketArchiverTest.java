@@ -0,0 +1,80 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.TicketArchiver;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketArchiverTest {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    private DataBaseTestConfig dataBaseConfig;
+    private TicketDAO ticketDAO;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        dataBaseConfig = new DataBaseTestConfig("archive" + databases.incrementAndGet());
+        ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        DataBaseConfig.shutdownPools();
+    }
+
+    private void saveTicket(String vehicleRegNumber, long inTime, long outTime) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber(vehicleRegNumber);
+        ticket.setInTime(new Date(inTime));
+        ticketDAO.saveTicket(ticket);
+        if (outTime != 0) {
+            ticket.setOutTime(new Date(outTime));
+            ticket.setPrice(1.5);
+            ticketDAO.updateTicket(ticket);
+        }
+    }
+
+    @Test
+    public void oldClosedTicketsMoveToTheArchive() throws Exception {
+
+        //GIVEN
+
+        long now = System.currentTimeMillis();
+        saveTicket("ABCDEF", now - 100 * DAY, now - 100 * DAY + 60 * 60 * 1000);
+        saveTicket("ABCDEF", now - 95 * DAY, now - 95 * DAY + 60 * 60 * 1000);
+        saveTicket("GHIJKL", now - 92 * DAY, now - 92 * DAY + 60 * 60 * 1000);
+        saveTicket("ABCDEF", now - 10 * DAY, now - 10 * DAY + 60 * 60 * 1000);
+        saveTicket("MNOPQR", now - 100 * DAY, 0);
+
+        //WHEN
+
+        int archived = new TicketArchiver(dataBaseConfig, 2).archiveClosedBefore(now - 90 * DAY);
+
+        //THEN
+
+        assertEquals(3, archived);
+        assertEquals(3, dataBaseConfig.count("select count(*) from ticket_archive"));
+        assertEquals(2, dataBaseConfig.count("select count(*) from ticket"));
+        assertEquals(1, dataBaseConfig.count("select count(*) from ticket where VEHICLE_REG_NUMBER = 'MNOPQR' and OUT_TIME is null"));
+        assertEquals(2, dataBaseConfig.count("select NB_TICKET from visit_summary where VEHICLE_REG_NUMBER = 'ABCDEF'"));
+        assertEquals(1, dataBaseConfig.count("select NB_TICKET from visit_summary where VEHICLE_REG_NUMBER = 'GHIJKL'"));
+        assertEquals(3, ticketDAO.getNbTicket("ABCDEF"));
+        assertEquals(1, ticketDAO.getNbTicket("GHIJKL"));
+        assertEquals(0, new TicketArchiver(dataBaseConfig, 2).archiveClosedBefore(now - 90 * DAY));
+    }
+}
@@ -0,0 +1,179 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.InMemoryParkingStore;
+import com.parkit.parkingsystem.dao.ParkingSpotIndex;
+import com.parkit.parkingsystem.importer.GateEventReplayer;
+import com.parkit.parkingsystem.importer.ImportResult;
+import com.parkit.parkingsystem.importer.TicketImporter;
+import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import com.parkit.parkingsystem.service.FareCalculatorService;
+import com.parkit.parkingsystem.service.ParkingService;
+import com.parkit.parkingsystem.util.InputReaderUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TicketImporterTest {
+
+    private static final String EVENTS = String.join("\n",
+            "# time,event,plate,parking number,type",
+            "2026-01-10T08:00:00,ENTRY,ABCDEF,1,CAR",
+            "2026-01-10T09:00:00,ENTRY,GHIJKL,4,BIKE",
+            "2026-01-10T10:00:00,EXIT,ABCDEF,1,CAR",
+            "2026-01-10T11:00:00,EXIT,MNOPQR,2,CAR",
+            "not an event",
+            "2026-01-10T12:00:00,ENTRY,ABCDEF,2,CAR",
+            "2026-01-10T12:30:00,ENTRY,STUVWX,99,CAR",
+            "2026-01-10T12:45:00,ENTRY,THISPLATEISTOOLONG,3,CAR",
+            "2026-01-10T13:00:00,EXIT,ABCDEF,2,CAR",
+            "");
+
+    private DataBaseConfig dataBaseConfig;
+    private ForkJoinPool pool;
+
+    @BeforeEach
+    public void setUpPerTest() {
+        dataBaseConfig = new DataBaseTestConfig("import");
+        pool = new ForkJoinPool(2);
+    }
+
+    @AfterEach
+    public void tearDownPerTest() {
+        pool.shutdown();
+        DataBaseConfig.shutdownPools();
+    }
+
+    private static Date time(int hour) {
+        return Date.from(LocalDateTime.of(2026, 1, 10, hour, 0).atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static double price(int inHour, int outHour, int previousVisits) {
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setInTime(time(inHour));
+        ticket.setOutTime(time(outHour));
+        return new FareCalculatorService().calculateFare(ticket, previousVisits);
+    }
+
+    @Test
+    public void eventsAreImportedAsPricedTickets() throws Exception {
+
+        //GIVEN
+
+        // batches of one ticket, so that every batch is written while the next one is priced
+        TicketImporter importer = new TicketImporter(dataBaseConfig, new FareCalculatorService(), pool, 1);
+
+        //WHEN
+
+        ImportResult result = importer.importEvents(new BufferedReader(new StringReader(EVENTS)));
+
+        //THEN
+
+        assertEquals(7, result.getEvents());
+        assertEquals(3, result.getRows());
+        assertEquals(4, result.getRejected());
+        List<String> tickets = new ArrayList<>();
+        List<Boolean> available = new ArrayList<>();
+        Connection con = dataBaseConfig.getConnection();
+        try (Statement statement = con.createStatement()) {
+            ResultSet rs = statement.executeQuery("select VEHICLE_REG_NUMBER, PARKING_NUMBER, PRICE, OUT_TIME from ticket order by IN_TIME");
+            while (rs.next()) {
+                tickets.add(rs.getString(1) + " " + rs.getInt(2) + " " + rs.getDouble(3) + " " + (rs.getTimestamp(4) != null));
+            }
+            rs = statement.executeQuery("select AVAILABLE from parking order by PARKING_NUMBER");
+            while (rs.next()) {
+                available.add(rs.getBoolean(1));
+            }
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        assertEquals("ABCDEF 1 " + price(8, 10, 0) + " true", tickets.get(0));
+        assertEquals("GHIJKL 4 0.0 false", tickets.get(1));
+        assertEquals("ABCDEF 2 " + price(12, 13, 1) + " true", tickets.get(2));
+        assertEquals(3, tickets.size());
+        assertArrayEquals(new Boolean[]{true, true, true, false, true}, available.toArray());
+    }
+
+    @Test
+    public void spotsTakenInTheDatabaseStayTaken() throws Exception {
+
+        //GIVEN
+
+        dataBaseConfig = new DataBaseTestConfig("import-running");
+        Connection con = dataBaseConfig.getConnection();
+        try (Statement statement = con.createStatement()) {
+            // the site is running: vehicles parked on spots 2 and 4
+            statement.executeUpdate("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME) values(2, 'PARKED1', 0, now())");
+            statement.executeUpdate("insert into ticket(PARKING_NUMBER, VEHICLE_REG_NUMBER, PRICE, IN_TIME) values(4, 'PARKED2', 0, now())");
+            statement.executeUpdate("update parking set AVAILABLE = false where PARKING_NUMBER in (2, 4)");
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        TicketImporter importer = new TicketImporter(dataBaseConfig, new FareCalculatorService(), pool, 1);
+
+        //WHEN
+
+        ImportResult result = importer.importEvents(new BufferedReader(new StringReader(EVENTS)));
+
+        //THEN
+
+        // GHIJKL is still parked on spot 4 at the end of the file
+        assertEquals(2, result.getRows());
+        assertEquals(5, result.getRejected());
+        List<Boolean> available = new ArrayList<>();
+        con = dataBaseConfig.getConnection();
+        try (Statement statement = con.createStatement()) {
+            ResultSet rs = statement.executeQuery("select AVAILABLE from parking order by PARKING_NUMBER");
+            while (rs.next()) {
+                available.add(rs.getBoolean(1));
+            }
+        } finally {
+            dataBaseConfig.closeConnection(con);
+        }
+        assertArrayEquals(new Boolean[]{true, false, true, false, true}, available.toArray());
+    }
+
+    @Test
+    public void eventsAreReplayedThroughTheGates() throws Exception {
+
+        //GIVEN
+
+        ParkingSpotIndex layout = new ParkingSpotIndex(5);
+        for (int number = 1; number <= 5; number++) {
+            layout.addParkingSpot(number, number <= 3 ? ParkingType.CAR : ParkingType.BIKE, true);
+        }
+        InMemoryParkingStore store = new InMemoryParkingStore(layout);
+        ParkingService parkingService = new ParkingService(new InputReaderUtil(), store, store, new FareCalculatorService());
+
+        //WHEN
+
+        ImportResult result = new GateEventReplayer(parkingService, 3).replay(new BufferedReader(new StringReader(EVENTS)));
+
+        //THEN
+
+        assertEquals(7, result.getEvents());
+        assertEquals(6, result.getRows());
+        assertEquals(3, result.getRejected());
+        assertNull(store.getTicket("GHIJKL").getOutTime());
+        assertNull(store.getTicket("STUVWX").getOutTime());
+        assertNotNull(store.getTicket("ABCDEF").getOutTime());
+    }
+}
@@ -0,0 +1,409 @@
+package com.parkit.parkingsystem;
+
+import com.parkit.parkingsystem.config.DataBaseConfig;
+import com.parkit.parkingsystem.constants.DBConstants;
+import com.parkit.parkingsystem.constants.ParkingType;
+import com.parkit.parkingsystem.dao.ActiveTicketIndex;
+import com.parkit.parkingsystem.dao.TicketDAO;
+import com.parkit.parkingsystem.dao.TicketJournal;
+import com.parkit.parkingsystem.dao.TicketJournalWriter;
+import com.parkit.parkingsystem.model.ParkingSpot;
+import com.parkit.parkingsystem.model.Ticket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class TicketJournalTest {
+
+    private static final long IN_TIME = 1_600_000_000_000L;
+
+    private Path journalFile;
+    private TicketJournal journal;
+
+    @BeforeEach
+    public void setUpPerTest() throws IOException {
+        journalFile = Files.createTempFile("tickets", ".journal");
+        Files.delete(journalFile);
+    }
+
+    @AfterEach
+    public void tearDownPerTest() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        Files.deleteIfExists(journalFile);
+    }
+
+    private void appendVisit(String plate, int parkingNumber) throws IOException {
+        journal.append(TicketJournal.ENTRY, plate, parkingNumber, ParkingType.CAR, IN_TIME, 0, 0);
+        journal.append(TicketJournal.EXIT, plate, parkingNumber, ParkingType.CAR, IN_TIME, IN_TIME + 3_600_000, 1.5);
+    }
+
+    private TicketJournal reopen(int capacity) throws IOException {
+        journal.close();
+        journal = TicketJournal.open(journalFile, capacity);
+        return journal;
+    }
+
+    @Test
+    public void pendingRecordsAreFoundAfterRestart() throws IOException {
+
+        //GIVEN
+
+        journal = TicketJournal.open(journalFile, 16);
+        appendVisit("ABCDEF", 1);
+        journal.append(TicketJournal.ENTRY, "GHIJKL", 4, ParkingType.BIKE, IN_TIME + 1000, 0, 0);
+        journal.sync();
+
+        //WHEN
+
+        List<TicketJournal.Record> records = reopen(16).readPending(10);
+
+        //THEN
+
+        assertEquals(3, records.size());
+        assertEquals(TicketJournal.ENTRY, records.get(0).type);
+        assertEquals(TicketJournal.EXIT, records.get(1).type);
+        assertEquals("ABCDEF", records.get(1).vehicleRegNumber);
+        assertEquals(IN_TIME, records.get(1).inTime);
+        assertEquals(IN_TIME + 3_600_000, records.get(1).outTime);
+        assertEquals(1.5, records.get(1).price);
+        assertEquals(4, records.get(2).parkingNumber);
+        assertEquals(ParkingType.BIKE, records.get(2).parkingType);
+        assertEquals(3, records.get(2).seq);
+        assertEquals(1, journal.getPendingEntryCount("ABCDEF"));
+        assertEquals(1, journal.getPendingEntryCount("GHIJKL"));
+    }
+
+    @Test
+    public void appliedRecordsAreNotReplayedAndTheirSpaceIsReused() throws IOException {
+
+        //GIVEN
+
+        journal = TicketJournal.open(journalFile, 4);
+        appendVisit("ABCDEF", 1);
+        appendVisit("GHIJKL", 2);
+        journal.sync();
+
+        //WHEN
+
+        journal.markApplied(journal.readPending(10));
+        journal.append(TicketJournal.ENTRY, "MNOPQR", 3, ParkingType.CAR, IN_TIME, 0, 0);
+        journal.sync();
+        List<TicketJournal.Record> records = reopen(4).readPending(10);
+
+        //THEN
+
+        assertEquals(1, records.size());
+        assertEquals(5, records.get(0).seq);
+        assertEquals("MNOPQR", records.get(0).vehicleRegNumber);
+        assertEquals(0, journal.getPendingEntryCount("ABCDEF"));
+    }
+
+    @Test
+    public void journalWrapsAroundWhileRecordsArePending() throws IOException {
+
+        //GIVEN
+
+        journal = TicketJournal.open(journalFile, 4);
+        appendVisit("ABCDEF", 1);
+        journal.append(TicketJournal.ENTRY, "GHIJKL", 2, ParkingType.CAR, IN_TIME, 0, 0);
+        journal.sync();
+
+        //WHEN
+
+        // the writer never catches up completely, as under sustained load
+        journal.markApplied(journal.readPending(2));
+        appendVisit("MNOPQR", 3);
+        journal.append(TicketJournal.ENTRY, "STUVWX", 1, ParkingType.CAR, IN_TIME, 0, 0);
+        journal.sync();
+        List<TicketJournal.Record> records = journal.readPending(10);
+        List<TicketJournal.Record> reopenedRecords = reopen(4).readPending(10);
+
+        //THEN
+
+        assertEquals(4, records.size());
+        assertEquals(3, records.get(0).seq);
+        assertEquals("STUVWX", records.get(3).vehicleRegNumber);
+        assertEquals(4, reopenedRecords.size());
+        assertEquals(6, reopenedRecords.get(3).seq);
+        assertThrows(IOException.class, () -> journal.append(TicketJournal.ENTRY, "YZABCD", 2, ParkingType.CAR, IN_TIME, 0, 0));
+    }
+
+    @Test
+    public void pendingRecordsAreFoundBehindAStaleHeader() throws IOException {
+
+        //GIVEN
+
+        journal = TicketJournal.open(journalFile, 4);
+        appendVisit("ABCDEF", 1);
+        appendVisit("GHIJKL", 2);
+        journal.sync();
+        journal.markApplied(journal.readPending(10));
+        journal.append(TicketJournal.ENTRY, "MNOPQR", 3, ParkingType.CAR, IN_TIME, 0, 0);
+        journal.close();
+        journal = null;
+        // the header as it was before the crash, markApplied not forcing it: the first record is overwritten
+        try (RandomAccessFile file = new RandomAccessFile(journalFile.toFile(), "rw")) {
+            file.seek(8);
+            file.writeLong(0);
+        }
+
+        //WHEN
+
+        journal = TicketJournal.open(journalFile, 4);
+        List<TicketJournal.Record> records = journal.readPending(10);
+
+        //THEN
+
+        // applied records still in the journal are written again, which the writer makes harmless
+        assertEquals(4, records.size());
+        assertEquals(2, records.get(0).seq);
+        assertEquals("MNOPQR", records.get(3).vehicleRegNumber);
+        assertEquals(1, journal.getAppliedSeq());
+    }
+
+    @Test
+    public void replayStopsAtATornRecord() throws IOException {
+
+        //GIVEN
+
+        journal = TicketJournal.open(journalFile, 16);
+        appendVisit("ABCDEF", 1);
+        journal.append(TicketJournal.ENTRY, "GHIJKL", 2, ParkingType.CAR, IN_TIME, 0, 0);
+        journal.close();
+        journal = null;
+        try (RandomAccessFile file = new RandomAccessFile(journalFile.toFile(), "rw")) {
+            file.seek(64 + 2 * 64 + 45);
+            file.write('X');
+        }
+
+        //WHEN
+
+        journal = TicketJournal.open(journalFile, 16);
+        long seq = journal.append(TicketJournal.ENTRY, "MNOPQR", 3, ParkingType.CAR, IN_TIME, 0, 0);
+        journal.sync();
+
+        //THEN
+
+        List<TicketJournal.Record> records = journal.readPending(10);
+        assertEquals(3, seq);
+        assertEquals(3, records.size());
+        assertEquals("MNOPQR", records.get(2).vehicleRegNumber);
+    }
+
+    @Test
+    public void writerKeepsTheOrderOfEntriesAndExitsInOneTransaction() throws Exception {
+
+        //GIVEN
+
+        journal = TicketJournal.open(journalFile, 16);
+        appendVisit("ABCDEF", 1);
+        journal.append(TicketJournal.ENTRY, "ABCDEF", 1, ParkingType.CAR, IN_TIME + 7_200_000, 0, 0);
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection con = mock(Connection.class);
+        PreparedStatement saveTicket = mock(PreparedStatement.class);
+        PreparedStatement closeTicket = mock(PreparedStatement.class);
+        PreparedStatement updateParking = mock(PreparedStatement.class);
+        when(dataBaseConfig.getConnection()).thenReturn(con);
+        when(con.prepareStatement(DBConstants.SAVE_TICKET_IF_ABSENT)).thenReturn(saveTicket);
+        when(con.prepareStatement(DBConstants.CLOSE_TICKET)).thenReturn(closeTicket);
+        when(con.prepareStatement(DBConstants.UPDATE_PARKING_SPOT)).thenReturn(updateParking);
+        TicketJournalWriter writer = new TicketJournalWriter(journal, dataBaseConfig, 100);
+
+        //WHEN
+
+        int written = writer.flush();
+
+        //THEN
+
+        assertEquals(3, written);
+        assertEquals(0, journal.getPendingCount());
+        assertEquals(0, journal.getPendingEntryCount("ABCDEF"));
+        InOrder inOrder = inOrder(con, saveTicket, closeTicket, updateParking);
+        inOrder.verify(con).setAutoCommit(false);
+        inOrder.verify(saveTicket).executeBatch();
+        inOrder.verify(closeTicket).executeBatch();
+        inOrder.verify(saveTicket).executeBatch();
+        inOrder.verify(updateParking).setBoolean(1, false);
+        inOrder.verify(updateParking).executeBatch();
+        inOrder.verify(con).commit();
+        verify(updateParking, times(1)).addBatch();
+    }
+
+    @Test
+    public void failedBatchStaysInTheJournal() throws Exception {
+
+        //GIVEN
+
+        journal = TicketJournal.open(journalFile, 16);
+        appendVisit("ABCDEF", 1);
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection con = mock(Connection.class);
+        when(dataBaseConfig.getConnection()).thenReturn(con);
+        when(con.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        doThrow(new SQLException("connection lost")).when(con).commit();
+        TicketJournalWriter writer = new TicketJournalWriter(journal, dataBaseConfig, 100);
+
+        //WHEN
+
+        assertThrows(SQLException.class, writer::flush);
+
+        //THEN
+
+        verify(dataBaseConfig).rollback(con);
+        assertEquals(2, journal.getPendingCount());
+        assertEquals(1, journal.getPendingEntryCount("ABCDEF"));
+    }
+
+    @Test
+    public void entriesAppendedWhileTheWriterFlushesAreNoLongerPendingOnceWritten() throws Exception {
+
+        //GIVEN
+
+        journal = TicketJournal.open(journalFile, 1024);
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection con = mock(Connection.class);
+        when(dataBaseConfig.getConnection()).thenReturn(con);
+        when(con.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        TicketJournalWriter writer = new TicketJournalWriter(journal, dataBaseConfig, 7);
+        ExecutorService gates = Executors.newFixedThreadPool(5);
+        AtomicBoolean appending = new AtomicBoolean(true);
+
+        //WHEN
+
+        try {
+            Future<?>[] appends = new Future<?>[4];
+            for (int gate = 0; gate < appends.length; gate++) {
+                appends[gate] = gates.submit(() -> {
+                    for (int i = 0; i < 100; i++) {
+                        long seq = journal.append(TicketJournal.ENTRY, "ABCDEF", 1, ParkingType.CAR, IN_TIME, 0, 0);
+                        journal.sync(seq);
+                    }
+                    return null;
+                });
+            }
+            Future<?> flushes = gates.submit(() -> {
+                while (appending.get()) {
+                    writer.flush();
+                }
+                return null;
+            });
+            for (Future<?> append : appends) {
+                append.get(30, TimeUnit.SECONDS);
+            }
+            appending.set(false);
+            flushes.get(30, TimeUnit.SECONDS);
+            writer.drain();
+        } finally {
+            gates.shutdown();
+        }
+
+        //THEN
+
+        assertEquals(0, journal.getPendingCount());
+        assertEquals(0, journal.getPendingEntryCount("ABCDEF"));
+    }
+
+    @Test
+    public void ticketsBeingWrittenToTheDatabaseAreCountedOnce() throws Exception {
+
+        //GIVEN
+
+        journal = TicketJournal.open(journalFile, 16);
+        journal.append(TicketJournal.ENTRY, "ABCDEF", 1, ParkingType.CAR, IN_TIME, 0, 0);
+        DataBaseConfig dataBaseConfig = mock(DataBaseConfig.class);
+        Connection con = mock(Connection.class);
+        PreparedStatement countTickets = mock(PreparedStatement.class);
+        ResultSet rs = mock(ResultSet.class);
+        when(dataBaseConfig.getConnection()).thenReturn(con);
+        when(dataBaseConfig.getReadConnection("ABCDEF")).thenReturn(con);
+        when(con.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        when(con.prepareStatement(DBConstants.GET_NB_TICKET)).thenReturn(countTickets);
+        when(countTickets.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        AtomicBoolean committed = new AtomicBoolean();
+        when(rs.getInt(1)).thenAnswer(invocation -> committed.get() ? 1 : 0);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = dataBaseConfig;
+        ticketDAO.ticketJournal = journal;
+        ExecutorService gate = Executors.newSingleThreadExecutor();
+        AtomicReference<Future<Integer>> countAfterCommit = new AtomicReference<>();
+        doAnswer(invocation -> {
+            committed.set(true);
+            // a gate counting the tickets of the plate before the writer marked the entry applied
+            countAfterCommit.set(gate.submit(() -> ticketDAO.getNbTicket("ABCDEF")));
+            Thread.sleep(100);
+            return null;
+        }).when(con).commit();
+        TicketJournalWriter writer = new TicketJournalWriter(journal, dataBaseConfig, 100);
+
+        //WHEN
+
+        int countBeforeCommit = ticketDAO.getNbTicket("ABCDEF");
+        writer.flush();
+
+        //THEN
+
+        try {
+            assertEquals(1, countBeforeCommit);
+            assertEquals(1, (int) countAfterCommit.get().get(10, TimeUnit.SECONDS));
+        } finally {
+            gate.shutdown();
+        }
+    }
+
+    @Test
+    public void ticketDAOWritesBehindTheDatabase() throws IOException {
+
+        //GIVEN
+
+        journal = TicketJournal.open(journalFile, 16);
+        TicketDAO ticketDAO = new TicketDAO();
+        ticketDAO.dataBaseConfig = mock(DataBaseConfig.class);
+        ticketDAO.activeTicketIndex = new ActiveTicketIndex();
+        ticketDAO.ticketJournal = journal;
+        Ticket ticket = new Ticket();
+        ticket.setParkingSpot(new ParkingSpot(1, ParkingType.CAR, false));
+        ticket.setVehicleRegNumber("ABCDEF");
+        ticket.setInTime(new Date(IN_TIME));
+
+        //WHEN
+
+        boolean isSaved = ticketDAO.saveTicket(ticket);
+        boolean isParked = ticketDAO.getTicket("ABCDEF") != null;
+        ticket.setOutTime(new Date(IN_TIME + 3_600_000));
+        ticket.setPrice(1.5);
+        boolean isUpdated = ticketDAO.updateTicket(ticket);
+
+        //THEN
+
+        assertTrue(isSaved);
+        assertTrue(isParked);
+        assertTrue(isUpdated);
+        assertEquals(0, ticketDAO.activeTicketIndex.size());
+        assertEquals(2, journal.getDurableSeq());
+        verifyZeroInteractions(ticketDAO.dataBaseConfig);
+    }
+}
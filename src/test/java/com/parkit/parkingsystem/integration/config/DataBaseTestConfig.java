@@ -1,47 +1,34 @@
 package com.parkit.parkingsystem.integration.config;
 
-import com.parkit.parkingsystem.config.DataBaseConfig;
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
-import java.sql.*;
+import com.parkit.parkingsystem.config.EmbeddedDataBaseConfig;
 
-public class DataBaseTestConfig extends DataBaseConfig {
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
 
-    private static final Logger logger = LogManager.getLogger("DataBaseTestConfig");
+public class DataBaseTestConfig extends EmbeddedDataBaseConfig {
 
-    public Connection getConnection() throws ClassNotFoundException, SQLException {
-        Class.forName("com.mysql.cj.jdbc.Driver");
-        return DriverManager.getConnection(
-                "jdbc:mysql://localhost:3306/test?useSSL=false&serverTimezone=Europe/Paris&characterEncoding=UTF-8","root","rootroot");
+    public DataBaseTestConfig() {
+        super("test");
     }
 
-    public void closeConnection(Connection con){
-        if(con!=null){
-            try {
-                con.close();
-            } catch (SQLException e) {
-                logger.error("Error while closing connection",e);
-            }
-        }
-    }
-
-    public void closePreparedStatement(PreparedStatement ps) {
-        if(ps!=null){
-            try {
-                ps.close();
-            } catch (SQLException e) {
-                logger.error("Error while closing prepared statement",e);
-            }
-        }
+    /**
+     * @param name the in-memory test database of its own, so that tests do not see each other's tickets
+     */
+    public DataBaseTestConfig(String name) {
+        super("test", inMemoryUrl(name));
     }
 
-    public void closeResultSet(ResultSet rs) {
-        if(rs!=null){
-            try {
-                rs.close();
-            } catch (SQLException e) {
-                logger.error("Error while closing result set",e);
-            }
+    /**
+     * @return the first column of the first row of this query, e.g. a count
+     */
+    public int count(String query) throws Exception {
+        Connection con = getConnection();
+        try (Statement statement = con.createStatement(); ResultSet rs = statement.executeQuery(query)) {
+            rs.next();
+            return rs.getInt(1);
+        } finally {
+            closeConnection(con);
         }
     }
 }
@@ -3,6 +3,7 @@ package com.parkit.parkingsystem.integration.service;
 import com.parkit.parkingsystem.integration.config.DataBaseTestConfig;
 
 import java.sql.Connection;
+import java.sql.Statement;
 
 public class DataBasePrepareService {
 
@@ -12,12 +13,16 @@ public class DataBasePrepareService {
         Connection connection = null;
         try{
             connection = dataBaseTestConfig.getConnection();
+            try (Statement statement = connection.createStatement()) {
 
-            //set parking entries to available
-            connection.prepareStatement("update parking set available = true").execute();
+                //set parking entries to available
+                statement.execute("update parking set available = true");
 
-            //clear ticket entries;
-            connection.prepareStatement("truncate table ticket").execute();
+                //clear ticket entries;
+                statement.execute("truncate table ticket");
+                statement.execute("truncate table ticket_archive");
+                statement.execute("truncate table visit_summary");
+            }
 
         }catch(Exception e){
             e.printStackTrace();